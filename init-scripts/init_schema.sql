@@ -12,6 +12,7 @@ CREATE TABLE wallet (
                         frozen_balance DECIMAL(20,8) NOT NULL DEFAULT 0 COMMENT '冻结余额',
                         version INT NOT NULL DEFAULT 0 COMMENT '版本号，用于乐观锁',
                         status TINYINT NOT NULL DEFAULT 1 COMMENT '状态:1正常,0冻结',
+                        stripe_count INT NOT NULL DEFAULT 0 COMMENT '分片数，0表示未分片',
                         created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
                         updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                         UNIQUE KEY uk_user_currency (user_id, currency),
@@ -19,9 +20,10 @@ CREATE TABLE wallet (
                         KEY idx_currency (currency)
 ) ENGINE=InnoDB COMMENT='钱包表';
 
--- 交易流水表
+-- 交易流水表：按创建时间按月分区，分区由 PartitionMaintenanceService 提前创建，超过保留期的分区归档后删除。
+-- 分区表的唯一键必须包含分区列，交易流水号的全局唯一由 transaction_no_key 保证，业务标识的唯一由 idempotency_key 保证
 CREATE TABLE wallet_transaction (
-                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    id BIGINT NOT NULL AUTO_INCREMENT,
                                     transaction_no VARCHAR(64) NOT NULL COMMENT '交易流水号，全局唯一',
                                     wallet_id BIGINT NOT NULL COMMENT '钱包ID',
                                     user_id BIGINT NOT NULL COMMENT '用户ID',
@@ -34,26 +36,184 @@ CREATE TABLE wallet_transaction (
                                     business_id VARCHAR(64) NOT NULL COMMENT '业务ID，用于幂等',
                                     status TINYINT NOT NULL DEFAULT 0 COMMENT '状态:0处理中,1成功,2失败',
                                     remark VARCHAR(500) COMMENT '备注',
-                                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                                    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
                                     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
-                                    UNIQUE KEY uk_transaction_no (transaction_no),
-                                    UNIQUE KEY uk_business (business_type, business_id),
+                                    PRIMARY KEY (id, created_at),
+                                    UNIQUE KEY uk_transaction_no (transaction_no, created_at),
                                     KEY idx_wallet_id (wallet_id),
                                     KEY idx_user_id (user_id),
+                                    KEY idx_user_currency_created (user_id, currency, created_at, id),
                                     KEY idx_created (created_at)
-) ENGINE=InnoDB COMMENT='钱包交易流水表';
+) ENGINE=InnoDB COMMENT='钱包交易流水表'
+PARTITION BY RANGE COLUMNS(created_at) (
+    PARTITION p_max VALUES LESS THAN (MAXVALUE)
+);
+
+-- 幂等键表：主键为业务类型+业务ID 的 128 位哈希（MD5(business_type + '\0' + business_id)），定长 16 字节，
+-- 只存交易定位信息和最终状态，不分区、不归档。充值、提现开始时先插入处理中的幂等键（重复请求在此处以唯一键冲突返回，
+-- 并发的重复请求等待先占用的事务结束），交易记录写入时由触发器补上交易ID、创建时间和状态；
+-- 其他写入交易记录的路径（转账、批量充值等）未预先占用，由触发器直接插入，业务标识重复时交易记录的插入以唯一键冲突失败
+CREATE TABLE idempotency_key (
+                                    key_hash BINARY(16) NOT NULL COMMENT 'MD5(业务类型 + 0x00 + 业务ID)',
+                                    transaction_id BIGINT COMMENT '交易ID，占用后尚未写入交易记录时为空',
+                                    status TINYINT NOT NULL DEFAULT 0 COMMENT '交易状态:0处理中,1成功,2失败',
+                                    created_at DATETIME COMMENT '交易创建时间，与交易ID组成交易表主键',
+                                    PRIMARY KEY (key_hash)
+) ENGINE=InnoDB COMMENT='幂等键表';
+
+DELIMITER //
+CREATE TRIGGER trg_idempotency_key AFTER INSERT ON wallet_transaction
+    FOR EACH ROW
+BEGIN
+    DECLARE v_key_hash BINARY(16) DEFAULT UNHEX(MD5(CONCAT(NEW.business_type, CHAR(0), NEW.business_id)));
+    UPDATE idempotency_key SET transaction_id = NEW.id, status = NEW.status, created_at = NEW.created_at
+    WHERE key_hash = v_key_hash AND transaction_id IS NULL;
+    IF ROW_COUNT() = 0 THEN
+        INSERT INTO idempotency_key(key_hash, transaction_id, status, created_at)
+        VALUES (v_key_hash, NEW.id, NEW.status, NEW.created_at);
+    END IF;
+END//
+DELIMITER ;
 
--- 余额变更历史表
+-- 交易流水号唯一表：不分区、不归档，交易记录写入时由触发器插入。流水号生成器的节点号配置重复（如多个实例都用默认的 0）
+-- 时生成的流水号会冲突，交易记录的插入在此处以唯一键冲突失败，不会写入两条相同流水号的交易
+CREATE TABLE transaction_no_key (
+                                    transaction_no VARCHAR(64) NOT NULL COMMENT '交易流水号',
+                                    PRIMARY KEY (transaction_no)
+) ENGINE=InnoDB COMMENT='交易流水号唯一表';
+
+CREATE TRIGGER trg_transaction_no_key AFTER INSERT ON wallet_transaction
+    FOR EACH ROW INSERT INTO transaction_no_key(transaction_no) VALUES (NEW.transaction_no);
+
+-- 交易流水归档表：列顺序与 wallet_transaction 一致（归档按 SELECT * 搬移），只保留按用户查询的索引
+CREATE TABLE wallet_transaction_archive (
+                                    id BIGINT PRIMARY KEY,
+                                    transaction_no VARCHAR(64) NOT NULL,
+                                    wallet_id BIGINT NOT NULL,
+                                    user_id BIGINT NOT NULL,
+                                    currency VARCHAR(10) NOT NULL,
+                                    amount DECIMAL(20,8) NOT NULL,
+                                    balance_before DECIMAL(20,8) NOT NULL,
+                                    balance_after DECIMAL(20,8) NOT NULL,
+                                    transaction_type TINYINT NOT NULL,
+                                    business_type VARCHAR(50) NOT NULL,
+                                    business_id VARCHAR(64) NOT NULL,
+                                    status TINYINT NOT NULL,
+                                    remark VARCHAR(500),
+                                    created_at DATETIME NOT NULL,
+                                    updated_at DATETIME,
+                                    KEY idx_user_currency_created (user_id, currency, created_at, id)
+) ENGINE=InnoDB ROW_FORMAT=COMPRESSED COMMENT='钱包交易流水归档表';
+
+-- 余额变更历史表：与交易流水表一样按创建时间按月分区
 CREATE TABLE balance_change_history (
-                                        id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                        id BIGINT NOT NULL AUTO_INCREMENT,
                                         wallet_id BIGINT NOT NULL COMMENT '钱包ID',
-                                        transaction_id BIGINT NOT NULL COMMENT '交易ID',
+                                        transaction_id BIGINT NULL COMMENT '交易ID，FROZEN 变更为空',
+                                        hold_id BIGINT NULL COMMENT '冻结单ID，仅 FROZEN 变更',
                                         change_amount DECIMAL(20,8) NOT NULL COMMENT '变更金额',
                                         balance_before DECIMAL(20,8) NOT NULL COMMENT '变更前余额',
                                         balance_after DECIMAL(20,8) NOT NULL COMMENT '变更后余额',
-                                        change_type VARCHAR(20) NOT NULL COMMENT '变更类型:BALANCE,FROZEN',
-                                        created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                                        change_type VARCHAR(20) NOT NULL COMMENT '变更类型:BALANCE余额,FROZEN冻结余额,STRIPE_SWEEP分片归集',
+                                        stripe_no INT NOT NULL DEFAULT 0 COMMENT '分片号，0表示钱包主行',
+                                        created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+                                        PRIMARY KEY (id, created_at),
                                         KEY idx_wallet_id (wallet_id),
-                                        KEY idx_transaction_id (transaction_id),
+                                        UNIQUE KEY uk_transaction_change (transaction_id, change_type, stripe_no, created_at),
+                                        KEY idx_hold_id (hold_id),
                                         KEY idx_created (created_at)
-) ENGINE=InnoDB COMMENT='余额变更历史表';
\ No newline at end of file
+) ENGINE=InnoDB COMMENT='余额变更历史表'
+PARTITION BY RANGE COLUMNS(created_at) (
+    PARTITION p_max VALUES LESS THAN (MAXVALUE)
+);
+
+-- 按钱包和时间定位变更（期初余额、检查点增量聚合）
+ALTER TABLE balance_change_history ADD INDEX idx_wallet_created (wallet_id, created_at);
+
+-- 按钱包分片和时间定位变更（分片钱包的期初余额）
+ALTER TABLE balance_change_history ADD INDEX idx_wallet_stripe_created (wallet_id, stripe_no, created_at);
+
+-- 余额变更历史归档表：列顺序与 balance_change_history 一致，保留期初余额查询所需的索引
+CREATE TABLE balance_change_history_archive (
+                                        id BIGINT PRIMARY KEY,
+                                        wallet_id BIGINT NOT NULL,
+                                        transaction_id BIGINT NULL,
+                                        hold_id BIGINT NULL,
+                                        change_amount DECIMAL(20,8) NOT NULL,
+                                        balance_before DECIMAL(20,8) NOT NULL,
+                                        balance_after DECIMAL(20,8) NOT NULL,
+                                        change_type VARCHAR(20) NOT NULL,
+                                        stripe_no INT NOT NULL,
+                                        created_at DATETIME NOT NULL,
+                                        KEY idx_wallet_created (wallet_id, created_at),
+                                        KEY idx_wallet_stripe_created (wallet_id, stripe_no, created_at)
+) ENGINE=InnoDB ROW_FORMAT=COMPRESSED COMMENT='余额变更历史归档表';
+
+-- 钱包分片表：热点钱包的入账分散到多个分片行，钱包余额 = 主行余额 + 各分片余额
+CREATE TABLE wallet_stripe (
+                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    wallet_id BIGINT NOT NULL COMMENT '钱包ID',
+                                    stripe_no INT NOT NULL COMMENT '分片号，从1开始',
+                                    balance DECIMAL(20,8) NOT NULL DEFAULT 0 COMMENT '分片余额',
+                                    version INT NOT NULL DEFAULT 0 COMMENT '版本号',
+                                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                                    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                                    UNIQUE KEY uk_wallet_stripe (wallet_id, stripe_no)
+) ENGINE=InnoDB COMMENT='钱包分片表';
+
+-- 余额检查点表
+CREATE TABLE balance_checkpoint (
+                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    wallet_id BIGINT NOT NULL COMMENT '钱包ID',
+                                    checkpoint_time DATETIME NOT NULL COMMENT '检查点时间，汇总早于该时间的全部变更',
+                                    balance DECIMAL(20,8) NOT NULL COMMENT '检查点时的余额',
+                                    total_inflow DECIMAL(30,8) NOT NULL DEFAULT 0 COMMENT '累计流入',
+                                    total_outflow DECIMAL(30,8) NOT NULL DEFAULT 0 COMMENT '累计流出',
+                                    change_count BIGINT NOT NULL DEFAULT 0 COMMENT '累计变更次数',
+                                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                                    UNIQUE KEY uk_wallet_time (wallet_id, checkpoint_time)
+) ENGINE=InnoDB COMMENT='余额检查点表';
+
+-- 资金冻结单表：冻结金额计入钱包 frozen_balance，扣款、解冻或过期后释放
+CREATE TABLE wallet_hold (
+                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    hold_no VARCHAR(64) NOT NULL COMMENT '冻结单号，全局唯一',
+                                    wallet_id BIGINT NOT NULL COMMENT '钱包ID',
+                                    user_id BIGINT NOT NULL COMMENT '用户ID',
+                                    currency VARCHAR(10) NOT NULL COMMENT '币种',
+                                    amount DECIMAL(20,8) NOT NULL COMMENT '冻结金额',
+                                    captured_amount DECIMAL(20,8) COMMENT '实际扣款金额，剩余部分在扣款时解冻',
+                                    status TINYINT NOT NULL DEFAULT 0 COMMENT '状态:0冻结中,1已扣款,2已解冻,3已过期',
+                                    business_type VARCHAR(50) NOT NULL COMMENT '业务类型',
+                                    business_id VARCHAR(64) NOT NULL COMMENT '业务ID，用于幂等',
+                                    transaction_no VARCHAR(64) COMMENT '扣款交易流水号',
+                                    expires_at DATETIME NOT NULL COMMENT '过期时间，过期未扣款自动解冻',
+                                    remark VARCHAR(500) COMMENT '备注',
+                                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                                    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+                                    UNIQUE KEY uk_hold_no (hold_no),
+                                    UNIQUE KEY uk_hold_business (business_type, business_id),
+                                    KEY idx_hold_wallet (wallet_id),
+                                    KEY idx_hold_status_expires (status, expires_at)
+) ENGINE=InnoDB COMMENT='资金冻结单表';
+
+-- 余额变更历史补写进度表：异步写入模式下按交易记录ID高水位补写变更历史
+CREATE TABLE history_projection (
+                                    name VARCHAR(50) PRIMARY KEY COMMENT '补写任务名称',
+                                    last_transaction_id BIGINT NOT NULL DEFAULT 0 COMMENT '高水位：ID不大于该值的交易记录均已补写',
+                                    caught_up_to DATETIME COMMENT '创建时间早于该时间的交易记录均已有变更历史',
+                                    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB COMMENT='余额变更历史补写进度表';
+
+-- 内存账本投影进度表：每个分片已写入数据库的最大日志序号，与投影数据在同一事务中更新
+CREATE TABLE ledger_projection (
+                                    shard INT PRIMARY KEY COMMENT '账本分片号',
+                                    last_seq BIGINT NOT NULL DEFAULT 0 COMMENT '已投影的最大日志序号',
+                                    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+) ENGINE=InnoDB COMMENT='内存账本投影进度表';
+
+-- 复制心跳表：主库定期写入当前时间，从库读到的时间与当前时间之差即复制延迟
+CREATE TABLE replication_heartbeat (
+                                    id INT PRIMARY KEY COMMENT '固定为1',
+                                    beat_at DATETIME(3) NOT NULL COMMENT '主库最近一次写入心跳的时间'
+) ENGINE=InnoDB COMMENT='复制心跳表';
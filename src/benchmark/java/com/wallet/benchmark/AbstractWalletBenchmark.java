@@ -0,0 +1,107 @@
+package com.wallet.benchmark;
+
+import com.wallet.WalletApplication;
+import com.wallet.entity.Wallet;
+import com.wallet.mapper.WalletMapper;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 基准测试公共状态：每轮试验启动一个不带 Web 容器的应用上下文
+ * <p>
+ * database=h2 使用内嵌 H2（application-benchmark.yml），database=mysql 使用本地 MySQL
+ * （application-benchmark-mysql.yml）；storage=MEMORY 把三张表换成内存存储，作为排除数据库开销的基线。用户ID和业务ID带上本轮的 runId，重复运行不会与已有数据冲突。
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractWalletBenchmark {
+
+    @Param({"h2"})
+    public String database;
+
+    @Param({"MYBATIS"})
+    public String storage;
+
+    protected ConfigurableApplicationContext context;
+
+    protected long runId;
+
+    @Setup(Level.Trial)
+    public void startContext() throws Exception {
+        context = new SpringApplicationBuilder(WalletApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("mysql".equals(database) ? "benchmark-mysql" : "benchmark")
+                .run(startupArguments());
+        runId = System.currentTimeMillis();
+        prepare();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    private String[] startupArguments() {
+        String[] arguments = arguments();
+        String[] all = Arrays.copyOf(arguments, arguments.length + 1);
+        all[arguments.length] = "--wallet.storage.type=" + storage;
+        return all;
+    }
+
+    /**
+     * 追加的启动参数（--key=value），用于按 @Param 切换配置
+     */
+    protected String[] arguments() {
+        return new String[0];
+    }
+
+    /**
+     * 上下文启动后准备基准数据
+     */
+    protected void prepare() throws Exception {
+    }
+
+    protected <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * 为 userId(1..count) 批量创建钱包，经 WalletMapper 写入，数据库和内存存储都适用
+     */
+    protected void createWallets(String currency, BigDecimal balance, int count) {
+        WalletMapper walletMapper = bean(WalletMapper.class);
+        List<Wallet> wallets = new ArrayList<>(1000);
+        for (int i = 1; i <= count; i++) {
+            Wallet wallet = new Wallet();
+            wallet.setUserId(userId(i));
+            wallet.setCurrency(currency);
+            wallet.setBalance(balance);
+            wallet.setFrozenBalance(BigDecimal.ZERO);
+            wallet.setVersion(0);
+            wallet.setStatus(1);
+            wallets.add(wallet);
+            if (wallets.size() == 1000 || i == count) {
+                walletMapper.batchInsert(wallets);
+                wallets.clear();
+            }
+        }
+    }
+
+    /**
+     * 本轮试验专用的用户ID
+     */
+    protected long userId(long offset) {
+        return runId * 100_000 + offset;
+    }
+}
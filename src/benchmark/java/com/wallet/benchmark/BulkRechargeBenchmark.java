@@ -0,0 +1,85 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.request.RechargeRequest;
+import com.wallet.dto.response.BulkRechargeResponse;
+import com.wallet.service.WalletBulkRechargeService;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 奖励发放：每次调用给 1000 个不同用户各充值一笔，批量充值 vs 逐笔调用 {@link WalletService#recharge}
+ * <p>
+ * 结果按条计（items/s）。用户从 1 万个已存在的钱包中轮流选取。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class BulkRechargeBenchmark extends AbstractWalletBenchmark {
+
+    private static final String CURRENCY = "CNY";
+
+    private static final int ITEMS = 1000;
+
+    private static final int WALLETS = 10_000;
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private WalletService walletService;
+
+    private WalletBulkRechargeService bulkRechargeService;
+
+    private long sequence;
+
+    private int walletIndex;
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        bulkRechargeService = bean(WalletBulkRechargeService.class);
+        createWallets(CURRENCY, BigDecimal.ZERO, WALLETS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public BulkRechargeResponse bulkRecharge() {
+        List<RechargeRequest> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            RechargeRequest item = new RechargeRequest();
+            item.setUserId(nextUserId());
+            item.setCurrency(CURRENCY);
+            item.setAmount(AMOUNT);
+            item.setBusinessType("BENCH_BULK");
+            item.setBusinessId(runId + "_" + (++sequence));
+            items.add(item);
+        }
+        return bulkRechargeService.bulkRecharge(items);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ITEMS)
+    public void loopedRecharge(Blackhole blackhole) {
+        for (int i = 0; i < ITEMS; i++) {
+            blackhole.consume(walletService.recharge(nextUserId(), CURRENCY, AMOUNT,
+                    "BENCH_LOOP", runId + "_" + (++sequence), null));
+        }
+    }
+
+    private long nextUserId() {
+        return userId(1 + (walletIndex++ % WALLETS));
+    }
+}
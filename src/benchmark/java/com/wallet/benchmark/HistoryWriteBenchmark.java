@@ -0,0 +1,54 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同步写入与异步补写余额变更历史时的提现提交耗时，异步模式下后台补写任务同时运行
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryWriteBenchmark extends AbstractWalletBenchmark {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"SYNC", "ASYNC"})
+    public String mode;
+
+    private WalletService walletService;
+
+    private long userId;
+
+    private long sequence;
+
+    @Override
+    protected String[] arguments() {
+        return new String[]{"--wallet.balance-history.mode=" + mode};
+    }
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        userId = userId(0);
+        walletService.recharge(userId, "CNY", new BigDecimal("100000000"), "BENCH_SEED", "SEED_" + runId, null);
+    }
+
+    @Benchmark
+    public TransactionResponse withdraw() {
+        return walletService.withdraw(userId, "CNY", AMOUNT, "BENCH_HISTORY", runId + "_" + (++sequence), null);
+    }
+}
@@ -0,0 +1,150 @@
+package com.wallet.benchmark;
+
+import com.wallet.entity.IdempotencyKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 幂等键表两种主键布局的占用与查询耗时：WIDE 为业务类型+业务ID 变长组合主键，HASHED 为 16 字节哈希主键。
+ * 预置 rows 行后测量，结束时打印 H2 统计的表占用字节数（含主键索引）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdempotencyKeyBenchmark {
+
+    private static final String BUSINESS_TYPE = "ORDER_PAYMENT";
+
+    @Param({"WIDE", "HASHED"})
+    public String layout;
+
+    @Param({"1000000"})
+    public int rows;
+
+    private Connection connection;
+
+    private PreparedStatement claim;
+
+    private PreparedStatement lookup;
+
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void prepare() throws SQLException {
+        // 内存库不统计占用空间，使用临时目录下的文件库
+        connection = DriverManager.getConnection("jdbc:h2:file:" + System.getProperty("java.io.tmpdir")
+                + "/wallet-idempotency-" + layout, "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+            statement.execute(isHashed()
+                    ? "CREATE TABLE idempotency_key (key_hash BINARY(16) PRIMARY KEY, transaction_id BIGINT)"
+                    : "CREATE TABLE idempotency_key (business_type VARCHAR(50), business_id VARCHAR(100), "
+                    + "transaction_id BIGINT, PRIMARY KEY (business_type, business_id))");
+        }
+        claim = connection.prepareStatement(isHashed()
+                ? "INSERT INTO idempotency_key(key_hash, transaction_id) VALUES(?, ?)"
+                : "INSERT INTO idempotency_key(business_type, business_id, transaction_id) VALUES(?, ?, ?)");
+        lookup = connection.prepareStatement(isHashed()
+                ? "SELECT transaction_id FROM idempotency_key WHERE key_hash = ?"
+                : "SELECT transaction_id FROM idempotency_key WHERE business_type = ? AND business_id = ?");
+        connection.setAutoCommit(false);
+        for (sequence = 0; sequence < rows; sequence++) {
+            bind(claim, sequence);
+            claim.addBatch();
+            if ((sequence + 1) % 10_000 == 0) {
+                claim.executeBatch();
+                connection.commit();
+            }
+        }
+        claim.executeBatch();
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void report() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT DISK_SPACE_USED('IDEMPOTENCY_KEY')")) {
+            resultSet.next();
+            long bytes = resultSet.getLong(1);
+            System.out.printf("%n%s: %d 行, 表占用 %d 字节, 平均 %.1f 字节/行%n", layout, sequence, bytes,
+                    (double) bytes / sequence);
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP ALL OBJECTS DELETE FILES");
+        }
+        connection.close();
+    }
+
+    /**
+     * 新业务键占用幂等键
+     */
+    @Benchmark
+    public int claim() throws SQLException {
+        bind(claim, sequence++);
+        return claim.executeUpdate();
+    }
+
+    /**
+     * 重复请求按业务键查原交易
+     */
+    @Benchmark
+    public long lookup() throws SQLException {
+        long target = ThreadLocalRandom.current().nextLong(rows);
+        if (isHashed()) {
+            lookup.setBytes(1, IdempotencyKey.hash(BUSINESS_TYPE, businessId(target)));
+        } else {
+            lookup.setString(1, BUSINESS_TYPE);
+            lookup.setString(2, businessId(target));
+        }
+        try (ResultSet resultSet = lookup.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        }
+    }
+
+    private void bind(PreparedStatement statement, long id) throws SQLException {
+        String businessId = businessId(id);
+        if (isHashed()) {
+            statement.setBytes(1, IdempotencyKey.hash(BUSINESS_TYPE, businessId));
+            statement.setLong(2, id);
+        } else {
+            statement.setString(1, BUSINESS_TYPE);
+            statement.setString(2, businessId);
+            statement.setLong(3, id);
+        }
+    }
+
+    /**
+     * 形如上游订单号的业务ID
+     */
+    private static String businessId(long id) {
+        return String.format("PAY-20261018-%016d-%08x", id, id * 2654435761L & 0xffffffffL);
+    }
+
+    private boolean isHashed() {
+        return "HASHED".equals(layout);
+    }
+}
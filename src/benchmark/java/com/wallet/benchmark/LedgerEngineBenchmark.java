@@ -0,0 +1,72 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.ledger.LedgerEngine;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 逐笔数据库事务与内存账本的并发充值：8 个线程给 16 个钱包充值，
+ * Throughput 给出每毫秒笔数，SampleTime 给出延迟分布（含 p99）
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LedgerEngineBenchmark extends AbstractWalletBenchmark {
+
+    private static final String CURRENCY = "CNY";
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private static final int WALLETS = 16;
+
+    @Param({"JDBC", "LEDGER"})
+    public String path;
+
+    private WalletService walletService;
+
+    private LedgerEngine ledgerEngine;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    protected String[] arguments() {
+        if (!"LEDGER".equals(path)) {
+            return new String[0];
+        }
+        return new String[]{"--wallet.ledger.enabled=true", "--wallet.ledger.currencies=" + CURRENCY,
+                "--wallet.ledger.journal-dir=target/benchmark-ledger-journal"};
+    }
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        ledgerEngine = bean(LedgerEngine.class);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransactionResponse concurrentRecharge() {
+        long next = sequence.incrementAndGet();
+        long userId = userId(next % WALLETS);
+        String businessId = runId + "_" + next;
+        if (ledgerEngine.owns(CURRENCY)) {
+            return ledgerEngine.recharge(userId, CURRENCY, AMOUNT, "BENCH_LEDGER", businessId, null);
+        }
+        return walletService.recharge(userId, CURRENCY, AMOUNT, "BENCH_LEDGER", businessId, null);
+    }
+}
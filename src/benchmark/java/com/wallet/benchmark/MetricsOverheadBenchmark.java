@@ -0,0 +1,58 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 开启/关闭指标（含 Mapper 语句计时）时的端到端充值耗时
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark extends AbstractWalletBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    @Param({"false", "true"})
+    public boolean histogram;
+
+    private WalletService walletService;
+
+    private long userId;
+
+    private long sequence;
+
+    @Override
+    protected String[] arguments() {
+        return new String[]{
+                "--wallet.metrics.enabled=" + metrics,
+                "--management.metrics.distribution.percentiles-histogram.wallet=" + histogram,
+                "--management.metrics.distribution.percentiles-histogram.wallet.mapper=" + histogram
+        };
+    }
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        userId = userId(0);
+    }
+
+    @Benchmark
+    public TransactionResponse recharge() {
+        return walletService.recharge(userId, "CNY", BigDecimal.ONE, "BENCH_METRICS", runId + "_" + (++sequence), null);
+    }
+}
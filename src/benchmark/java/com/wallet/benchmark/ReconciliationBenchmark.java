@@ -0,0 +1,98 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.entity.Wallet;
+import com.wallet.service.BalanceCheckpointService;
+import com.wallet.service.ReconciliationService;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单钱包对账：全量加载、流式遍历、检查点增量三种方式
+ * <p>
+ * 变更记录均匀分布在过去 30 天，每条 +1.00。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReconciliationBenchmark extends AbstractWalletBenchmark {
+
+    private static final String CURRENCY = "CNY";
+
+    private static final int BATCH_SIZE = 5000;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Param({"10000", "100000"})
+    public int changes;
+
+    private ReconciliationService reconciliationService;
+
+    private long userId;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    @Override
+    protected void prepare() {
+        reconciliationService = bean(ReconciliationService.class);
+        userId = userId(0);
+        WalletService walletService = bean(WalletService.class);
+        walletService.recharge(userId, CURRENCY, BigDecimal.ONE, "BENCH_SEED", "RECON_" + runId, null);
+        Wallet wallet = walletService.getWallet(userId, CURRENCY);
+
+        long now = System.currentTimeMillis();
+        long step = 30 * DAY / changes;
+        long firstChange = now - 30 * DAY - DAY;
+        JdbcTemplate jdbcTemplate = bean(JdbcTemplate.class);
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 1; i <= changes; i++) {
+            batch.add(new Object[]{wallet.getId(), BigDecimal.ONE, BigDecimal.valueOf(i - 1),
+                    BigDecimal.valueOf(i), new Timestamp(firstChange + i * step)});
+            if (batch.size() == BATCH_SIZE || i == changes) {
+                jdbcTemplate.batchUpdate("INSERT INTO balance_change_history(wallet_id, transaction_id, " +
+                        "change_amount, balance_before, balance_after, change_type, created_at) " +
+                        "VALUES (?, NULL, ?, ?, ?, 'BALANCE', ?)", batch);
+                batch.clear();
+            }
+        }
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + ? WHERE id = ?", changes, wallet.getId());
+
+        startTime = new Date(firstChange);
+        endTime = new Date(now + DAY);
+        bean(BalanceCheckpointService.class).advanceAll(new Date(now));
+    }
+
+    @Benchmark
+    public ReconciliationResult reconcile() {
+        return reconciliationService.reconcile(userId, CURRENCY, startTime, endTime);
+    }
+
+    @Benchmark
+    public ReconciliationResult reconcileStreaming() {
+        return reconciliationService.reconcileStreaming(userId, CURRENCY, startTime, endTime);
+    }
+
+    @Benchmark
+    public ReconciliationResult reconcileSummary() {
+        return reconciliationService.reconcileSummary(userId, CURRENCY, startTime, endTime);
+    }
+}
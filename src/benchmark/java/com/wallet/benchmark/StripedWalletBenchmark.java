@@ -0,0 +1,59 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.service.StripedWalletService;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 热点钱包并发入账：8 个线程同时给同一个钱包充值，stripes=0 为未分片钱包
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StripedWalletBenchmark extends AbstractWalletBenchmark {
+
+    private static final String CURRENCY = "CNY";
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"0", "1", "4", "8"})
+    public int stripes;
+
+    private WalletService walletService;
+
+    private long hotUserId;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        hotUserId = userId(0);
+        walletService.recharge(hotUserId, CURRENCY, AMOUNT, "BENCH_SEED", "SEED_" + runId, null);
+        if (stripes > 0) {
+            bean(StripedWalletService.class).enableStriping(hotUserId, CURRENCY, stripes);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TransactionResponse concurrentRecharge() {
+        return walletService.recharge(hotUserId, CURRENCY, AMOUNT,
+                "BENCH_STRIPE", runId + "_" + sequence.incrementAndGet(), null);
+    }
+}
@@ -0,0 +1,54 @@
+package com.wallet.benchmark;
+
+import com.wallet.idgen.RandomTransactionNoGenerator;
+import com.wallet.idgen.SnowflakeTransactionNoGenerator;
+import com.wallet.idgen.TransactionNoGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易流水号生成，单线程与 4 线程并发；配合 -prof gc 查看每次调用的分配字节数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionNoBenchmark {
+
+    @Param({"random", "snowflake"})
+    public String type;
+
+    private TransactionNoGenerator generator;
+
+    @Setup
+    public void prepare() {
+        generator = "random".equals(type)
+                ? new RandomTransactionNoGenerator()
+                : new SnowflakeTransactionNoGenerator(1);
+    }
+
+    @Benchmark
+    public String generate() {
+        return generator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String generateConcurrently() {
+        return generator.next();
+    }
+}
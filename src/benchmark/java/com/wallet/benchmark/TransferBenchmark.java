@@ -0,0 +1,92 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.request.TransferRequest;
+import com.wallet.dto.response.BatchTransferResponse;
+import com.wallet.service.WalletService;
+import com.wallet.service.WalletTransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 代付：每次调用由同一个付款钱包向 1000 个不同用户各转一笔，批量转账 vs 逐笔"提现 + 充值"两个事务
+ * <p>
+ * 结果按笔计（legs/s）。收款用户从 1 万个已存在的钱包中轮流选取。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TransferBenchmark extends AbstractWalletBenchmark {
+
+    private static final String CURRENCY = "CNY";
+
+    private static final int LEGS = 1000;
+
+    private static final int WALLETS = 10_000;
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private WalletService walletService;
+
+    private WalletTransferService transferService;
+
+    private long payerId;
+
+    private long sequence;
+
+    private int walletIndex;
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        transferService = bean(WalletTransferService.class);
+        createWallets(CURRENCY, new BigDecimal("100000000.00"), WALLETS + 1);
+        payerId = userId(WALLETS + 1);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEGS)
+    public BatchTransferResponse batchTransfer() {
+        List<TransferRequest> legs = new ArrayList<>(LEGS);
+        for (int i = 0; i < LEGS; i++) {
+            TransferRequest leg = new TransferRequest();
+            leg.setFromUserId(payerId);
+            leg.setToUserId(nextUserId());
+            leg.setCurrency(CURRENCY);
+            leg.setAmount(AMOUNT);
+            leg.setBusinessType("BENCH_PAYOUT");
+            leg.setBusinessId(runId + "_" + (++sequence));
+            legs.add(leg);
+        }
+        return transferService.batchTransfer(legs);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEGS)
+    public void withdrawAndRecharge(Blackhole blackhole) {
+        for (int i = 0; i < LEGS; i++) {
+            String businessId = runId + "_" + (++sequence);
+            blackhole.consume(walletService.withdraw(payerId, CURRENCY, AMOUNT, "BENCH_PAYOUT_DEBIT",
+                    businessId, null));
+            blackhole.consume(walletService.recharge(nextUserId(), CURRENCY, AMOUNT, "BENCH_PAYOUT_CREDIT",
+                    businessId, null));
+        }
+    }
+
+    private long nextUserId() {
+        return userId(1 + (walletIndex++ % WALLETS));
+    }
+}
@@ -0,0 +1,69 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.converter.WalletConverter;
+import com.wallet.dto.response.TransactionRecordResponse;
+import com.wallet.entity.WalletTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 交易记录列表转换（纯内存，不启动应用上下文）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletConverterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private final WalletConverter walletConverter = new WalletConverter();
+
+    private List<WalletTransaction> transactions;
+
+    @Setup
+    public void prepare() {
+        transactions = new ArrayList<>(size);
+        Date now = new Date();
+        for (int i = 0; i < size; i++) {
+            WalletTransaction transaction = new WalletTransaction();
+            transaction.setId((long) i);
+            transaction.setTransactionNo("T" + i);
+            transaction.setWalletId(1L);
+            transaction.setUserId(1001L);
+            transaction.setCurrency("CNY");
+            transaction.setAmount(i % 2 == 0 ? new BigDecimal("10.00") : new BigDecimal("-5.00"));
+            transaction.setBalanceBefore(BigDecimal.valueOf(i));
+            transaction.setBalanceAfter(BigDecimal.valueOf(i + 1));
+            transaction.setTransactionType(i % 2 == 0 ? 1 : 2);
+            transaction.setBusinessType("BENCH");
+            transaction.setBusinessId("B" + i);
+            transaction.setStatus(1);
+            transaction.setCreatedAt(now);
+            transactions.add(transaction);
+        }
+    }
+
+    @Benchmark
+    public List<TransactionRecordResponse> toTransactionRecordResponses() {
+        return walletConverter.toTransactionRecordResponses(transactions);
+    }
+}
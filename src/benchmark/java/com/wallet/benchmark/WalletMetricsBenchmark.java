@@ -0,0 +1,79 @@
+package com.wallet.benchmark;
+
+import com.wallet.config.WalletMetricsProperties;
+import com.wallet.metrics.WalletMetrics;
+import com.wallet.metrics.WalletMetrics.Operation;
+import com.wallet.metrics.WalletMetrics.Outcome;
+import com.wallet.metrics.WalletMetrics.Stage;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一笔资金操作的全部指标记录开销（5 个阶段 + 操作结果），不访问数据库
+ * <p>
+ * mode=disabled 为关闭指标时的基线，summary 为只记录计数/总耗时/最大值，histogram 额外维护百分位直方图。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletMetricsBenchmark {
+
+    @Param({"disabled", "summary", "histogram"})
+    public String mode;
+
+    private WalletMetrics metrics;
+
+    @Setup
+    public void prepare() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        if ("histogram".equals(mode)) {
+            registry.config().meterFilter(new MeterFilter() {
+                @Override
+                public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                    return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+                }
+            });
+        }
+        WalletMetricsProperties properties = new WalletMetricsProperties();
+        properties.setEnabled(!"disabled".equals(mode));
+        metrics = new WalletMetrics(registry, properties);
+    }
+
+    @Benchmark
+    public long recordOperation() {
+        long start = metrics.start();
+        long stageStart = metrics.stage(Operation.RECHARGE, Stage.IDEMPOTENCY_CHECK, start);
+        stageStart = metrics.stage(Operation.RECHARGE, Stage.WALLET_LOOKUP, stageStart);
+        stageStart = metrics.stage(Operation.RECHARGE, Stage.BALANCE_UPDATE, stageStart);
+        stageStart = metrics.stage(Operation.RECHARGE, Stage.TRANSACTION_INSERT, stageStart);
+        stageStart = metrics.stage(Operation.RECHARGE, Stage.HISTORY_INSERT, stageStart);
+        metrics.completed(Operation.RECHARGE, start, Outcome.SUCCESS);
+        return stageStart;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long recordOperationConcurrently() {
+        return recordOperation();
+    }
+}
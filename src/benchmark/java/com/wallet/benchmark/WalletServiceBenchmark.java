@@ -0,0 +1,83 @@
+package com.wallet.benchmark;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.service.WalletService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 充值、提现与重复请求的单次耗时
+ * <p>
+ * 热钱包：所有操作落在同一个钱包；冷钱包：轮流访问 1 万个钱包，行和各级缓存都不集中。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletServiceBenchmark extends AbstractWalletBenchmark {
+
+    private static final String CURRENCY = "CNY";
+
+    private static final int COLD_WALLETS = 10_000;
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private WalletService walletService;
+
+    private long hotUserId;
+
+    private String duplicateBusinessId;
+
+    private long sequence;
+
+    private int coldIndex;
+
+    @Override
+    protected void prepare() {
+        walletService = bean(WalletService.class);
+        hotUserId = userId(0);
+        walletService.recharge(hotUserId, CURRENCY, new BigDecimal("1000000000"),
+                "BENCH_SEED", "SEED_" + runId, null);
+        duplicateBusinessId = "DUP_" + runId;
+        walletService.recharge(hotUserId, CURRENCY, AMOUNT, "BENCH_DUPLICATE", duplicateBusinessId, null);
+
+        createWallets(CURRENCY, new BigDecimal("1000000"), COLD_WALLETS);
+    }
+
+    @Benchmark
+    public TransactionResponse recharge() {
+        return walletService.recharge(hotUserId, CURRENCY, AMOUNT,
+                "BENCH_RECHARGE", runId + "_" + (++sequence), null);
+    }
+
+    @Benchmark
+    public TransactionResponse withdrawHotWallet() {
+        return walletService.withdraw(hotUserId, CURRENCY, AMOUNT,
+                "BENCH_WITHDRAW_HOT", runId + "_" + (++sequence), null);
+    }
+
+    @Benchmark
+    public TransactionResponse withdrawColdWallet() {
+        long userId = userId(1 + (coldIndex++ % COLD_WALLETS));
+        return walletService.withdraw(userId, CURRENCY, AMOUNT,
+                "BENCH_WITHDRAW_COLD", runId + "_" + (++sequence), null);
+    }
+
+    /**
+     * 重复业务请求：只经过幂等检查，直接返回原交易结果
+     */
+    @Benchmark
+    public TransactionResponse duplicateRecharge() {
+        return walletService.recharge(hotUserId, CURRENCY, AMOUNT,
+                "BENCH_DUPLICATE", duplicateBusinessId, null);
+    }
+}
@@ -0,0 +1,183 @@
+package com.wallet.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wallet.config.IdempotencyCacheProperties;
+import com.wallet.dto.response.IdempotencyCacheStats;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.mapper.WalletTransactionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内幂等缓存
+ * <p>
+ * 缓存已成功处理的业务键对应的交易流水，重复请求直接从内存返回原结果；
+ * 可选的布隆过滤器记录最近出现过的业务键，批量充值、转账、合并提交中判定为“一定没出现过”的请求跳过幂等查询
+ * （单笔充值、提现直接占用幂等键，不先查询）。
+ * 缓存只在事务提交后写入，回滚的交易不会进入缓存。
+ * 幂等键表 idempotency_key 的主键仍是最终的正确性保障：跳过查询的请求若与其他节点或重启前的交易重复，
+ * 插入流水时会被唯一键拦截并整体回滚。
+ */
+@Slf4j
+@Component
+public class IdempotencyCache {
+
+    private final IdempotencyCacheProperties properties;
+
+    private final WalletTransactionMapper transactionMapper;
+
+    private final Cache<String, WalletTransaction> cache;
+
+    private final RecentKeyBloomFilter bloomFilter;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder bloomSkips = new LongAdder();
+
+    private final LongAdder falsePositives = new LongAdder();
+
+    private final LongAdder backstopConflicts = new LongAdder();
+
+    public IdempotencyCache(IdempotencyCacheProperties properties, WalletTransactionMapper transactionMapper) {
+        this.properties = properties;
+        this.transactionMapper = transactionMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        this.bloomFilter = properties.isBloomFilterEnabled()
+                ? new RecentKeyBloomFilter(properties.getBloomExpectedInsertions(),
+                properties.getBloomFalsePositiveRate())
+                : null;
+    }
+
+    /**
+     * 启动后用最近的业务键预热布隆过滤器，避免重启后把已处理过的键误判为新键
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (bloomFilter == null) {
+            return;
+        }
+        Date since = new Date(System.currentTimeMillis() - properties.getBloomWarmupWindow().toMillis());
+        AtomicLong loaded = new AtomicLong();
+        transactionMapper.scanBusinessKeysSince(since, context -> {
+            WalletTransaction row = context.getResultObject();
+            bloomFilter.put(key(row.getBusinessType(), row.getBusinessId()));
+            loaded.incrementAndGet();
+        });
+        log.info("幂等布隆过滤器预热完成: since={}, keys={}", since, loaded.get());
+    }
+
+    /**
+     * 查询缓存的已处理交易，未命中返回null
+     */
+    public WalletTransaction get(String businessType, String businessId) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        WalletTransaction cached = cache.getIfPresent(key(businessType, businessId));
+        if (cached != null) {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * 布隆过滤器是否判定该业务键一定没有出现过（可跳过数据库幂等查询）
+     */
+    public boolean isDefinitelyNew(String businessType, String businessId) {
+        if (!properties.isEnabled() || bloomFilter == null) {
+            return false;
+        }
+        if (bloomFilter.mightContain(key(businessType, businessId))) {
+            return false;
+        }
+        bloomSkips.increment();
+        return true;
+    }
+
+    /**
+     * 记录一次数据库幂等查询的结果
+     */
+    public void recordLookup(String businessType, String businessId, WalletTransaction existing) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        misses.increment();
+        if (existing == null) {
+            if (bloomFilter != null) {
+                falsePositives.increment();
+            }
+            return;
+        }
+        cache.put(key(businessType, businessId), existing);
+    }
+
+    /**
+     * 交易提交后写入缓存与布隆过滤器
+     */
+    public void putAfterCommit(WalletTransaction transaction) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put(transaction);
+                }
+            });
+        } else {
+            put(transaction);
+        }
+    }
+
+    /**
+     * 跳过查询的请求被唯一索引拦截：标记该键已出现，重试时会走数据库查询拿到原结果
+     */
+    public void recordBackstopConflict(String businessType, String businessId) {
+        backstopConflicts.increment();
+        if (bloomFilter != null) {
+            bloomFilter.put(key(businessType, businessId));
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public IdempotencyCacheStats stats() {
+        return IdempotencyCacheStats.builder()
+                .hits(hits.sum())
+                .misses(misses.sum())
+                .bloomSkips(bloomSkips.sum())
+                .falsePositives(falsePositives.sum())
+                .backstopConflicts(backstopConflicts.sum())
+                .size(cache.estimatedSize())
+                .build();
+    }
+
+    private void put(WalletTransaction transaction) {
+        String key = key(transaction.getBusinessType(), transaction.getBusinessId());
+        cache.put(key, transaction);
+        if (bloomFilter != null) {
+            bloomFilter.put(key);
+        }
+    }
+
+    private static String key(String businessType, String businessId) {
+        return businessType + '\u0000' + businessId;
+    }
+}
@@ -0,0 +1,106 @@
+package com.wallet.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 最近业务键布隆过滤器
+ * <p>
+ * 由两代位图组成：新键写入当前代，当前代插入量达到预期值后整体轮换，丢弃最老一代。
+ * 查询同时检查两代，因此覆盖的是“最近一到两代”的业务键，位图不会被无限写满。
+ * 无锁实现，位设置使用 CAS，可被多线程并发读写。
+ */
+public class RecentKeyBloomFilter {
+
+    private final int numBits;
+
+    private final int numHashes;
+
+    private final long insertionsPerGeneration;
+
+    private final AtomicLong insertions = new AtomicLong();
+
+    private volatile AtomicLongArray current;
+
+    private volatile AtomicLongArray previous;
+
+    public RecentKeyBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63L));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        this.insertionsPerGeneration = expectedInsertions;
+        this.current = new AtomicLongArray((numBits + 63) >>> 6);
+        this.previous = new AtomicLongArray((numBits + 63) >>> 6);
+    }
+
+    /**
+     * 是否可能出现过；返回 false 表示一定没有出现过
+     */
+    public boolean mightContain(String key) {
+        long hash = hash(key);
+        return mightContain(current, hash) || mightContain(previous, hash);
+    }
+
+    public void put(String key) {
+        long hash = hash(key);
+        AtomicLongArray bits = current;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            setBit(bits, index);
+        }
+        if (insertions.incrementAndGet() >= insertionsPerGeneration) {
+            rotate();
+        }
+    }
+
+    private boolean mightContain(AtomicLongArray bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int index = ((h1 + i * h2) & Integer.MAX_VALUE) % numBits;
+            if ((bits.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void rotate() {
+        if (insertions.get() < insertionsPerGeneration) {
+            return;
+        }
+        previous = current;
+        current = new AtomicLongArray((numBits + 63) >>> 6);
+        insertions.set(0);
+    }
+
+    private static void setBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long value;
+        do {
+            value = bits.get(word);
+            if ((value & mask) != 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, value, value | mask));
+    }
+
+    /**
+     * 64位 FNV-1a 加末端混淆，高低32位分别作为双重哈希的两个基
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,97 @@
+package com.wallet.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wallet.config.BalanceCacheProperties;
+import com.wallet.entity.Wallet;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 钱包余额读穿缓存
+ * <p>
+ * 按 (userId, currency) 缓存单个钱包，按 userId 缓存用户全部钱包。
+ * 余额变更在事务提交后同步失效对应条目；回滚的事务不改变数据库，也不触碰缓存。
+ * 加载在缓存条目的计算锁内完成，提交后的失效会等待进行中的加载结束再删除，旧值不会残留。
+ */
+@Component
+public class WalletBalanceCache {
+
+    private final BalanceCacheProperties properties;
+
+    private final Cache<WalletKey, Wallet> walletCache;
+
+    private final Cache<Long, List<Wallet>> userCache;
+
+    public WalletBalanceCache(BalanceCacheProperties properties) {
+        this.properties = properties;
+        this.walletCache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+        this.userCache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumUserSize())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 读取单个钱包，未命中时通过 loader 查询并缓存（不缓存不存在的钱包）
+     */
+    public Wallet getWallet(Long userId, String currency, Supplier<Wallet> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+        return walletCache.get(new WalletKey(userId, currency), key -> loader.get());
+    }
+
+    /**
+     * 读取用户全部钱包，未命中时通过 loader 查询并缓存
+     */
+    public List<Wallet> getWallets(Long userId, Supplier<List<Wallet>> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+        return userCache.get(userId, key -> List.copyOf(loader.get()));
+    }
+
+    /**
+     * 余额变更后调用：事务提交后失效该钱包及其所属用户的汇总
+     */
+    public void evictAfterCommit(Long userId, String currency) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userId, currency);
+                }
+            });
+        } else {
+            evict(userId, currency);
+        }
+    }
+
+    public void invalidateAll() {
+        walletCache.invalidateAll();
+        userCache.invalidateAll();
+    }
+
+    private void evict(Long userId, String currency) {
+        walletCache.invalidate(new WalletKey(userId, currency));
+        userCache.invalidate(userId);
+    }
+
+    private record WalletKey(Long userId, String currency) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 请求准入限流配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.admission")
+public class AdmissionProperties {
+
+    /**
+     * 是否启用准入限流，虚拟线程模式下请求线程不再受 Tomcat 线程池约束，需要开启
+     */
+    private boolean enabled = false;
+
+    /**
+     * 同时处理的 /api 请求上限，0 表示与数据库连接池最大连接数一致
+     */
+    private int maxConcurrent = 0;
+
+    /**
+     * 等待准入的最长时间，超时返回 503
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(1);
+}
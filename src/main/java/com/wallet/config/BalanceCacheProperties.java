@@ -0,0 +1,34 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 余额查询缓存配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.balance-cache")
+public class BalanceCacheProperties {
+
+    /**
+     * 是否启用余额查询缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单币种余额缓存的最大条目数（按 userId + currency）
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * 用户余额汇总缓存的最大条目数（按 userId）
+     */
+    private long maximumUserSize = 50_000;
+
+    /**
+     * 写入后的最长存活时间，作为失效遗漏时的兜底
+     */
+    private Duration ttl = Duration.ofMinutes(5);
+}
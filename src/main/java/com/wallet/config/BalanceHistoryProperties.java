@@ -0,0 +1,49 @@
+package com.wallet.config;
+
+import com.wallet.enums.HistoryWriteMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 余额变更历史写入配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.balance-history")
+public class BalanceHistoryProperties {
+
+    /**
+     * 写入方式，默认同步。异步模式只影响单笔充值、提现的未分片钱包，
+     * 转账、批量充值、合并提交和分片钱包仍在资金事务内写入
+     */
+    private HistoryWriteMode mode = HistoryWriteMode.SYNC;
+
+    /**
+     * 后台补写任务每批扫描的交易记录数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 后台补写任务的执行间隔
+     */
+    private Duration pollInterval = Duration.ofMillis(200);
+
+    /**
+     * 只把高水位推进到创建时间早于 当前时间 - 该延迟 的交易记录。
+     * 自增ID按插入顺序分配而事务按提交顺序可见，较小ID可能晚于较大ID提交，
+     * 该延迟需大于资金事务的最长执行时间
+     */
+    private Duration settleDelay = Duration.ofSeconds(5);
+
+    /**
+     * 高水位之下的回扫范围：创建时间在 当前时间 - 该时长 之后的交易按判重重新补写，
+     * 兜住提交晚于 settleDelay 的交易。需大于资金事务可能的最长执行时间
+     */
+    private Duration lookback = Duration.ofHours(1);
+
+    /**
+     * 回扫的执行间隔
+     */
+    private Duration lookbackInterval = Duration.ofMinutes(1);
+}
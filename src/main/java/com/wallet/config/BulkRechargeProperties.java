@@ -0,0 +1,22 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 批量充值配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.bulk-recharge")
+public class BulkRechargeProperties {
+
+    /**
+     * 单次请求最大条数
+     */
+    private int maxItems = 10000;
+
+    /**
+     * 每个数据库事务处理的条数，限制单条批量语句的大小和行锁持有时间
+     */
+    private int chunkSize = 500;
+}
@@ -0,0 +1,44 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 余额检查点配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.checkpoint")
+public class CheckpointProperties {
+
+    /**
+     * 是否启用检查点推进任务
+     */
+    private boolean enabled = true;
+
+    /**
+     * 检查点间隔，检查点时间按本地时区对齐到间隔的整数倍（默认每天零点）
+     */
+    private Duration interval = Duration.ofDays(1);
+
+    /**
+     * 只为早于 当前时间 - 该延迟 的时间点生成检查点，留给未提交事务的写入落地
+     */
+    private Duration settleDelay = Duration.ofMinutes(10);
+
+    /**
+     * 推进任务的执行间隔
+     */
+    private Duration runInterval = Duration.ofMinutes(10);
+
+    /**
+     * 每页扫描的钱包数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 单个钱包单次任务最多补建的检查点数，避免长期未推进的钱包拖慢一次任务
+     */
+    private int maxCheckpointsPerRun = 64;
+}
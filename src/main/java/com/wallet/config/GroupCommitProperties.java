@@ -0,0 +1,37 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 热点钱包组提交配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.group-commit")
+public class GroupCommitProperties {
+
+    /**
+     * 是否启用组提交模式（默认关闭，逐笔事务）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 处理通道数，同一 (userId, currency) 始终落在同一通道，保证顺序
+     */
+    private int lanes = 4;
+
+    /**
+     * 单批最大操作数
+     */
+    private int maxBatchSize = 64;
+
+    /**
+     * 凑批最长等待时间（微秒）
+     */
+    private long maxWaitMicros = 500;
+
+    /**
+     * 每个通道的队列容量，队列满时退化为逐笔处理
+     */
+    private int queueCapacity = 10000;
+}
@@ -0,0 +1,39 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 资金冻结配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.hold")
+public class HoldProperties {
+
+    /**
+     * 冻结请求未指定有效期时的默认有效期
+     */
+    private Duration defaultTtl = Duration.ofMinutes(30);
+
+    /**
+     * 冻结有效期上限
+     */
+    private Duration maxTtl = Duration.ofDays(7);
+
+    /**
+     * 是否启用过期冻结自动解冻任务
+     */
+    private boolean expiryEnabled = true;
+
+    /**
+     * 过期扫描任务的执行间隔
+     */
+    private Duration expiryInterval = Duration.ofSeconds(30);
+
+    /**
+     * 每次扫描读取的过期冻结单数，超过时下一轮继续
+     */
+    private int expiryBatchSize = 500;
+}
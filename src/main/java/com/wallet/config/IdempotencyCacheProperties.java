@@ -0,0 +1,49 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 幂等缓存配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.idempotency-cache")
+public class IdempotencyCacheProperties {
+
+    /**
+     * 是否启用幂等结果缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 最多缓存的已处理业务键数量
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * 缓存条目写入后的存活时间
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * 是否启用布隆过滤器：判定为“一定未出现过”的业务键直接跳过幂等查询
+     */
+    private boolean bloomFilterEnabled = false;
+
+    /**
+     * 布隆过滤器每一代预期插入量，写满后轮换，只保留最近两代
+     */
+    private long bloomExpectedInsertions = 1_000_000;
+
+    /**
+     * 布隆过滤器目标误判率
+     */
+    private double bloomFalsePositiveRate = 0.01;
+
+    /**
+     * 启动时从数据库预热最近多长时间内的业务键
+     */
+    private Duration bloomWarmupWindow = Duration.ofHours(24);
+}
@@ -0,0 +1,51 @@
+package com.wallet.config;
+
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.storage.InMemoryBalanceChangeHistoryMapper;
+import com.wallet.storage.InMemoryStore;
+import com.wallet.storage.InMemoryWalletMapper;
+import com.wallet.storage.InMemoryWalletTransactionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 内存存储装配，wallet.storage.type=MEMORY 时生效
+ * <p>
+ * 三个映射器接口即存储接口：内存实现注册为 {@link Primary}，服务层注入的 WalletMapper、
+ * WalletTransactionMapper、BalanceChangeHistoryMapper 都换成内存实现，MyBatis 映射器保留但不再被注入。
+ * 事务仍由数据源事务管理器开启，内存实现通过事务同步在提交或回滚时生效并释放行锁。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "wallet.storage", name = "type", havingValue = "MEMORY")
+public class InMemoryStorageConfig {
+
+    @Bean
+    public InMemoryStore inMemoryStore(StorageProperties properties) {
+        log.info("使用内存存储: lockWaitTimeout={}", properties.getLockWaitTimeout());
+        return new InMemoryStore(properties.getLockWaitTimeout());
+    }
+
+    @Bean
+    @Primary
+    public WalletMapper inMemoryWalletMapper(InMemoryStore store) {
+        return new InMemoryWalletMapper(store);
+    }
+
+    @Bean
+    @Primary
+    public WalletTransactionMapper inMemoryWalletTransactionMapper(InMemoryStore store) {
+        return new InMemoryWalletTransactionMapper(store);
+    }
+
+    @Bean
+    @Primary
+    public BalanceChangeHistoryMapper inMemoryBalanceChangeHistoryMapper(InMemoryStore store) {
+        return new InMemoryBalanceChangeHistoryMapper(store);
+    }
+}
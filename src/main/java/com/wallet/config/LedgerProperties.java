@@ -0,0 +1,64 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 内存账本配置
+ * <p>
+ * 开启后 currencies 中的币种由内存账本处理充值、提现和余额查询，这些币种的钱包不能再走转账、
+ * 批量充值、冻结、分片等数据库路径，否则内存余额与数据库不一致
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.ledger")
+public class LedgerProperties {
+
+    /**
+     * 是否启用内存账本（默认关闭）
+     */
+    private boolean enabled = false;
+
+    /**
+     * 由内存账本处理的币种
+     */
+    private Set<String> currencies = new HashSet<>();
+
+    /**
+     * 分片数，同一 (userId, currency) 始终落在同一分片，由该分片的单一线程顺序处理
+     */
+    private int shards = 4;
+
+    /**
+     * 每个分片待处理请求的上限，超过时拒绝请求（背压）
+     */
+    private int queueCapacity = 65536;
+
+    /**
+     * 分片线程一次处理、一次刷盘的最大请求数
+     */
+    private int maxBatchSize = 256;
+
+    /**
+     * 日志目录，每个分片一组内存映射的日志段文件
+     */
+    private String journalDir = "ledger-journal";
+
+    /**
+     * 单个日志段文件大小，写满后切换到新段；已投影到数据库的旧段自动删除
+     */
+    private int journalSegmentSize = 64 * 1024 * 1024;
+
+    /**
+     * 投影到数据库的单批最大记录数
+     */
+    private int projectionBatchSize = 500;
+
+    /**
+     * 投影失败后的重试间隔
+     */
+    private Duration projectionRetryDelay = Duration.ofSeconds(1);
+}
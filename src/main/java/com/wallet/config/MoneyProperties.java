@@ -0,0 +1,25 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 金额精度配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.money")
+public class MoneyProperties {
+
+    /**
+     * 未单独配置的币种允许的小数位数，不超过库表的 8 位
+     */
+    private int defaultScale = 8;
+
+    /**
+     * 各币种允许的小数位数，如 CNY: 2、JPY: 0
+     */
+    private Map<String, Integer> scales = new HashMap<>();
+}
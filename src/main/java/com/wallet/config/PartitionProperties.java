@@ -0,0 +1,39 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 交易流水与余额变更历史的分区维护与归档配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.partition")
+public class PartitionProperties {
+
+    /**
+     * 是否启用分区维护任务；多节点部署时只需在一个节点启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 分区维护任务的执行间隔
+     */
+    private Duration maintenanceInterval = Duration.ofHours(1);
+
+    /**
+     * 提前创建的月分区数（不含当月）
+     */
+    private int premakeMonths = 3;
+
+    /**
+     * 在线保留的月数（不含当月），更早的数据移入归档表；0 表示不归档
+     */
+    private int retentionMonths = 6;
+
+    /**
+     * 每批搬移的行数
+     */
+    private int archiveBatchSize = 5000;
+}
@@ -0,0 +1,44 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 全平台对账配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.platform-reconciliation")
+public class PlatformReconciliationProperties {
+
+    /**
+     * 是否启用每日定时对账
+     */
+    private boolean enabled = true;
+
+    /**
+     * 定时对账的 cron 表达式，默认每天 02:30
+     */
+    private String cron = "0 30 2 * * *";
+
+    /**
+     * 对账期长度，对账期为 [当前时间 - lookback, 当前时间]
+     */
+    private Duration lookback = Duration.ofDays(1);
+
+    /**
+     * 并行处理的分区数（线程数）
+     */
+    private int parallelism = 4;
+
+    /**
+     * 每个分区覆盖的钱包ID跨度
+     */
+    private int partitionSize = 1000;
+
+    /**
+     * 不平账户报告的输出目录，为空时只记日志
+     */
+    private String reportDir = "reconciliation-reports";
+}
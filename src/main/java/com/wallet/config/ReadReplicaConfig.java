@@ -0,0 +1,78 @@
+package com.wallet.config;
+
+import com.wallet.datasource.ReplicaHealthChecker;
+import com.wallet.datasource.ReplicaNode;
+import com.wallet.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 主从读写分离装配，wallet.read-replica.enabled=true 时生效
+ * <p>
+ * 应用使用的数据源是主库外包一层 {@link LazyConnectionDataSourceProxy}：事务开始时不取连接，
+ * 执行第一条语句时若事务为只读则从 {@link ReplicaRoutingDataSource} 取连接，否则取主库连接。
+ * 事务管理器、MyBatis、JdbcTemplate 都使用该数据源，非只读事务和事务外的语句一律走主库。
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "wallet.read-replica", name = "enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    /**
+     * 主库连接池，连接参数沿用 spring.datasource
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             ReadReplicaProperties properties) {
+        List<ReplicaNode> replicas = new ArrayList<>();
+        for (ReadReplicaProperties.Replica replica : properties.getReplicas()) {
+            String name = replica.getName() != null ? replica.getName() : "replica-" + (replicas.size() + 1);
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .driverClassName(replica.getDriverClassName())
+                    .build();
+            dataSource.setPoolName(name);
+            dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+            replicas.add(new ReplicaNode(name, dataSource));
+        }
+        log.info("只读从库路由已开启: replicas={}, maxLag={}", replicas.stream().map(ReplicaNode::getName).toList(),
+                properties.getMaxLag());
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaRoutingDataSource replicaRoutingDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaRoutingDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaHealthChecker replicaHealthChecker(HikariDataSource primaryDataSource,
+                                                     ReplicaRoutingDataSource replicaRoutingDataSource,
+                                                     ReadReplicaProperties properties) {
+        return new ReplicaHealthChecker(primaryDataSource, replicaRoutingDataSource, properties);
+    }
+}
@@ -0,0 +1,61 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只读从库路由配置
+ * <p>
+ * 开启后只读事务（{@code @Transactional(readOnly = true)}）在健康且复制延迟不超过 maxLag 的从库间轮询，
+ * 没有可用从库时回落到主库；资金变动始终走主库（spring.datasource）
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.read-replica")
+public class ReadReplicaProperties {
+
+    /**
+     * 是否开启从库路由
+     */
+    private boolean enabled = false;
+
+    /**
+     * 从库列表
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 健康检查间隔：每次先在主库写入复制心跳，再读取各从库的心跳计算复制延迟
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(2);
+
+    /**
+     * 允许的最大复制延迟，超过时该从库暂停承接读请求直到追上
+     */
+    private Duration maxLag = Duration.ofSeconds(5);
+
+    @Data
+    public static class Replica {
+
+        /**
+         * 从库名称，用于日志
+         */
+        private String name;
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private String driverClassName;
+
+        /**
+         * 连接池最大连接数
+         */
+        private int maximumPoolSize = 10;
+    }
+}
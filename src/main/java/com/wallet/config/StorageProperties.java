@@ -0,0 +1,28 @@
+package com.wallet.config;
+
+import com.wallet.enums.StorageType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * 存储配置
+ * <p>
+ * 钱包、交易记录和余额变更历史通过 WalletMapper、WalletTransactionMapper、BalanceChangeHistoryMapper
+ * 三个接口访问，type=MEMORY 时由进程内实现替换 MyBatis 映射器（冻结单、分片等其他表仍在数据库）
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.storage")
+public class StorageProperties {
+
+    /**
+     * 存储实现，默认 MyBatis
+     */
+    private StorageType type = StorageType.MYBATIS;
+
+    /**
+     * 内存存储的行锁等待超时，超时抛出 CannotAcquireLockException（对应数据库的锁等待超时）
+     */
+    private Duration lockWaitTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,25 @@
+package com.wallet.config;
+
+import com.wallet.enums.StripeStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 热点钱包分片配置
+ * <p>
+ * 分片按钱包开启（见 {@code POST /api/wallet/striping}），未开启的钱包不受影响
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.striping")
+public class StripingProperties {
+
+    /**
+     * 单个钱包的最大分片数。分片越多入账越分散，但余额查询、扣款归集时要读取和锁定的行也越多
+     */
+    private int maxStripes = 64;
+
+    /**
+     * 入账选择分片的方式
+     */
+    private StripeStrategy strategy = StripeStrategy.ROUND_ROBIN;
+}
@@ -0,0 +1,33 @@
+package com.wallet.config;
+
+import com.wallet.enums.TransactionNoType;
+import com.wallet.idgen.RandomTransactionNoGenerator;
+import com.wallet.idgen.SnowflakeTransactionNoGenerator;
+import com.wallet.idgen.TransactionNoGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 交易流水号生成器装配，已声明其他 {@link TransactionNoGenerator} Bean 时不生效
+ */
+@Slf4j
+@Configuration
+public class TransactionNoConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public TransactionNoGenerator transactionNoGenerator(TransactionNoProperties properties) {
+        log.info("交易流水号生成方式: type={}, nodeId={}", properties.getType(), properties.getNodeId());
+        if (properties.getType() == TransactionNoType.RANDOM) {
+            return new RandomTransactionNoGenerator();
+        }
+        // 没有默认节点ID：多个实例都用同一个默认值时生成的流水号会冲突
+        if (properties.getNodeId() == null) {
+            throw new IllegalStateException("雪花流水号需要为每个实例配置不同的 wallet.transaction-no.node-id（0-"
+                    + SnowflakeTransactionNoGenerator.MAX_NODE_ID + "）");
+        }
+        return new SnowflakeTransactionNoGenerator(properties.getNodeId());
+    }
+}
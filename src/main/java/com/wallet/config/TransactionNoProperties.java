@@ -0,0 +1,23 @@
+package com.wallet.config;
+
+import com.wallet.enums.TransactionNoType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 交易流水号生成配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.transaction-no")
+public class TransactionNoProperties {
+
+    /**
+     * 生成方式
+     */
+    private TransactionNoType type = TransactionNoType.SNOWFLAKE;
+
+    /**
+     * 节点ID（0-1023），多实例部署时每个实例必须不同；SNOWFLAKE 方式下未配置时启动失败
+     */
+    private Integer nodeId;
+}
@@ -0,0 +1,22 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 交易记录查询配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.transaction-query")
+public class TransactionQueryProperties {
+
+    /**
+     * 未指定每页条数时的默认值
+     */
+    private int defaultPageSize = 20;
+
+    /**
+     * 每页条数上限，超过按上限返回
+     */
+    private int maxPageSize = 200;
+}
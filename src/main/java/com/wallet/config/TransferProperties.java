@@ -0,0 +1,18 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 转账配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.transfer")
+public class TransferProperties {
+
+    /**
+     * 单次批量转账的最大笔数。每笔写入两条流水和两条变更历史，
+     * 批量插入的占位符数量随之增长（MySQL 单条语句上限 65535 个）
+     */
+    private int maxLegs = 1000;
+}
@@ -0,0 +1,19 @@
+package com.wallet.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 资金操作指标配置
+ * <p>
+ * 百分位直方图按指标名前缀在 management.metrics.distribution.percentiles-histogram 下配置。
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.metrics")
+public class WalletMetricsProperties {
+
+    /**
+     * 是否采集资金操作各阶段耗时与 Mapper 语句耗时
+     */
+    private boolean enabled = true;
+}
@@ -0,0 +1,18 @@
+package com.wallet.config;
+
+import com.wallet.enums.WithdrawMode;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 提现配置
+ */
+@Data
+@ConfigurationProperties(prefix = "wallet.withdraw")
+public class WithdrawProperties {
+
+    /**
+     * 提现扣减模式，默认乐观锁
+     */
+    private WithdrawMode mode = WithdrawMode.OPTIMISTIC;
+}
@@ -1,16 +1,24 @@
 package com.wallet.controller;
 
 import com.wallet.dto.response.ApiResponse;
+import com.wallet.dto.response.HistoryProjectionStatus;
+import com.wallet.dto.response.PlatformReconciliationReport;
 import com.wallet.dto.response.ReconciliationResult;
 import com.wallet.mapper.WalletMapper;
+import com.wallet.service.BalanceHistoryProjectionService;
+import com.wallet.service.PlatformReconciliationService;
 import com.wallet.service.ReconciliationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Date;
 import java.util.List;
@@ -23,8 +31,12 @@ public class ReconciliationController {
 
     private final ReconciliationService reconciliationService;
 
+    private final PlatformReconciliationService platformReconciliationService;
+
     private final WalletMapper walletMapper;
 
+    private final BalanceHistoryProjectionService projectionService;
+
     /**
      * 对账查询 - 基于用户ID和币种
      */
@@ -44,6 +56,66 @@ public class ReconciliationController {
         }
     }
 
+    /**
+     * 汇总对账 - 基于余额检查点，不返回变更明细，适合变更量大的钱包
+     */
+    @GetMapping("/reconcile-summary")
+    public ApiResponse<ReconciliationResult> reconcileSummary(
+            @RequestParam Long userId,
+            @RequestParam String currency,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date endTime) {
+        try {
+            ReconciliationResult result = reconciliationService.reconcileSummary(
+                    userId, currency, startTime, endTime);
+            return ApiResponse.success(result);
+        } catch (Exception e) {
+            log.error("汇总对账查询异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 流式对账 - 不返回变更明细，逐行汇总，内存占用与变更数量无关
+     */
+    @GetMapping("/reconcile-streaming")
+    public ApiResponse<ReconciliationResult> reconcileStreaming(
+            @RequestParam Long userId,
+            @RequestParam String currency,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date endTime) {
+        try {
+            ReconciliationResult result = reconciliationService.reconcileStreaming(
+                    userId, currency, startTime, endTime);
+            return ApiResponse.success(result);
+        } catch (Exception e) {
+            log.error("流式对账查询异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 流式导出对账明细 - NDJSON，每笔变更一行，最后一行为对账结果
+     */
+    @GetMapping("/reconcile-stream")
+    public ResponseEntity<?> reconcileStream(
+            @RequestParam Long userId,
+            @RequestParam String currency,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date endTime) {
+        try {
+            reconciliationService.getWalletOrThrow(userId, currency);
+        } catch (Exception e) {
+            log.error("流式对账导出异常: {}", e.getMessage(), e);
+            return ResponseEntity.ok(ApiResponse.error(e.getMessage()));
+        }
+        StreamingResponseBody body = out -> reconciliationService.streamReconcile(
+                userId, currency, startTime, endTime, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     /**
      * 多币种对账查询 - 查询用户所有币种的对账情况
      */
@@ -61,4 +133,37 @@ public class ReconciliationController {
             return ApiResponse.error(e.getMessage());
         }
     }
+
+    /**
+     * 全平台对账 - 立即对全部钱包执行一次对账
+     */
+    @PostMapping("/platform/run")
+    public ApiResponse<PlatformReconciliationReport> reconcilePlatform(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") Date endTime) {
+        try {
+            PlatformReconciliationReport report = platformReconciliationService.reconcileAllWallets(
+                    startTime, endTime);
+            return ApiResponse.success(report);
+        } catch (Exception e) {
+            log.error("全平台对账异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 最近一次全平台对账报告
+     */
+    @GetMapping("/platform/last")
+    public ApiResponse<PlatformReconciliationReport> lastPlatformReport() {
+        return ApiResponse.success(platformReconciliationService.getLastReport());
+    }
+
+    /**
+     * 余额变更历史补写进度 - 异步写入模式下对账期末早于 caughtUpTo 时历史才完整
+     */
+    @GetMapping("/history-status")
+    public ApiResponse<HistoryProjectionStatus> historyStatus() {
+        return ApiResponse.success(projectionService.status());
+    }
 }
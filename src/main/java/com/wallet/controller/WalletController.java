@@ -1,15 +1,30 @@
 package com.wallet.controller;
 
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.dto.request.BatchTransferRequest;
+import com.wallet.dto.request.BulkRechargeRequest;
+import com.wallet.dto.request.FreezeRequest;
+import com.wallet.dto.request.HoldRequest;
 import com.wallet.dto.request.RechargeRequest;
+import com.wallet.dto.request.TransferRequest;
 import com.wallet.dto.request.WithdrawRequest;
 import com.wallet.dto.response.*;
+import com.wallet.ledger.LedgerEngine;
+import com.wallet.service.StripedWalletService;
+import com.wallet.service.WalletBulkRechargeService;
+import com.wallet.service.WalletGroupCommitService;
 import com.wallet.service.WalletService;
 import com.wallet.service.WalletTransactionService;
+import com.wallet.service.WalletTransferService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
 import java.util.Date;
 import java.util.List;
 
@@ -23,20 +38,37 @@ public class WalletController {
 
     private final WalletTransactionService transactionService;
 
+    private final WalletGroupCommitService groupCommitService;
+
+    private final WalletTransferService transferService;
+
+    private final WalletBulkRechargeService bulkRechargeService;
+
+    private final StripedWalletService stripedWalletService;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final LedgerEngine ledgerEngine;
+
     /**
      * 充值接口 - 返回详细交易结果
      */
     @PostMapping("/recharge")
     public ApiResponse<TransactionResponse> recharge(@RequestBody RechargeRequest request) {
         try {
-            TransactionResponse result = walletService.recharge(
-                    request.getUserId(),
-                    request.getCurrency(),
-                    request.getAmount(),
-                    request.getBusinessType(),
-                    request.getBusinessId(),
-                    request.getRemark()
-            );
+            TransactionResponse result;
+            if (ledgerEngine.owns(request.getCurrency())) {
+                // 内存账本处理的币种：内存中执行、日志落盘后答复，异步写入数据库
+                result = ledgerEngine.recharge(request.getUserId(), request.getCurrency(), request.getAmount(),
+                        request.getBusinessType(), request.getBusinessId(), request.getRemark());
+            } else if (groupCommitService.isEnabled()) {
+                // 组提交模式：同一钱包的请求合并为批量事务
+                result = groupCommitService.recharge(request.getUserId(), request.getCurrency(), request.getAmount(),
+                        request.getBusinessType(), request.getBusinessId(), request.getRemark());
+            } else {
+                result = walletService.recharge(request.getUserId(), request.getCurrency(), request.getAmount(),
+                        request.getBusinessType(), request.getBusinessId(), request.getRemark());
+            }
             return ApiResponse.success(result);
         } catch (Exception e) {
             log.error("充值异常: {}", e.getMessage(), e);
@@ -44,20 +76,38 @@ public class WalletController {
         }
     }
 
+    /**
+     * 批量充值接口 - 返回逐条结果，与请求顺序一致
+     */
+    @PostMapping("/recharge/bulk")
+    public ApiResponse<BulkRechargeResponse> bulkRecharge(@RequestBody BulkRechargeRequest request) {
+        try {
+            return ApiResponse.success(bulkRechargeService.bulkRecharge(request.getItems()));
+        } catch (Exception e) {
+            log.error("批量充值异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     /**
      * 提现接口 - 返回详细交易结果
      */
     @PostMapping("/withdraw")
     public ApiResponse<TransactionResponse> withdraw(@RequestBody WithdrawRequest request) {
         try {
-            TransactionResponse result = walletService.withdraw(
-                    request.getUserId(),
-                    request.getCurrency(),
-                    request.getAmount(),
-                    request.getBusinessType(),
-                    request.getBusinessId(),
-                    request.getRemark()
-            );
+            TransactionResponse result;
+            if (ledgerEngine.owns(request.getCurrency())) {
+                // 内存账本处理的币种：内存中执行、日志落盘后答复，异步写入数据库
+                result = ledgerEngine.withdraw(request.getUserId(), request.getCurrency(), request.getAmount(),
+                        request.getBusinessType(), request.getBusinessId(), request.getRemark());
+            } else if (groupCommitService.isEnabled()) {
+                // 组提交模式：同一钱包的请求合并为批量事务
+                result = groupCommitService.withdraw(request.getUserId(), request.getCurrency(), request.getAmount(),
+                        request.getBusinessType(), request.getBusinessId(), request.getRemark());
+            } else {
+                result = walletService.withdraw(request.getUserId(), request.getCurrency(), request.getAmount(),
+                        request.getBusinessType(), request.getBusinessId(), request.getRemark());
+            }
             return ApiResponse.success(result);
         } catch (Exception e) {
             log.error("提现异常: {}", e.getMessage(), e);
@@ -65,6 +115,74 @@ public class WalletController {
         }
     }
 
+    /**
+     * 转账接口 - 扣款与入账在同一事务内完成
+     */
+    @PostMapping("/transfer")
+    public ApiResponse<TransferResponse> transfer(@RequestBody TransferRequest request) {
+        try {
+            return ApiResponse.success(transferService.transfer(request));
+        } catch (Exception e) {
+            log.error("转账异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 批量转账接口 - 全部成功或整体回滚
+     */
+    @PostMapping("/transfer/batch")
+    public ApiResponse<BatchTransferResponse> batchTransfer(@RequestBody BatchTransferRequest request) {
+        try {
+            return ApiResponse.success(transferService.batchTransfer(request.getLegs()));
+        } catch (Exception e) {
+            log.error("批量转账异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 冻结资金 - 按业务类型+业务ID幂等，未指定有效期时使用默认有效期
+     */
+    @PostMapping("/holds")
+    public ApiResponse<HoldResponse> freeze(@RequestBody FreezeRequest request) {
+        try {
+            Duration ttl = request.getTtlSeconds() != null ? Duration.ofSeconds(request.getTtlSeconds()) : null;
+            return ApiResponse.success(walletService.freeze(request.getUserId(), request.getCurrency(),
+                    request.getAmount(), request.getBusinessType(), request.getBusinessId(), ttl, request.getRemark()));
+        } catch (Exception e) {
+            log.error("冻结异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 冻结扣款 - 未指定金额时扣除全部冻结金额，剩余部分解冻
+     */
+    @PostMapping("/holds/capture")
+    public ApiResponse<HoldResponse> capture(@RequestBody HoldRequest request) {
+        try {
+            return ApiResponse.success(walletService.capture(request.getBusinessType(), request.getBusinessId(),
+                    request.getAmount()));
+        } catch (Exception e) {
+            log.error("冻结扣款异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 解冻
+     */
+    @PostMapping("/holds/release")
+    public ApiResponse<HoldResponse> release(@RequestBody HoldRequest request) {
+        try {
+            return ApiResponse.success(walletService.release(request.getBusinessType(), request.getBusinessId()));
+        } catch (Exception e) {
+            log.error("解冻异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     /**
      * 查询余额
      */
@@ -72,6 +190,9 @@ public class WalletController {
     public ApiResponse<CurrencyBalance> getBalance(@RequestParam Long userId,
                                                    @RequestParam String currency) {
         try {
+            if (ledgerEngine.owns(currency)) {
+                return ApiResponse.success(ledgerEngine.getCurrencyBalance(userId, currency));
+            }
             return ApiResponse.success(walletService.getCurrencyBalance(userId, currency));
         } catch (Exception e) {
             log.error("查询余额异常: {}", e.getMessage(), e);
@@ -85,7 +206,7 @@ public class WalletController {
     @GetMapping("/balances")
     public ApiResponse<WalletSummaryResponse> getAllBalances(@RequestParam Long userId) {
         try {
-            return ApiResponse.success(walletService.getWalletSummary(userId));
+            return ApiResponse.success(ledgerEngine.withLedgerBalances(walletService.getWalletSummary(userId)));
         } catch (Exception e) {
             log.error("查询余额汇总异常: {}", e.getMessage(), e);
             return ApiResponse.error(e.getMessage());
@@ -93,7 +214,23 @@ public class WalletController {
     }
 
     /**
-     * 交易记录查询
+     * 开启或扩充热点钱包分片 - 分片数只能增加，返回分片后的余额
+     */
+    @PostMapping("/striping")
+    public ApiResponse<CurrencyBalance> enableStriping(@RequestParam Long userId,
+                                                       @RequestParam String currency,
+                                                       @RequestParam int stripes) {
+        try {
+            stripedWalletService.enableStriping(userId, currency, stripes);
+            return ApiResponse.success(walletService.getCurrencyBalance(userId, currency));
+        } catch (Exception e) {
+            log.error("开启钱包分片异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 交易记录查询 - 一次返回全部匹配记录，数据量大时使用分页查询或流式导出
      */
     @GetMapping("/transactions")
     public ApiResponse<List<TransactionRecordResponse>> getTransactions(
@@ -110,5 +247,49 @@ public class WalletController {
             return ApiResponse.error(e.getMessage());
         }
     }
-}
 
+    /**
+     * 交易记录游标分页查询 - 首页不传 cursor，之后传上一页返回的 nextCursor
+     */
+    @GetMapping("/transactions/page")
+    public ApiResponse<TransactionPageResponse> getTransactionPage(
+            @RequestParam Long userId,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endTime,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        try {
+            TransactionPageResponse response = transactionService.getTransactionPage(
+                    userId, currency, startTime, endTime, cursor, size);
+            return ApiResponse.success(response);
+        } catch (Exception e) {
+            log.error("分页查询交易记录异常: {}", e.getMessage(), e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 交易记录流式导出 - NDJSON，每条记录一行，适合大时间范围
+     */
+    @GetMapping("/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam Long userId,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date startTime,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") Date endTime) {
+        StreamingResponseBody body = out -> transactionService.exportTransactions(
+                userId, currency, startTime, endTime, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * 幂等缓存命中统计
+     */
+    @GetMapping("/idempotency/stats")
+    public ApiResponse<IdempotencyCacheStats> getIdempotencyStats() {
+        return ApiResponse.success(idempotencyCache.stats());
+    }
+}
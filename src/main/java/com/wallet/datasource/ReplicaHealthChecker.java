@@ -0,0 +1,107 @@
+package com.wallet.datasource;
+
+import com.wallet.config.ReadReplicaProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 从库健康检查与复制延迟保护
+ * <p>
+ * 每轮先在主库写入复制心跳（replication_heartbeat），再读取各从库上的心跳：
+ * 从库不可达或复制延迟超过 maxLag 时暂停向其路由读请求，追上后自动恢复。
+ * 延迟按应用节点的时钟计算，多节点部署时要求各节点时钟同步。
+ */
+@Slf4j
+public class ReplicaHealthChecker {
+
+    static final String UPDATE_HEARTBEAT = "UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1";
+
+    static final String INSERT_HEARTBEAT = "INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, ?)";
+
+    static final String SELECT_HEARTBEAT = "SELECT beat_at FROM replication_heartbeat WHERE id = 1";
+
+    private final JdbcTemplate primary;
+
+    private final ReplicaRoutingDataSource routingDataSource;
+
+    private final ReadReplicaProperties properties;
+
+    public ReplicaHealthChecker(DataSource primary, ReplicaRoutingDataSource routingDataSource,
+                                ReadReplicaProperties properties) {
+        this.primary = new JdbcTemplate(primary);
+        this.routingDataSource = routingDataSource;
+        this.properties = properties;
+    }
+
+    /**
+     * 定时检查
+     */
+    @Scheduled(initialDelayString = "${wallet.read-replica.health-check-interval:2s}",
+            fixedDelayString = "${wallet.read-replica.health-check-interval:2s}")
+    public void scheduledCheck() {
+        try {
+            check();
+        } catch (Exception e) {
+            log.error("从库健康检查异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 写入心跳并检查全部从库
+     *
+     * @return 健康的从库数
+     */
+    public synchronized int check() {
+        try {
+            beat();
+        } catch (Exception e) {
+            // 主库心跳写入失败时从库延迟无从判断，照常检查，心跳停滞会表现为延迟增大
+            log.warn("复制心跳写入失败: {}", e.getMessage());
+        }
+        List<ReplicaNode> replicas = routingDataSource.getReplicas();
+        int healthy = 0;
+        for (ReplicaNode replica : replicas) {
+            if (check(replica)) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    private void beat() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        if (primary.update(UPDATE_HEARTBEAT, now) == 0) {
+            primary.update(INSERT_HEARTBEAT, now);
+        }
+    }
+
+    private boolean check(ReplicaNode replica) {
+        boolean wasHealthy = replica.isHealthy();
+        try {
+            Timestamp beatAt = new JdbcTemplate(replica.getDataSource())
+                    .query(SELECT_HEARTBEAT, rs -> rs.next() ? rs.getTimestamp(1) : null);
+            if (beatAt == null) {
+                replica.markChecked(false, -1, "从库尚无复制心跳");
+            } else {
+                long lag = Math.max(0, System.currentTimeMillis() - beatAt.getTime());
+                boolean healthy = lag <= properties.getMaxLag().toMillis();
+                replica.markChecked(healthy, lag, healthy ? null : "复制延迟 " + lag + "ms 超过上限");
+            }
+        } catch (Exception e) {
+            replica.markChecked(false, -1, e.getMessage());
+        }
+        if (wasHealthy != replica.isHealthy()) {
+            if (replica.isHealthy()) {
+                log.info("从库恢复承接读请求: name={}, lag={}ms", replica.getName(), replica.getLagMillis());
+            } else {
+                log.warn("从库暂停承接读请求: name={}, reason={}", replica.getName(), replica.getLastError());
+            }
+        }
+        return replica.isHealthy();
+    }
+}
@@ -0,0 +1,36 @@
+package com.wallet.datasource;
+
+import lombok.Getter;
+
+import javax.sql.DataSource;
+
+/**
+ * 单个从库及其最近一次健康检查结果
+ */
+@Getter
+public class ReplicaNode {
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private volatile boolean healthy;
+
+    /**
+     * 最近一次检查得到的复制延迟（毫秒），检查失败时为 -1
+     */
+    private volatile long lagMillis = -1;
+
+    private volatile String lastError;
+
+    public ReplicaNode(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    void markChecked(boolean healthy, long lagMillis, String lastError) {
+        this.healthy = healthy;
+        this.lagMillis = lagMillis;
+        this.lastError = lastError;
+    }
+}
@@ -0,0 +1,35 @@
+package com.wallet.datasource;
+
+import com.wallet.config.ReadReplicaProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * 在只读事务中执行查询，开启从库路由时由从库承接
+ * <p>
+ * 用于无法标注 {@code @Transactional(readOnly = true)} 的私有方法、回调等位置；
+ * 未开启从库路由时直接执行，不额外开启事务。
+ */
+@Component
+public class ReplicaReads {
+
+    private final TransactionTemplate readOnlyTemplate;
+
+    private final ReadReplicaProperties properties;
+
+    public ReplicaReads(PlatformTransactionManager transactionManager, ReadReplicaProperties properties) {
+        this.readOnlyTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTemplate.setReadOnly(true);
+        this.properties = properties;
+    }
+
+    public <T> T execute(Supplier<T> query) {
+        if (!properties.isEnabled()) {
+            return query.get();
+        }
+        return readOnlyTemplate.execute(status -> query.get());
+    }
+}
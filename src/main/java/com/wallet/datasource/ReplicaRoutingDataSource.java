@@ -0,0 +1,67 @@
+package com.wallet.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只读连接的数据源：在健康的从库间轮询，没有健康从库时回落到主库
+ * <p>
+ * 作为 {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} 的只读数据源使用，
+ * 只读事务在执行第一条语句时才取连接，此时按当前各从库的健康状态选择；
+ * 从库健康状态由 {@link ReplicaHealthChecker} 定期更新，初始为不可用。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<ReplicaNode> replicas;
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<ReplicaNode> replicas) {
+        this.replicas = List.copyOf(replicas);
+        Map<Object, Object> targets = new HashMap<>();
+        for (ReplicaNode replica : replicas) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    public List<ReplicaNode> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * 轮询选择健康的从库，都不可用时返回 null 使用主库
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        int size = replicas.size();
+        int start = Math.floorMod(roundRobin.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            ReplicaNode replica = replicas.get((start + i) % size);
+            if (replica.isHealthy()) {
+                return replica.getName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 关闭从库连接池，主库连接池由容器管理
+     */
+    @Override
+    public void close() {
+        for (ReplicaNode replica : replicas) {
+            if (replica.getDataSource() instanceof HikariDataSource hikari) {
+                hikari.close();
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.wallet.dto.converter;
 
 import com.wallet.dto.response.CurrencyBalance;
 import com.wallet.dto.response.TransactionRecordResponse;
+import com.wallet.dto.response.TransactionResponse;
 import com.wallet.dto.response.WalletSummaryResponse;
 import com.wallet.entity.Wallet;
 import com.wallet.entity.WalletTransaction;
@@ -9,6 +10,7 @@ import com.wallet.enums.TransactionStatus;
 import com.wallet.enums.TransactionType;
 import org.springframework.stereotype.Component;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -63,6 +65,27 @@ public class WalletConverter {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 重复业务请求的响应：交易结果取自已有流水，请求信息取自本次调用
+     */
+    public TransactionResponse toDuplicateResponse(WalletTransaction existing, Long userId, String currency,
+                                                   BigDecimal amount, String remark) {
+        boolean success = TransactionStatus.SUCCESS.getCode().equals(existing.getStatus());
+        return TransactionResponse.builder()
+                .success(success)
+                .message(success ? "重复请求，返回之前成功结果" : "重复请求，返回之前失败结果")
+                .transactionNo(existing.getTransactionNo())
+                .userId(userId)
+                .currency(currency)
+                .amount(amount)
+                .balanceBefore(existing.getBalanceBefore())
+                .balanceAfter(existing.getBalanceAfter())
+                .businessType(existing.getBusinessType())
+                .businessId(existing.getBusinessId())
+                .remark(remark)
+                .build();
+    }
+
     private String getTransactionTypeDesc(Integer transactionType) {
         return TransactionType.fromCode(transactionType)
                 .map(TransactionType::getDesc)
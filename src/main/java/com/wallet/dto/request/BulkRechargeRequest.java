@@ -0,0 +1,10 @@
+package com.wallet.dto.request;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BulkRechargeRequest {
+    private List<RechargeRequest> items;
+}
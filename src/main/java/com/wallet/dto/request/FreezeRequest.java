@@ -0,0 +1,16 @@
+package com.wallet.dto.request;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class FreezeRequest {
+    private Long userId;
+    private String currency;
+    private BigDecimal amount;
+    private String businessType;
+    private String businessId;
+    private Long ttlSeconds;        // 冻结有效期（秒），为空使用默认有效期
+    private String remark;
+}
@@ -0,0 +1,12 @@
+package com.wallet.dto.request;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class HoldRequest {
+    private String businessType;    // 冻结时的业务类型
+    private String businessId;      // 冻结时的业务ID
+    private BigDecimal amount;      // 扣款金额，为空扣除全部冻结金额；解冻时忽略
+}
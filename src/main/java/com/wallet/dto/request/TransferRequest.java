@@ -0,0 +1,16 @@
+package com.wallet.dto.request;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class TransferRequest {
+    private Long fromUserId;
+    private Long toUserId;
+    private String currency;
+    private BigDecimal amount;
+    private String businessType;
+    private String businessId;
+    private String remark;
+}
@@ -0,0 +1,15 @@
+package com.wallet.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BatchTransferResponse {
+    private Integer totalLegs;              // 转账笔数
+    private Integer appliedLegs;            // 本次实际入账笔数
+    private Integer duplicateLegs;          // 重复请求笔数
+    private List<TransferResponse> legs;    // 各笔结果，与请求顺序一致
+}
@@ -0,0 +1,15 @@
+package com.wallet.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class BulkRechargeResponse {
+    private Integer totalItems;                 // 充值条数
+    private Integer succeededItems;             // 成功条数（含重复请求）
+    private Integer failedItems;                // 失败条数
+    private List<TransactionResponse> results;  // 各条结果，与请求顺序一致
+}
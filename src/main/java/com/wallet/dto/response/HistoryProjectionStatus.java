@@ -0,0 +1,16 @@
+package com.wallet.dto.response;
+
+import com.wallet.enums.HistoryWriteMode;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+@Builder
+public class HistoryProjectionStatus {
+    private HistoryWriteMode mode;          // 余额变更历史写入方式
+    private Long lastTransactionId;         // 高水位：ID不大于该值的交易均已补写变更历史
+    private Date caughtUpTo;                // 创建时间早于该时间的交易均已有变更历史
+    private Long pendingTransactions;       // 高水位之后尚无变更历史的成功交易数
+}
@@ -0,0 +1,25 @@
+package com.wallet.dto.response;
+
+import com.wallet.enums.HoldStatus;
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+@Data
+@Builder
+public class HoldResponse {
+    private Boolean success;
+    private String message;
+    private String holdNo;             // 冻结单号
+    private Long userId;               // 用户ID
+    private String currency;           // 币种
+    private BigDecimal amount;         // 冻结金额
+    private BigDecimal capturedAmount; // 实际扣款金额
+    private HoldStatus status;         // 冻结单状态
+    private String transactionNo;      // 扣款交易流水号
+    private Date expiresAt;            // 过期时间
+    private String businessType;       // 业务类型
+    private String businessId;         // 业务ID
+}
@@ -0,0 +1,15 @@
+package com.wallet.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class IdempotencyCacheStats {
+    private Long hits;              // 命中缓存，直接返回原结果
+    private Long misses;            // 未命中缓存，查询了数据库
+    private Long bloomSkips;        // 布隆过滤器判定为新键，跳过数据库查询
+    private Long falsePositives;    // 布隆过滤器判定可能存在，但数据库中不存在
+    private Long backstopConflicts; // 跳过查询后被业务标识唯一约束拦截
+    private Long size;              // 当前缓存条目数
+}
@@ -0,0 +1,25 @@
+package com.wallet.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Date;
+import java.util.List;
+
+@Data
+@Builder
+public class PlatformReconciliationReport {
+    private Date startTime;                 // 对账期开始
+    private Date endTime;                   // 对账期结束
+    private Integer parallelism;            // 并行度
+    private Integer partitions;             // 分区数
+    private Long totalWallets;              // 对账钱包数
+    private Long balancedWallets;           // 平账钱包数
+    private Long totalChanges;              // 对账期内变更总数
+    private Long elapsedMillis;             // 耗时
+    private Long walletsPerSecond;          // 每秒对账钱包数
+    private String reportFile;              // 不平账户报告文件
+    private List<WalletMismatch> mismatches; // 不平账户
+    private Boolean historyComplete;        // 对账期内的变更历史是否已全部写入（异步写入模式可能滞后）
+    private Date historyCaughtUpTo;         // 异步写入模式下变更历史完整的截止时间
+}
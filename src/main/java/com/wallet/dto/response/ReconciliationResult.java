@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.math.BigDecimal;
+import java.util.Date;
 import java.util.List;
 
 @Data
@@ -21,4 +22,6 @@ public class ReconciliationResult {
     private BigDecimal totalInflow;             // 总流入
     private BigDecimal totalOutflow;            // 总流出
     private List<BalanceChangeHistory> changes; // 详细变更记录
+    private Boolean historyComplete;            // 对账期内的变更历史是否已全部写入（异步写入模式可能滞后）
+    private Date historyCaughtUpTo;             // 异步写入模式下变更历史完整的截止时间
 }
@@ -0,0 +1,15 @@
+package com.wallet.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 流式对账的一行 NDJSON：CHANGE 为变更明细，最后一行 SUMMARY 为对账结果
+@Data
+@AllArgsConstructor
+public class ReconciliationStreamLine {
+    public static final String CHANGE = "CHANGE";
+    public static final String SUMMARY = "SUMMARY";
+
+    private String type;    // 行类型
+    private Object data;    // 变更记录或对账结果
+}
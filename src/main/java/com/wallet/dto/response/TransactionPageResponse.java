@@ -0,0 +1,12 @@
+package com.wallet.dto.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TransactionPageResponse {
+    private List<TransactionRecordResponse> records; // 本页交易记录
+    private String nextCursor;                       // 下一页游标，没有更多数据时为null
+    private Boolean hasMore;                         // 是否还有下一页
+}
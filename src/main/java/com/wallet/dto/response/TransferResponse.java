@@ -0,0 +1,15 @@
+package com.wallet.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class TransferResponse {
+    private Boolean success;
+    private String message;
+    private String businessType;          // 业务类型
+    private String businessId;            // 业务ID
+    private TransactionResponse debit;    // 转出方流水
+    private TransactionResponse credit;   // 转入方流水
+}
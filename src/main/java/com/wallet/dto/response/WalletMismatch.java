@@ -0,0 +1,18 @@
+package com.wallet.dto.response;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+public class WalletMismatch {
+    private Long walletId;                      // 钱包ID
+    private Long userId;                        // 用户ID
+    private String currency;                    // 币种
+    private BigDecimal openingBalance;          // 期初余额
+    private BigDecimal calculatedClosingBalance; // 计算期末余额
+    private BigDecimal actualClosingBalance;    // 实际期末余额
+    private BigDecimal difference;              // 差额 = 实际 - 计算
+}
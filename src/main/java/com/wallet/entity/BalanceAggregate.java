@@ -0,0 +1,40 @@
+package com.wallet.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 余额变更聚合结果（流入、流出、变更次数），用于检查点与对账计算
+ */
+@Data
+public class BalanceAggregate {
+    private Long walletId;                             // 钱包ID（按钱包分组聚合时有值）
+    private BigDecimal totalInflow = BigDecimal.ZERO;  // 流入合计
+    private BigDecimal totalOutflow = BigDecimal.ZERO; // 流出合计（正数）
+    private long changeCount;                          // 变更次数
+
+    public static BalanceAggregate of(BalanceCheckpoint checkpoint) {
+        BalanceAggregate aggregate = new BalanceAggregate();
+        aggregate.setTotalInflow(checkpoint.getTotalInflow());
+        aggregate.setTotalOutflow(checkpoint.getTotalOutflow());
+        aggregate.setChangeCount(checkpoint.getChangeCount());
+        return aggregate;
+    }
+
+    public BalanceAggregate plus(BalanceAggregate other) {
+        BalanceAggregate result = new BalanceAggregate();
+        result.setTotalInflow(totalInflow.add(other.totalInflow));
+        result.setTotalOutflow(totalOutflow.add(other.totalOutflow));
+        result.setChangeCount(changeCount + other.changeCount);
+        return result;
+    }
+
+    public BalanceAggregate minus(BalanceAggregate other) {
+        BalanceAggregate result = new BalanceAggregate();
+        result.setTotalInflow(totalInflow.subtract(other.totalInflow));
+        result.setTotalOutflow(totalOutflow.subtract(other.totalOutflow));
+        result.setChangeCount(changeCount - other.changeCount);
+        return result;
+    }
+}
@@ -9,10 +9,12 @@ import java.util.Date;
 public class BalanceChangeHistory {
     private Long id;
     private Long walletId;          // 钱包ID
-    private Long transactionId;     // 交易ID
+    private Long transactionId;     // 交易ID，FROZEN 变更为空
+    private Long holdId;            // 冻结单ID，仅 FROZEN 变更
     private BigDecimal changeAmount; // 变更金额
     private BigDecimal balanceBefore; // 变更前余额
     private BigDecimal balanceAfter;  // 变更后余额
-    private String changeType;      // 变更类型:BALANCE,FROZEN
+    private String changeType;      // 变更类型:BALANCE,FROZEN,STRIPE_SWEEP
+    private Integer stripeNo = 0;   // 分片号，0表示钱包主行
     private Date createdAt;
 }
\ No newline at end of file
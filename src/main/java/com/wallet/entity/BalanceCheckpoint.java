@@ -0,0 +1,21 @@
+package com.wallet.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 余额检查点：汇总钱包 created_at 早于检查点时间的全部余额变更
+ */
+@Data
+public class BalanceCheckpoint {
+    private Long id;
+    private Long walletId;          // 钱包ID
+    private Date checkpointTime;    // 检查点时间（不含该时刻的变更）
+    private BigDecimal balance;     // 检查点时的余额
+    private BigDecimal totalInflow; // 累计流入
+    private BigDecimal totalOutflow; // 累计流出（正数）
+    private Long changeCount;       // 累计变更次数
+    private Date createdAt;
+}
@@ -0,0 +1,18 @@
+package com.wallet.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * 单个钱包的余额净变化量，用于多行余额更新
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BalanceDelta {
+    private Long walletId;     // 钱包ID
+    private BigDecimal amount; // 净变化量，正数为增加
+}
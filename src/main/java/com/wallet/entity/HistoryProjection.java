@@ -0,0 +1,16 @@
+package com.wallet.entity;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * 余额变更历史补写进度：交易记录ID高水位与历史完整的时间点
+ */
+@Data
+public class HistoryProjection {
+    private String name;                // 补写任务名称
+    private Long lastTransactionId;     // 高水位：ID不大于该值的交易记录均已补写历史
+    private Date caughtUpTo;            // 创建时间早于该时间的交易记录均已有变更历史
+    private Date updatedAt;
+}
@@ -0,0 +1,59 @@
+package com.wallet.entity;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 幂等键：业务类型+业务ID 的 128 位哈希，作为 idempotency_key 表的定长主键
+ * <p>
+ * 哈希为 MD5(业务类型 + '\0' + 业务ID) 的 UTF-8 字节，与 MySQL 触发器中的
+ * {@code UNHEX(MD5(CONCAT(business_type, CHAR(0), business_id)))} 一致。
+ * 查询时仍比对交易记录上的业务类型和业务ID，哈希碰撞不会返回其他业务的交易。
+ */
+@Getter
+public final class IdempotencyKey {
+
+    private final String businessType; // 业务类型
+
+    private final String businessId;   // 业务ID
+
+    private final byte[] hash;         // 16 字节哈希
+
+    private IdempotencyKey(String businessType, String businessId) {
+        this.businessType = businessType;
+        this.businessId = businessId;
+        this.hash = hash(businessType, businessId);
+    }
+
+    public static IdempotencyKey of(String businessType, String businessId) {
+        return new IdempotencyKey(businessType, businessId);
+    }
+
+    /**
+     * 交易记录的业务标识对应的幂等键
+     */
+    public static List<IdempotencyKey> of(List<WalletTransaction> transactions) {
+        List<IdempotencyKey> keys = new ArrayList<>(transactions.size());
+        for (WalletTransaction transaction : transactions) {
+            keys.add(of(transaction.getBusinessType(), transaction.getBusinessId()));
+        }
+        return keys;
+    }
+
+    public static byte[] hash(String businessType, String businessId) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(businessType.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(businessId.getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 不可用", e);
+        }
+    }
+}
@@ -14,6 +14,7 @@ public class Wallet {
     private BigDecimal frozenBalance; // 冻结余额
     private Integer version;       // 版本号，用于乐观锁
     private Integer status;        // 状态:1正常,0冻结
+    private Integer stripeCount;   // 分片数，0表示未分片
     private Date createdAt;
     private Date updatedAt;
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.wallet.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 资金冻结单：冻结期间金额计入钱包 frozen_balance，扣款、解冻或过期后释放
+ */
+@Data
+public class WalletHold {
+    private Long id;
+    private String holdNo;          // 冻结单号，全局唯一
+    private Long walletId;          // 钱包ID
+    private Long userId;            // 用户ID
+    private String currency;        // 币种
+    private BigDecimal amount;      // 冻结金额
+    private BigDecimal capturedAmount; // 实际扣款金额
+    private Integer status;         // 状态:0冻结中,1已扣款,2已解冻,3已过期
+    private String businessType;    // 业务类型
+    private String businessId;      // 业务ID，用于幂等
+    private String transactionNo;   // 扣款交易流水号
+    private Date expiresAt;         // 过期时间
+    private String remark;          // 备注
+    private Date createdAt;
+    private Date updatedAt;
+}
@@ -0,0 +1,20 @@
+package com.wallet.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 钱包分片：热点钱包的入账分散到多个分片行，钱包余额 = 主行余额 + 各分片余额
+ */
+@Data
+public class WalletStripe {
+    private Long id;
+    private Long walletId;          // 钱包ID
+    private Integer stripeNo;       // 分片号，从1开始（0 为钱包主行）
+    private BigDecimal balance;     // 分片余额
+    private Integer version;        // 版本号
+    private Date createdAt;
+    private Date updatedAt;
+}
@@ -0,0 +1,15 @@
+package com.wallet.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum HistoryWriteMode {
+    SYNC("同步：余额变更历史与余额、交易记录在同一事务内写入"),
+    ASYNC("异步：资金事务只写交易记录，余额变更历史由后台任务按交易记录补写");
+
+    private final String desc;
+
+    HistoryWriteMode(String desc) {
+        this.desc = desc;
+    }
+}
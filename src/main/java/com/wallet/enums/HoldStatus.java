@@ -0,0 +1,28 @@
+package com.wallet.enums;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+@Getter
+public enum HoldStatus {
+    HELD(0, "冻结中"),
+    CAPTURED(1, "已扣款"),
+    RELEASED(2, "已解冻"),
+    EXPIRED(3, "已过期");
+
+    private final Integer code;
+    private final String desc;
+
+    HoldStatus(Integer code, String desc) {
+        this.code = code;
+        this.desc = desc;
+    }
+
+    public static Optional<HoldStatus> fromCode(Integer code) {
+        return Arrays.stream(values())
+                .filter(status -> status.getCode().equals(code))
+                .findFirst();
+    }
+}
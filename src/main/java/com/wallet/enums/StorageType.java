@@ -0,0 +1,15 @@
+package com.wallet.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum StorageType {
+    MYBATIS("MyBatis 映射器，数据存放在数据库"),
+    MEMORY("进程内存储，钱包、交易记录和余额变更历史不落库");
+
+    private final String desc;
+
+    StorageType(String desc) {
+        this.desc = desc;
+    }
+}
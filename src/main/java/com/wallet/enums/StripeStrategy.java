@@ -0,0 +1,15 @@
+package com.wallet.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum StripeStrategy {
+    ROUND_ROBIN("轮询：入账依次落到各分片"),
+    HASH("哈希：按业务ID哈希选择分片，同一业务ID总落在同一分片");
+
+    private final String desc;
+
+    StripeStrategy(String desc) {
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,15 @@
+package com.wallet.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum TransactionNoType {
+    SNOWFLAKE("时间戳 + 节点ID + 毫秒内序号，单节点单调递增，可按字符串排序"),
+    RANDOM("时间戳 + UUID 前 8 位，旧格式");
+
+    private final String desc;
+
+    TransactionNoType(String desc) {
+        this.desc = desc;
+    }
+}
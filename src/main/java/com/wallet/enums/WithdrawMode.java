@@ -0,0 +1,15 @@
+package com.wallet.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum WithdrawMode {
+    OPTIMISTIC("乐观锁：先查余额，按版本号扣减"),
+    ATOMIC("条件扣减：仅依赖 balance >= amount，不做版本校验");
+
+    private final String desc;
+
+    WithdrawMode(String desc) {
+        this.desc = desc;
+    }
+}
@@ -0,0 +1,103 @@
+package com.wallet.filter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wallet.config.AdmissionProperties;
+import com.wallet.dto.response.ApiResponse;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求准入限流
+ * <p>
+ * 虚拟线程下每个请求都有自己的线程，Tomcat 线程池不再限制并发，突发流量会全部涌向连接池，
+ * 在 HikariCP 的 connection-timeout 上排队甚至超时。这里用公平信号量把同时执行的 /api 请求
+ * 限制在连接池大小附近，超出的请求在信号量上等待，等待超时直接返回 503。
+ */
+@Slf4j
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final AdmissionProperties properties;
+
+    private final ObjectMapper objectMapper;
+
+    private final Semaphore permits;
+
+    private final int maxConcurrent;
+
+    public AdmissionControlFilter(AdmissionProperties properties, ObjectMapper objectMapper, DataSource dataSource) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.maxConcurrent = properties.getMaxConcurrent() > 0
+                ? properties.getMaxConcurrent()
+                : poolSize(dataSource);
+        this.permits = new Semaphore(maxConcurrent, true);
+        if (properties.isEnabled()) {
+            log.info("请求准入限流已开启: maxConcurrent={}, acquireTimeout={}",
+                    maxConcurrent, properties.getAcquireTimeout());
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(properties.getAcquireTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            log.warn("请求准入超时: uri={}, maxConcurrent={}", request.getRequestURI(), maxConcurrent);
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            objectMapper.writeValue(response.getOutputStream(), ApiResponse.error("系统繁忙，请稍后重试"));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    public int getAvailablePermits() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * 主库连接池大小；开启只读从库时数据源是包在主库连接池外的代理，需要解包
+     */
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException e) {
+            log.warn("读取连接池大小失败，按默认值限流: {}", e.getMessage());
+        }
+        return 10;
+    }
+}
@@ -0,0 +1,16 @@
+package com.wallet.idgen;
+
+import java.util.UUID;
+
+/**
+ * 旧格式流水号："T" + 毫秒时间戳 + UUID 前 8 位十六进制
+ * <p>
+ * 每次调用都会经过 SecureRandom，8 位随机数也不能保证多节点之间不重复，仅为兼容保留。
+ */
+public class RandomTransactionNoGenerator implements TransactionNoGenerator {
+
+    @Override
+    public String next() {
+        return "T" + System.currentTimeMillis() + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+    }
+}
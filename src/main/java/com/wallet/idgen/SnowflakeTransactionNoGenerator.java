@@ -0,0 +1,106 @@
+package com.wallet.idgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake 风格的交易流水号："T" + 19 位补零的十进制 ID，共 20 个字符
+ * <p>
+ * ID 结构（63 位）：41 位毫秒时间戳（自 2024-01-01 UTC 起）| 10 位节点ID | 12 位毫秒内序号。
+ * 时间戳与序号合并保存在一个 AtomicLong 中，靠 CAS 推进，不加锁：
+ * <ul>
+ *     <li>时钟前进：序号归零，使用新的毫秒</li>
+ *     <li>同一毫秒或时钟回拨：在上一个值的基础上加一，序号用满 4096 时自然进位到下一毫秒，
+ *     即暂时“借用”未来的时间戳，不阻塞等待</li>
+ * </ul>
+ * 因此同一节点生成的 ID 严格单调递增，不同节点因节点ID不同不会重复；定长十进制使字符串顺序与数值顺序一致。
+ */
+public class SnowflakeTransactionNoGenerator implements TransactionNoGenerator {
+
+    /**
+     * 2024-01-01T00:00:00Z
+     */
+    public static final long EPOCH_MILLIS = 1_704_067_200_000L;
+
+    static final int NODE_BITS = 10;
+
+    static final int SEQUENCE_BITS = 12;
+
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final int DIGITS = 19;
+
+    private final long nodeBits;
+
+    private final LongSupplier clock;
+
+    /**
+     * (毫秒时间戳 - EPOCH) << SEQUENCE_BITS | 序号
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    public SnowflakeTransactionNoGenerator(int nodeId) {
+        this(nodeId, System::currentTimeMillis);
+    }
+
+    public SnowflakeTransactionNoGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("节点ID必须在 0-" + MAX_NODE_ID + " 之间: " + nodeId);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+    }
+
+    @Override
+    public String next() {
+        return format(nextId());
+    }
+
+    /**
+     * 生成数值形式的 ID
+     */
+    public long nextId() {
+        while (true) {
+            long last = state.get();
+            long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            long next = now > last ? now : last + 1;
+            if (state.compareAndSet(last, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                long sequence = next & ((1L << SEQUENCE_BITS) - 1);
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | sequence;
+            }
+        }
+    }
+
+    /**
+     * 交易流水号对应的毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeIdOf(long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE_ID);
+    }
+
+    /**
+     * 流水号字符串还原为数值 ID
+     */
+    public static long parse(String transactionNo) {
+        return Long.parseLong(transactionNo, 1, transactionNo.length(), 10);
+    }
+
+    /**
+     * "T" + 19 位补零十进制，只分配一个 byte 数组和结果字符串
+     */
+    static String format(long id) {
+        byte[] chars = new byte[DIGITS + 1];
+        chars[0] = 'T';
+        for (int i = DIGITS; i > 0; i--) {
+            chars[i] = (byte) ('0' + id % 10);
+            id /= 10;
+        }
+        return new String(chars, StandardCharsets.ISO_8859_1);
+    }
+}
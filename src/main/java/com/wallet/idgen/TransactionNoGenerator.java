@@ -0,0 +1,14 @@
+package com.wallet.idgen;
+
+/**
+ * 交易流水号生成器
+ * <p>
+ * 默认实现由 {@link com.wallet.config.TransactionNoConfig} 按配置创建，自定义实现声明为 Bean 即可替换。
+ */
+public interface TransactionNoGenerator {
+
+    /**
+     * 生成新的交易流水号，线程安全
+     */
+    String next();
+}
@@ -0,0 +1,94 @@
+package com.wallet.ledger;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 一条已接受的账本操作：请求内容及其在内存中执行后的前后余额
+ * <p>
+ * 日志中的编码为 [seq][createdAt][walletId][userId][type][currency][transactionNo][businessType][businessId]
+ * [remark][amount][balanceBefore][balanceAfter]，字符串为 2 字节长度 + UTF-8（-1 表示 null），
+ * 金额为 4 字节 scale + 2 字节长度 + 非标度值的补码。
+ *
+ * @param type 交易类型编码（{@link com.wallet.enums.TransactionType}）
+ */
+public record JournalRecord(long seq, long createdAt, long walletId, long userId, int type, String currency,
+                            String transactionNo, String businessType, String businessId, String remark,
+                            BigDecimal amount, BigDecimal balanceBefore, BigDecimal balanceAfter) {
+
+    byte[] encode() {
+        byte[][] strings = {utf8(currency), utf8(transactionNo), utf8(businessType), utf8(businessId), utf8(remark)};
+        byte[][] decimals = {unscaled(amount), unscaled(balanceBefore), unscaled(balanceAfter)};
+        int size = Long.BYTES * 4 + 1;
+        for (byte[] string : strings) {
+            size += Short.BYTES + (string != null ? string.length : 0);
+        }
+        for (byte[] decimal : decimals) {
+            size += Integer.BYTES + Short.BYTES + decimal.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putLong(seq).putLong(createdAt).putLong(walletId).putLong(userId).put((byte) type);
+        for (byte[] string : strings) {
+            if (string == null) {
+                buffer.putShort((short) -1);
+            } else {
+                buffer.putShort((short) string.length).put(string);
+            }
+        }
+        BigDecimal[] values = {amount, balanceBefore, balanceAfter};
+        for (int i = 0; i < values.length; i++) {
+            buffer.putInt(values[i].scale()).putShort((short) decimals[i].length).put(decimals[i]);
+        }
+        return buffer.array();
+    }
+
+    static JournalRecord decode(ByteBuffer buffer) {
+        long seq = buffer.getLong();
+        long createdAt = buffer.getLong();
+        long walletId = buffer.getLong();
+        long userId = buffer.getLong();
+        int type = buffer.get();
+        String currency = readString(buffer);
+        String transactionNo = readString(buffer);
+        String businessType = readString(buffer);
+        String businessId = readString(buffer);
+        String remark = readString(buffer);
+        return new JournalRecord(seq, createdAt, walletId, userId, type, currency, transactionNo,
+                businessType, businessId, remark, readDecimal(buffer), readDecimal(buffer), readDecimal(buffer));
+    }
+
+    private static byte[] utf8(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("日志字段过长: " + bytes.length);
+        }
+        return bytes;
+    }
+
+    private static byte[] unscaled(BigDecimal value) {
+        return value.unscaledValue().toByteArray();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+}
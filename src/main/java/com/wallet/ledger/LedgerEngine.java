@@ -0,0 +1,783 @@
+package com.wallet.ledger;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.cache.WalletBalanceCache;
+import com.wallet.config.LedgerProperties;
+import com.wallet.dto.converter.WalletConverter;
+import com.wallet.dto.response.CurrencyBalance;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.dto.response.WalletSummaryResponse;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.BalanceDelta;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.TransactionStatus;
+import com.wallet.enums.TransactionType;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.idgen.TransactionNoGenerator;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.LedgerProjectionMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.money.CurrencyScales;
+import com.wallet.service.BusinessTypes;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.IncorrectUpdateSemanticsDataAccessException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 内存账本
+ * <p>
+ * 配置的币种由内存账本处理充值和提现，余额以内存为准，数据库是异步投影：
+ * <ul>
+ *     <li>按 (userId, currency) 分片，每个分片一个写线程顺序执行请求，热路径上没有锁：
+ *     调用方把请求放入分片的无锁队列，写线程批量取出、在内存中校验并计算余额</li>
+ *     <li>每笔接受的请求连同前后余额追加到分片的内存映射日志（带 CRC32C 校验），
+ *     一批请求刷盘后才更新对外可见的余额并答复调用方</li>
+ *     <li>每个分片一个投影线程把已答复的记录批量写入 wallet、wallet_transaction 和 balance_change_history，
+ *     同一事务中推进投影进度（ledger_projection），已投影的日志段随后删除</li>
+ *     <li>启动时先把各分片日志中尚未投影的记录写入数据库，再从数据库加载余额，崩溃后因此不会丢失已答复的请求</li>
+ * </ul>
+ * 幂等：处理中的相同业务请求等待原请求结果，已投影的按幂等缓存和数据库判断。
+ * 钱包首次使用时从数据库加载并常驻内存；分片钱包不支持内存账本。
+ * <p>
+ * 内存余额是这些钱包的唯一写入方：其他写路径（转账、批量充值、冻结、分片等）在服务层按
+ * {@link #requireNotOwned(String)} 拒绝由内存账本处理的币种。投影按净变化量更新钱包余额，不覆盖数据库中的余额。
+ * 投影遇到重试也无法成功的错误（如业务键与其他节点写入的交易冲突）时分片停止服务并计入
+ * {@code wallet.ledger.shards.broken}，已答复的记录保留在日志中，待人工处理后重启恢复。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LedgerEngine {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final LedgerProperties properties;
+
+    private final WalletMapper walletMapper;
+
+    private final WalletTransactionMapper transactionMapper;
+
+    private final BalanceChangeHistoryMapper historyMapper;
+
+    private final LedgerProjectionMapper projectionMapper;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final WalletBalanceCache walletBalanceCache;
+
+    private final WalletConverter walletConverter;
+
+    private final TransactionNoGenerator transactionNoGenerator;
+
+    private final MeterRegistry meterRegistry;
+
+    private final CurrencyScales currencyScales;
+
+    /**
+     * 已接受但尚未投影到数据库的请求，按业务键索引
+     */
+    private final ConcurrentHashMap<BusinessKey, LedgerOperation> pending = new ConcurrentHashMap<>();
+
+    private final List<Shard> shards = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+
+    private volatile boolean projectionPaused;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        projectionPaused = false;
+        Path dir = Paths.get(properties.getJournalDir());
+        TreeSet<Integer> recovering = new TreeSet<>(LedgerJournal.shardsIn(dir));
+        for (int i = 0; i < properties.getShards(); i++) {
+            recovering.add(i);
+        }
+        // 分片数调整后旧分片的日志同样要投影完，之后所有余额都从数据库重新加载
+        Map<Integer, Long> lastSeqs = new LinkedHashMap<>();
+        for (int shard : recovering) {
+            lastSeqs.put(shard, recover(dir, shard));
+        }
+
+        for (int i = 0; i < properties.getShards(); i++) {
+            Shard shard = new Shard(i, new LedgerJournal(dir, i, properties.getJournalSegmentSize()));
+            shard.nextSeq = lastSeqs.get(i) + 1;
+            shard.journal.open(shard.nextSeq);
+            shards.add(shard);
+        }
+        running = true;
+        shards.forEach(Shard::startThreads);
+        Gauge.builder("wallet.ledger.shards.broken", this, LedgerEngine::brokenShards)
+                .description("停止服务的内存账本分片数")
+                .register(meterRegistry);
+        log.info("内存账本已启动: currencies={}, shards={}, journalDir={}",
+                properties.getCurrencies(), properties.getShards(), dir.toAbsolutePath());
+    }
+
+    /**
+     * 停止接受请求，处理完已入队的请求并投影到数据库后退出
+     */
+    @PreDestroy
+    public void stop() {
+        shutdown(true);
+    }
+
+    /**
+     * 暂停投影，已答复的请求只写入日志（测试用）
+     */
+    void pauseProjection() {
+        projectionPaused = true;
+    }
+
+    /**
+     * 恢复投影（测试用）
+     */
+    void resumeProjection() {
+        projectionPaused = false;
+    }
+
+    /**
+     * 模拟进程崩溃：写线程处理完已入队的请求后立即退出，不再投影；已答复的请求只存在于日志中
+     */
+    void halt() {
+        shutdown(false);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 该币种是否由内存账本处理；与账本是否正在运行无关，启动和停止期间同样拒绝这些币种的数据库写路径
+     */
+    public boolean owns(String currency) {
+        return properties.isEnabled() && properties.getCurrencies().contains(currency);
+    }
+
+    /**
+     * 内存账本处理的币种不能走绕过内存余额的数据库写路径
+     */
+    public void requireNotOwned(String currency) {
+        if (owns(currency)) {
+            throw new BusinessException("LEDGER_OWNED_CURRENCY",
+                    "币种 " + currency + " 由内存账本处理，仅支持充值、提现和余额查询");
+        }
+    }
+
+    /**
+     * 因日志写入失败或投影无法重试而停止服务的分片数
+     */
+    public int brokenShards() {
+        return (int) shards.stream().filter(shard -> shard.failure != null).count();
+    }
+
+    /**
+     * 尚未投影到数据库的请求数
+     */
+    public int pendingProjection() {
+        return pending.size();
+    }
+
+    public TransactionResponse recharge(Long userId, String currency, BigDecimal amount,
+                                        String businessType, String businessId, String remark) {
+        return await(submit(userId, currency, amount, businessType, businessId, remark, false));
+    }
+
+    public TransactionResponse withdraw(Long userId, String currency, BigDecimal amount,
+                                        String businessType, String businessId, String remark) {
+        return await(submit(userId, currency, amount, businessType, businessId, remark, true));
+    }
+
+    /**
+     * 查询余额：已加载到内存的钱包返回已刷盘的内存余额，否则读数据库
+     */
+    public CurrencyBalance getCurrencyBalance(Long userId, String currency) {
+        WalletKey key = new WalletKey(userId, currency);
+        Account account = running ? shardOf(key).accounts.get(key) : null;
+        if (account == null) {
+            return walletConverter.toCurrencyBalance(walletMapper.selectByUserAndCurrency(userId, currency));
+        }
+        return walletConverter.toCurrencyBalance(account.snapshot());
+    }
+
+    /**
+     * 把钱包汇总中由内存账本处理的币种替换为内存余额
+     */
+    public WalletSummaryResponse withLedgerBalances(WalletSummaryResponse summary) {
+        if (!running || summary.getBalances() == null) {
+            return summary;
+        }
+        List<CurrencyBalance> balances = new ArrayList<>(summary.getBalances().size());
+        for (CurrencyBalance balance : summary.getBalances()) {
+            balances.add(owns(balance.getCurrency())
+                    ? getCurrencyBalance(summary.getUserId(), balance.getCurrency()) : balance);
+        }
+        WalletSummaryResponse response = new WalletSummaryResponse();
+        response.setUserId(summary.getUserId());
+        response.setBalances(balances);
+        return response;
+    }
+
+    private CompletableFuture<TransactionResponse> submit(Long userId, String currency, BigDecimal amount,
+                                                          String businessType, String businessId,
+                                                          String remark, boolean withdraw) {
+        if (!running || !owns(currency)) {
+            throw new BusinessException("LEDGER_UNAVAILABLE", "内存账本未启动或不处理币种 " + currency);
+        }
+        if (amount == null || amount.signum() <= 0) {
+            throw new BusinessException("INVALID_AMOUNT", "金额必须大于0");
+        }
+        currencyScales.amount(currency, amount);
+        BusinessTypes.requireUnreserved(businessType);
+        BigDecimal signedAmount = withdraw ? amount.negate() : amount;
+        BusinessKey businessKey = new BusinessKey(businessType, businessId);
+
+        // 1. 先登记业务键，处理中的相同业务请求等待原请求结果；并发的相同请求以先登记的为准
+        LedgerOperation operation = new LedgerOperation(new WalletKey(userId, currency), signedAmount,
+                businessKey, remark, transactionNoGenerator.next(), withdraw);
+        LedgerOperation inflight = pending.putIfAbsent(businessKey, operation);
+        if (inflight != null) {
+            return duplicateOf(inflight, signedAmount, remark);
+        }
+
+        // 2. 已投影的相同业务请求；登记在查库之前，原请求不会在两者之间投影完并移出登记而漏判。
+        // 答复前没有数据库约束兜底，缓存未命中一律查库，不走布隆过滤器的跳过判断
+        WalletTransaction existing;
+        try {
+            existing = idempotencyCache.get(businessType, businessId);
+            if (existing == null) {
+                existing = transactionMapper.selectByBusiness(businessType, businessId);
+                idempotencyCache.recordLookup(businessType, businessId, existing);
+            }
+        } catch (RuntimeException e) {
+            withdrawPending(operation, e);
+            throw e;
+        }
+        if (existing != null) {
+            pending.remove(businessKey, operation);
+            operation.future.complete(
+                    walletConverter.toDuplicateResponse(existing, userId, currency, signedAmount, remark));
+            return operation.future;
+        }
+
+        // 3. 入队
+        Shard shard = shardOf(operation.walletKey);
+        if (shard.queued.incrementAndGet() > properties.getQueueCapacity()) {
+            shard.queued.decrementAndGet();
+            BusinessException busy = new BusinessException("LEDGER_BUSY", "内存账本繁忙，请稍后重试");
+            withdrawPending(operation, busy);
+            throw busy;
+        }
+        shard.inbox.offer(operation);
+        if (shard.writerIdle) {
+            LockSupport.unpark(shard.writer);
+        }
+        return operation.future;
+    }
+
+    /**
+     * 撤销未入队的登记，已在等待它的相同请求一并失败
+     */
+    private void withdrawPending(LedgerOperation operation, RuntimeException cause) {
+        pending.remove(operation.businessKey, operation);
+        operation.future.completeExceptionally(cause);
+    }
+
+    private CompletableFuture<TransactionResponse> duplicateOf(LedgerOperation original, BigDecimal amount,
+                                                               String remark) {
+        return original.future.thenApply(response -> TransactionResponse.builder()
+                .success(response.getSuccess())
+                .message("重复请求，返回之前成功结果")
+                .transactionNo(response.getTransactionNo())
+                .userId(response.getUserId())
+                .currency(response.getCurrency())
+                .amount(amount)
+                .balanceBefore(response.getBalanceBefore())
+                .balanceAfter(response.getBalanceAfter())
+                .businessType(response.getBusinessType())
+                .businessId(response.getBusinessId())
+                .remark(remark)
+                .build());
+    }
+
+    private TransactionResponse await(CompletableFuture<TransactionResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Shard shardOf(WalletKey key) {
+        return shards.get(Math.floorMod(key.hashCode(), shards.size()));
+    }
+
+    // ==================== 写线程 ====================
+
+    private void runWriter(Shard shard) {
+        List<LedgerOperation> batch = new ArrayList<>(properties.getMaxBatchSize());
+        while (true) {
+            LedgerOperation operation;
+            while (batch.size() < properties.getMaxBatchSize() && (operation = shard.inbox.poll()) != null) {
+                batch.add(operation);
+            }
+            if (batch.isEmpty()) {
+                if (!shard.accepting) {
+                    break;
+                }
+                // 先声明空闲再检查一次队列，避免与入队方的唤醒错过
+                shard.writerIdle = true;
+                if (shard.inbox.isEmpty() && shard.accepting) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                shard.writerIdle = false;
+                continue;
+            }
+            shard.queued.addAndGet(-batch.size());
+            process(shard, batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 在内存中执行一批请求并追加日志，刷盘后再更新对外可见的余额、答复调用方并交给投影线程
+     */
+    private void process(Shard shard, List<LedgerOperation> batch) {
+        List<Accepted> accepted = new ArrayList<>(batch.size());
+        for (LedgerOperation operation : batch) {
+            if (shard.failure != null) {
+                fail(operation, shard.failure.get());
+                continue;
+            }
+            Account account;
+            try {
+                account = account(shard, operation);
+            } catch (RuntimeException e) {
+                fail(operation, e);
+                continue;
+            }
+            BigDecimal balanceBefore = account.balance;
+            if (operation.withdraw) {
+                BigDecimal available = balanceBefore.subtract(account.frozenBalance);
+                if (available.compareTo(operation.amount.negate()) < 0) {
+                    fail(operation, new InsufficientBalanceException("余额不足，当前可用余额: " + available));
+                    continue;
+                }
+            }
+            BigDecimal balanceAfter = balanceBefore.add(operation.amount);
+            JournalRecord record = new JournalRecord(shard.nextSeq, System.currentTimeMillis(),
+                    account.walletId, operation.walletKey.userId(), (operation.withdraw
+                    ? TransactionType.WITHDRAW : TransactionType.RECHARGE).getCode(),
+                    operation.walletKey.currency(), operation.transactionNo, operation.businessKey.businessType(),
+                    operation.businessKey.businessId(), operation.remark, operation.amount,
+                    balanceBefore, balanceAfter);
+            try {
+                shard.journal.append(record);
+            } catch (RuntimeException e) {
+                log.error("内存账本日志写入失败，分片停止接受请求: shard={}, error={}", shard.index, e.getMessage(), e);
+                shard.failure = LedgerEngine::journalFailure;
+                fail(operation, journalFailure());
+                continue;
+            }
+            shard.nextSeq++;
+            account.balance = balanceAfter;
+            accepted.add(new Accepted(operation, account, record));
+        }
+        if (accepted.isEmpty()) {
+            return;
+        }
+
+        try {
+            shard.journal.force();
+        } catch (RuntimeException e) {
+            // 内存余额已变更而日志是否落盘未知，分片停止服务，重启后以日志为准恢复
+            log.error("内存账本日志刷盘失败，分片停止接受请求: shard={}, error={}", shard.index, e.getMessage(), e);
+            shard.failure = LedgerEngine::journalFailure;
+            accepted.forEach(item -> item.operation.future.completeExceptionally(journalFailure()));
+            return;
+        }
+        for (Accepted item : accepted) {
+            item.account.durableBalance = item.record.balanceAfter();
+            shard.outbox.offer(item.record);
+            item.operation.future.complete(toResponse(item.operation, item.record));
+        }
+    }
+
+    /**
+     * 钱包首次使用时从数据库加载，充值时钱包不存在则创建
+     */
+    private Account account(Shard shard, LedgerOperation operation) {
+        Account account = shard.accounts.get(operation.walletKey);
+        if (account != null) {
+            return account;
+        }
+        Long userId = operation.walletKey.userId();
+        String currency = operation.walletKey.currency();
+        Wallet wallet = walletMapper.selectByUserAndCurrency(userId, currency);
+        if (wallet == null) {
+            if (operation.withdraw) {
+                throw new InsufficientBalanceException("钱包不存在");
+            }
+            wallet = new Wallet();
+            wallet.setUserId(userId);
+            wallet.setCurrency(currency);
+            wallet.setBalance(BigDecimal.ZERO);
+            wallet.setFrozenBalance(BigDecimal.ZERO);
+            wallet.setVersion(0);
+            wallet.setStatus(1);
+            walletMapper.insert(wallet);
+            wallet = walletMapper.selectByUserAndCurrency(userId, currency);
+        }
+        if (wallet.getStripeCount() != null && wallet.getStripeCount() > 0) {
+            throw new BusinessException("LEDGER_UNSUPPORTED", "分片钱包不支持内存账本");
+        }
+        account = new Account(wallet);
+        shard.accounts.put(operation.walletKey, account);
+        return account;
+    }
+
+    private void fail(LedgerOperation operation, RuntimeException error) {
+        pending.remove(operation.businessKey, operation);
+        operation.future.completeExceptionally(error);
+    }
+
+    private static BusinessException journalFailure() {
+        return new BusinessException("LEDGER_JOURNAL_FAILED", "账本日志写入失败，结果未知，请使用相同业务ID重试");
+    }
+
+    private static BusinessException projectionFailure() {
+        return new BusinessException("LEDGER_PROJECTION_FAILED", "账本投影失败，该分片暂停服务，请稍后重试");
+    }
+
+    private TransactionResponse toResponse(LedgerOperation operation, JournalRecord record) {
+        return TransactionResponse.builder()
+                .success(true)
+                .message(operation.withdraw ? "提现成功" : "充值成功")
+                .transactionNo(record.transactionNo())
+                .userId(record.userId())
+                .currency(record.currency())
+                .amount(record.amount())
+                .balanceBefore(record.balanceBefore())
+                .balanceAfter(record.balanceAfter())
+                .businessType(record.businessType())
+                .businessId(record.businessId())
+                .remark(record.remark())
+                .build();
+    }
+
+    // ==================== 投影 ====================
+
+    private void runProjector(Shard shard) {
+        List<JournalRecord> batch = new ArrayList<>(properties.getProjectionBatchSize());
+        while (!shard.halted) {
+            if (projectionPaused) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            JournalRecord record;
+            while (batch.size() < properties.getProjectionBatchSize() && (record = shard.outbox.poll()) != null) {
+                batch.add(record);
+            }
+            if (batch.isEmpty()) {
+                if (!shard.writer.isAlive() && shard.outbox.isEmpty()) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            while (!shard.halted) {
+                try {
+                    project(shard.index, batch);
+                    shard.journal.deleteProjected(batch.get(batch.size() - 1).seq());
+                    break;
+                } catch (Exception e) {
+                    if (isPoison(e)) {
+                        // 同一批记录重试也不会成功：停止接受请求，已答复的记录留在日志中，重启时再次投影
+                        log.error("内存账本投影失败且无法重试，分片停止服务，需人工处理: shard={}, seq={}..{}, error={}",
+                                shard.index, batch.get(0).seq(), batch.get(batch.size() - 1).seq(),
+                                e.getMessage(), e);
+                        shard.failure = LedgerEngine::projectionFailure;
+                        return;
+                    }
+                    log.error("内存账本投影失败，稍后重试: shard={}, size={}, error={}",
+                            shard.index, batch.size(), e.getMessage(), e);
+                    LockSupport.parkNanos(properties.getProjectionRetryDelay().toNanos());
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * 约束冲突、语句错误等与数据库可用性无关的错误，原样重试不会成功；连接失败、锁超时等仍重试
+     */
+    private static boolean isPoison(Exception e) {
+        return e instanceof NonTransientDataAccessException && !(e instanceof DataAccessResourceFailureException);
+    }
+
+    /**
+     * 在一个数据库事务中写入一批记录：交易流水、余额变更历史、各钱包的余额净变化和投影进度
+     */
+    private void project(int shard, List<JournalRecord> records) {
+        List<WalletTransaction> transactions = new ArrayList<>(records.size());
+        Map<Long, JournalRecord> latestByWallet = new LinkedHashMap<>();
+        Map<Long, BigDecimal> deltaByWallet = new LinkedHashMap<>();
+        for (JournalRecord record : records) {
+            transactions.add(toTransaction(record));
+            latestByWallet.put(record.walletId(), record);
+            deltaByWallet.merge(record.walletId(), record.amount(), BigDecimal::add);
+        }
+        List<BalanceDelta> deltas = new ArrayList<>(deltaByWallet.size());
+        deltaByWallet.forEach((walletId, amount) -> deltas.add(new BalanceDelta(walletId, amount)));
+        long lastSeq = records.get(records.size() - 1).seq();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            transactionMapper.batchInsert(transactions);
+            List<BalanceChangeHistory> histories = new ArrayList<>(transactions.size());
+            for (WalletTransaction transaction : transactions) {
+                BalanceChangeHistory history = new BalanceChangeHistory();
+                history.setWalletId(transaction.getWalletId());
+                history.setTransactionId(transaction.getId());
+                history.setChangeAmount(transaction.getAmount());
+                history.setBalanceBefore(transaction.getBalanceBefore());
+                history.setBalanceAfter(transaction.getBalanceAfter());
+                history.setChangeType("BALANCE");
+                history.setStripeNo(0);
+                histories.add(history);
+            }
+            historyMapper.batchInsert(histories);
+            int rows = walletMapper.batchIncreaseBalance(deltas);
+            if (rows != deltas.size()) {
+                throw new IncorrectUpdateSemanticsDataAccessException(
+                        "投影更新钱包余额行数不符: expected=" + deltas.size() + ", actual=" + rows);
+            }
+            for (JournalRecord latest : latestByWallet.values()) {
+                walletBalanceCache.evictAfterCommit(latest.userId(), latest.currency());
+            }
+            if (projectionMapper.update(shard, lastSeq) == 0) {
+                projectionMapper.insert(shard, lastSeq);
+            }
+            transactions.forEach(idempotencyCache::putAfterCommit);
+        });
+
+        // 已落库并写入幂等缓存，相同业务请求此后按数据库判断
+        for (JournalRecord record : records) {
+            pending.remove(new BusinessKey(record.businessType(), record.businessId()));
+        }
+    }
+
+    private static WalletTransaction toTransaction(JournalRecord record) {
+        WalletTransaction transaction = new WalletTransaction();
+        transaction.setTransactionNo(record.transactionNo());
+        transaction.setWalletId(record.walletId());
+        transaction.setUserId(record.userId());
+        transaction.setCurrency(record.currency());
+        transaction.setAmount(record.amount());
+        transaction.setBalanceBefore(record.balanceBefore());
+        transaction.setBalanceAfter(record.balanceAfter());
+        transaction.setTransactionType(record.type());
+        transaction.setBusinessType(record.businessType());
+        transaction.setBusinessId(record.businessId());
+        transaction.setStatus(TransactionStatus.SUCCESS.getCode());
+        transaction.setRemark(record.remark());
+        transaction.setCreatedAt(new Date(record.createdAt()));
+        return transaction;
+    }
+
+    // ==================== 启停与恢复 ====================
+
+    /**
+     * 把分片日志中尚未投影的记录写入数据库，然后删除该分片的全部日志段
+     *
+     * @return 分片日志中最后一条有效记录的序号（不小于已投影的序号）
+     */
+    private long recover(Path dir, int shard) {
+        Long projected = projectionMapper.selectLastSeq(shard);
+        List<JournalRecord> batch = new ArrayList<>();
+        int[] replayed = {0};
+        LedgerJournal.Recovery recovery = LedgerJournal.recover(dir, shard, projected != null ? projected : 0L,
+                record -> {
+                    batch.add(record);
+                    replayed[0]++;
+                    if (batch.size() >= properties.getProjectionBatchSize()) {
+                        project(shard, batch);
+                        batch.clear();
+                    }
+                });
+        if (!batch.isEmpty()) {
+            project(shard, batch);
+        }
+        recovery.segments().forEach(LedgerJournal::deleteQuietly);
+        if (replayed[0] > 0) {
+            log.info("内存账本日志已恢复: shard={}, replayed={}, lastSeq={}", shard, replayed[0], recovery.lastSeq());
+        }
+        return recovery.lastSeq();
+    }
+
+    private void shutdown(boolean drain) {
+        if (!running) {
+            return;
+        }
+        running = false;
+        if (drain) {
+            projectionPaused = false;
+        }
+        for (Shard shard : shards) {
+            shard.accepting = false;
+            shard.halted = !drain;
+            LockSupport.unpark(shard.writer);
+        }
+        for (Shard shard : shards) {
+            join(shard.writer);
+            join(shard.projector);
+            shard.journal.close();
+            // 写线程退出后仍在队列中的请求（与停止并发入队）
+            LedgerOperation operation;
+            while ((operation = shard.inbox.poll()) != null) {
+                fail(operation, new BusinessException("LEDGER_UNAVAILABLE", "内存账本已停止"));
+            }
+        }
+        shards.clear();
+        pending.clear();
+        log.info("内存账本已停止: drained={}", drain);
+    }
+
+    private static void join(Thread thread) {
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record WalletKey(Long userId, String currency) {
+    }
+
+    private record BusinessKey(String businessType, String businessId) {
+    }
+
+    private record Accepted(LedgerOperation operation, Account account, JournalRecord record) {
+    }
+
+    private static final class LedgerOperation {
+        private final WalletKey walletKey;
+        private final BigDecimal amount;
+        private final BusinessKey businessKey;
+        private final String remark;
+        private final String transactionNo;
+        private final boolean withdraw;
+        private final CompletableFuture<TransactionResponse> future = new CompletableFuture<>();
+
+        LedgerOperation(WalletKey walletKey, BigDecimal amount, BusinessKey businessKey, String remark,
+                        String transactionNo, boolean withdraw) {
+            this.walletKey = walletKey;
+            this.amount = amount;
+            this.businessKey = businessKey;
+            this.remark = remark;
+            this.transactionNo = transactionNo;
+            this.withdraw = withdraw;
+        }
+    }
+
+    /**
+     * 内存中的钱包：balance 只由分片写线程读写，durableBalance 为已刷盘的余额，供查询读取
+     */
+    private static final class Account {
+        private final Wallet wallet;
+        private final Long walletId;
+        private final BigDecimal frozenBalance;
+        private BigDecimal balance;
+        private volatile BigDecimal durableBalance;
+
+        Account(Wallet wallet) {
+            this.wallet = wallet;
+            this.walletId = wallet.getId();
+            this.frozenBalance = wallet.getFrozenBalance();
+            this.balance = wallet.getBalance();
+            this.durableBalance = wallet.getBalance();
+        }
+
+        Wallet snapshot() {
+            Wallet copy = new Wallet();
+            copy.setId(walletId);
+            copy.setUserId(wallet.getUserId());
+            copy.setCurrency(wallet.getCurrency());
+            copy.setBalance(durableBalance);
+            copy.setFrozenBalance(frozenBalance);
+            copy.setStatus(wallet.getStatus());
+            copy.setStripeCount(wallet.getStripeCount());
+            return copy;
+        }
+    }
+
+    private final class Shard {
+        private final int index;
+        private final LedgerJournal journal;
+        private final Queue<LedgerOperation> inbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Map<WalletKey, Account> accounts = new ConcurrentHashMap<>();
+        private final Queue<JournalRecord> outbox = new ConcurrentLinkedQueue<>();
+        private final Thread writer;
+        private final Thread projector;
+        private long nextSeq;
+        /**
+         * 分片停止服务的原因，为空表示正常；日志写入失败由写线程设置，投影无法重试由投影线程设置
+         */
+        private volatile Supplier<BusinessException> failure;
+        private volatile boolean writerIdle;
+        private volatile boolean accepting = true;
+        private volatile boolean halted;
+
+        Shard(int index, LedgerJournal journal) {
+            this.index = index;
+            this.journal = journal;
+            this.writer = new Thread(() -> runWriter(this), "ledger-writer-" + index);
+            this.writer.setDaemon(true);
+            this.projector = new Thread(() -> runProjector(this), "ledger-projector-" + index);
+            this.projector.setDaemon(true);
+        }
+
+        void startThreads() {
+            writer.start();
+            projector.start();
+        }
+    }
+}
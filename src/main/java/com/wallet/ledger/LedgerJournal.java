@@ -0,0 +1,251 @@
+package com.wallet.ledger;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * 单个分片的内存映射日志，只由该分片线程写入
+ * <p>
+ * 日志由若干固定大小的段文件组成，文件名为 {分片号}-{段内第一条记录的序号}.journal。
+ * 每条记录为 [4 字节长度][4 字节 CRC32C][内容]，段文件预先映射为全零，长度为 0 表示段内已无记录；
+ * 崩溃时写了一半的记录校验不通过，恢复时从该处截断。
+ */
+@Slf4j
+public class LedgerJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private static final String SUFFIX = ".journal";
+
+    private final Path dir;
+
+    private final int shard;
+
+    private final int segmentSize;
+
+    private final CRC32C crc = new CRC32C();
+
+    /**
+     * 已写满关闭的段，投影越过其最后一条记录后由投影线程删除
+     */
+    private final Queue<Segment> closedSegments = new ConcurrentLinkedQueue<>();
+
+    private FileChannel channel;
+
+    private MappedByteBuffer buffer;
+
+    private Path currentPath;
+
+    private long currentLastSeq;
+
+    private int unforcedFrom;
+
+    LedgerJournal(Path dir, int shard, int segmentSize) {
+        this.dir = dir;
+        this.shard = shard;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * 新建一个段文件，下一条记录的序号为 firstSeq
+     */
+    void open(long firstSeq) {
+        try {
+            Files.createDirectories(dir);
+            currentPath = dir.resolve(String.format("%d-%020d%s", shard, firstSeq, SUFFIX));
+            channel = FileChannel.open(currentPath, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            currentLastSeq = firstSeq - 1;
+            unforcedFrom = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建日志段失败: " + currentPath, e);
+        }
+    }
+
+    /**
+     * 追加一条记录（写入映射内存），调用 {@link #force()} 后才保证落盘
+     */
+    void append(JournalRecord record) {
+        byte[] payload = record.encode();
+        int required = HEADER_BYTES + payload.length;
+        // 段尾至少留出 4 字节的零作为结束标记
+        if (required + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("日志记录超过段大小: " + required);
+        }
+        if (buffer.remaining() < required + Integer.BYTES) {
+            roll(record.seq());
+        }
+        crc.reset();
+        crc.update(payload);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        currentLastSeq = record.seq();
+    }
+
+    /**
+     * 把上次刷盘之后追加的记录刷到磁盘
+     */
+    void force() {
+        int position = buffer.position();
+        if (position > unforcedFrom) {
+            buffer.force(unforcedFrom, position - unforcedFrom);
+            unforcedFrom = position;
+        }
+    }
+
+    /**
+     * 删除最后一条记录不晚于 projectedSeq 的已关闭段（投影线程调用）
+     */
+    void deleteProjected(long projectedSeq) {
+        Segment segment;
+        while ((segment = closedSegments.peek()) != null && segment.lastSeq() <= projectedSeq) {
+            closedSegments.poll();
+            deleteQuietly(segment.path());
+        }
+    }
+
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            force();
+            channel.close();
+        } catch (IOException e) {
+            log.warn("关闭日志段失败: path={}, error={}", currentPath, e.getMessage());
+        }
+        channel = null;
+    }
+
+    private void roll(long nextSeq) {
+        force();
+        closedSegments.add(new Segment(currentPath, currentLastSeq));
+        close();
+        open(nextSeq);
+    }
+
+    /**
+     * 按序重放分片日志中序号大于 afterSeq 的记录，遇到不完整或校验失败的记录时停止
+     *
+     * @return 最后一条有效记录的序号与现有段文件；没有有效记录时序号为 afterSeq
+     */
+    static Recovery recover(Path dir, int shard, long afterSeq, Consumer<JournalRecord> consumer) {
+        List<Path> segments = segments(dir, shard);
+        long lastSeq = afterSeq;
+        CRC32C crc = new CRC32C();
+        for (int i = 0; i < segments.size(); i++) {
+            Path path = segments.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                while (buffer.remaining() >= HEADER_BYTES) {
+                    int length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining() - Integer.BYTES) {
+                        break;
+                    }
+                    int checksum = buffer.getInt();
+                    ByteBuffer payload = buffer.slice(buffer.position(), length);
+                    crc.reset();
+                    crc.update(payload.duplicate());
+                    if ((int) crc.getValue() != checksum) {
+                        if (i < segments.size() - 1) {
+                            log.error("日志段中间记录校验失败，之后的记录无法恢复: path={}, offset={}",
+                                    path, buffer.position() - HEADER_BYTES);
+                        } else {
+                            log.warn("日志尾部记录不完整，已截断: path={}, offset={}",
+                                    path, buffer.position() - HEADER_BYTES);
+                        }
+                        return new Recovery(lastSeq, segments);
+                    }
+                    buffer.position(buffer.position() + length);
+                    JournalRecord record = JournalRecord.decode(payload);
+                    if (record.seq() > afterSeq) {
+                        consumer.accept(record);
+                    }
+                    lastSeq = Math.max(lastSeq, record.seq());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取日志段失败: " + path, e);
+            }
+        }
+        return new Recovery(lastSeq, segments);
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除日志段失败: path={}, error={}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 目录中存在日志段的分片号
+     */
+    static Set<Integer> shardsIn(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return Set.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            Set<Integer> shards = new TreeSet<>();
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SUFFIX) && name.indexOf('-') > 0)
+                    .forEach(name -> {
+                        try {
+                            shards.add(Integer.parseInt(name.substring(0, name.indexOf('-'))));
+                        } catch (NumberFormatException e) {
+                            log.warn("忽略无法识别的日志文件: {}", name);
+                        }
+                    });
+            return shards;
+        } catch (IOException e) {
+            throw new UncheckedIOException("列出日志段失败: " + dir, e);
+        }
+    }
+
+    private static List<Path> segments(Path dir, int shard) {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        String prefix = shard + "-";
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> segments = new ArrayList<>(files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(SUFFIX);
+                    })
+                    .toList());
+            // 序号补零到 20 位，文件名顺序即序号顺序
+            segments.sort(null);
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException("列出日志段失败: " + dir, e);
+        }
+    }
+
+    private record Segment(Path path, long lastSeq) {
+    }
+
+    /**
+     * 重放结果：最后一条有效记录的序号与重放时存在的段文件
+     */
+    record Recovery(long lastSeq, List<Path> segments) {
+    }
+}
@@ -1,23 +1,31 @@
 package com.wallet.mapper;
 
+import com.wallet.entity.BalanceAggregate;
 import com.wallet.entity.BalanceChangeHistory;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 @Mapper
 public interface BalanceChangeHistoryMapper {
 
-    @Insert("INSERT INTO balance_change_history(wallet_id, transaction_id, change_amount, " +
-            "balance_before, balance_after, change_type) " +
-            "VALUES(#{walletId}, #{transactionId}, #{changeAmount}, " +
-            "#{balanceBefore}, #{balanceAfter}, #{changeType})")
+    @Insert("INSERT INTO balance_change_history(wallet_id, transaction_id, hold_id, change_amount, " +
+            "balance_before, balance_after, change_type, stripe_no) " +
+            "VALUES(#{walletId}, #{transactionId}, #{holdId}, #{changeAmount}, " +
+            "#{balanceBefore}, #{balanceAfter}, #{changeType}, #{stripeNo})")
     int insert(BalanceChangeHistory history);
 
+    int batchInsert(List<BalanceChangeHistory> histories);
+
     @Select("SELECT * FROM balance_change_history WHERE wallet_id = #{walletId} " +
             "AND created_at BETWEEN #{startTime} AND #{endTime} " +
             "ORDER BY created_at")
@@ -25,8 +33,58 @@ public interface BalanceChangeHistoryMapper {
                                                      @Param("startTime") Date startTime,
                                                      @Param("endTime") Date endTime);
 
+    // 流式扫描期间变更记录，逐行交给 handler 处理，不在内存中保留结果集
     @Select("SELECT * FROM balance_change_history WHERE wallet_id = #{walletId} " +
-            "AND created_at < #{beforeTime} ORDER BY created_at DESC LIMIT 1")
+            "AND created_at BETWEEN #{startTime} AND #{endTime} " +
+            "ORDER BY created_at, id")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000)
+    @ResultType(BalanceChangeHistory.class)
+    void scanByWalletAndTime(@Param("walletId") Long walletId,
+                             @Param("startTime") Date startTime,
+                             @Param("endTime") Date endTime,
+                             ResultHandler<BalanceChangeHistory> handler);
+
+    // 冻结余额变更（FROZEN）记录的是冻结余额，不参与余额计算；变更历史已归档时取归档表中的最后一笔
     BalanceChangeHistory selectLastChangeBefore(@Param("walletId") Long walletId,
                                                 @Param("beforeTime") Date beforeTime);
-}
\ No newline at end of file
+
+    // 分片钱包某个分片（0 为主行）在指定时间之前的最后一笔变更，同样包含归档表
+    BalanceChangeHistory selectLastStripeChangeBefore(@Param("walletId") Long walletId,
+                                                      @Param("stripeNo") int stripeNo,
+                                                      @Param("beforeTime") Date beforeTime);
+
+    // 钱包在 [fromTime, toTime) 或 [fromTime, toTime] 内的流入、流出与变更次数，fromTime 为空表示从头开始
+    // 分片归集（STRIPE_SWEEP）只是钱包内部搬移、冻结余额变更（FROZEN）不改变余额，都不计入流入、流出和变更次数
+    BalanceAggregate aggregateByWallet(@Param("walletId") Long walletId,
+                                       @Param("fromTime") Date fromTime,
+                                       @Param("toTime") Date toTime,
+                                       @Param("toInclusive") boolean toInclusive);
+
+    // 钱包ID区间内各钱包在 [startTime, endTime] 内的流入、流出与变更次数，按钱包分组
+    List<BalanceAggregate> aggregateByWalletRange(@Param("fromWalletId") Long fromWalletId,
+                                                  @Param("toWalletId") Long toWalletId,
+                                                  @Param("startTime") Date startTime,
+                                                  @Param("endTime") Date endTime);
+
+    // 钱包ID区间内各钱包（分片钱包为各分片）在指定时间之前的最后一笔余额变更，按钱包累加即期初余额
+    List<BalanceChangeHistory> selectLastChangesBefore(@Param("fromWalletId") Long fromWalletId,
+                                                       @Param("toWalletId") Long toWalletId,
+                                                       @Param("beforeTime") Date beforeTime);
+
+    // 指定钱包（分片钱包为各分片）在归档表中指定时间之前的最后一笔余额变更，补全变更历史已全部归档的钱包的期初余额
+    List<BalanceChangeHistory> selectArchivedLastChangesBefore(@Param("walletIds") Collection<Long> walletIds,
+                                                               @Param("beforeTime") Date beforeTime);
+
+    // 不早于指定时间的第一笔变更时间，sinceTime 为空表示钱包最早的变更
+    Date selectFirstChangeTime(@Param("walletId") Long walletId, @Param("sinceTime") Date sinceTime);
+
+    // 为 (afterId, toId] 内尚无变更历史的成功交易补写历史，按交易ID判重（FROZEN 变更没有交易ID，不参与判重），
+    // 重复执行不会重复写入
+    int insertFromTransactions(@Param("afterId") Long afterId, @Param("toId") Long toId);
+
+    // 为不晚于 toId 且创建时间不早于 since 的成功交易补写缺失的历史（高水位之下的回扫），判重同上
+    int insertFromTransactionsSince(@Param("since") Date since, @Param("toId") Long toId);
+
+    // 尚无变更历史的成功交易数：某ID之后的，以及创建时间不早于 since 的
+    long countTransactionsWithoutHistory(@Param("afterId") Long afterId, @Param("since") Date since);
+}
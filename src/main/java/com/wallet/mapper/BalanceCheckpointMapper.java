@@ -0,0 +1,31 @@
+package com.wallet.mapper;
+
+import com.wallet.entity.BalanceCheckpoint;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Date;
+
+@Mapper
+public interface BalanceCheckpointMapper {
+
+    @Insert("INSERT INTO balance_checkpoint(wallet_id, checkpoint_time, balance, total_inflow, " +
+            "total_outflow, change_count) " +
+            "VALUES(#{walletId}, #{checkpointTime}, #{balance}, #{totalInflow}, " +
+            "#{totalOutflow}, #{changeCount})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insert(BalanceCheckpoint checkpoint);
+
+    // 钱包最新的检查点
+    @Select("SELECT * FROM balance_checkpoint WHERE wallet_id = #{walletId} " +
+            "ORDER BY checkpoint_time DESC LIMIT 1")
+    BalanceCheckpoint selectLatest(@Param("walletId") Long walletId);
+
+    // 不晚于指定时间的最近检查点
+    @Select("SELECT * FROM balance_checkpoint WHERE wallet_id = #{walletId} " +
+            "AND checkpoint_time <= #{time} ORDER BY checkpoint_time DESC LIMIT 1")
+    BalanceCheckpoint selectLatestAtOrBefore(@Param("walletId") Long walletId, @Param("time") Date time);
+}
@@ -0,0 +1,26 @@
+package com.wallet.mapper;
+
+import com.wallet.entity.HistoryProjection;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface HistoryProjectionMapper {
+
+    @Select("SELECT * FROM history_projection WHERE name = #{name}")
+    HistoryProjection selectByName(@Param("name") String name);
+
+    // 锁定进度行，多个节点的补写批次因此串行
+    @Select("SELECT * FROM history_projection WHERE name = #{name} FOR UPDATE")
+    HistoryProjection selectByNameForUpdate(@Param("name") String name);
+
+    @Insert("INSERT INTO history_projection(name, last_transaction_id) VALUES(#{name}, 0)")
+    int insert(@Param("name") String name);
+
+    @Update("UPDATE history_projection SET last_transaction_id = #{lastTransactionId}, " +
+            "caught_up_to = #{caughtUpTo}, updated_at = CURRENT_TIMESTAMP WHERE name = #{name}")
+    int update(HistoryProjection projection);
+}
@@ -0,0 +1,21 @@
+package com.wallet.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface LedgerProjectionMapper {
+
+    // 分片已投影的最大日志序号，尚未投影过返回null
+    @Select("SELECT last_seq FROM ledger_projection WHERE shard = #{shard}")
+    Long selectLastSeq(@Param("shard") int shard);
+
+    @Update("UPDATE ledger_projection SET last_seq = #{lastSeq}, updated_at = CURRENT_TIMESTAMP WHERE shard = #{shard}")
+    int update(@Param("shard") int shard, @Param("lastSeq") long lastSeq);
+
+    @Insert("INSERT INTO ledger_projection(shard, last_seq) VALUES(#{shard}, #{lastSeq})")
+    int insert(@Param("shard") int shard, @Param("lastSeq") long lastSeq);
+}
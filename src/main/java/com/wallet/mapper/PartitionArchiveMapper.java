@@ -0,0 +1,57 @@
+package com.wallet.mapper;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 分区维护与归档，表名与分区名由 PartitionMaintenanceService 生成，不来自外部输入；
+ * 归档表为 {表名}_archive，列顺序与原表一致
+ */
+@Mapper
+public interface PartitionArchiveMapper {
+
+    // 表的分区名，按分区顺序；未分区的表返回空（MySQL）
+    @Select("SELECT PARTITION_NAME FROM information_schema.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() " +
+            "AND TABLE_NAME = #{table} AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION")
+    List<String> selectPartitionNames(@Param("table") String table);
+
+    // 把最后的 p_max 分区拆成若干月分区和新的 p_max（MySQL）
+    @Update("ALTER TABLE ${table} REORGANIZE PARTITION p_max INTO " +
+            "(${partitions}, PARTITION p_max VALUES LESS THAN (MAXVALUE))")
+    void splitMaxPartition(@Param("table") String table, @Param("partitions") String partitions);
+
+    // 分区内某ID之后的一批ID（MySQL）
+    @Select("SELECT id FROM ${table} PARTITION (${partition}) WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Long> selectPartitionIdsAfter(@Param("table") String table, @Param("partition") String partition,
+                                       @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    // 把分区内 [fromId, toId] 的行复制到归档表，已复制过的行跳过，中断后可重跑（MySQL）
+    @Insert("INSERT IGNORE INTO ${table}_archive SELECT * FROM ${table} PARTITION (${partition}) " +
+            "WHERE id BETWEEN #{fromId} AND #{toId}")
+    int copyPartitionRange(@Param("table") String table, @Param("partition") String partition,
+                           @Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Update("ALTER TABLE ${table} DROP PARTITION ${partition}")
+    void dropPartition(@Param("table") String table, @Param("partition") String partition);
+
+    // 创建时间早于 before 的一批ID（未分区的表）
+    @Select("SELECT id FROM ${table} WHERE created_at < #{before} ORDER BY id LIMIT #{limit}")
+    List<Long> selectIdsBefore(@Param("table") String table, @Param("before") Date before,
+                               @Param("limit") int limit);
+
+    @Insert("INSERT INTO ${table}_archive SELECT * FROM ${table} " +
+            "WHERE id BETWEEN #{fromId} AND #{toId} AND created_at < #{before}")
+    int copyRangeBefore(@Param("table") String table, @Param("before") Date before,
+                        @Param("fromId") Long fromId, @Param("toId") Long toId);
+
+    @Delete("DELETE FROM ${table} WHERE id BETWEEN #{fromId} AND #{toId} AND created_at < #{before}")
+    int deleteRangeBefore(@Param("table") String table, @Param("before") Date before,
+                          @Param("fromId") Long fromId, @Param("toId") Long toId);
+}
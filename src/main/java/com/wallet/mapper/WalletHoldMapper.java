@@ -0,0 +1,46 @@
+package com.wallet.mapper;
+
+import com.wallet.entity.WalletHold;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+@Mapper
+public interface WalletHoldMapper {
+
+    @Insert("INSERT INTO wallet_hold(hold_no, wallet_id, user_id, currency, amount, status, " +
+            "business_type, business_id, expires_at, remark) " +
+            "VALUES(#{holdNo}, #{walletId}, #{userId}, #{currency}, #{amount}, #{status}, " +
+            "#{businessType}, #{businessId}, #{expiresAt}, #{remark})")
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    int insert(WalletHold hold);
+
+    @Select("SELECT * FROM wallet_hold WHERE business_type = #{businessType} AND business_id = #{businessId}")
+    WalletHold selectByBusiness(@Param("businessType") String businessType, @Param("businessId") String businessId);
+
+    // 锁定冻结单，扣款、解冻、过期都先锁冻结单再锁钱包
+    @Select("SELECT * FROM wallet_hold WHERE business_type = #{businessType} AND business_id = #{businessId} " +
+            "FOR UPDATE")
+    WalletHold selectByBusinessForUpdate(@Param("businessType") String businessType,
+                                         @Param("businessId") String businessId);
+
+    @Select("SELECT * FROM wallet_hold WHERE id = #{id} FOR UPDATE")
+    WalletHold selectByIdForUpdate(@Param("id") Long id);
+
+    // 冻结单状态流转，只从冻结中变为终态
+    @Update("UPDATE wallet_hold SET status = #{status}, captured_amount = #{capturedAmount}, " +
+            "transaction_no = #{transactionNo}, updated_at = NOW() WHERE id = #{id} AND status = 0")
+    int finish(@Param("id") Long id, @Param("status") Integer status,
+               @Param("capturedAmount") BigDecimal capturedAmount, @Param("transactionNo") String transactionNo);
+
+    // 已过期仍冻结中的冻结单，走 (status, expires_at) 索引按过期时间顺序读取
+    @Select("SELECT id FROM wallet_hold WHERE status = 0 AND expires_at <= #{now} ORDER BY expires_at LIMIT #{limit}")
+    List<Long> selectExpiredIds(@Param("now") Date now, @Param("limit") int limit);
+}
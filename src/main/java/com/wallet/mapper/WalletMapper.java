@@ -1,9 +1,11 @@
 package com.wallet.mapper;
 
+import com.wallet.entity.BalanceDelta;
 import com.wallet.entity.Wallet;
 import org.apache.ibatis.annotations.*;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -13,26 +15,91 @@ public interface WalletMapper {
     @Select("SELECT * FROM wallet WHERE user_id = #{userId} AND currency = #{currency}")
     Wallet selectByUserAndCurrency(@Param("userId") Long userId, @Param("currency") String currency);
 
+    // 根据用户和币种查询钱包并加行锁（批量处理时使用）
+    @Select("SELECT * FROM wallet WHERE user_id = #{userId} AND currency = #{currency} FOR UPDATE")
+    Wallet selectByUserAndCurrencyForUpdate(@Param("userId") Long userId, @Param("currency") String currency);
+
+    // 按用户和币种批量查询钱包（不加锁，批量转账时用于确定加锁顺序）
+    List<Wallet> selectByUserIdsAndCurrencies(@Param("userIds") Collection<Long> userIds,
+                                              @Param("currencies") Collection<String> currencies);
+
+    // 按ID升序批量加行锁，所有批量加锁都按同一顺序进行以避免死锁
+    List<Wallet> selectByIdsForUpdate(@Param("ids") List<Long> ids);
+
     // 根据用户ID查询所有钱包
     @Select("SELECT * FROM wallet WHERE user_id = #{userId} ORDER BY currency")
     List<Wallet> selectByUserId(@Param("userId") Long userId);
 
+    // 按ID分页扫描钱包ID（后台任务使用）
+    @Select("SELECT id FROM wallet WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<Long> selectIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    // 钱包ID范围（全平台对账分区使用）
+    @Select("SELECT MIN(id) FROM wallet")
+    Long selectMinId();
+
+    @Select("SELECT MAX(id) FROM wallet")
+    Long selectMaxId();
+
+    // 按ID区间查询钱包（含两端）
+    @Select("SELECT * FROM wallet WHERE id BETWEEN #{fromId} AND #{toId} ORDER BY id")
+    List<Wallet> selectByIdRange(@Param("fromId") Long fromId, @Param("toId") Long toId);
+
     // 插入新钱包
     @Insert("INSERT INTO wallet(user_id, currency, balance, frozen_balance, version, status) " +
             "VALUES(#{userId}, #{currency}, #{balance}, #{frozenBalance}, #{version}, #{status})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Wallet wallet);
 
+    // 批量插入新钱包
+    int batchInsert(List<Wallet> wallets);
+
     // 增加余额（无锁）
     @Update("UPDATE wallet SET balance = balance + #{amount}, version = version + 1, " +
             "updated_at = NOW() WHERE user_id = #{userId} AND currency = #{currency}")
     int updateBalance(@Param("userId") Long userId, @Param("currency") String currency,
                       @Param("amount") BigDecimal amount);
 
-    // 减少余额（乐观锁防双花）
+    // 多行余额更新：一条语句按钱包ID分别加上各自的净变化量
+    int batchIncreaseBalance(@Param("deltas") List<BalanceDelta> deltas);
+
+    // 设置分片数（调用方已锁定钱包行）
+    @Update("UPDATE wallet SET stripe_count = #{stripeCount}, updated_at = NOW() WHERE id = #{id}")
+    int updateStripeCount(@Param("id") Long id, @Param("stripeCount") int stripeCount);
+
+    // 减少余额（乐观锁防双花），冻结金额不可扣
     @Update("UPDATE wallet SET balance = balance - #{amount}, version = version + 1, " +
             "updated_at = NOW() WHERE user_id = #{userId} AND currency = #{currency} " +
-            "AND balance >= #{amount} AND version = #{version}")
+            "AND balance - frozen_balance >= #{amount} AND version = #{version}")
     int decreaseBalance(@Param("userId") Long userId, @Param("currency") String currency,
                         @Param("amount") BigDecimal amount, @Param("version") Integer version);
+
+    // 条件扣减余额（仅校验可用余额充足，不校验版本号）
+    @Update("UPDATE wallet SET balance = balance - #{amount}, version = version + 1, " +
+            "updated_at = NOW() WHERE user_id = #{userId} AND currency = #{currency} " +
+            "AND balance - frozen_balance >= #{amount}")
+    int decreaseBalanceIfSufficient(@Param("userId") Long userId, @Param("currency") String currency,
+                                    @Param("amount") BigDecimal amount);
+
+    // 冻结：可用余额充足时把金额计入冻结余额
+    @Update("UPDATE wallet SET frozen_balance = frozen_balance + #{amount}, version = version + 1, " +
+            "updated_at = NOW() WHERE user_id = #{userId} AND currency = #{currency} " +
+            "AND balance - frozen_balance >= #{amount}")
+    int freeze(@Param("userId") Long userId, @Param("currency") String currency,
+               @Param("amount") BigDecimal amount);
+
+    // 冻结扣款：释放整笔冻结金额，同时扣减实际扣款金额（不超过冻结金额）
+    @Update("UPDATE wallet SET balance = balance - #{captureAmount}, " +
+            "frozen_balance = frozen_balance - #{heldAmount}, version = version + 1, " +
+            "updated_at = NOW() WHERE id = #{id} AND frozen_balance >= #{heldAmount}")
+    int captureFrozen(@Param("id") Long id, @Param("heldAmount") BigDecimal heldAmount,
+                      @Param("captureAmount") BigDecimal captureAmount);
+
+    // 解冻：释放冻结金额
+    @Update("UPDATE wallet SET frozen_balance = frozen_balance - #{amount}, version = version + 1, " +
+            "updated_at = NOW() WHERE id = #{id} AND frozen_balance >= #{amount}")
+    int unfreeze(@Param("id") Long id, @Param("amount") BigDecimal amount);
+
+    @Select("SELECT * FROM wallet WHERE id = #{id}")
+    Wallet selectById(@Param("id") Long id);
 }
\ No newline at end of file
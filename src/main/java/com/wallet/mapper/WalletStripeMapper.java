@@ -0,0 +1,54 @@
+package com.wallet.mapper;
+
+import com.wallet.entity.WalletStripe;
+import org.apache.ibatis.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Mapper
+public interface WalletStripeMapper {
+
+    // 查询钱包的全部分片（不加锁，扣款时用于挑选余额充足的分片）
+    @Select("SELECT * FROM wallet_stripe WHERE wallet_id = #{walletId} ORDER BY stripe_no")
+    List<WalletStripe> selectByWalletId(@Param("walletId") Long walletId);
+
+    // 按分片号升序加锁钱包的全部分片（归集时使用，调用方需先锁定钱包主行）
+    @Select("SELECT * FROM wallet_stripe WHERE wallet_id = #{walletId} ORDER BY stripe_no FOR UPDATE")
+    List<WalletStripe> selectByWalletIdForUpdate(@Param("walletId") Long walletId);
+
+    @Select("SELECT * FROM wallet_stripe WHERE wallet_id = #{walletId} AND stripe_no = #{stripeNo}")
+    WalletStripe selectByWalletAndStripe(@Param("walletId") Long walletId, @Param("stripeNo") int stripeNo);
+
+    // 分片余额合计，未分片的钱包返回0
+    @Select("SELECT COALESCE(SUM(balance), 0) FROM wallet_stripe WHERE wallet_id = #{walletId}")
+    BigDecimal sumBalance(@Param("walletId") Long walletId);
+
+    @Select("SELECT COUNT(*) FROM wallet_stripe WHERE wallet_id = #{walletId}")
+    int countByWallet(@Param("walletId") Long walletId);
+
+    // 钱包ID区间内各分片钱包的分片余额合计，结果只填充 walletId 和 balance
+    List<WalletStripe> sumBalanceByWalletRange(@Param("fromWalletId") Long fromWalletId,
+                                               @Param("toWalletId") Long toWalletId);
+
+    // 批量插入分片
+    int batchInsert(List<WalletStripe> stripes);
+
+    // 增加分片余额
+    @Update("UPDATE wallet_stripe SET balance = balance + #{amount}, version = version + 1, " +
+            "updated_at = NOW() WHERE wallet_id = #{walletId} AND stripe_no = #{stripeNo}")
+    int increaseBalance(@Param("walletId") Long walletId, @Param("stripeNo") int stripeNo,
+                        @Param("amount") BigDecimal amount);
+
+    // 条件扣减分片余额（仅校验分片余额充足）
+    @Update("UPDATE wallet_stripe SET balance = balance - #{amount}, version = version + 1, " +
+            "updated_at = NOW() WHERE wallet_id = #{walletId} AND stripe_no = #{stripeNo} " +
+            "AND balance >= #{amount}")
+    int decreaseBalanceIfSufficient(@Param("walletId") Long walletId, @Param("stripeNo") int stripeNo,
+                                    @Param("amount") BigDecimal amount);
+
+    // 清空钱包全部分片余额（归集到主行，调用方已锁定全部分片）
+    @Update("UPDATE wallet_stripe SET balance = 0, version = version + 1, updated_at = NOW() " +
+            "WHERE wallet_id = #{walletId} AND balance <> 0")
+    int clearBalances(@Param("walletId") Long walletId);
+}
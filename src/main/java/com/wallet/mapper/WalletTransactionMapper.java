@@ -1,9 +1,10 @@
 package com.wallet.mapper;
 
+import com.wallet.entity.IdempotencyKey;
 import com.wallet.entity.WalletTransaction;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.session.ResultHandler;
 
-import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
 
@@ -18,21 +19,58 @@ public interface WalletTransactionMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(WalletTransaction transaction);
 
+    // 批量插入交易记录
+    int batchInsert(List<WalletTransaction> transactions);
+
+    // 占用幂等键：插入处理中的幂等键，交易记录写入时由触发器补上交易ID和最终状态。
+    // 已被占用时抛出 DuplicateKeyException；其他事务尚未提交的占用会先等待其提交或回滚
+    @Insert("INSERT INTO idempotency_key(key_hash, status) VALUES(#{hash}, 0)")
+    int insertIdempotencyKey(IdempotencyKey key);
+
+    // 根据幂等键查询交易记录，经幂等键表定位，已归档的交易从归档表读取
+    WalletTransaction selectByIdempotencyKey(IdempotencyKey key);
+
+    // 根据多个幂等键批量查询交易记录
+    List<WalletTransaction> selectByIdempotencyKeys(@Param("keys") List<IdempotencyKey> keys);
+
     // 根据业务标识查询交易记录（幂等检查）
-    @Select("SELECT * FROM wallet_transaction WHERE business_type = #{businessType} " +
-            "AND business_id = #{businessId}")
-    WalletTransaction selectByBusiness(@Param("businessType") String businessType,
-                                       @Param("businessId") String businessId);
+    default WalletTransaction selectByBusiness(String businessType, String businessId) {
+        return selectByIdempotencyKey(IdempotencyKey.of(businessType, businessId));
+    }
 
-    // 根据ID更新交易状态
-    @Update("UPDATE wallet_transaction SET status = #{status}, balance_after = #{balanceAfter}, " +
-            "updated_at = NOW() WHERE id = #{id}")
-    int updateStatus(@Param("id") Long id, @Param("status") Integer status,
-                     @Param("balanceAfter") BigDecimal balanceAfter);
+    // 根据多个业务标识批量查询交易记录（批量幂等检查）
+    default List<WalletTransaction> selectByBusinessKeys(List<WalletTransaction> transactions) {
+        return selectByIdempotencyKeys(IdempotencyKey.of(transactions));
+    }
 
     // 查询用户交易记录
     List<WalletTransaction> selectByUserAndTime(@Param("userId") Long userId,
                                                 @Param("currency") String currency,
                                                 @Param("startTime") Date startTime,
                                                 @Param("endTime") Date endTime);
-}
\ No newline at end of file
+
+    // 按 (created_at, id) 游标倒序分页查询用户交易记录，cursorCreatedAt 为空表示第一页
+    List<WalletTransaction> selectPageByUser(@Param("userId") Long userId,
+                                             @Param("currency") String currency,
+                                             @Param("startTime") Date startTime,
+                                             @Param("endTime") Date endTime,
+                                             @Param("cursorCreatedAt") Date cursorCreatedAt,
+                                             @Param("cursorId") Long cursorId,
+                                             @Param("limit") int limit);
+
+    // 流式扫描用户交易记录（导出），排序与分页查询一致
+    void scanByUserAndTime(@Param("userId") Long userId,
+                           @Param("currency") String currency,
+                           @Param("startTime") Date startTime,
+                           @Param("endTime") Date endTime,
+                           ResultHandler<WalletTransaction> handler);
+
+    // 流式扫描某时间之后的业务标识（预热幂等布隆过滤器）
+    @Select("SELECT business_type, business_id FROM wallet_transaction WHERE created_at >= #{since}")
+    @ResultType(WalletTransaction.class)
+    void scanBusinessKeysSince(@Param("since") Date since, ResultHandler<WalletTransaction> handler);
+
+    // 按ID顺序取某ID之后的一批交易记录的ID与创建时间（异步补写余额变更历史）
+    @Select("SELECT id, created_at FROM wallet_transaction WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<WalletTransaction> selectIdsAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+}
@@ -0,0 +1,77 @@
+package com.wallet.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapper 语句耗时：wallet.mapper，标签 statement（Mapper简单类名.方法名）、outcome
+ * <p>
+ * 流式查询的耗时包含 ResultHandler 处理全部结果行的时间。
+ */
+@Component
+@ConditionalOnProperty(prefix = "wallet.metrics", name = "enabled", matchIfMissing = true)
+@Intercepts({
+        @Signature(type = Executor.class, method = "update",
+                args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public class MapperMetricsInterceptor implements Interceptor {
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    public MapperMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        String statementId = ((MappedStatement) invocation.getArgs()[0]).getId();
+        Timer[] statementTimers = timers.get(statementId);
+        if (statementTimers == null) {
+            statementTimers = timers.computeIfAbsent(statementId, this::register);
+        }
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            statementTimers[0].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            statementTimers[1].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    /**
+     * 每条语句注册 success、error 两个 Timer
+     */
+    private Timer[] register(String statementId) {
+        int methodDot = statementId.lastIndexOf('.');
+        String statement = statementId.substring(statementId.lastIndexOf('.', methodDot - 1) + 1);
+        return new Timer[]{timer(statement, "success"), timer(statement, "error")};
+    }
+
+    private Timer timer(String statement, String outcome) {
+        return Timer.builder("wallet.mapper")
+                .description("Mapper 语句耗时")
+                .tag("statement", statement)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,188 @@
+package com.wallet.metrics;
+
+import com.wallet.config.WalletMetricsProperties;
+import com.wallet.exception.ConcurrentUpdateException;
+import com.wallet.exception.InsufficientBalanceException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 资金操作指标
+ * <ul>
+ *     <li>wallet.operation：整笔操作耗时（不含事务提交），标签 operation、outcome</li>
+ *     <li>wallet.operation.stage：各阶段耗时，标签 operation、stage</li>
+ *     <li>wallet.operation.commit：事务提交耗时，标签 operation</li>
+ *     <li>wallet.operation.errors：余额不足、并发冲突等失败次数，标签 operation、reason</li>
+ * </ul>
+ * 所有 Meter 在启动时按枚举组合注册好，热路径上只做数组下标访问。
+ * 阶段计时以上一个阶段的结束时间为起点：{@code t = metrics.stage(op, stage, t)}。
+ * 关闭 wallet.metrics.enabled 时 {@link #start()} 返回 0，其余方法直接返回，不读取时钟。
+ */
+@Component
+public class WalletMetrics {
+
+    public enum Operation {
+        RECHARGE,
+        WITHDRAW,
+        WITHDRAW_ATOMIC,
+        TRANSFER
+    }
+
+    public enum Stage {
+        IDEMPOTENCY_CHECK,
+        WALLET_LOOKUP,
+        BALANCE_UPDATE,
+        TRANSACTION_INSERT,
+        HISTORY_INSERT
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        DUPLICATE,
+        INSUFFICIENT_BALANCE,
+        CONCURRENT_UPDATE,
+        ERROR
+    }
+
+    private final boolean enabled;
+
+    private final Timer[][] operationTimers;
+
+    private final Timer[][] stageTimers;
+
+    private final Timer[] commitTimers;
+
+    private final Counter[][] errorCounters;
+
+    public WalletMetrics(MeterRegistry registry, WalletMetricsProperties properties) {
+        this.enabled = properties.isEnabled();
+        int operations = Operation.values().length;
+        this.operationTimers = new Timer[operations][Outcome.values().length];
+        this.stageTimers = new Timer[operations][Stage.values().length];
+        this.commitTimers = new Timer[operations];
+        this.errorCounters = new Counter[operations][Outcome.values().length];
+        if (!enabled) {
+            return;
+        }
+        for (Operation operation : Operation.values()) {
+            String operationTag = tag(operation);
+            for (Outcome outcome : Outcome.values()) {
+                operationTimers[operation.ordinal()][outcome.ordinal()] = Timer.builder("wallet.operation")
+                        .description("资金操作耗时（不含事务提交）")
+                        .tag("operation", operationTag)
+                        .tag("outcome", tag(outcome))
+                        .register(registry);
+                if (outcome != Outcome.SUCCESS && outcome != Outcome.DUPLICATE) {
+                    errorCounters[operation.ordinal()][outcome.ordinal()] = Counter.builder("wallet.operation.errors")
+                            .description("资金操作失败次数")
+                            .tag("operation", operationTag)
+                            .tag("reason", tag(outcome))
+                            .register(registry);
+                }
+            }
+            for (Stage stage : Stage.values()) {
+                stageTimers[operation.ordinal()][stage.ordinal()] = Timer.builder("wallet.operation.stage")
+                        .description("资金操作各阶段耗时")
+                        .tag("operation", operationTag)
+                        .tag("stage", tag(stage))
+                        .register(registry);
+            }
+            commitTimers[operation.ordinal()] = Timer.builder("wallet.operation.commit")
+                    .description("资金操作事务提交耗时")
+                    .tag("operation", operationTag)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * 操作开始时间，关闭指标时为 0
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * 记录从 stageStart 到现在的阶段耗时，返回当前时间作为下一阶段的起点
+     */
+    public long stage(Operation operation, Stage stage, long stageStart) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        stageTimers[operation.ordinal()][stage.ordinal()].record(now - stageStart, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * 操作正常结束（成功或重复请求），成功时在当前事务上登记提交耗时的统计
+     */
+    public void completed(Operation operation, long start, Outcome outcome) {
+        if (!enabled) {
+            return;
+        }
+        operationTimers[operation.ordinal()][outcome.ordinal()]
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (outcome == Outcome.SUCCESS && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new CommitTimer(commitTimers[operation.ordinal()]));
+        }
+    }
+
+    /**
+     * 操作以异常结束
+     */
+    public void failed(Operation operation, long start, Throwable error) {
+        if (!enabled) {
+            return;
+        }
+        Outcome outcome = classify(error);
+        operationTimers[operation.ordinal()][outcome.ordinal()]
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        errorCounters[operation.ordinal()][outcome.ordinal()].increment();
+    }
+
+    private static Outcome classify(Throwable error) {
+        if (error instanceof InsufficientBalanceException) {
+            return Outcome.INSUFFICIENT_BALANCE;
+        }
+        if (error instanceof ConcurrentUpdateException) {
+            return Outcome.CONCURRENT_UPDATE;
+        }
+        return Outcome.ERROR;
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * beforeCommit 到 afterCommit 之间即为提交耗时
+     */
+    private static class CommitTimer implements TransactionSynchronization {
+
+        private final Timer timer;
+
+        private long commitStart;
+
+        CommitTimer(Timer timer) {
+            this.timer = timer;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commitStart = System.nanoTime();
+        }
+
+        @Override
+        public void afterCommit() {
+            timer.record(System.nanoTime() - commitStart, TimeUnit.NANOSECONDS);
+        }
+    }
+}
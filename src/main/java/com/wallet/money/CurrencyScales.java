@@ -0,0 +1,41 @@
+package com.wallet.money;
+
+import com.wallet.config.MoneyProperties;
+import com.wallet.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * 按币种校验请求金额的小数位，并转换为 {@link Money}
+ */
+@Component
+@RequiredArgsConstructor
+public class CurrencyScales {
+
+    private final MoneyProperties properties;
+
+    public int scaleOf(String currency) {
+        return Math.min(properties.getScales().getOrDefault(currency, properties.getDefaultScale()), Money.SCALE);
+    }
+
+    /**
+     * 校验金额：不能为空，去掉末尾的 0 后小数位不超过该币种的精度，且在 Money 的表示范围内
+     */
+    public Money amount(String currency, BigDecimal amount) {
+        if (amount == null) {
+            throw new BusinessException("INVALID_AMOUNT", "金额不能为空");
+        }
+        int scale = scaleOf(currency);
+        if (amount.scale() > scale && amount.stripTrailingZeros().scale() > scale) {
+            throw new BusinessException("INVALID_AMOUNT", currency + " 金额最多 " + scale + " 位小数: "
+                    + amount.toPlainString());
+        }
+        try {
+            return Money.of(amount);
+        } catch (ArithmeticException e) {
+            throw new BusinessException("INVALID_AMOUNT", "金额超出范围: " + amount.toPlainString());
+        }
+    }
+}
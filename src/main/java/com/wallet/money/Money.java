@@ -0,0 +1,99 @@
+package com.wallet.money;
+
+import java.math.BigDecimal;
+
+/**
+ * 定点金额：以 long 保存 1e-8 的整数倍，与库表 DECIMAL(20,8) 的小数位一致
+ * <p>
+ * 用于逐条对账（ReconciliationService 的单次遍历累加）：按单位数累加 long，不为每条变更分配 BigDecimal。
+ * 余额比较与加减的其余部分（资金事务、汇总对账、全平台对账）仍用 BigDecimal；请求金额的范围校验见
+ * {@link CurrencyScales}。加减、取反溢出时抛出 ArithmeticException，不会静默回绕。
+ * <p>
+ * 可表示的范围为 ±92,233,720,368.54775807，小于 DECIMAL(20,8) 的上限：超出范围的值在转换时抛出
+ * ArithmeticException，对账累加遇到时改用 BigDecimal。
+ */
+public final class Money implements Comparable<Money> {
+
+    /**
+     * 小数位数，1 个单位 = 1e-8
+     */
+    public static final int SCALE = 8;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long units;
+
+    private Money(long units) {
+        this.units = units;
+    }
+
+    public static Money ofUnits(long units) {
+        return units == 0 ? ZERO : new Money(units);
+    }
+
+    /**
+     * BigDecimal 转为 Money：小数位超过 8 位（非零）或超出 long 范围时抛出 ArithmeticException
+     */
+    public static Money of(BigDecimal amount) {
+        return ofUnits(units(amount));
+    }
+
+    /**
+     * BigDecimal 对应的单位数，供只需累加 long 的调用方使用，不创建 Money
+     */
+    public static long units(BigDecimal amount) {
+        // 库中读出的值小数位固定为 8，movePointRight 后即为整数，longValueExact 直接取紧凑表示
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    public long units() {
+        return units;
+    }
+
+    public Money add(Money other) {
+        return ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Money subtract(Money other) {
+        return ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    public Money negate() {
+        return ofUnits(Math.negateExact(units));
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public boolean isLessThan(Money other) {
+        return units < other.units;
+    }
+
+    /**
+     * 转为小数位为 8 的 BigDecimal，与从库中读出的值形式相同
+     */
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money other && units == other.units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.wallet.service;
+
+import com.wallet.config.CheckpointProperties;
+import com.wallet.entity.BalanceAggregate;
+import com.wallet.entity.BalanceCheckpoint;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.BalanceCheckpointMapper;
+import com.wallet.mapper.WalletMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * 余额检查点
+ * <p>
+ * 按固定间隔为每个钱包记录截至检查点时间的累计流入、流出、变更次数和余额，
+ * 对账时从最近的检查点出发只聚合之后的增量变更，不再加载整个对账期的明细。
+ * 后台任务定期把检查点推进到 当前时间 - settleDelay 之前最近的对齐时间点；
+ * 没有新变更的区间不生成检查点，沿用更早的检查点即可。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceCheckpointService {
+
+    private final BalanceChangeHistoryMapper historyMapper;
+
+    private final BalanceCheckpointMapper checkpointMapper;
+
+    private final WalletMapper walletMapper;
+
+    private final CheckpointProperties properties;
+
+    private final StripedWalletService stripedWalletService;
+
+    private final BalanceHistoryProjectionService projectionService;
+
+    /**
+     * 定时推进检查点
+     */
+    @Scheduled(initialDelayString = "${wallet.checkpoint.run-interval:10m}",
+            fixedDelayString = "${wallet.checkpoint.run-interval:10m}")
+    public void scheduledAdvance() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            advanceAll(new Date());
+        } catch (Exception e) {
+            log.error("检查点推进异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 分页扫描全部钱包，把检查点推进到 now 之前可以安全生成的最近时间点
+     *
+     * @return 本次新建的检查点数
+     */
+    public int advanceAll(Date now) {
+        // 异步写入模式下检查点不越过变更历史的补写进度，否则会漏掉尚未补写的变更
+        Date settled = projectionService.completeBefore(
+                new Date(now.getTime() - properties.getSettleDelay().toMillis()));
+        if (settled == null) {
+            log.info("余额变更历史尚未开始补写，跳过检查点推进");
+            return 0;
+        }
+        Date target = alignDown(settled);
+        long start = System.currentTimeMillis();
+        int created = 0;
+        Long afterId = 0L;
+        while (true) {
+            List<Long> walletIds = walletMapper.selectIdsAfter(afterId, properties.getBatchSize());
+            for (Long walletId : walletIds) {
+                created += advance(walletId, target);
+            }
+            if (walletIds.size() < properties.getBatchSize()) {
+                break;
+            }
+            afterId = walletIds.get(walletIds.size() - 1);
+        }
+        log.info("检查点推进完成: target={}, created={}, 耗时={}ms",
+                target, created, System.currentTimeMillis() - start);
+        return created;
+    }
+
+    /**
+     * 推进单个钱包的检查点，直到 target（含）
+     */
+    public int advance(Long walletId, Date target) {
+        BalanceCheckpoint latest = checkpointMapper.selectLatest(walletId);
+        Date from = latest != null ? latest.getCheckpointTime() : null;
+        if (from != null && !from.before(target)) {
+            return 0;
+        }
+
+        int created = 0;
+        Date boundary = nextBoundaryWithChanges(walletId, from);
+        while (boundary != null && !boundary.after(target) && created < properties.getMaxCheckpointsPerRun()) {
+            BalanceAggregate delta = historyMapper.aggregateByWallet(walletId, from, boundary, false);
+            BalanceAggregate total = latest != null ? BalanceAggregate.of(latest).plus(delta) : delta;
+
+            BalanceCheckpoint checkpoint = new BalanceCheckpoint();
+            checkpoint.setWalletId(walletId);
+            checkpoint.setCheckpointTime(boundary);
+            checkpoint.setBalance(stripedWalletService.balanceBefore(walletId, boundary));
+            checkpoint.setTotalInflow(total.getTotalInflow());
+            checkpoint.setTotalOutflow(total.getTotalOutflow());
+            checkpoint.setChangeCount(total.getChangeCount());
+            try {
+                checkpointMapper.insert(checkpoint);
+            } catch (DuplicateKeyException e) {
+                // 其他节点已生成同一检查点，下次任务从最新检查点继续
+                log.info("检查点已存在，跳过: walletId={}, checkpointTime={}", walletId, boundary);
+                return created;
+            }
+            created++;
+            latest = checkpoint;
+            from = boundary;
+            boundary = nextBoundaryWithChanges(walletId, from);
+        }
+        return created;
+    }
+
+    /**
+     * 不晚于 time 的累计聚合：最近检查点 + 检查点之后的增量
+     *
+     * @param inclusive 是否包含恰好发生在 time 的变更
+     */
+    public BalanceAggregate cumulativeAt(Long walletId, Date time, boolean inclusive) {
+        BalanceCheckpoint checkpoint = checkpointMapper.selectLatestAtOrBefore(walletId, time);
+        if (checkpoint == null) {
+            return historyMapper.aggregateByWallet(walletId, null, time, inclusive);
+        }
+        BalanceAggregate delta = historyMapper.aggregateByWallet(
+                walletId, checkpoint.getCheckpointTime(), time, inclusive);
+        return BalanceAggregate.of(checkpoint).plus(delta);
+    }
+
+    /**
+     * from 之后第一笔变更所在区间的结束时间点；没有新变更返回 null，空闲区间直接跳过
+     */
+    private Date nextBoundaryWithChanges(Long walletId, Date from) {
+        Date nextChange = historyMapper.selectFirstChangeTime(walletId, from);
+        if (nextChange == null) {
+            return null;
+        }
+        return new Date(alignDown(nextChange).getTime() + properties.getInterval().toMillis());
+    }
+
+    /**
+     * 按本地时区把时间向下对齐到检查点间隔的整数倍
+     */
+    private Date alignDown(Date time) {
+        long interval = properties.getInterval().toMillis();
+        long offset = TimeZone.getDefault().getOffset(time.getTime());
+        long local = time.getTime() + offset;
+        return new Date(Math.floorDiv(local, interval) * interval - offset);
+    }
+}
@@ -0,0 +1,262 @@
+package com.wallet.service;
+
+import com.wallet.config.BalanceHistoryProperties;
+import com.wallet.dto.response.HistoryProjectionStatus;
+import com.wallet.entity.HistoryProjection;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.HistoryWriteMode;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.HistoryProjectionMapper;
+import com.wallet.mapper.WalletTransactionMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 余额变更历史异步补写
+ * <p>
+ * 异步模式下单笔充值、提现只写余额和交易记录，交易记录本身带有前后余额，
+ * 相当于事务内写入的发件箱。本服务按交易ID顺序把已提交的成功交易补写为变更历史：
+ * <ul>
+ *     <li>每轮先把游标之后新可见的交易记录批量补写（INSERT ... SELECT），游标只保存在内存中</li>
+ *     <li>自增ID按插入顺序分配而事务按提交顺序可见，游标之前可能还有未提交的交易。
+ *     每轮结束时记下游标，等过了 settleDelay（此前分配的ID都已提交或回滚）再把
+ *     (高水位, 该游标] 重新补写一遍，然后把高水位持久化推进到该游标</li>
+ *     <li>执行时间超过 settleDelay 的事务在高水位推进后才提交，落在高水位之下。每隔 lookbackInterval
+ *     把高水位之下、创建时间在 lookback 之内的交易再按判重补写一遍，补写进度也把这部分计入待补写数</li>
+ *     <li>补写按交易ID判重（NOT EXISTS，变更历史的交易ID另有唯一索引兜底），重复执行不会重复写入；
+ *     补写语句在锁定进度行后执行，多个节点同时补写时依次进行，判重不会互相穿透。节点重启后从持久化的
+ *     高水位重新补写，因此执行时间不超过 lookback 的交易至少补写一次且只留下一条历史</li>
+ * </ul>
+ * 进度行同时记录 caughtUpTo：创建时间早于该时间的交易都已有变更历史，对账和检查点据此判断历史是否完整。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BalanceHistoryProjectionService {
+
+    static final String PROJECTION_NAME = "balance_change_history";
+
+    private final BalanceChangeHistoryMapper historyMapper;
+
+    private final WalletTransactionMapper transactionMapper;
+
+    private final HistoryProjectionMapper projectionMapper;
+
+    private final BalanceHistoryProperties properties;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 已补写但尚未过沉淀期的游标，按记录时间排列
+     */
+    private final Deque<PendingCursor> pendingCursors = new ArrayDeque<>();
+
+    private Long cursor;
+
+    private long lastLookbackAt;
+
+    public boolean isAsync() {
+        return properties.getMode() == HistoryWriteMode.ASYNC;
+    }
+
+    /**
+     * 定时补写
+     */
+    @Scheduled(initialDelayString = "${wallet.balance-history.poll-interval:200ms}",
+            fixedDelayString = "${wallet.balance-history.poll-interval:200ms}")
+    public void scheduledProject() {
+        if (!isAsync()) {
+            return;
+        }
+        try {
+            project();
+        } catch (Exception e) {
+            log.error("余额变更历史补写异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 补写一轮：先补写游标之后的全部可见交易，再推进已过沉淀期的高水位
+     *
+     * @return 本轮新写入的变更历史条数
+     */
+    public synchronized int project() {
+        Date roundStart = new Date();
+        if (cursor == null) {
+            // 启动后从持久化的高水位开始，高水位之后已补写过的交易由判重跳过
+            HistoryProjection projection = projectionMapper.selectByName(PROJECTION_NAME);
+            cursor = projection != null ? projection.getLastTransactionId() : 0L;
+        }
+
+        int inserted = 0;
+        while (true) {
+            List<WalletTransaction> window = transactionMapper.selectIdsAfter(cursor, properties.getBatchSize());
+            if (window.isEmpty()) {
+                break;
+            }
+            Long afterId = cursor;
+            Long toId = window.get(window.size() - 1).getId();
+            inserted += insertLocked(afterId, toId);
+            cursor = toId;
+            if (window.size() < properties.getBatchSize()) {
+                break;
+            }
+        }
+        pendingCursors.addLast(new PendingCursor(cursor, roundStart, new Date()));
+
+        inserted += settle();
+        inserted += lookback();
+        return inserted;
+    }
+
+    /**
+     * 补写进度
+     */
+    public HistoryProjectionStatus status() {
+        HistoryProjection projection = projectionMapper.selectByName(PROJECTION_NAME);
+        long lastTransactionId = projection != null ? projection.getLastTransactionId() : 0L;
+        return HistoryProjectionStatus.builder()
+                .mode(properties.getMode())
+                .lastTransactionId(lastTransactionId)
+                .caughtUpTo(projection != null ? projection.getCaughtUpTo() : null)
+                .pendingTransactions(historyMapper.countTransactionsWithoutHistory(lastTransactionId, lookbackSince()))
+                .build();
+    }
+
+    /**
+     * 异步模式下变更历史完整的截止时间：创建时间早于该时间的交易都已有变更历史。
+     * 同步模式或异步模式尚未推进过高水位时返回 null
+     */
+    public Date caughtUpTo() {
+        if (!isAsync()) {
+            return null;
+        }
+        HistoryProjection projection = projectionMapper.selectByName(PROJECTION_NAME);
+        return projection != null ? projection.getCaughtUpTo() : null;
+    }
+
+    /**
+     * 创建时间不晚于 time 的交易是否都已有变更历史，同步模式恒为 true
+     */
+    public boolean isCompleteThrough(Date time) {
+        if (!isAsync()) {
+            return true;
+        }
+        Date caughtUpTo = caughtUpTo();
+        return caughtUpTo != null && caughtUpTo.after(time);
+    }
+
+    /**
+     * 不晚于 time 且之前变更历史完整的时间点：同步模式直接返回 time，异步模式尚未推进过高水位时返回 null
+     */
+    public Date completeBefore(Date time) {
+        if (!isAsync()) {
+            return time;
+        }
+        Date caughtUpTo = caughtUpTo();
+        if (caughtUpTo == null) {
+            return null;
+        }
+        return caughtUpTo.before(time) ? caughtUpTo : time;
+    }
+
+    /**
+     * 取出最近一个已过沉淀期的游标，把 (高水位, 游标] 重新补写后推进高水位
+     */
+    private int settle() {
+        long settledBefore = System.currentTimeMillis() - properties.getSettleDelay().toMillis();
+        PendingCursor settled = null;
+        while (!pendingCursors.isEmpty() && pendingCursors.peekFirst().recordedAt().getTime() <= settledBefore) {
+            settled = pendingCursors.pollFirst();
+        }
+        if (settled == null) {
+            return 0;
+        }
+
+        PendingCursor target = settled;
+        // 本轮开始前已提交的交易都在游标之内；创建时间早于 本轮开始 - settleDelay 的交易此前已提交
+        Date caughtUpTo = new Date(target.roundStart().getTime() - properties.getSettleDelay().toMillis());
+        Integer inserted = transactionTemplate.execute(status -> {
+            HistoryProjection projection = lockProjection();
+            int rows = 0;
+            if (target.transactionId() > projection.getLastTransactionId()) {
+                rows = historyMapper.insertFromTransactions(projection.getLastTransactionId(), target.transactionId());
+                projection.setLastTransactionId(target.transactionId());
+            }
+            if (projection.getCaughtUpTo() == null || caughtUpTo.after(projection.getCaughtUpTo())) {
+                projection.setCaughtUpTo(caughtUpTo);
+            }
+            projectionMapper.update(projection);
+            return rows;
+        });
+        if (inserted != null && inserted > 0) {
+            log.info("高水位推进时补写了晚提交的交易: lastTransactionId={}, inserted={}",
+                    target.transactionId(), inserted);
+        }
+        return inserted != null ? inserted : 0;
+    }
+
+    /**
+     * 回扫高水位之下创建时间在 lookback 之内的交易，补上在高水位推进之后才提交的交易
+     */
+    private int lookback() {
+        long now = System.currentTimeMillis();
+        if (now - lastLookbackAt < properties.getLookbackInterval().toMillis()) {
+            return 0;
+        }
+        lastLookbackAt = now;
+        Date since = lookbackSince();
+        Integer inserted = transactionTemplate.execute(status -> {
+            HistoryProjection projection = lockProjection();
+            return historyMapper.insertFromTransactionsSince(since, projection.getLastTransactionId());
+        });
+        if (inserted != null && inserted > 0) {
+            log.warn("回扫补写了高水位推进后才提交的交易，settleDelay 可能小于资金事务的执行时间: since={}, inserted={}",
+                    since, inserted);
+        }
+        return inserted != null ? inserted : 0;
+    }
+
+    private Date lookbackSince() {
+        return new Date(System.currentTimeMillis() - properties.getLookback().toMillis());
+    }
+
+    private int insertLocked(Long afterId, Long toId) {
+        Integer inserted = transactionTemplate.execute(status -> {
+            lockProjection();
+            return historyMapper.insertFromTransactions(afterId, toId);
+        });
+        return inserted != null ? inserted : 0;
+    }
+
+    /**
+     * 锁定进度行，不存在时先创建；并发创建时以先插入的为准
+     */
+    private HistoryProjection lockProjection() {
+        HistoryProjection projection = projectionMapper.selectByNameForUpdate(PROJECTION_NAME);
+        if (projection != null) {
+            return projection;
+        }
+        try {
+            projectionMapper.insert(PROJECTION_NAME);
+        } catch (DuplicateKeyException e) {
+            log.info("补写进度已由其他节点创建: name={}", PROJECTION_NAME);
+        }
+        return projectionMapper.selectByNameForUpdate(PROJECTION_NAME);
+    }
+
+    /**
+     * 一轮补写结束时的游标：roundStart 为本轮开始时间，recordedAt 为记录时间
+     */
+    private record PendingCursor(Long transactionId, Date roundStart, Date recordedAt) {
+    }
+}
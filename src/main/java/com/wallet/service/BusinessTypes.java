@@ -0,0 +1,48 @@
+package com.wallet.service;
+
+import com.wallet.exception.BusinessException;
+
+/**
+ * 业务类型校验
+ * <p>
+ * 转账的转出、转入流水以请求业务类型加 {@value #DEBIT_SUFFIX}、{@value #CREDIT_SUFFIX} 作为业务类型，
+ * 共用请求的业务ID。这两个后缀保留给转账：任何写入路径的业务类型都不能以它们结尾，
+ * 否则可能与某笔转账的一条腿占用同一个幂等键；转账业务类型加上后缀后不能超过 business_type 列宽。
+ */
+public final class BusinessTypes {
+
+    public static final String DEBIT_SUFFIX = "_OUT";
+
+    public static final String CREDIT_SUFFIX = "_IN";
+
+    /**
+     * wallet_transaction.business_type 列宽
+     */
+    public static final int MAX_LENGTH = 50;
+
+    private BusinessTypes() {
+    }
+
+    /**
+     * 校验业务类型没有使用转账保留的后缀，为空时交由调用方的参数校验处理
+     */
+    public static void requireUnreserved(String businessType) {
+        if (businessType != null
+                && (businessType.endsWith(DEBIT_SUFFIX) || businessType.endsWith(CREDIT_SUFFIX))) {
+            throw new BusinessException("INVALID_BUSINESS_TYPE", "业务类型不能以 " + DEBIT_SUFFIX + " 或 "
+                    + CREDIT_SUFFIX + " 结尾（保留给转账流水）: " + businessType);
+        }
+    }
+
+    /**
+     * 校验转账业务类型：不使用保留后缀，且加上后缀后不超过列宽
+     */
+    public static void requireTransferType(String businessType) {
+        requireUnreserved(businessType);
+        int maxLength = MAX_LENGTH - Math.max(DEBIT_SUFFIX.length(), CREDIT_SUFFIX.length());
+        if (businessType.length() > maxLength) {
+            throw new BusinessException("INVALID_BUSINESS_TYPE", "转账业务类型最长 " + maxLength + " 个字符: "
+                    + businessType);
+        }
+    }
+}
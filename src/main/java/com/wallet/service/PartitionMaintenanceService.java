@@ -0,0 +1,216 @@
+package com.wallet.service;
+
+import com.wallet.config.PartitionProperties;
+import com.wallet.config.StorageProperties;
+import com.wallet.enums.StorageType;
+import com.wallet.mapper.PartitionArchiveMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 交易流水与余额变更历史的分区维护与归档
+ * <p>
+ * MySQL 下两张表按 created_at 按月分区（分区名 pYYYYMM，最后是 p_max）：提前拆分 p_max 建好后续月份的分区，
+ * 整个月份都早于保留期的分区分批复制到归档表后直接删除分区，不产生逐行删除的开销。
+ * 未分区的表（H2 等）按创建时间分批复制、删除，每批一个事务。
+ * <p>
+ * 幂等检查经 idempotency_key 定位已归档的交易，期初余额查询在变更历史表中没有记录时回退到归档表，
+ * 归档不影响重复请求的判定和对账的期初余额。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartitionMaintenanceService {
+
+    /**
+     * 参与分区维护的表，归档表为 {表名}_archive
+     */
+    static final List<String> TABLES = List.of("wallet_transaction", "balance_change_history");
+
+    private static final String MAX_PARTITION = "p_max";
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final PartitionArchiveMapper archiveMapper;
+
+    private final PartitionProperties properties;
+
+    private final StorageProperties storageProperties;
+
+    private final DataSource dataSource;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Boolean mysql;
+
+    /**
+     * 定时维护分区
+     */
+    @Scheduled(initialDelayString = "${wallet.partition.maintenance-interval:1h}",
+            fixedDelayString = "${wallet.partition.maintenance-interval:1h}")
+    public void scheduledMaintain() {
+        if (!properties.isEnabled() || storageProperties.getType() == StorageType.MEMORY) {
+            return;
+        }
+        try {
+            maintain(LocalDate.now());
+        } catch (Exception e) {
+            log.error("分区维护异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 为各表创建后续月份的分区，并归档保留期之前的数据
+     *
+     * @return 本次归档的行数
+     */
+    public long maintain(LocalDate today) {
+        // 早于该日期的数据移出在线表
+        LocalDate cutoff = YearMonth.from(today).minusMonths(properties.getRetentionMonths()).atDay(1);
+        long archived = 0;
+        for (String table : TABLES) {
+            if (isMysql()) {
+                List<String> partitions = archiveMapper.selectPartitionNames(table);
+                if (!partitions.isEmpty()) {
+                    createPartitions(table, partitions, YearMonth.from(today));
+                    if (properties.getRetentionMonths() > 0) {
+                        archived += archivePartitions(table, partitions, cutoff);
+                    }
+                    continue;
+                }
+            }
+            if (properties.getRetentionMonths() > 0) {
+                archived += archiveRows(table, cutoff);
+            }
+        }
+        if (archived > 0) {
+            log.info("分区归档完成: cutoff={}, rows={}", cutoff, archived);
+        }
+        return archived;
+    }
+
+    /**
+     * 拆分 p_max，补齐到当月之后 premakeMonths 个月的月分区
+     */
+    private void createPartitions(String table, List<String> partitions, YearMonth current) {
+        YearMonth last = null;
+        for (String partition : partitions) {
+            YearMonth month = monthOf(partition);
+            if (month != null && (last == null || month.isAfter(last))) {
+                last = month;
+            }
+        }
+        YearMonth from = last == null ? current : last.plusMonths(1);
+        YearMonth to = current.plusMonths(properties.getPremakeMonths());
+        if (from.isAfter(to)) {
+            return;
+        }
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            definitions.add("PARTITION " + month.format(PARTITION_NAME)
+                    + " VALUES LESS THAN ('" + month.plusMonths(1).atDay(1) + " 00:00:00')");
+        }
+        archiveMapper.splitMaxPartition(table, String.join(", ", definitions));
+        log.info("已创建分区: table={}, from={}, to={}", table, from, to);
+    }
+
+    /**
+     * 上界不晚于 cutoff 的月分区整体复制到归档表后删除
+     */
+    private long archivePartitions(String table, List<String> partitions, LocalDate cutoff) {
+        long archived = 0;
+        for (String partition : partitions) {
+            YearMonth month = monthOf(partition);
+            if (month == null || month.plusMonths(1).atDay(1).isAfter(cutoff)) {
+                continue;
+            }
+            long copied = 0;
+            Long afterId = 0L;
+            while (true) {
+                List<Long> ids = archiveMapper.selectPartitionIdsAfter(table, partition, afterId,
+                        properties.getArchiveBatchSize());
+                if (ids.isEmpty()) {
+                    break;
+                }
+                copied += archiveMapper.copyPartitionRange(table, partition, ids.get(0), ids.get(ids.size() - 1));
+                afterId = ids.get(ids.size() - 1);
+            }
+            archiveMapper.dropPartition(table, partition);
+            archived += copied;
+            log.info("分区已归档: table={}, partition={}, rows={}", table, partition, copied);
+        }
+        return archived;
+    }
+
+    /**
+     * 未分区的表按创建时间分批复制到归档表并删除
+     */
+    private long archiveRows(String table, LocalDate cutoff) {
+        Date before = Date.from(cutoff.atStartOfDay(ZoneId.systemDefault()).toInstant());
+        long archived = 0;
+        while (true) {
+            List<Long> ids = archiveMapper.selectIdsBefore(table, before, properties.getArchiveBatchSize());
+            if (ids.isEmpty()) {
+                break;
+            }
+            Long fromId = ids.get(0);
+            Long toId = ids.get(ids.size() - 1);
+            Integer copied = transactionTemplate.execute(status -> {
+                int rows = archiveMapper.copyRangeBefore(table, before, fromId, toId);
+                archiveMapper.deleteRangeBefore(table, before, fromId, toId);
+                return rows;
+            });
+            archived += copied != null ? copied : 0;
+            if (ids.size() < properties.getArchiveBatchSize()) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            log.info("数据已归档: table={}, before={}, rows={}", table, cutoff, archived);
+        }
+        return archived;
+    }
+
+    private boolean isMysql() {
+        if (mysql == null) {
+            try {
+                String product = JdbcUtils.extractDatabaseMetaData(dataSource,
+                        DatabaseMetaData::getDatabaseProductName);
+                mysql = "MySQL".equalsIgnoreCase(product);
+            } catch (MetaDataAccessException e) {
+                throw new IllegalStateException("无法识别数据库类型", e);
+            }
+        }
+        return mysql;
+    }
+
+    /**
+     * 月分区的月份，p_max 等其他分区返回 null
+     */
+    private static YearMonth monthOf(String partition) {
+        if (MAX_PARTITION.equals(partition)) {
+            return null;
+        }
+        try {
+            return YearMonth.parse(partition, PARTITION_NAME);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.wallet.service;
+
+import com.wallet.config.PlatformReconciliationProperties;
+import com.wallet.datasource.ReplicaReads;
+import com.wallet.dto.response.PlatformReconciliationReport;
+import com.wallet.dto.response.WalletMismatch;
+import com.wallet.entity.BalanceAggregate;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletStripe;
+import com.wallet.exception.BusinessException;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletStripeMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 全平台对账
+ * <p>
+ * 按钱包ID区间分区，在有界线程池上并行处理各分区。每个分区只执行四条查询：
+ * 区间内的钱包、区间内分片钱包的分片余额合计、区间内各钱包（分片钱包为各分片）期初之前的最后一笔变更、
+ * 对账期内按钱包分组的 SUM 聚合，不逐行加载变更明细；期初之前没有变更的钱包再查一次归档表。
+ * 对账期内仍在变化的钱包可能被误判，不平账户在汇总前会单独复核一次。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PlatformReconciliationService {
+
+    private final WalletMapper walletMapper;
+
+    private final BalanceChangeHistoryMapper historyMapper;
+
+    private final WalletStripeMapper stripeMapper;
+
+    private final PlatformReconciliationProperties properties;
+
+    private final BalanceHistoryProjectionService projectionService;
+
+    private final ReplicaReads replicaReads;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicReference<PlatformReconciliationReport> lastReport = new AtomicReference<>();
+
+    /**
+     * 每日定时对账
+     */
+    @Scheduled(cron = "${wallet.platform-reconciliation.cron:0 30 2 * * *}")
+    public void scheduledReconcile() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Date endTime = new Date();
+        Date startTime = new Date(endTime.getTime() - properties.getLookback().toMillis());
+        try {
+            reconcileAllWallets(startTime, endTime);
+        } catch (Exception e) {
+            log.error("全平台对账异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 对全部钱包执行对账，并行度和分区大小取自配置
+     */
+    public PlatformReconciliationReport reconcileAllWallets(Date startTime, Date endTime) {
+        return reconcileAllWallets(startTime, endTime, properties.getParallelism(), properties.getPartitionSize());
+    }
+
+    public PlatformReconciliationReport reconcileAllWallets(Date startTime, Date endTime,
+                                                            int parallelism, int partitionSize) {
+        if (!running.compareAndSet(false, true)) {
+            throw new BusinessException("RECONCILIATION_RUNNING", "全平台对账正在进行中");
+        }
+        try {
+            PlatformReconciliationReport report = doReconcile(startTime, endTime, parallelism, partitionSize);
+            lastReport.set(report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 最近一次全平台对账报告，尚未执行过返回null
+     */
+    public PlatformReconciliationReport getLastReport() {
+        return lastReport.get();
+    }
+
+    private PlatformReconciliationReport doReconcile(Date startTime, Date endTime,
+                                                     int parallelism, int partitionSize) {
+        long start = System.currentTimeMillis();
+        Long minId = walletMapper.selectMinId();
+        Long maxId = walletMapper.selectMaxId();
+
+        List<PartitionResult> results = new ArrayList<>();
+        int partitions = 0;
+        if (minId != null) {
+            AtomicInteger threadIndex = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                Thread thread = new Thread(runnable, "platform-reconcile-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<CompletableFuture<PartitionResult>> futures = new ArrayList<>();
+                for (long from = minId; from <= maxId; from += partitionSize) {
+                    long fromId = from;
+                    long toId = Math.min(from + partitionSize - 1, maxId);
+                    futures.add(CompletableFuture.supplyAsync(
+                            () -> replicaReads.execute(() -> reconcilePartition(fromId, toId, startTime, endTime)),
+                            executor));
+                }
+                partitions = futures.size();
+                futures.forEach(future -> results.add(future.join()));
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        long totalWallets = 0;
+        long totalChanges = 0;
+        List<WalletMismatch> suspects = new ArrayList<>();
+        for (PartitionResult result : results) {
+            totalWallets += result.walletCount;
+            totalChanges += result.changeCount;
+            suspects.addAll(result.mismatches);
+        }
+        List<WalletMismatch> mismatches = recheck(suspects, startTime);
+        mismatches.sort(Comparator.comparing(WalletMismatch::getWalletId));
+
+        long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+        boolean historyComplete = projectionService.isCompleteThrough(endTime);
+        PlatformReconciliationReport report = PlatformReconciliationReport.builder()
+                .startTime(startTime)
+                .endTime(endTime)
+                .parallelism(parallelism)
+                .partitions(partitions)
+                .totalWallets(totalWallets)
+                .balancedWallets(totalWallets - mismatches.size())
+                .totalChanges(totalChanges)
+                .elapsedMillis(elapsed)
+                .walletsPerSecond(totalWallets * 1000 / elapsed)
+                .mismatches(mismatches)
+                .historyComplete(historyComplete)
+                .historyCaughtUpTo(projectionService.caughtUpTo())
+                .build();
+        if (!historyComplete) {
+            log.warn("余额变更历史尚未补写到对账期末，不平账户可能是补写滞后: endTime={}, caughtUpTo={}",
+                    endTime, report.getHistoryCaughtUpTo());
+        }
+        report.setReportFile(writeReport(report));
+
+        log.info("全平台对账完成: 钱包数={}, 不平={}, 变更数={}, 分区={}, 并行度={}, 耗时={}ms, {} 钱包/秒",
+                totalWallets, mismatches.size(), totalChanges, partitions, parallelism, elapsed,
+                report.getWalletsPerSecond());
+        return report;
+    }
+
+    /**
+     * 对账单个钱包ID区间
+     */
+    private PartitionResult reconcilePartition(Long fromId, Long toId, Date startTime, Date endTime) {
+        List<Wallet> wallets = walletMapper.selectByIdRange(fromId, toId);
+        PartitionResult result = new PartitionResult();
+        if (wallets.isEmpty()) {
+            return result;
+        }
+
+        // 分片钱包的实际余额 = 主行余额 + 各分片余额
+        Map<Long, BigDecimal> stripeBalances = new HashMap<>();
+        for (WalletStripe stripeSum : stripeMapper.sumBalanceByWalletRange(fromId, toId)) {
+            stripeBalances.put(stripeSum.getWalletId(), stripeSum.getBalance());
+        }
+        // 分片钱包每个分片各有一条最后变更，按钱包累加
+        Map<Long, BigDecimal> openingBalances = new HashMap<>();
+        Map<Long, Set<Integer>> openedStripes = new HashMap<>();
+        for (BalanceChangeHistory lastChange : historyMapper.selectLastChangesBefore(fromId, toId, startTime)) {
+            openingBalances.merge(lastChange.getWalletId(), lastChange.getBalanceAfter(), BigDecimal::add);
+            openedStripes.computeIfAbsent(lastChange.getWalletId(), walletId -> new HashSet<>())
+                    .add(lastChange.getStripeNo());
+        }
+        addArchivedOpeningBalances(wallets, startTime, openingBalances, openedStripes);
+        Map<Long, BalanceAggregate> aggregates = new HashMap<>();
+        for (BalanceAggregate aggregate : historyMapper.aggregateByWalletRange(fromId, toId, startTime, endTime)) {
+            aggregates.put(aggregate.getWalletId(), aggregate);
+        }
+
+        for (Wallet wallet : wallets) {
+            // 每个钱包只有几次加减，用 BigDecimal 计算，余额超出 Money 的范围时同样适用
+            BigDecimal actualBalance = wallet.getBalance()
+                    .add(stripeBalances.getOrDefault(wallet.getId(), BigDecimal.ZERO));
+            BigDecimal openingBalance = openingBalances.getOrDefault(wallet.getId(), BigDecimal.ZERO);
+            BalanceAggregate aggregate = aggregates.getOrDefault(wallet.getId(), new BalanceAggregate());
+            BigDecimal calculated = openingBalance
+                    .add(aggregate.getTotalInflow())
+                    .subtract(aggregate.getTotalOutflow());
+            result.walletCount++;
+            result.changeCount += aggregate.getChangeCount();
+            if (calculated.compareTo(actualBalance) != 0) {
+                result.mismatches.add(WalletMismatch.builder()
+                        .walletId(wallet.getId())
+                        .userId(wallet.getUserId())
+                        .currency(wallet.getCurrency())
+                        .openingBalance(openingBalance)
+                        .calculatedClosingBalance(calculated)
+                        .actualClosingBalance(actualBalance)
+                        .difference(actualBalance.subtract(calculated))
+                        .build());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 变更历史表中没有期初之前变更的钱包分片，其变更可能已全部归档，从归档表补上期初余额。
+     * 归档表中的变更都早于变更历史表中的变更，已有期初变更的分片不必再查归档表。
+     */
+    private void addArchivedOpeningBalances(List<Wallet> wallets, Date startTime, Map<Long, BigDecimal> openingBalances,
+                                            Map<Long, Set<Integer>> openedStripes) {
+        List<Long> candidates = new ArrayList<>();
+        for (Wallet wallet : wallets) {
+            Set<Integer> stripes = openedStripes.getOrDefault(wallet.getId(), Set.of());
+            if (stripes.size() <= Objects.requireNonNullElse(wallet.getStripeCount(), 0)) {
+                candidates.add(wallet.getId());
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        for (BalanceChangeHistory lastChange : historyMapper.selectArchivedLastChangesBefore(candidates, startTime)) {
+            if (!openedStripes.getOrDefault(lastChange.getWalletId(), Set.of()).contains(lastChange.getStripeNo())) {
+                openingBalances.merge(lastChange.getWalletId(), lastChange.getBalanceAfter(), BigDecimal::add);
+            }
+        }
+    }
+
+    /**
+     * 复核不平账户：把对账期延长到当前时间重新计算，排除对账期结束后仍有变更导致的误判
+     */
+    private List<WalletMismatch> recheck(List<WalletMismatch> suspects, Date startTime) {
+        List<WalletMismatch> confirmed = new ArrayList<>();
+        for (WalletMismatch suspect : suspects) {
+            PartitionResult result = reconcilePartition(suspect.getWalletId(), suspect.getWalletId(),
+                    startTime, new Date());
+            confirmed.addAll(result.mismatches);
+        }
+        return confirmed;
+    }
+
+    /**
+     * 把不平账户写成 CSV，返回文件路径；未配置输出目录或写入失败返回null
+     */
+    private String writeReport(PlatformReconciliationReport report) {
+        if (!StringUtils.hasText(properties.getReportDir())) {
+            return null;
+        }
+        String fileName = "platform-reconciliation-"
+                + new SimpleDateFormat("yyyyMMddHHmmss").format(report.getEndTime()) + ".csv";
+        Path file = Paths.get(properties.getReportDir(), fileName);
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writer.write("walletId,userId,currency,openingBalance,calculatedClosingBalance,"
+                        + "actualClosingBalance,difference");
+                writer.newLine();
+                for (WalletMismatch mismatch : report.getMismatches()) {
+                    writer.write(mismatch.getWalletId() + "," + mismatch.getUserId() + ","
+                            + mismatch.getCurrency() + ","
+                            + mismatch.getOpeningBalance().toPlainString() + ","
+                            + mismatch.getCalculatedClosingBalance().toPlainString() + ","
+                            + mismatch.getActualClosingBalance().toPlainString() + ","
+                            + mismatch.getDifference().toPlainString());
+                    writer.newLine();
+                }
+            }
+            return file.toString();
+        } catch (IOException e) {
+            log.error("写入对账报告失败: file={}, error={}", file, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private static class PartitionResult {
+        private long walletCount;
+        private long changeCount;
+        private final List<WalletMismatch> mismatches = new ArrayList<>();
+    }
+}
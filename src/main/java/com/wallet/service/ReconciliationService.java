@@ -1,14 +1,25 @@
 package com.wallet.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.dto.response.ReconciliationStreamLine;
+import com.wallet.entity.BalanceAggregate;
 import com.wallet.entity.BalanceChangeHistory;
 import com.wallet.entity.Wallet;
 import com.wallet.exception.BusinessException;
 import com.wallet.mapper.BalanceChangeHistoryMapper;
 import com.wallet.mapper.WalletMapper;
+import com.wallet.money.Money;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
@@ -24,16 +35,29 @@ public class ReconciliationService {
 
     private final WalletService walletService;
 
+    private final BalanceCheckpointService checkpointService;
+
+    private final StripedWalletService stripedWalletService;
+
+    private final BalanceHistoryProjectionService projectionService;
+
+    private final ObjectMapper objectMapper;
+
     /**
      * 对账查询 - 基于用户ID和币种
      */
+    @Transactional(readOnly = true)
     public ReconciliationResult reconcile(Long userId, String currency, Date startTime, Date endTime) {
         // 1. 先根据userId和currency获取钱包
-        Wallet wallet = walletMapper.selectByUserAndCurrency(userId, currency);
-        if (wallet == null) {
-            throw new BusinessException("WALLET_NOT_FOUND", "钱包不存在");
-        }
+        Wallet wallet = getWalletOrThrow(userId, currency);
+        return reconcile(wallet, startTime, endTime);
+    }
 
+    /**
+     * 对账查询 - 基于已加载的钱包
+     */
+    @Transactional(readOnly = true)
+    public ReconciliationResult reconcile(Wallet wallet, Date startTime, Date endTime) {
         Long walletId = wallet.getId();
 
         // 2. 查询期间所有余额变更记录
@@ -41,71 +65,243 @@ public class ReconciliationService {
                 walletId, startTime, endTime);
 
         // 3. 获取期初余额（对账期开始时的余额）
-        BigDecimal openingBalance = getOpeningBalance(walletId, startTime);
+        BigDecimal openingBalance = getOpeningBalance(wallet, startTime);
 
-        // 4. 计算理论期末余额
-        BigDecimal calculatedClosingBalance = calculateClosingBalance(openingBalance, changes);
+        // 4. 一次遍历计算理论期末余额、流入、流出
+        ChangeAccumulator accumulator = new ChangeAccumulator(openingBalance);
+        changes.forEach(accumulator::add);
 
-        // 5. 获取实际期末余额（当前钱包余额）
-        BigDecimal actualClosingBalance = wallet.getBalance();
+        return withHistoryStatus(accumulator.toResult(wallet.getUserId(), wallet.getCurrency(), wallet), endTime)
+                .changes(changes)
+                .build();
+    }
+
+    /**
+     * 流式对账 - 逐行扫描变更记录并在一次遍历中完成汇总，内存占用与变更数量无关，不返回变更明细
+     */
+    @Transactional(readOnly = true)
+    public ReconciliationResult reconcileStreaming(Long userId, String currency, Date startTime, Date endTime) {
+        Wallet wallet = getWalletOrThrow(userId, currency);
+        ChangeAccumulator accumulator = new ChangeAccumulator(getOpeningBalance(wallet, startTime));
+        historyMapper.scanByWalletAndTime(wallet.getId(), startTime, endTime,
+                context -> accumulator.add(context.getResultObject()));
+        return withHistoryStatus(accumulator.toResult(userId, currency, wallet), endTime).build();
+    }
+
+    /**
+     * 流式对账并以 NDJSON 输出：每笔变更一行（CHANGE），最后一行为对账结果（SUMMARY）
+     */
+    @Transactional(readOnly = true)
+    public void streamReconcile(Long userId, String currency, Date startTime, Date endTime,
+                                OutputStream out) throws IOException {
+        Wallet wallet = getWalletOrThrow(userId, currency);
+        ChangeAccumulator accumulator = new ChangeAccumulator(getOpeningBalance(wallet, startTime));
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(out)) {
+            historyMapper.scanByWalletAndTime(wallet.getId(), startTime, endTime, context -> {
+                BalanceChangeHistory change = context.getResultObject();
+                accumulator.add(change);
+                try {
+                    writer.write(new ReconciliationStreamLine(ReconciliationStreamLine.CHANGE, change));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.write(new ReconciliationStreamLine(ReconciliationStreamLine.SUMMARY,
+                    withHistoryStatus(accumulator.toResult(userId, currency, wallet), endTime).build()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.write('\n');
+        out.flush();
+    }
+
+    /**
+     * 校验钱包存在，流式接口在开始输出前调用以便返回普通错误响应；分片钱包的余额为主行与各分片之和
+     */
+    public Wallet getWalletOrThrow(Long userId, String currency) {
+        Wallet wallet = walletMapper.selectByUserAndCurrency(userId, currency);
+        if (wallet == null) {
+            throw new BusinessException("WALLET_NOT_FOUND", "钱包不存在");
+        }
+        return stripedWalletService.withStripes(wallet);
+    }
 
-        // 6. 验证是否一致
-        boolean isBalanced = calculatedClosingBalance.compareTo(actualClosingBalance) == 0;
+    /**
+     * 汇总对账 - 基于余额检查点，只聚合检查点之后的增量变更，不返回变更明细
+     * <p>
+     * 对账期内的流入、流出、变更次数 = 截至期末的累计值 - 期初之前的累计值，
+     * 两个累计值都从各自最近的检查点出发计算。
+     */
+    @Transactional(readOnly = true)
+    public ReconciliationResult reconcileSummary(Long userId, String currency, Date startTime, Date endTime) {
+        Wallet wallet = getWalletOrThrow(userId, currency);
+
+        Long walletId = wallet.getId();
+        BigDecimal openingBalance = getOpeningBalance(wallet, startTime);
 
-        return ReconciliationResult.builder()
+        BalanceAggregate window = checkpointService.cumulativeAt(walletId, endTime, true)
+                .minus(checkpointService.cumulativeAt(walletId, startTime, false));
+        // 只有几次加减，直接用 BigDecimal，余额超出 Money 的范围时同样适用
+        BigDecimal calculatedClosingBalance = openingBalance
+                .add(window.getTotalInflow())
+                .subtract(window.getTotalOutflow());
+        BigDecimal actualClosingBalance = wallet.getBalance();
+
+        return withHistoryStatus(ReconciliationResult.builder()
                 .userId(userId)
                 .currency(currency)
                 .walletId(walletId)
                 .openingBalance(openingBalance)
                 .calculatedClosingBalance(calculatedClosingBalance)
                 .actualClosingBalance(actualClosingBalance)
-                .isBalanced(isBalanced)
-                .totalChanges(changes.size())
-                .totalInflow(calculateTotalInflow(changes))
-                .totalOutflow(calculateTotalOutflow(changes))
-                .changes(changes)
+                .isBalanced(calculatedClosingBalance.compareTo(actualClosingBalance) == 0)
+                .totalChanges(Math.toIntExact(window.getChangeCount()))
+                .totalInflow(window.getTotalInflow())
+                .totalOutflow(window.getTotalOutflow()), endTime)
                 .build();
     }
 
     /**
      * 多币种对账查询
      */
+    @Transactional(readOnly = true)
     public List<ReconciliationResult> reconcileAll(Long userId, Date startTime, Date endTime) {
         // 通过WalletService获取钱包，而不是直接访问Mapper
         List<Wallet> wallets = walletService.getWalletsByUserId(userId);
 
+        // 复用已加载的钱包，不再按币种重复查询
         return wallets.stream()
-                .map(wallet -> reconcile(userId, wallet.getCurrency(), startTime, endTime))
+                .map(wallet -> reconcile(wallet, startTime, endTime))
                 .collect(Collectors.toList());
     }
 
-    private BigDecimal getOpeningBalance(Long walletId, Date startTime) {
-        // 查询对账期开始前最后一笔变更后的余额
-        BalanceChangeHistory lastChange = historyMapper.selectLastChangeBefore(walletId, startTime);
-        return lastChange != null ? lastChange.getBalanceAfter() : BigDecimal.ZERO;
+    /**
+     * 标注对账期内的变更历史是否完整：异步写入模式下补写尚未越过期末时，不平可能只是历史滞后
+     */
+    private ReconciliationResult.ReconciliationResultBuilder withHistoryStatus(
+            ReconciliationResult.ReconciliationResultBuilder builder, Date endTime) {
+        return builder
+                .historyComplete(projectionService.isCompleteThrough(endTime))
+                .historyCaughtUpTo(projectionService.caughtUpTo());
     }
 
-    private BigDecimal calculateClosingBalance(BigDecimal openingBalance,
-                                               List<BalanceChangeHistory> changes) {
-        BigDecimal balance = openingBalance;
-        for (BalanceChangeHistory change : changes) {
-            balance = balance.add(change.getChangeAmount());
-        }
-        return balance;
+    private BigDecimal getOpeningBalance(Wallet wallet, Date startTime) {
+        // 查询对账期开始前最后一笔变更后的余额，分片钱包按分片分别取值后求和
+        return stripedWalletService.balanceBefore(wallet, startTime);
     }
 
-    private BigDecimal calculateTotalInflow(List<BalanceChangeHistory> changes) {
-        return changes.stream()
-                .filter(change -> change.getChangeAmount().compareTo(BigDecimal.ZERO) > 0)
-                .map(BalanceChangeHistory::getChangeAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-    }
+    /**
+     * 单次遍历的对账累加器：余额、流入、流出、变更次数（分片归集只计入余额）
+     * <p>
+     * 按 {@link Money} 的单位数累加 long，每条变更只在读取金额时转换一次。Money 的范围（约 ±922 亿）
+     * 小于 DECIMAL(20,8)：期初余额、某条变更或累加结果超出范围时，改用 BigDecimal 继续累加剩余的变更。
+     */
+    private static final class ChangeAccumulator {
+
+        private final BigDecimal openingBalance;
+
+        private long balance;
+
+        private long inflow;
 
-    private BigDecimal calculateTotalOutflow(List<BalanceChangeHistory> changes) {
-        return changes.stream()
-                .filter(change -> change.getChangeAmount().compareTo(BigDecimal.ZERO) < 0)
-                .map(BalanceChangeHistory::getChangeAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .abs();  // 取绝对值
+        private long outflow;
+
+        /**
+         * 超出 Money 范围后改用的累加值，未超出时为 null
+         */
+        private BigDecimal wideBalance;
+
+        private BigDecimal wideInflow;
+
+        private BigDecimal wideOutflow;
+
+        private int count;
+
+        ChangeAccumulator(BigDecimal openingBalance) {
+            this.openingBalance = openingBalance;
+            try {
+                this.balance = Money.units(openingBalance);
+            } catch (ArithmeticException e) {
+                widen(openingBalance);
+            }
+        }
+
+        void add(BalanceChangeHistory change) {
+            // 冻结余额变更的前后余额是冻结余额，不影响钱包余额
+            if (WalletService.FROZEN_CHANGE_TYPE.equals(change.getChangeType())) {
+                return;
+            }
+            boolean sweep = StripedWalletService.SWEEP_CHANGE_TYPE.equals(change.getChangeType());
+            if (wideBalance == null && !addUnits(change.getChangeAmount(), sweep)) {
+                widen(Money.ofUnits(balance).toBigDecimal());
+            }
+            if (wideBalance != null) {
+                addWide(change.getChangeAmount(), sweep);
+            }
+            if (!sweep) {
+                count++;
+            }
+        }
+
+        /**
+         * 按单位数累加，超出范围时不修改任何累加值并返回 false
+         */
+        private boolean addUnits(BigDecimal changeAmount, boolean sweep) {
+            long newBalance;
+            long newInflow = inflow;
+            long newOutflow = outflow;
+            try {
+                long amount = Money.units(changeAmount);
+                newBalance = Math.addExact(balance, amount);
+                if (!sweep && amount > 0) {
+                    newInflow = Math.addExact(inflow, amount);
+                } else if (!sweep && amount < 0) {
+                    newOutflow = Math.subtractExact(outflow, amount);
+                }
+            } catch (ArithmeticException e) {
+                return false;
+            }
+            balance = newBalance;
+            inflow = newInflow;
+            outflow = newOutflow;
+            return true;
+        }
+
+        private void addWide(BigDecimal changeAmount, boolean sweep) {
+            wideBalance = wideBalance.add(changeAmount);
+            if (sweep) {
+                return;
+            }
+            if (changeAmount.signum() > 0) {
+                wideInflow = wideInflow.add(changeAmount);
+            } else if (changeAmount.signum() < 0) {
+                wideOutflow = wideOutflow.subtract(changeAmount);
+            }
+        }
+
+        private void widen(BigDecimal currentBalance) {
+            wideBalance = currentBalance;
+            wideInflow = Money.ofUnits(inflow).toBigDecimal();
+            wideOutflow = Money.ofUnits(outflow).toBigDecimal();
+        }
+
+        ReconciliationResult.ReconciliationResultBuilder toResult(Long userId, String currency, Wallet wallet) {
+            BigDecimal calculated = wideBalance != null ? wideBalance : Money.ofUnits(balance).toBigDecimal();
+            return ReconciliationResult.builder()
+                    .userId(userId)
+                    .currency(currency)
+                    .walletId(wallet.getId())
+                    .openingBalance(openingBalance)
+                    .calculatedClosingBalance(calculated)
+                    .actualClosingBalance(wallet.getBalance())
+                    .isBalanced(calculated.compareTo(wallet.getBalance()) == 0)
+                    .totalChanges(count)
+                    .totalInflow(wideInflow != null ? wideInflow : Money.ofUnits(inflow).toBigDecimal())
+                    .totalOutflow(wideOutflow != null ? wideOutflow : Money.ofUnits(outflow).toBigDecimal());
+        }
     }
 }
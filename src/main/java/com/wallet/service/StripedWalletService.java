@@ -0,0 +1,409 @@
+package com.wallet.service;
+
+import com.wallet.config.StripingProperties;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletStripe;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.StripeStrategy;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.ConcurrentUpdateException;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.ledger.LedgerEngine;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletStripeMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 热点钱包分片
+ * <p>
+ * 大商户钱包的每笔入账都要更新同一行，行锁成为串行点。开启分片后钱包由主行（分片号 0）
+ * 和 N 个分片行（wallet_stripe，分片号 1..N）共同承载，钱包余额为两者之和：
+ * <ul>
+ *     <li>入账按轮询或业务ID哈希落到某个分片，不再更新钱包主行</li>
+ *     <li>扣款先尝试主行，再尝试余额充足的分片；都不够时锁定主行和全部分片，
+ *     把分片余额归集到主行后再扣减</li>
+ *     <li>余额变更历史按分片记录前后余额（stripe_no），对账时各分片分别取期初余额再求和；
+ *     归集产生的变更类型为 STRIPE_SWEEP，不计入流入流出</li>
+ * </ul>
+ * 加锁顺序固定为 主行 → 分片：扣款在尝试任何分片之前先锁定主行（条件扣减失败的行同样会被锁住），
+ * 入账只锁单个分片且不碰主行，不会与扣款形成环路。转账、批量充值和组提交按钱包ID升序锁定主行后，
+ * 再经 {@link #lock(Wallet)} 锁定分片钱包的全部分片，同样遵守这一顺序。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StripedWalletService {
+
+    public static final String SWEEP_CHANGE_TYPE = "STRIPE_SWEEP";
+
+    private final WalletMapper walletMapper;
+
+    private final WalletStripeMapper stripeMapper;
+
+    private final BalanceChangeHistoryMapper historyMapper;
+
+    private final StripingProperties properties;
+
+    private final LedgerEngine ledgerEngine;
+
+    private final AtomicInteger roundRobin = new AtomicInteger();
+
+    /**
+     * 开启或扩充钱包分片，只能增加分片数；已有分片的余额保持不变
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Wallet enableStriping(Long userId, String currency, int stripes) {
+        if (stripes < 1 || stripes > properties.getMaxStripes()) {
+            throw new BusinessException("INVALID_STRIPES", "分片数需在 1 到 " + properties.getMaxStripes() + " 之间");
+        }
+        ledgerEngine.requireNotOwned(currency);
+        Wallet wallet = walletMapper.selectByUserAndCurrencyForUpdate(userId, currency);
+        if (wallet == null) {
+            throw new BusinessException("WALLET_NOT_FOUND", "钱包不存在");
+        }
+        int current = stripeCount(wallet);
+        if (stripes < current) {
+            throw new BusinessException("INVALID_STRIPES", "分片数只能增加，当前分片数: " + current);
+        }
+        if (stripes > current) {
+            List<WalletStripe> added = new ArrayList<>(stripes - current);
+            for (int stripeNo = current + 1; stripeNo <= stripes; stripeNo++) {
+                WalletStripe stripe = new WalletStripe();
+                stripe.setWalletId(wallet.getId());
+                stripe.setStripeNo(stripeNo);
+                stripe.setBalance(BigDecimal.ZERO);
+                stripe.setVersion(0);
+                added.add(stripe);
+            }
+            stripeMapper.batchInsert(added);
+            walletMapper.updateStripeCount(wallet.getId(), stripes);
+            wallet.setStripeCount(stripes);
+            log.info("钱包分片已开启: userId={}, currency={}, stripes={} -> {}", userId, currency, current, stripes);
+        }
+        return withStripes(wallet);
+    }
+
+    public boolean isStriped(Wallet wallet) {
+        return stripeCount(wallet) > 0;
+    }
+
+    /**
+     * 入账到某个分片，返回该分片和整个钱包的前后余额
+     * <p>
+     * 钱包余额为调用方读到的主行余额加上入账后的分片合计，主行不加锁，与并发扣款之间不保证是同一时刻的快照。
+     */
+    public StripeChange credit(Wallet wallet, BigDecimal amount, String businessId) {
+        int stripeNo = pickStripe(stripeCount(wallet), businessId);
+        int rows = stripeMapper.increaseBalance(wallet.getId(), stripeNo, amount);
+        if (rows == 0) {
+            throw new RuntimeException("更新分片余额失败，请重试");
+        }
+        // 行锁由本事务持有，读到的就是本次入账后的分片余额
+        BigDecimal balanceAfter = stripeMapper.selectByWalletAndStripe(wallet.getId(), stripeNo).getBalance();
+        BigDecimal walletAfter = wallet.getBalance().add(stripeMapper.sumBalance(wallet.getId()));
+        return new StripeChange(stripeNo, balanceAfter.subtract(amount), balanceAfter,
+                walletAfter.subtract(amount), walletAfter, List.of());
+    }
+
+    /**
+     * 扣款：主行 → 余额充足的分片 → 归集后从主行扣减
+     * <p>
+     * 返回实际扣减的分片、该分片和整个钱包的前后余额；发生归集时附带归集产生的变更历史（尚未关联交易ID），
+     * 由调用方在写入交易记录后一并落库。
+     */
+    public StripeChange debit(Wallet wallet, BigDecimal amount) {
+        // 1. 主行余额充足时直接扣减
+        if (walletMapper.decreaseBalanceIfSufficient(wallet.getUserId(), wallet.getCurrency(), amount) > 0) {
+            BigDecimal balanceAfter = walletMapper.selectByUserAndCurrency(
+                    wallet.getUserId(), wallet.getCurrency()).getBalance();
+            BigDecimal walletAfter = balanceAfter.add(stripeMapper.sumBalance(wallet.getId()));
+            return new StripeChange(0, balanceAfter.add(amount), balanceAfter,
+                    walletAfter.add(amount), walletAfter, List.of());
+        }
+
+        // 2. 先锁主行再碰分片：同一钱包的分片扣款与归集因此串行，入账不受影响
+        Wallet main = walletMapper.selectByIdsForUpdate(List.of(wallet.getId())).get(0);
+
+        // 3. 按余额从高到低尝试余额充足的分片；持有主行锁时分片只会被入账增加，条件扣减仍作为兜底
+        List<WalletStripe> candidates = new ArrayList<>(stripeMapper.selectByWalletId(wallet.getId()));
+        candidates.sort(Comparator.comparing(WalletStripe::getBalance).reversed());
+        for (WalletStripe stripe : candidates) {
+            if (stripe.getBalance().compareTo(amount) < 0) {
+                break;
+            }
+            if (stripeMapper.decreaseBalanceIfSufficient(wallet.getId(), stripe.getStripeNo(), amount) > 0) {
+                BigDecimal balanceAfter = stripeMapper.selectByWalletAndStripe(
+                        wallet.getId(), stripe.getStripeNo()).getBalance();
+                BigDecimal walletAfter = main.getBalance().add(stripeMapper.sumBalance(wallet.getId()));
+                return new StripeChange(stripe.getStripeNo(), balanceAfter.add(amount), balanceAfter,
+                        walletAfter.add(amount), walletAfter, List.of());
+            }
+        }
+
+        // 4. 单个分片都不够：锁定全部分片，归集到主行后扣减
+        return sweepAndDebit(wallet, main, amount);
+    }
+
+    /**
+     * 批量路径（转账、批量充值、组提交）在锁定钱包主行后调用：分片钱包再锁定全部分片，
+     * 批内各笔的前后余额由返回的 {@link LockedWallet} 在内存中计算
+     */
+    public LockedWallet lock(Wallet main) {
+        if (!isStriped(main)) {
+            return new LockedWallet(main, List.of());
+        }
+        return new LockedWallet(main, stripeMapper.selectByWalletIdForUpdate(main.getId()));
+    }
+
+    /**
+     * 批内发生过归集时清零全部分片余额；主行余额由调用方随净额一并更新
+     */
+    public void applySweep(LockedWallet locked) {
+        if (locked.swept) {
+            stripeMapper.clearBalances(locked.wallet.getId());
+            log.info("分片余额归集: walletId={}, stripes={}", locked.wallet.getId(), locked.stripes.size());
+        }
+    }
+
+    /**
+     * 只变更了主行的余额变更；分片钱包的钱包余额再加上分片合计
+     */
+    public StripeChange mainRowChange(Wallet wallet, BigDecimal balanceBefore, BigDecimal balanceAfter) {
+        if (!isStriped(wallet)) {
+            return StripeChange.mainRow(balanceBefore, balanceAfter);
+        }
+        BigDecimal stripes = stripeMapper.sumBalance(wallet.getId());
+        return new StripeChange(0, balanceBefore, balanceAfter,
+                balanceBefore.add(stripes), balanceAfter.add(stripes), List.of());
+    }
+
+    private StripeChange sweepAndDebit(Wallet wallet, Wallet main, BigDecimal amount) {
+        List<WalletStripe> stripes = stripeMapper.selectByWalletIdForUpdate(wallet.getId());
+        BigDecimal swept = BigDecimal.ZERO;
+        List<BalanceChangeHistory> sweepChanges = new ArrayList<>();
+        for (WalletStripe stripe : stripes) {
+            if (stripe.getBalance().signum() != 0) {
+                swept = swept.add(stripe.getBalance());
+                sweepChanges.add(sweepChange(wallet.getId(), stripe.getStripeNo(),
+                        stripe.getBalance().negate(), stripe.getBalance()));
+            }
+        }
+        BigDecimal total = main.getBalance().add(swept);
+        BigDecimal available = total.subtract(main.getFrozenBalance());
+        if (available.compareTo(amount) < 0) {
+            throw new InsufficientBalanceException("余额不足，当前可用余额: " + available);
+        }
+
+        if (swept.signum() != 0) {
+            stripeMapper.clearBalances(wallet.getId());
+            walletMapper.updateBalance(wallet.getUserId(), wallet.getCurrency(), swept);
+            sweepChanges.add(sweepChange(wallet.getId(), 0, swept, main.getBalance()));
+            log.info("分片余额归集: walletId={}, stripes={}, swept={}", wallet.getId(), sweepChanges.size() - 1, swept);
+        }
+        if (walletMapper.decreaseBalanceIfSufficient(wallet.getUserId(), wallet.getCurrency(), amount) == 0) {
+            throw new ConcurrentUpdateException("并发操作冲突，请重试");
+        }
+        // 归集后余额全部在主行，主行前后余额即钱包前后余额
+        return new StripeChange(0, total, total.subtract(amount), total, total.subtract(amount), sweepChanges);
+    }
+
+    /**
+     * 把分片余额加到钱包余额上，未分片的钱包原样返回
+     */
+    public Wallet withStripes(Wallet wallet) {
+        if (wallet != null && isStriped(wallet)) {
+            wallet.setBalance(wallet.getBalance().add(stripeMapper.sumBalance(wallet.getId())));
+        }
+        return wallet;
+    }
+
+    public List<Wallet> withStripes(List<Wallet> wallets) {
+        wallets.forEach(this::withStripes);
+        return wallets;
+    }
+
+    /**
+     * 钱包在指定时间之前最后一次变更后的余额；分片钱包为主行和各分片分别取值后求和
+     */
+    public BigDecimal balanceBefore(Wallet wallet, Date time) {
+        return balanceBefore(wallet.getId(), stripeCount(wallet), time);
+    }
+
+    /**
+     * 同 {@link #balanceBefore(Wallet, Date)}，只有钱包ID时按分片表确定分片数
+     */
+    public BigDecimal balanceBefore(Long walletId, Date time) {
+        return balanceBefore(walletId, stripeMapper.countByWallet(walletId), time);
+    }
+
+    private BigDecimal balanceBefore(Long walletId, int stripeCount, Date time) {
+        if (stripeCount == 0) {
+            BalanceChangeHistory lastChange = historyMapper.selectLastChangeBefore(walletId, time);
+            return lastChange != null ? lastChange.getBalanceAfter() : BigDecimal.ZERO;
+        }
+        BigDecimal balance = BigDecimal.ZERO;
+        for (int stripeNo = 0; stripeNo <= stripeCount; stripeNo++) {
+            BalanceChangeHistory lastChange = historyMapper.selectLastStripeChangeBefore(walletId, stripeNo, time);
+            if (lastChange != null) {
+                balance = balance.add(lastChange.getBalanceAfter());
+            }
+        }
+        return balance;
+    }
+
+    private int pickStripe(int stripeCount, String businessId) {
+        int index = properties.getStrategy() == StripeStrategy.HASH && businessId != null
+                ? businessId.hashCode()
+                : roundRobin.getAndIncrement();
+        return Math.floorMod(index, stripeCount) + 1;
+    }
+
+    private static int stripeCount(Wallet wallet) {
+        return wallet.getStripeCount() != null ? wallet.getStripeCount() : 0;
+    }
+
+    private static BalanceChangeHistory sweepChange(Long walletId, int stripeNo, BigDecimal amount,
+                                                    BigDecimal balanceBefore) {
+        BalanceChangeHistory history = new BalanceChangeHistory();
+        history.setWalletId(walletId);
+        history.setChangeAmount(amount);
+        history.setBalanceBefore(balanceBefore);
+        history.setBalanceAfter(balanceBefore.add(amount));
+        history.setChangeType(SWEEP_CHANGE_TYPE);
+        history.setStripeNo(stripeNo);
+        return history;
+    }
+
+    /**
+     * 批量路径中已加锁的钱包
+     * <p>
+     * 持有主行锁时分片只会被入账增加，锁定全部分片后钱包余额在本事务内只由本批改变。批内入账记在主行，
+     * 扣款时主行可用余额不足则先把全部分片归集到主行（整批最多一次），因此每笔变更都落在主行：
+     * 变更历史记主行前后余额，交易记录记钱包前后余额。
+     */
+    public static final class LockedWallet {
+
+        private final Wallet wallet;
+
+        private final List<WalletStripe> stripes;
+
+        private BigDecimal mainBalance;
+
+        private BigDecimal stripeBalance = BigDecimal.ZERO;
+
+        private boolean swept;
+
+        private LockedWallet(Wallet wallet, List<WalletStripe> stripes) {
+            this.wallet = wallet;
+            this.stripes = stripes;
+            this.mainBalance = wallet.getBalance();
+            for (WalletStripe stripe : stripes) {
+                stripeBalance = stripeBalance.add(stripe.getBalance());
+            }
+        }
+
+        public Wallet wallet() {
+            return wallet;
+        }
+
+        /**
+         * 当前钱包余额：主行加分片合计
+         */
+        public BigDecimal balance() {
+            return mainBalance.add(stripeBalance);
+        }
+
+        /**
+         * 当前可用余额；冻结余额在主行上，持有主行锁时不会变化
+         */
+        public BigDecimal available() {
+            return balance().subtract(wallet.getFrozenBalance());
+        }
+
+        /**
+         * 主行需要更新的净额，含归集转入的分片余额
+         */
+        public BigDecimal mainDelta() {
+            return mainBalance.subtract(wallet.getBalance());
+        }
+
+        /**
+         * 应用一笔变更（负数为扣款），调用方需先确认可用余额充足
+         */
+        public StripeChange apply(BigDecimal amount) {
+            BigDecimal walletBefore = balance();
+            List<BalanceChangeHistory> sweepChanges = List.of();
+            if (amount.signum() < 0 && stripeBalance.signum() != 0
+                    && mainBalance.subtract(wallet.getFrozenBalance()).add(amount).signum() < 0) {
+                sweepChanges = sweep();
+            }
+            BigDecimal balanceBefore = mainBalance;
+            mainBalance = mainBalance.add(amount);
+            return new StripeChange(0, balanceBefore, mainBalance, walletBefore, balance(), sweepChanges);
+        }
+
+        private List<BalanceChangeHistory> sweep() {
+            List<BalanceChangeHistory> sweepChanges = new ArrayList<>(stripes.size() + 1);
+            for (WalletStripe stripe : stripes) {
+                if (stripe.getBalance().signum() != 0) {
+                    sweepChanges.add(sweepChange(wallet.getId(), stripe.getStripeNo(),
+                            stripe.getBalance().negate(), stripe.getBalance()));
+                }
+            }
+            sweepChanges.add(sweepChange(wallet.getId(), 0, stripeBalance, mainBalance));
+            mainBalance = mainBalance.add(stripeBalance);
+            stripeBalance = BigDecimal.ZERO;
+            swept = true;
+            return sweepChanges;
+        }
+    }
+
+    /**
+     * 一次分片余额变更：实际变更的分片（0 为主行）、该分片前后余额（写入余额变更历史）、
+     * 整个钱包的前后余额（写入交易记录和响应），以及扣款前归集产生的变更历史
+     */
+    public record StripeChange(int stripeNo, BigDecimal balanceBefore, BigDecimal balanceAfter,
+                               BigDecimal walletBalanceBefore, BigDecimal walletBalanceAfter,
+                               List<BalanceChangeHistory> sweepChanges) {
+
+        /**
+         * 未分片钱包的主行变更，分片余额即钱包余额
+         */
+        public static StripeChange mainRow(BigDecimal balanceBefore, BigDecimal balanceAfter) {
+            return new StripeChange(0, balanceBefore, balanceAfter, balanceBefore, balanceAfter, List.of());
+        }
+
+        /**
+         * 本次变更的余额变更历史：归集记录在前，均关联同一笔交易
+         */
+        public List<BalanceChangeHistory> toHistories(WalletTransaction transaction) {
+            List<BalanceChangeHistory> histories = new ArrayList<>(sweepChanges.size() + 1);
+            for (BalanceChangeHistory sweep : sweepChanges) {
+                sweep.setTransactionId(transaction.getId());
+                histories.add(sweep);
+            }
+            BalanceChangeHistory history = new BalanceChangeHistory();
+            history.setWalletId(transaction.getWalletId());
+            history.setTransactionId(transaction.getId());
+            history.setChangeAmount(transaction.getAmount());
+            history.setBalanceBefore(balanceBefore);
+            history.setBalanceAfter(balanceAfter);
+            history.setChangeType("BALANCE");
+            history.setStripeNo(stripeNo);
+            histories.add(history);
+            return histories;
+        }
+    }
+}
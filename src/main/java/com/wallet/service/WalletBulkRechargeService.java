@@ -0,0 +1,393 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.cache.WalletBalanceCache;
+import com.wallet.config.BulkRechargeProperties;
+import com.wallet.dto.converter.WalletConverter;
+import com.wallet.dto.request.RechargeRequest;
+import com.wallet.dto.response.BulkRechargeResponse;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.BalanceDelta;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.TransactionStatus;
+import com.wallet.enums.TransactionType;
+import com.wallet.exception.BusinessException;
+import com.wallet.idgen.TransactionNoGenerator;
+import com.wallet.ledger.LedgerEngine;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.money.CurrencyScales;
+import com.wallet.service.StripedWalletService.LockedWallet;
+import com.wallet.service.StripedWalletService.StripeChange;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 批量充值
+ * <p>
+ * 请求按 {@code wallet.bulk-recharge.chunk-size} 分段，每段一个数据库事务：一条集合查询完成幂等检查，
+ * 缺失的钱包批量创建，按钱包ID升序加锁后用一条多行 UPDATE 写入各钱包的净额，
+ * 流水与余额变更历史各用一条多行 INSERT 写入。分片钱包另行锁定全部分片，入账记在主行，流水记钱包余额。
+ * 某一段事务失败时整段回滚，并逐条回退到 {@link WalletService} 的常规路径处理，返回逐条结果。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletBulkRechargeService {
+
+    private final BulkRechargeProperties properties;
+
+    private final WalletService walletService;
+
+    private final WalletMapper walletMapper;
+
+    private final WalletTransactionMapper transactionMapper;
+
+    private final BalanceChangeHistoryMapper balanceChangeHistoryMapper;
+
+    private final WalletConverter walletConverter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final WalletBalanceCache walletBalanceCache;
+
+    private final TransactionNoGenerator transactionNoGenerator;
+
+    private final LedgerEngine ledgerEngine;
+
+    private final CurrencyScales currencyScales;
+
+    private final StripedWalletService stripedWalletService;
+
+    /**
+     * 批量充值
+     *
+     * @param items 充值明细
+     * @return 各条结果，与请求顺序一致
+     */
+    public BulkRechargeResponse bulkRecharge(List<RechargeRequest> items) {
+        if (items == null || items.isEmpty()) {
+            throw new BusinessException("INVALID_RECHARGE", "充值明细不能为空");
+        }
+        if (items.size() > properties.getMaxItems()) {
+            throw new BusinessException("INVALID_RECHARGE",
+                    "单次充值条数超过上限: " + items.size() + " > " + properties.getMaxItems());
+        }
+        items.forEach(item -> ledgerEngine.requireNotOwned(item.getCurrency()));
+
+        long start = System.currentTimeMillis();
+        TransactionResponse[] results = new TransactionResponse[items.size()];
+        for (int from = 0; from < items.size(); from += properties.getChunkSize()) {
+            List<RechargeRequest> chunk = items.subList(from, Math.min(from + properties.getChunkSize(), items.size()));
+            TransactionResponse[] chunkResults = new TransactionResponse[chunk.size()];
+            try {
+                transactionTemplate.executeWithoutResult(status -> applyChunk(chunk, chunkResults));
+            } catch (Exception e) {
+                log.warn("批量充值分段失败，逐条回退处理: size={}, error={}", chunk.size(), e.getMessage());
+                rechargeIndividually(chunk, chunkResults);
+            }
+            System.arraycopy(chunkResults, 0, results, from, chunkResults.length);
+        }
+
+        int succeeded = 0;
+        for (TransactionResponse result : results) {
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                succeeded++;
+            }
+        }
+        log.info("批量充值完成: items={}, succeeded={}, failed={}, elapsed={}ms",
+                items.size(), succeeded, items.size() - succeeded, System.currentTimeMillis() - start);
+        return BulkRechargeResponse.builder()
+                .totalItems(items.size())
+                .succeededItems(succeeded)
+                .failedItems(items.size() - succeeded)
+                .results(Arrays.asList(results))
+                .build();
+    }
+
+    /**
+     * 在一个数据库事务中处理一段充值
+     */
+    private void applyChunk(List<RechargeRequest> chunk, TransactionResponse[] results) {
+        // 1. 参数校验，不合法的条目直接返回失败
+        List<Integer> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            String error = validate(chunk.get(i));
+            if (error != null) {
+                results[i] = failure(chunk.get(i), error);
+            } else {
+                valid.add(i);
+            }
+        }
+
+        // 2. 一条集合查询完成幂等检查
+        Map<BusinessKey, WalletTransaction> processed = lookupProcessed(chunk, valid);
+
+        // 3. 锁定涉及的钱包，缺失的批量创建
+        Map<WalletKey, LockedWallet> wallets = new HashMap<>();
+        List<Integer> pending = new ArrayList<>(valid.size());
+        for (int i : valid) {
+            RechargeRequest item = chunk.get(i);
+            if (!processed.containsKey(new BusinessKey(item.getBusinessType(), item.getBusinessId()))) {
+                pending.add(i);
+            }
+        }
+        if (!pending.isEmpty()) {
+            wallets = lockWallets(chunk, pending);
+        }
+
+        // 4. 按请求顺序计算每条的前后余额
+        List<WalletTransaction> applied = new ArrayList<>(pending.size());
+        List<StripeChange> changes = new ArrayList<>(pending.size());
+        for (int i : valid) {
+            RechargeRequest item = chunk.get(i);
+            BusinessKey businessKey = new BusinessKey(item.getBusinessType(), item.getBusinessId());
+            WalletTransaction existing = processed.get(businessKey);
+            if (existing != null) {
+                results[i] = walletConverter.toDuplicateResponse(existing, item.getUserId(), item.getCurrency(),
+                        item.getAmount(), item.getRemark());
+                continue;
+            }
+
+            WalletKey walletKey = new WalletKey(item.getUserId(), item.getCurrency());
+            LockedWallet locked = wallets.get(walletKey);
+            StripeChange change = locked.apply(item.getAmount());
+            WalletTransaction transaction = createTransaction(item, locked.wallet(), change);
+            applied.add(transaction);
+            changes.add(change);
+            // 同一请求内重复的业务ID按重复请求处理
+            processed.put(businessKey, transaction);
+            results[i] = toResponse(item, transaction);
+        }
+
+        if (applied.isEmpty()) {
+            return;
+        }
+
+        // 5. 一条多行 UPDATE 写入各钱包净额
+        List<BalanceDelta> deltas = new ArrayList<>(wallets.size());
+        for (Map.Entry<WalletKey, LockedWallet> entry : wallets.entrySet()) {
+            BigDecimal netAmount = entry.getValue().mainDelta();
+            if (netAmount.signum() != 0) {
+                deltas.add(new BalanceDelta(entry.getValue().wallet().getId(), netAmount));
+                walletBalanceCache.evictAfterCommit(entry.getKey().userId(), entry.getKey().currency());
+            }
+        }
+        int rows = walletMapper.batchIncreaseBalance(deltas);
+        if (rows != deltas.size()) {
+            throw new BusinessException("BULK_RECHARGE_FAILED", "批量更新余额失败");
+        }
+
+        // 6. 流水与变更历史各一条多行 INSERT
+        transactionMapper.batchInsert(applied);
+        applied.forEach(idempotencyCache::putAfterCommit);
+        List<BalanceChangeHistory> histories = new ArrayList<>(applied.size());
+        for (int i = 0; i < applied.size(); i++) {
+            histories.addAll(changes.get(i).toHistories(applied.get(i)));
+        }
+        balanceChangeHistoryMapper.batchInsert(histories);
+
+        log.debug("批量充值分段完成: size={}, applied={}, wallets={}", chunk.size(), applied.size(), deltas.size());
+    }
+
+    private String validate(RechargeRequest item) {
+        if (item.getUserId() == null || !StringUtils.hasText(item.getCurrency())
+                || !StringUtils.hasText(item.getBusinessType()) || !StringUtils.hasText(item.getBusinessId())) {
+            return "充值参数不完整";
+        }
+        if (item.getAmount() == null || item.getAmount().signum() <= 0) {
+            return "充值金额必须大于0";
+        }
+        try {
+            currencyScales.amount(item.getCurrency(), item.getAmount());
+            BusinessTypes.requireUnreserved(item.getBusinessType());
+        } catch (BusinessException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    /**
+     * 查询已处理过的业务键：缓存命中或布隆过滤器判定为新键的不再查库
+     */
+    private Map<BusinessKey, WalletTransaction> lookupProcessed(List<RechargeRequest> chunk, List<Integer> valid) {
+        Map<BusinessKey, WalletTransaction> processed = new HashMap<>();
+        Set<BusinessKey> lookups = new LinkedHashSet<>();
+        for (int i : valid) {
+            RechargeRequest item = chunk.get(i);
+            WalletTransaction cached = idempotencyCache.get(item.getBusinessType(), item.getBusinessId());
+            if (cached != null) {
+                processed.put(new BusinessKey(item.getBusinessType(), item.getBusinessId()), cached);
+            } else if (!idempotencyCache.isDefinitelyNew(item.getBusinessType(), item.getBusinessId())) {
+                lookups.add(new BusinessKey(item.getBusinessType(), item.getBusinessId()));
+            }
+        }
+        if (lookups.isEmpty()) {
+            return processed;
+        }
+
+        List<WalletTransaction> keys = new ArrayList<>(lookups.size());
+        lookups.forEach(key -> keys.add(key.toLookup()));
+        for (WalletTransaction existing : transactionMapper.selectByBusinessKeys(keys)) {
+            processed.put(new BusinessKey(existing.getBusinessType(), existing.getBusinessId()), existing);
+        }
+        for (BusinessKey key : lookups) {
+            idempotencyCache.recordLookup(key.businessType(), key.businessId(), processed.get(key));
+        }
+        return processed;
+    }
+
+    /**
+     * 批量创建缺失的钱包，再按钱包ID升序锁定本段涉及的全部钱包（分片钱包连同全部分片）
+     */
+    private Map<WalletKey, LockedWallet> lockWallets(List<RechargeRequest> chunk, List<Integer> pending) {
+        Map<WalletKey, Wallet> keys = new LinkedHashMap<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<String> currencies = new HashSet<>();
+        for (int i : pending) {
+            RechargeRequest item = chunk.get(i);
+            keys.put(new WalletKey(item.getUserId(), item.getCurrency()), null);
+            userIds.add(item.getUserId());
+            currencies.add(item.getCurrency());
+        }
+        for (Wallet wallet : walletMapper.selectByUserIdsAndCurrencies(userIds, currencies)) {
+            WalletKey key = new WalletKey(wallet.getUserId(), wallet.getCurrency());
+            if (keys.containsKey(key)) {
+                keys.put(key, wallet);
+            }
+        }
+
+        List<Wallet> created = new ArrayList<>();
+        keys.forEach((key, wallet) -> {
+            if (wallet == null) {
+                created.add(newWallet(key.userId(), key.currency()));
+            }
+        });
+        if (!created.isEmpty()) {
+            created.sort(Comparator.comparing(Wallet::getUserId));
+            walletMapper.batchInsert(created);
+            for (Wallet wallet : created) {
+                keys.put(new WalletKey(wallet.getUserId(), wallet.getCurrency()), wallet);
+            }
+        }
+
+        List<Long> ids = new ArrayList<>(keys.size());
+        keys.values().forEach(wallet -> ids.add(wallet.getId()));
+        ids.sort(Comparator.naturalOrder());
+        Map<WalletKey, LockedWallet> locked = new LinkedHashMap<>();
+        for (Wallet wallet : walletMapper.selectByIdsForUpdate(ids)) {
+            locked.put(new WalletKey(wallet.getUserId(), wallet.getCurrency()), stripedWalletService.lock(wallet));
+        }
+        return locked;
+    }
+
+    /**
+     * 分段事务失败后逐条走常规充值路径
+     */
+    private void rechargeIndividually(List<RechargeRequest> chunk, TransactionResponse[] results) {
+        for (int i = 0; i < chunk.size(); i++) {
+            RechargeRequest item = chunk.get(i);
+            String error = validate(item);
+            if (error != null) {
+                results[i] = failure(item, error);
+                continue;
+            }
+            try {
+                results[i] = walletService.recharge(item.getUserId(), item.getCurrency(), item.getAmount(),
+                        item.getBusinessType(), item.getBusinessId(), item.getRemark());
+            } catch (Exception e) {
+                results[i] = failure(item, e.getMessage());
+            }
+        }
+    }
+
+    private WalletTransaction createTransaction(RechargeRequest item, Wallet wallet, StripeChange change) {
+        WalletTransaction transaction = new WalletTransaction();
+        transaction.setTransactionNo(transactionNoGenerator.next());
+        transaction.setWalletId(wallet.getId());
+        transaction.setUserId(item.getUserId());
+        transaction.setCurrency(item.getCurrency());
+        transaction.setAmount(item.getAmount());
+        transaction.setBalanceBefore(change.walletBalanceBefore());
+        transaction.setBalanceAfter(change.walletBalanceAfter());
+        transaction.setTransactionType(TransactionType.RECHARGE.getCode());
+        transaction.setBusinessType(item.getBusinessType());
+        transaction.setBusinessId(item.getBusinessId());
+        transaction.setStatus(TransactionStatus.SUCCESS.getCode());
+        transaction.setRemark(item.getRemark());
+        return transaction;
+    }
+
+    private Wallet newWallet(Long userId, String currency) {
+        Wallet wallet = new Wallet();
+        wallet.setUserId(userId);
+        wallet.setCurrency(currency);
+        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setFrozenBalance(BigDecimal.ZERO);
+        wallet.setVersion(0);
+        wallet.setStatus(1);
+        return wallet;
+    }
+
+    private TransactionResponse toResponse(RechargeRequest item, WalletTransaction transaction) {
+        return TransactionResponse.builder()
+                .success(true)
+                .message("充值成功")
+                .transactionNo(transaction.getTransactionNo())
+                .userId(item.getUserId())
+                .currency(item.getCurrency())
+                .amount(item.getAmount())
+                .balanceBefore(transaction.getBalanceBefore())
+                .balanceAfter(transaction.getBalanceAfter())
+                .businessType(item.getBusinessType())
+                .businessId(item.getBusinessId())
+                .remark(item.getRemark())
+                .build();
+    }
+
+    private TransactionResponse failure(RechargeRequest item, String message) {
+        return TransactionResponse.builder()
+                .success(false)
+                .message(message)
+                .userId(item.getUserId())
+                .currency(item.getCurrency())
+                .amount(item.getAmount())
+                .businessType(item.getBusinessType())
+                .businessId(item.getBusinessId())
+                .remark(item.getRemark())
+                .build();
+    }
+
+    private record WalletKey(Long userId, String currency) {
+    }
+
+    private record BusinessKey(String businessType, String businessId) {
+
+        WalletTransaction toLookup() {
+            WalletTransaction transaction = new WalletTransaction();
+            transaction.setBusinessType(businessType);
+            transaction.setBusinessId(businessId);
+            return transaction;
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.cache.WalletBalanceCache;
+import com.wallet.config.GroupCommitProperties;
+import com.wallet.dto.converter.WalletConverter;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.TransactionStatus;
+import com.wallet.enums.TransactionType;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.idgen.TransactionNoGenerator;
+import com.wallet.ledger.LedgerEngine;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.money.CurrencyScales;
+import com.wallet.service.StripedWalletService.LockedWallet;
+import com.wallet.service.StripedWalletService.StripeChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点钱包组提交服务
+ * <p>
+ * 按 (userId, currency) 将充值/提现请求排队到固定通道，通道线程把一小批请求合并到同一个数据库事务中：
+ * 一次加锁读取钱包、一条净额 UPDATE、批量插入交易流水与余额变更历史，再逐个完成调用方的 Future。
+ * 批量事务失败时整批回滚，并逐笔回退到 {@link WalletService} 的常规路径处理。
+ * 分片钱包在锁定主行后再锁定全部分片，按钱包余额判断提现是否充足，主行不够扣时先归集分片。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletGroupCommitService {
+
+    private final GroupCommitProperties properties;
+
+    private final WalletService walletService;
+
+    private final WalletMapper walletMapper;
+
+    private final WalletTransactionMapper transactionMapper;
+
+    private final BalanceChangeHistoryMapper balanceChangeHistoryMapper;
+
+    private final WalletConverter walletConverter;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final WalletBalanceCache walletBalanceCache;
+
+    private final TransactionNoGenerator transactionNoGenerator;
+
+    private final LedgerEngine ledgerEngine;
+
+    private final CurrencyScales currencyScales;
+
+    private final StripedWalletService stripedWalletService;
+
+    private final List<Lane> lanes = new ArrayList<>();
+
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < properties.getLanes(); i++) {
+            Lane lane = new Lane(i, new LinkedBlockingQueue<>(properties.getQueueCapacity()));
+            lanes.add(lane);
+            lane.thread.start();
+        }
+        log.info("组提交模式已启用: lanes={}, maxBatchSize={}, maxWaitMicros={}",
+                properties.getLanes(), properties.getMaxBatchSize(), properties.getMaxWaitMicros());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // 停机时仍在队列中的请求逐笔处理，保证每个 Future 都有结果
+            List<PendingOperation> remaining = new ArrayList<>();
+            lane.queue.drainTo(remaining);
+            remaining.forEach(this::applyIndividually);
+        }
+        lanes.clear();
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 提交充值请求
+     */
+    public CompletableFuture<TransactionResponse> submitRecharge(Long userId, String currency, BigDecimal amount,
+                                                                 String businessType, String businessId,
+                                                                 String remark) {
+        return submit(new PendingOperation(userId, currency, amount, businessType, businessId, remark,
+                transactionNoGenerator.next(), false));
+    }
+
+    /**
+     * 提交提现请求
+     */
+    public CompletableFuture<TransactionResponse> submitWithdraw(Long userId, String currency, BigDecimal amount,
+                                                                 String businessType, String businessId,
+                                                                 String remark) {
+        return submit(new PendingOperation(userId, currency, amount, businessType, businessId, remark,
+                transactionNoGenerator.next(), true));
+    }
+
+    /**
+     * 充值（同步等待组提交结果）
+     */
+    public TransactionResponse recharge(Long userId, String currency, BigDecimal amount,
+                                        String businessType, String businessId, String remark) {
+        return await(submitRecharge(userId, currency, amount, businessType, businessId, remark));
+    }
+
+    /**
+     * 提现（同步等待组提交结果）
+     */
+    public TransactionResponse withdraw(Long userId, String currency, BigDecimal amount,
+                                        String businessType, String businessId, String remark) {
+        return await(submitWithdraw(userId, currency, amount, businessType, businessId, remark));
+    }
+
+    private CompletableFuture<TransactionResponse> submit(PendingOperation operation) {
+        ledgerEngine.requireNotOwned(operation.currency);
+        currencyScales.amount(operation.currency, operation.amount);
+        BusinessTypes.requireUnreserved(operation.businessType);
+        if (!running) {
+            applyIndividually(operation);
+            return operation.future;
+        }
+        Lane lane = lanes.get(Math.floorMod(operation.walletKey().hashCode(), lanes.size()));
+        if (!lane.queue.offer(operation)) {
+            // 队列已满，退化为调用线程逐笔处理（背压）
+            applyIndividually(operation);
+        }
+        return operation.future;
+    }
+
+    private TransactionResponse await(CompletableFuture<TransactionResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void runLane(Lane lane) {
+        long maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(properties.getMaxWaitMicros());
+        List<PendingOperation> drained = new ArrayList<>(properties.getMaxBatchSize());
+        while (running) {
+            try {
+                drained.add(lane.queue.take());
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (drained.size() < properties.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingOperation next = remaining > 0
+                            ? lane.queue.poll(remaining, TimeUnit.NANOSECONDS) : lane.queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    drained.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 已取出的请求仍需处理，剩余的由 stop() 收尾
+            }
+
+            // 同一通道内可能混有多个钱包，按钱包分组后各自提交
+            Map<WalletKey, List<PendingOperation>> byWallet = new LinkedHashMap<>();
+            for (PendingOperation operation : drained) {
+                byWallet.computeIfAbsent(operation.walletKey(), key -> new ArrayList<>()).add(operation);
+            }
+            byWallet.values().forEach(this::applyBatch);
+            drained.clear();
+        }
+    }
+
+    /**
+     * 在一个数据库事务中应用同一钱包的一批操作，提交成功后再完成各调用方的 Future
+     */
+    private void applyBatch(List<PendingOperation> batch) {
+        List<Outcome> outcomes;
+        try {
+            outcomes = transactionTemplate.execute(status -> doApplyBatch(batch));
+        } catch (Exception e) {
+            log.warn("组提交失败，逐笔回退处理: size={}, error={}", batch.size(), e.getMessage());
+            batch.forEach(this::applyIndividually);
+            return;
+        }
+        for (Outcome outcome : outcomes) {
+            if (outcome.error != null) {
+                outcome.operation.future.completeExceptionally(outcome.error);
+            } else {
+                outcome.operation.future.complete(outcome.response);
+            }
+        }
+    }
+
+    private List<Outcome> doApplyBatch(List<PendingOperation> batch) {
+        PendingOperation head = batch.get(0);
+        Long userId = head.userId;
+        String currency = head.currency;
+
+        // 1. 批量幂等检查：缓存命中或布隆过滤器判定为新键的不再查库
+        Map<BusinessKey, WalletTransaction> processed = new HashMap<>();
+        List<WalletTransaction> lookups = new ArrayList<>(batch.size());
+        for (PendingOperation operation : batch) {
+            WalletTransaction candidate = operation.transaction;
+            WalletTransaction cached = idempotencyCache.get(candidate.getBusinessType(), candidate.getBusinessId());
+            if (cached != null) {
+                processed.put(new BusinessKey(cached.getBusinessType(), cached.getBusinessId()), cached);
+            } else if (!idempotencyCache.isDefinitelyNew(candidate.getBusinessType(), candidate.getBusinessId())) {
+                lookups.add(candidate);
+            }
+        }
+        if (!lookups.isEmpty()) {
+            for (WalletTransaction existing : transactionMapper.selectByBusinessKeys(lookups)) {
+                processed.put(new BusinessKey(existing.getBusinessType(), existing.getBusinessId()), existing);
+            }
+            for (WalletTransaction lookup : lookups) {
+                idempotencyCache.recordLookup(lookup.getBusinessType(), lookup.getBusinessId(),
+                        processed.get(new BusinessKey(lookup.getBusinessType(), lookup.getBusinessId())));
+            }
+        }
+
+        // 2. 加锁读取钱包，有充值时按需创建
+        Wallet wallet = walletMapper.selectByUserAndCurrencyForUpdate(userId, currency);
+        if (wallet == null && batch.stream().anyMatch(operation -> !operation.withdraw)) {
+            createWallet(userId, currency);
+            wallet = walletMapper.selectByUserAndCurrencyForUpdate(userId, currency);
+        }
+
+        // 3. 按入队顺序计算每笔的前后余额
+        LockedWallet locked = wallet != null ? stripedWalletService.lock(wallet) : null;
+        List<Outcome> outcomes = new ArrayList<>(batch.size());
+        List<WalletTransaction> applied = new ArrayList<>(batch.size());
+        List<StripeChange> changes = new ArrayList<>(batch.size());
+        for (PendingOperation operation : batch) {
+            WalletTransaction transaction = operation.transaction;
+            BusinessKey businessKey = new BusinessKey(transaction.getBusinessType(), transaction.getBusinessId());
+            WalletTransaction existing = processed.get(businessKey);
+            if (existing != null) {
+                outcomes.add(Outcome.success(operation, walletConverter.toDuplicateResponse(existing,
+                        userId, currency, transaction.getAmount(), operation.remark)));
+                continue;
+            }
+            if (wallet == null) {
+                outcomes.add(Outcome.failure(operation, new InsufficientBalanceException("钱包不存在")));
+                continue;
+            }
+            if (operation.withdraw && locked.available().compareTo(operation.amount) < 0) {
+                outcomes.add(Outcome.failure(operation, new InsufficientBalanceException(
+                        "余额不足，当前可用余额: " + locked.available())));
+                continue;
+            }
+
+            StripeChange change = locked.apply(transaction.getAmount());
+            transaction.setWalletId(wallet.getId());
+            transaction.setBalanceBefore(change.walletBalanceBefore());
+            transaction.setBalanceAfter(change.walletBalanceAfter());
+            transaction.setStatus(TransactionStatus.SUCCESS.getCode());
+            applied.add(transaction);
+            changes.add(change);
+            processed.put(businessKey, transaction);
+            outcomes.add(Outcome.success(operation, toResponse(operation, transaction)));
+        }
+
+        if (applied.isEmpty()) {
+            return outcomes;
+        }
+
+        // 4. 一条净额 UPDATE + 批量插入流水与历史
+        stripedWalletService.applySweep(locked);
+        BigDecimal netAmount = locked.mainDelta();
+        int rows = walletMapper.updateBalance(userId, currency, netAmount);
+        if (rows == 0) {
+            throw new BusinessException("GROUP_COMMIT_FAILED", "批量更新余额失败");
+        }
+        walletBalanceCache.evictAfterCommit(userId, currency);
+        transactionMapper.batchInsert(applied);
+        applied.forEach(idempotencyCache::putAfterCommit);
+
+        List<BalanceChangeHistory> histories = new ArrayList<>(applied.size());
+        for (int i = 0; i < applied.size(); i++) {
+            histories.addAll(changes.get(i).toHistories(applied.get(i)));
+        }
+        balanceChangeHistoryMapper.batchInsert(histories);
+
+        log.debug("组提交完成: userId={}, currency={}, size={}, applied={}, netAmount={}",
+                userId, currency, batch.size(), applied.size(), netAmount);
+        return outcomes;
+    }
+
+    /**
+     * 逐笔回退到常规事务路径
+     */
+    private void applyIndividually(PendingOperation operation) {
+        try {
+            TransactionResponse response = operation.withdraw
+                    ? walletService.withdraw(operation.userId, operation.currency, operation.amount,
+                    operation.businessType, operation.businessId, operation.remark)
+                    : walletService.recharge(operation.userId, operation.currency, operation.amount,
+                    operation.businessType, operation.businessId, operation.remark);
+            operation.future.complete(response);
+        } catch (Exception e) {
+            operation.future.completeExceptionally(e);
+        }
+    }
+
+    private TransactionResponse toResponse(PendingOperation operation, WalletTransaction transaction) {
+        return TransactionResponse.builder()
+                .success(true)
+                .message(operation.withdraw ? "提现成功" : "充值成功")
+                .transactionNo(transaction.getTransactionNo())
+                .userId(operation.userId)
+                .currency(operation.currency)
+                .amount(transaction.getAmount())
+                .balanceBefore(transaction.getBalanceBefore())
+                .balanceAfter(transaction.getBalanceAfter())
+                .businessType(operation.businessType)
+                .businessId(operation.businessId)
+                .remark(operation.remark)
+                .build();
+    }
+
+    private void createWallet(Long userId, String currency) {
+        Wallet wallet = new Wallet();
+        wallet.setUserId(userId);
+        wallet.setCurrency(currency);
+        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setFrozenBalance(BigDecimal.ZERO);
+        wallet.setVersion(0);
+        wallet.setStatus(1);
+        try {
+            walletMapper.insert(wallet);
+        } catch (DuplicateKeyException e) {
+            // 并发请求已创建该钱包，由调用方重新查询
+            log.info("钱包已由并发请求创建: userId={}, currency={}", userId, currency);
+        }
+    }
+
+    private record WalletKey(Long userId, String currency) {
+    }
+
+    private record BusinessKey(String businessType, String businessId) {
+    }
+
+    private class Lane {
+        private final BlockingQueue<PendingOperation> queue;
+        private final Thread thread;
+
+        Lane(int index, BlockingQueue<PendingOperation> queue) {
+            this.queue = queue;
+            this.thread = new Thread(() -> runLane(this), "wallet-group-commit-" + index);
+            this.thread.setDaemon(true);
+        }
+    }
+
+    private static class PendingOperation {
+        private final Long userId;
+        private final String currency;
+        private final BigDecimal amount;
+        private final String businessType;
+        private final String businessId;
+        private final String remark;
+        private final boolean withdraw;
+        private final WalletTransaction transaction;
+        private final CompletableFuture<TransactionResponse> future = new CompletableFuture<>();
+
+        PendingOperation(Long userId, String currency, BigDecimal amount, String businessType,
+                         String businessId, String remark, String transactionNo, boolean withdraw) {
+            this.userId = userId;
+            this.currency = currency;
+            this.amount = amount;
+            this.businessType = businessType;
+            this.businessId = businessId;
+            this.remark = remark;
+            this.withdraw = withdraw;
+
+            this.transaction = new WalletTransaction();
+            transaction.setTransactionNo(transactionNo);
+            transaction.setUserId(userId);
+            transaction.setCurrency(currency);
+            transaction.setAmount(withdraw ? amount.negate() : amount);
+            transaction.setBusinessType(businessType);
+            transaction.setBusinessId(businessId);
+            transaction.setTransactionType(withdraw
+                    ? TransactionType.WITHDRAW.getCode() : TransactionType.RECHARGE.getCode());
+            transaction.setStatus(TransactionStatus.PROCESSING.getCode());
+            transaction.setRemark(remark);
+        }
+
+        WalletKey walletKey() {
+            return new WalletKey(userId, currency);
+        }
+    }
+
+    private record Outcome(PendingOperation operation, TransactionResponse response, RuntimeException error) {
+
+        static Outcome success(PendingOperation operation, TransactionResponse response) {
+            return new Outcome(operation, response, null);
+        }
+
+        static Outcome failure(PendingOperation operation, RuntimeException error) {
+            return new Outcome(operation, null, error);
+        }
+    }
+}
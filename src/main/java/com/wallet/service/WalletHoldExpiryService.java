@@ -0,0 +1,76 @@
+package com.wallet.service;
+
+import com.wallet.config.HoldProperties;
+import com.wallet.mapper.WalletHoldMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 过期冻结自动解冻
+ * <p>
+ * 按 (status, expires_at) 索引分批读取已到期仍在冻结中的冻结单，逐个在独立事务中解冻；
+ * 单个冻结单失败不影响其他冻结单，与扣款并发时以先锁定冻结单的一方为准。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletHoldExpiryService {
+
+    private final WalletHoldMapper holdMapper;
+
+    private final WalletService walletService;
+
+    private final HoldProperties properties;
+
+    /**
+     * 定时解冻过期冻结
+     */
+    @Scheduled(initialDelayString = "${wallet.hold.expiry-interval:30s}",
+            fixedDelayString = "${wallet.hold.expiry-interval:30s}")
+    public void scheduledExpire() {
+        if (!properties.isExpiryEnabled()) {
+            return;
+        }
+        try {
+            expireDue(new Date());
+        } catch (Exception e) {
+            log.error("过期冻结解冻异常: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 解冻 now 之前到期的全部冻结单
+     *
+     * @return 本次解冻的冻结单数
+     */
+    public int expireDue(Date now) {
+        int expired = 0;
+        while (true) {
+            List<Long> holdIds = holdMapper.selectExpiredIds(now, properties.getExpiryBatchSize());
+            int batchExpired = 0;
+            for (Long holdId : holdIds) {
+                try {
+                    if (walletService.expireHold(holdId, now)) {
+                        batchExpired++;
+                    }
+                } catch (Exception e) {
+                    log.error("冻结单过期解冻失败: holdId={}, error={}", holdId, e.getMessage(), e);
+                }
+            }
+            expired += batchExpired;
+            // 本批未满或全部失败时结束，失败的冻结单留到下一轮
+            if (holdIds.size() < properties.getExpiryBatchSize() || batchExpired == 0) {
+                break;
+            }
+        }
+        if (expired > 0) {
+            log.info("过期冻结已解冻: count={}", expired);
+        }
+        return expired;
+    }
+}
@@ -1,33 +1,63 @@
 package com.wallet.service;
 
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.cache.WalletBalanceCache;
+import com.wallet.config.BalanceHistoryProperties;
+import com.wallet.config.HoldProperties;
+import com.wallet.config.WithdrawProperties;
+import com.wallet.datasource.ReplicaReads;
 import com.wallet.dto.converter.WalletConverter;
 import com.wallet.dto.response.CurrencyBalance;
+import com.wallet.dto.response.HoldResponse;
 import com.wallet.dto.response.TransactionResponse;
 import com.wallet.dto.response.WalletSummaryResponse;
 import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.IdempotencyKey;
 import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletHold;
 import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.HistoryWriteMode;
+import com.wallet.enums.HoldStatus;
 import com.wallet.enums.TransactionStatus;
 import com.wallet.enums.TransactionType;
+import com.wallet.enums.WithdrawMode;
+import com.wallet.exception.BusinessException;
 import com.wallet.exception.ConcurrentUpdateException;
 import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.idgen.TransactionNoGenerator;
+import com.wallet.ledger.LedgerEngine;
 import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletHoldMapper;
 import com.wallet.mapper.WalletMapper;
 import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.metrics.WalletMetrics;
+import com.wallet.metrics.WalletMetrics.Operation;
+import com.wallet.metrics.WalletMetrics.Outcome;
+import com.wallet.metrics.WalletMetrics.Stage;
+import com.wallet.money.CurrencyScales;
+import com.wallet.service.StripedWalletService.StripeChange;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Date;
 import java.util.List;
-import java.util.UUID;
+import java.util.function.Supplier;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class WalletService {
 
+    /**
+     * 冻结余额变更的变更类型，前后余额为冻结余额
+     */
+    public static final String FROZEN_CHANGE_TYPE = "FROZEN";
+
     private final WalletMapper walletMapper;
 
     private final WalletTransactionMapper transactionMapper;
@@ -36,6 +66,30 @@ public class WalletService {
 
     private final WalletConverter walletConverter;
 
+    private final WithdrawProperties withdrawProperties;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final WalletBalanceCache walletBalanceCache;
+
+    private final WalletMetrics walletMetrics;
+
+    private final TransactionNoGenerator transactionNoGenerator;
+
+    private final StripedWalletService stripedWalletService;
+
+    private final BalanceHistoryProperties balanceHistoryProperties;
+
+    private final WalletHoldMapper holdMapper;
+
+    private final HoldProperties holdProperties;
+
+    private final ReplicaReads replicaReads;
+
+    private final CurrencyScales currencyScales;
+
+    private final LedgerEngine ledgerEngine;
+
     /**
      * 充值操作
      *
@@ -50,13 +104,29 @@ public class WalletService {
     @Transactional(rollbackFor = Exception.class)
     public TransactionResponse recharge(Long userId, String currency, BigDecimal amount,
                                         String businessType, String businessId, String remark) {
+        long start = walletMetrics.start();
+        try {
+            return doRecharge(userId, currency, amount, businessType, businessId, remark, start);
+        } catch (RuntimeException e) {
+            walletMetrics.failed(Operation.RECHARGE, start, e);
+            throw e;
+        }
+    }
+
+    private TransactionResponse doRecharge(Long userId, String currency, BigDecimal amount,
+                                           String businessType, String businessId, String remark, long start) {
         log.info("用户充值: userId={}, currency={}, amount={}, business={}/{}",
                 userId, currency, amount, businessType, businessId);
+        ledgerEngine.requireNotOwned(currency);
+        currencyScales.amount(currency, amount);
+        BusinessTypes.requireUnreserved(businessType);
 
-        // 1. 幂等检查 - 防止重复入账
-        TransactionResponse idempotentResponse = checkIdempotent(userId, currency, amount,
+        // 1. 占用幂等键 - 防止重复入账
+        TransactionResponse idempotentResponse = claimIdempotent(userId, currency, amount,
                 businessType, businessId, remark, false);
+        long stageStart = walletMetrics.stage(Operation.RECHARGE, Stage.IDEMPOTENCY_CHECK, start);
         if (idempotentResponse != null) {
+            walletMetrics.completed(Operation.RECHARGE, start, Outcome.DUPLICATE);
             return idempotentResponse;
         }
 
@@ -67,32 +137,39 @@ public class WalletService {
             createWallet(userId, currency);
             wallet = walletMapper.selectByUserAndCurrency(userId, currency);
         }
-
-        // 3. 计算交易后的余额
-        BigDecimal balanceAfter = wallet.getBalance().add(amount);
-
-        // 4. 创建交易记录
-        String transactionNo = generateTransactionNo();
-        WalletTransaction transaction = createTransaction(userId, currency, amount,
-                transactionNo, businessType, businessId, TransactionType.RECHARGE, remark);
-        transaction.setWalletId(wallet.getId());
-        transaction.setBalanceBefore(wallet.getBalance());
-        transaction.setBalanceAfter(balanceAfter);
-        transactionMapper.insert(transaction);
+        stageStart = walletMetrics.stage(Operation.RECHARGE, Stage.WALLET_LOOKUP, stageStart);
 
         try {
-            // 5. 更新余额
-            int rows = walletMapper.updateBalance(userId, currency, amount);
-            if (rows == 0) {
-                throw new RuntimeException("更新余额失败，请重试");
+            // 3. 更新余额（分片钱包入账到某个分片，不更新钱包主行）
+            StripeChange change;
+            if (stripedWalletService.isStriped(wallet)) {
+                change = stripedWalletService.credit(wallet, amount, businessId);
+            } else {
+                int rows = walletMapper.updateBalance(userId, currency, amount);
+                if (rows == 0) {
+                    throw new RuntimeException("更新余额失败，请重试");
+                }
+                change = StripeChange.mainRow(wallet.getBalance(), wallet.getBalance().add(amount));
             }
-
-            // 6. 更新交易记录为成功状态
-            transaction.setStatus(TransactionStatus.SUCCESS.getCode());
-            transactionMapper.updateStatus(transaction.getId(), transaction.getStatus(), balanceAfter);
-
-            // 7. 记录余额变更历史
-            recordBalanceChange(transaction, wallet, balanceAfter);
+            stageStart = walletMetrics.stage(Operation.RECHARGE, Stage.BALANCE_UPDATE, stageStart);
+            walletBalanceCache.evictAfterCommit(userId, currency);
+            BigDecimal balanceBefore = change.walletBalanceBefore();
+            BigDecimal balanceAfter = change.walletBalanceAfter();
+
+            // 4. 余额更新成功后一次性写入最终状态的交易记录
+            String transactionNo = transactionNoGenerator.next();
+            WalletTransaction transaction = createTransaction(userId, currency, amount,
+                    transactionNo, businessType, businessId, TransactionType.RECHARGE, remark);
+            transaction.setWalletId(wallet.getId());
+            transaction.setBalanceBefore(balanceBefore);
+            transaction.setBalanceAfter(balanceAfter);
+            insertTransaction(transaction);
+            stageStart = walletMetrics.stage(Operation.RECHARGE, Stage.TRANSACTION_INSERT, stageStart);
+
+            // 5. 记录余额变更历史
+            recordBalanceChange(transaction, wallet, change);
+            walletMetrics.stage(Operation.RECHARGE, Stage.HISTORY_INSERT, stageStart);
+            walletMetrics.completed(Operation.RECHARGE, start, Outcome.SUCCESS);
 
             log.info("充值成功: userId={}, currency={}, amount={}, newBalance={}",
                     userId, currency, amount, balanceAfter);
@@ -105,17 +182,16 @@ public class WalletService {
                     .userId(userId)
                     .currency(currency)
                     .amount(amount)
-                    .balanceBefore(wallet.getBalance())
+                    .balanceBefore(balanceBefore)
                     .balanceAfter(balanceAfter)
                     .businessType(businessType)
                     .businessId(businessId)
                     .remark(remark)
                     .build();
         } catch (Exception e) {
+            // 事务整体回滚，余额与流水都不会落库，同一业务ID可直接重试
             log.error("充值失败: userId={}, currency={}, amount={}, error={}",
                     userId, currency, amount, e.getMessage(), e);
-            transaction.setStatus(TransactionStatus.FAILED.getCode());
-            transactionMapper.updateStatus(transaction.getId(), transaction.getStatus(), balanceAfter);
             throw e;
         }
     }
@@ -134,50 +210,79 @@ public class WalletService {
     @Transactional(rollbackFor = Exception.class)
     public TransactionResponse withdraw(Long userId, String currency, BigDecimal amount,
                                         String businessType, String businessId, String remark) {
+        if (withdrawProperties.getMode() == WithdrawMode.ATOMIC) {
+            return withdrawAtomic(userId, currency, amount, businessType, businessId, remark);
+        }
+
+        long start = walletMetrics.start();
+        try {
+            return doWithdraw(userId, currency, amount, businessType, businessId, remark, start);
+        } catch (RuntimeException e) {
+            walletMetrics.failed(Operation.WITHDRAW, start, e);
+            throw e;
+        }
+    }
+
+    private TransactionResponse doWithdraw(Long userId, String currency, BigDecimal amount,
+                                           String businessType, String businessId, String remark, long start) {
         log.info("用户提现: userId={}, currency={}, amount={}, business={}/{}",
                 userId, currency, amount, businessType, businessId);
+        ledgerEngine.requireNotOwned(currency);
+        currencyScales.amount(currency, amount);
+        BusinessTypes.requireUnreserved(businessType);
 
-        // 1. 幂等检查
-        TransactionResponse idempotentResponse = checkIdempotent(userId, currency, amount,
+        // 1. 占用幂等键
+        TransactionResponse idempotentResponse = claimIdempotent(userId, currency, amount,
                 businessType, businessId, remark, true);
+        long stageStart = walletMetrics.stage(Operation.WITHDRAW, Stage.IDEMPOTENCY_CHECK, start);
         if (idempotentResponse != null) {
+            walletMetrics.completed(Operation.WITHDRAW, start, Outcome.DUPLICATE);
             return idempotentResponse;
         }
 
         // 2. 查询钱包并检查余额
         Wallet wallet = walletMapper.selectByUserAndCurrency(userId, currency);
+        stageStart = walletMetrics.stage(Operation.WITHDRAW, Stage.WALLET_LOOKUP, stageStart);
         if (wallet == null) {
             throw new InsufficientBalanceException("钱包不存在");
         }
-        if (wallet.getBalance().compareTo(amount) < 0) {
-            throw new InsufficientBalanceException("余额不足，当前余额: " + wallet.getBalance());
+        boolean striped = stripedWalletService.isStriped(wallet);
+        BigDecimal available = wallet.getBalance().subtract(wallet.getFrozenBalance());
+        if (!striped && available.compareTo(amount) < 0) {
+            throw new InsufficientBalanceException("余额不足，当前可用余额: " + available);
         }
 
-        // 3. 计算交易后的余额
-        BigDecimal balanceAfter = wallet.getBalance().subtract(amount);
-
-        // 4. 创建交易记录
-        String transactionNo = generateTransactionNo();
-        WalletTransaction transaction = createTransaction(userId, currency, amount.negate(),
-                transactionNo, businessType, businessId, TransactionType.WITHDRAW, remark);
-        transaction.setWalletId(wallet.getId());
-        transaction.setBalanceBefore(wallet.getBalance());
-        transaction.setBalanceAfter(balanceAfter);
-        transactionMapper.insert(transaction);
-
         try {
-            // 5. 扣减余额
-            int rows = walletMapper.decreaseBalance(userId, currency, amount, wallet.getVersion());
-            if (rows == 0) {
-                throw new ConcurrentUpdateException("并发操作冲突，请重试");
+            // 3. 扣减余额（乐观锁；分片钱包按 主行 → 分片 → 归集 的顺序条件扣减）
+            StripeChange change;
+            if (striped) {
+                change = stripedWalletService.debit(wallet, amount);
+            } else {
+                int rows = walletMapper.decreaseBalance(userId, currency, amount, wallet.getVersion());
+                if (rows == 0) {
+                    throw new ConcurrentUpdateException("并发操作冲突，请重试");
+                }
+                change = StripeChange.mainRow(wallet.getBalance(), wallet.getBalance().subtract(amount));
             }
-
-            // 6. 更新交易记录状态
-            transaction.setStatus(TransactionStatus.SUCCESS.getCode());
-            transactionMapper.updateStatus(transaction.getId(), transaction.getStatus(), balanceAfter);
-
-            // 7. 记录余额变更历史
-            recordBalanceChange(transaction, wallet, balanceAfter);
+            stageStart = walletMetrics.stage(Operation.WITHDRAW, Stage.BALANCE_UPDATE, stageStart);
+            walletBalanceCache.evictAfterCommit(userId, currency);
+            BigDecimal balanceBefore = change.walletBalanceBefore();
+            BigDecimal balanceAfter = change.walletBalanceAfter();
+
+            // 4. 扣减成功后一次性写入最终状态的交易记录
+            String transactionNo = transactionNoGenerator.next();
+            WalletTransaction transaction = createTransaction(userId, currency, amount.negate(),
+                    transactionNo, businessType, businessId, TransactionType.WITHDRAW, remark);
+            transaction.setWalletId(wallet.getId());
+            transaction.setBalanceBefore(balanceBefore);
+            transaction.setBalanceAfter(balanceAfter);
+            insertTransaction(transaction);
+            stageStart = walletMetrics.stage(Operation.WITHDRAW, Stage.TRANSACTION_INSERT, stageStart);
+
+            // 5. 记录余额变更历史
+            recordBalanceChange(transaction, wallet, change);
+            walletMetrics.stage(Operation.WITHDRAW, Stage.HISTORY_INSERT, stageStart);
+            walletMetrics.completed(Operation.WITHDRAW, start, Outcome.SUCCESS);
 
             log.info("提现成功: userId={}, currency={}, amount={}, newBalance={}",
                     userId, currency, amount, balanceAfter);
@@ -190,7 +295,7 @@ public class WalletService {
                     .userId(userId)
                     .currency(currency)
                     .amount(amount.negate())
-                    .balanceBefore(wallet.getBalance())
+                    .balanceBefore(balanceBefore)
                     .balanceAfter(balanceAfter)
                     .businessType(businessType)
                     .businessId(businessId)
@@ -198,23 +303,290 @@ public class WalletService {
                     .build();
 
         } catch (Exception e) {
+            // 事务整体回滚，余额与流水都不会落库，同一业务ID可直接重试
             log.error("提现失败: userId={}, currency={}, amount={}, error={}",
                     userId, currency, amount, e.getMessage(), e);
-            transaction.setStatus(TransactionStatus.FAILED.getCode());
-            transactionMapper.updateStatus(transaction.getId(), transaction.getStatus(), balanceAfter);
             throw e;
         }
     }
 
     /**
-     * 查询钱包余额
+     * 提现操作（条件扣减模式）
+     * <p>
+     * 只依赖 {@code balance >= amount} 的条件 UPDATE 防止超扣，不比较版本号，
+     * 因此并发扣减只会因余额不足被拒绝。扣减成功后本事务持有该行锁，
+     * 随后读取到的余额即为本次扣减后的余额，扣减前余额由其反推。
+     *
+     * @param userId       用户ID
+     * @param currency     币种
+     * @param amount       金额
+     * @param businessType 业务类型
+     * @param businessId   业务ID
+     * @param remark       备注
+     * @return 是否成功
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public TransactionResponse withdrawAtomic(Long userId, String currency, BigDecimal amount,
+                                              String businessType, String businessId, String remark) {
+        long start = walletMetrics.start();
+        try {
+            return doWithdrawAtomic(userId, currency, amount, businessType, businessId, remark, start);
+        } catch (RuntimeException e) {
+            walletMetrics.failed(Operation.WITHDRAW_ATOMIC, start, e);
+            throw e;
+        }
+    }
+
+    private TransactionResponse doWithdrawAtomic(Long userId, String currency, BigDecimal amount,
+                                                 String businessType, String businessId, String remark,
+                                                 long start) {
+        log.info("用户提现(条件扣减): userId={}, currency={}, amount={}, business={}/{}",
+                userId, currency, amount, businessType, businessId);
+        ledgerEngine.requireNotOwned(currency);
+        currencyScales.amount(currency, amount);
+        BusinessTypes.requireUnreserved(businessType);
+
+        // 1. 占用幂等键
+        TransactionResponse idempotentResponse = claimIdempotent(userId, currency, amount,
+                businessType, businessId, remark, true);
+        long stageStart = walletMetrics.stage(Operation.WITHDRAW_ATOMIC, Stage.IDEMPOTENCY_CHECK, start);
+        if (idempotentResponse != null) {
+            walletMetrics.completed(Operation.WITHDRAW_ATOMIC, start, Outcome.DUPLICATE);
+            return idempotentResponse;
+        }
+
+        // 2. 条件扣减，余额不足时影响行数为0
+        int rows = walletMapper.decreaseBalanceIfSufficient(userId, currency, amount);
+        stageStart = walletMetrics.stage(Operation.WITHDRAW_ATOMIC, Stage.BALANCE_UPDATE, stageStart);
+
+        // 3. 读回扣减后的余额（行锁由本事务持有，读到的就是本次扣减结果）
+        Wallet wallet = walletMapper.selectByUserAndCurrency(userId, currency);
+        stageStart = walletMetrics.stage(Operation.WITHDRAW_ATOMIC, Stage.WALLET_LOOKUP, stageStart);
+        if (wallet == null) {
+            throw new InsufficientBalanceException("钱包不存在");
+        }
+        StripeChange change;
+        if (rows > 0) {
+            change = stripedWalletService.mainRowChange(wallet, wallet.getBalance().add(amount), wallet.getBalance());
+        } else if (stripedWalletService.isStriped(wallet)) {
+            // 主行余额不足，分片钱包继续尝试分片或归集
+            change = stripedWalletService.debit(wallet, amount);
+            stageStart = walletMetrics.stage(Operation.WITHDRAW_ATOMIC, Stage.BALANCE_UPDATE, stageStart);
+        } else {
+            throw new InsufficientBalanceException("余额不足，当前可用余额: "
+                    + wallet.getBalance().subtract(wallet.getFrozenBalance()));
+        }
+        walletBalanceCache.evictAfterCommit(userId, currency);
+        BigDecimal balanceBefore = change.walletBalanceBefore();
+        BigDecimal balanceAfter = change.walletBalanceAfter();
+
+        // 4. 写入最终状态的交易记录
+        String transactionNo = transactionNoGenerator.next();
+        WalletTransaction transaction = createTransaction(userId, currency, amount.negate(),
+                transactionNo, businessType, businessId, TransactionType.WITHDRAW, remark);
+        transaction.setWalletId(wallet.getId());
+        transaction.setBalanceBefore(balanceBefore);
+        transaction.setBalanceAfter(balanceAfter);
+        insertTransaction(transaction);
+        stageStart = walletMetrics.stage(Operation.WITHDRAW_ATOMIC, Stage.TRANSACTION_INSERT, stageStart);
+
+        // 5. 记录余额变更历史
+        recordBalanceChange(transaction, wallet, change);
+        walletMetrics.stage(Operation.WITHDRAW_ATOMIC, Stage.HISTORY_INSERT, stageStart);
+        walletMetrics.completed(Operation.WITHDRAW_ATOMIC, start, Outcome.SUCCESS);
+
+        log.info("提现成功: userId={}, currency={}, amount={}, newBalance={}",
+                userId, currency, amount, balanceAfter);
+
+        return TransactionResponse.builder()
+                .success(true)
+                .message("提现成功")
+                .transactionNo(transactionNo)
+                .userId(userId)
+                .currency(currency)
+                .amount(amount.negate())
+                .balanceBefore(balanceBefore)
+                .balanceAfter(balanceAfter)
+                .businessType(businessType)
+                .businessId(businessId)
+                .remark(remark)
+                .build();
+    }
+
+    /**
+     * 冻结资金（预授权）
+     * <p>
+     * 一条条件 UPDATE 把可用余额（balance - frozen_balance）计入冻结余额，余额本身不变；
+     * 冻结单按业务类型+业务ID幂等，重复请求返回原冻结单。分片钱包只冻结主行余额。
+     *
+     * @param ttl 冻结有效期，为空使用默认有效期；过期未扣款由后台任务自动解冻
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public HoldResponse freeze(Long userId, String currency, BigDecimal amount, String businessType,
+                               String businessId, Duration ttl, String remark) {
+        log.info("资金冻结: userId={}, currency={}, amount={}, business={}/{}",
+                userId, currency, amount, businessType, businessId);
+        ledgerEngine.requireNotOwned(currency);
+        if (amount == null || amount.signum() <= 0) {
+            throw new BusinessException("INVALID_AMOUNT", "冻结金额必须大于0");
+        }
+        currencyScales.amount(currency, amount);
+        BusinessTypes.requireUnreserved(businessType);
+        Duration holdTtl = ttl != null ? ttl : holdProperties.getDefaultTtl();
+        if (holdTtl.isNegative() || holdTtl.isZero() || holdTtl.compareTo(holdProperties.getMaxTtl()) > 0) {
+            throw new BusinessException("INVALID_TTL", "冻结有效期需大于0且不超过 " + holdProperties.getMaxTtl());
+        }
+
+        // 1. 幂等检查
+        WalletHold existing = holdMapper.selectByBusiness(businessType, businessId);
+        if (existing != null) {
+            log.info("重复冻结请求，直接返回之前结果: business={}/{}, status={}",
+                    businessType, businessId, existing.getStatus());
+            return toHoldResponse(existing, "重复请求，返回之前冻结结果");
+        }
+        Wallet wallet = walletMapper.selectByUserAndCurrency(userId, currency);
+        if (wallet == null) {
+            throw new InsufficientBalanceException("钱包不存在");
+        }
+
+        // 2. 先写冻结单：唯一索引拦住并发的重复请求时钱包尚未变更
+        WalletHold hold = new WalletHold();
+        hold.setHoldNo(transactionNoGenerator.next());
+        hold.setWalletId(wallet.getId());
+        hold.setUserId(userId);
+        hold.setCurrency(currency);
+        hold.setAmount(amount);
+        hold.setStatus(HoldStatus.HELD.getCode());
+        hold.setBusinessType(businessType);
+        hold.setBusinessId(businessId);
+        hold.setExpiresAt(new Date(System.currentTimeMillis() + holdTtl.toMillis()));
+        hold.setRemark(remark);
+        try {
+            holdMapper.insert(hold);
+        } catch (DuplicateKeyException e) {
+            throw new BusinessException("DUPLICATE_BUSINESS", "重复冻结请求，请重试获取原冻结结果");
+        }
+
+        // 3. 条件冻结，可用余额不足时影响行数为0
+        if (walletMapper.freeze(userId, currency, amount) == 0) {
+            Wallet current = walletMapper.selectByUserAndCurrency(userId, currency);
+            throw new InsufficientBalanceException("余额不足，当前可用余额: "
+                    + current.getBalance().subtract(current.getFrozenBalance()));
+        }
+        walletBalanceCache.evictAfterCommit(userId, currency);
+
+        // 4. 记录冻结余额变更
+        Wallet frozen = walletMapper.selectById(wallet.getId());
+        recordFrozenChange(hold, frozen.getFrozenBalance(), amount);
+
+        log.info("资金冻结成功: holdNo={}, userId={}, currency={}, amount={}, frozenBalance={}",
+                hold.getHoldNo(), userId, currency, amount, frozen.getFrozenBalance());
+        return toHoldResponse(hold, "冻结成功");
+    }
+
+    /**
+     * 冻结扣款：释放整笔冻结金额并扣减实际扣款金额（不超过冻结金额，剩余部分随之解冻），
+     * 一条条件 UPDATE 完成；扣款交易沿用冻结单的业务类型和业务ID，已扣款的冻结单重复请求返回原结果
+     *
+     * @param amount 扣款金额，为空扣除全部冻结金额
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public HoldResponse capture(String businessType, String businessId, BigDecimal amount) {
+        log.info("冻结扣款: business={}/{}, amount={}", businessType, businessId, amount);
+
+        // 1. 锁定冻结单，扣款、解冻、过期都先锁冻结单再锁钱包
+        WalletHold hold = lockHold(businessType, businessId);
+        ledgerEngine.requireNotOwned(hold.getCurrency());
+        if (HoldStatus.CAPTURED.getCode().equals(hold.getStatus())) {
+            return toHoldResponse(hold, "重复请求，返回之前扣款结果");
+        }
+        requireHeld(hold);
+        if (!hold.getExpiresAt().after(new Date())) {
+            throw new BusinessException("HOLD_EXPIRED", "冻结单已过期");
+        }
+        BigDecimal captureAmount = amount != null ? amount : hold.getAmount();
+        currencyScales.amount(hold.getCurrency(), captureAmount);
+        if (captureAmount.signum() <= 0 || captureAmount.compareTo(hold.getAmount()) > 0) {
+            throw new BusinessException("INVALID_AMOUNT", "扣款金额需大于0且不超过冻结金额 " + hold.getAmount());
+        }
+
+        // 2. 释放冻结并扣款
+        if (walletMapper.captureFrozen(hold.getWalletId(), hold.getAmount(), captureAmount) == 0) {
+            throw new BusinessException("HOLD_INCONSISTENT", "冻结余额不足，冻结单与钱包不一致");
+        }
+        walletBalanceCache.evictAfterCommit(hold.getUserId(), hold.getCurrency());
+        Wallet wallet = walletMapper.selectById(hold.getWalletId());
+        StripeChange change = stripedWalletService.mainRowChange(wallet,
+                wallet.getBalance().add(captureAmount), wallet.getBalance());
+        BigDecimal balanceAfter = change.walletBalanceAfter();
+
+        // 3. 写入扣款交易、余额变更与冻结余额变更
+        String transactionNo = transactionNoGenerator.next();
+        WalletTransaction transaction = createTransaction(hold.getUserId(), hold.getCurrency(), captureAmount.negate(),
+                transactionNo, hold.getBusinessType(), hold.getBusinessId(), TransactionType.CONSUME, hold.getRemark());
+        transaction.setWalletId(wallet.getId());
+        transaction.setBalanceBefore(change.walletBalanceBefore());
+        transaction.setBalanceAfter(balanceAfter);
+        insertTransaction(transaction);
+        recordBalanceChange(transaction, wallet, change);
+        recordFrozenChange(hold, wallet.getFrozenBalance(), hold.getAmount().negate());
+
+        holdMapper.finish(hold.getId(), HoldStatus.CAPTURED.getCode(), captureAmount, transactionNo);
+        hold.setStatus(HoldStatus.CAPTURED.getCode());
+        hold.setCapturedAmount(captureAmount);
+        hold.setTransactionNo(transactionNo);
+
+        log.info("冻结扣款成功: holdNo={}, captured={}, released={}, newBalance={}",
+                hold.getHoldNo(), captureAmount, hold.getAmount().subtract(captureAmount), balanceAfter);
+        return toHoldResponse(hold, "扣款成功");
+    }
+
+    /**
+     * 解冻：释放整笔冻结金额，已解冻或已过期的冻结单重复请求返回原结果
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public HoldResponse release(String businessType, String businessId) {
+        log.info("资金解冻: business={}/{}", businessType, businessId);
+        WalletHold hold = lockHold(businessType, businessId);
+        ledgerEngine.requireNotOwned(hold.getCurrency());
+        if (HoldStatus.RELEASED.getCode().equals(hold.getStatus())
+                || HoldStatus.EXPIRED.getCode().equals(hold.getStatus())) {
+            return toHoldResponse(hold, "重复请求，冻结单已释放");
+        }
+        requireHeld(hold);
+        unfreeze(hold, HoldStatus.RELEASED);
+        return toHoldResponse(hold, "解冻成功");
+    }
+
+    /**
+     * 过期解冻单个冻结单（由过期扫描任务逐个调用，每个冻结单一个事务）
+     *
+     * @return 冻结单仍在冻结中且已到期时解冻并返回 true；已被扣款、解冻或尚未到期返回 false
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public boolean expireHold(Long holdId, Date now) {
+        WalletHold hold = holdMapper.selectByIdForUpdate(holdId);
+        if (hold == null || !HoldStatus.HELD.getCode().equals(hold.getStatus()) || hold.getExpiresAt().after(now)) {
+            return false;
+        }
+        ledgerEngine.requireNotOwned(hold.getCurrency());
+        unfreeze(hold, HoldStatus.EXPIRED);
+        return true;
+    }
+
+    /**
+     * 查询钱包余额（分片钱包返回主行与各分片之和）
      */
     public Wallet getWallet(Long userId, String currency) {
-        return walletMapper.selectByUserAndCurrency(userId, currency);
+        return stripedWalletService.withStripes(walletMapper.selectByUserAndCurrency(userId, currency));
     }
 
     /**
-     * 幂等检查并返回响应
+     * 占用幂等键，重复请求返回之前的结果
+     * <p>
+     * 进程内缓存命中时直接返回；否则插入处理中的幂等键，插入成功即占用（与本事务一同提交或回滚），
+     * 唯一键冲突说明已处理过或正被其他事务处理（数据库会等待其结束），再按幂等键读取原交易。
+     * 占用本身就是写入，不再需要先查后写，布隆过滤器也不再参与。
      *
      * @param userId       用户ID
      * @param currency     币种
@@ -225,38 +597,37 @@ public class WalletService {
      * @param isWithdraw   是否为提现操作
      * @return 如果存在重复请求则返回响应，否则返回null
      */
-    private TransactionResponse checkIdempotent(Long userId, String currency, BigDecimal amount,
+    private TransactionResponse claimIdempotent(Long userId, String currency, BigDecimal amount,
                                                 String businessType, String businessId,
                                                 String remark, boolean isWithdraw) {
-        WalletTransaction existingTransaction = transactionMapper.selectByBusiness(businessType, businessId);
-        if (existingTransaction != null) {
-            log.info("重复业务请求，直接返回之前结果: business={}/{}, status={}",
-                    businessType, businessId, existingTransaction.getStatus());
-
-            return TransactionResponse.builder()
-                    .success(existingTransaction.getStatus().equals(TransactionStatus.SUCCESS.getCode()))
-                    .message(existingTransaction.getStatus().equals(TransactionStatus.SUCCESS.getCode())
-                            ? "重复请求，返回之前成功结果" : "重复请求，返回之前失败结果")
-                    .transactionNo(existingTransaction.getTransactionNo())
-                    .userId(userId)
-                    .currency(currency)
-                    .amount(isWithdraw ? amount.negate() : amount)
-                    .balanceBefore(existingTransaction.getBalanceBefore())
-                    .balanceAfter(existingTransaction.getBalanceAfter())
-                    .businessType(businessType)
-                    .businessId(businessId)
-                    .remark(remark)
-                    .build();
+        WalletTransaction existingTransaction = idempotencyCache.get(businessType, businessId);
+        if (existingTransaction == null) {
+            IdempotencyKey key = IdempotencyKey.of(businessType, businessId);
+            try {
+                transactionMapper.insertIdempotencyKey(key);
+                return null; // 返回null表示没有重复请求，需要继续处理
+            } catch (DuplicateKeyException e) {
+                existingTransaction = transactionMapper.selectByIdempotencyKey(key);
+                idempotencyCache.recordLookup(businessType, businessId, existingTransaction);
+            }
+            if (existingTransaction == null) {
+                // 幂等键被占用但查不到交易：哈希碰撞，或占用方在查询前回滚
+                throw new BusinessException("DUPLICATE_BUSINESS", "重复业务请求，请重试获取原交易结果");
+            }
         }
+        log.info("重复业务请求，直接返回之前结果: business={}/{}, status={}",
+                businessType, businessId, existingTransaction.getStatus());
 
-        return null; // 返回null表示没有重复请求，需要继续处理
+        return walletConverter.toDuplicateResponse(existingTransaction, userId, currency,
+                isWithdraw ? amount.negate() : amount, remark);
     }
 
     /**
-     * 查询单个币种余额 - 返回DTO
+     * 查询单个币种余额 - 返回DTO（读穿缓存）
      */
     public CurrencyBalance getCurrencyBalance(Long userId, String currency) {
-        Wallet wallet = getWallet(userId, currency);
+        Wallet wallet = walletBalanceCache.getWallet(userId, currency,
+                () -> balanceRead(() -> getWallet(userId, currency)));
         return walletConverter.toCurrencyBalance(wallet);
     }
 
@@ -264,17 +635,26 @@ public class WalletService {
      * 获取用户所有钱包
      */
     public List<Wallet> getWalletsByUserId(Long userId) {
-        return walletMapper.selectByUserId(userId);
+        return stripedWalletService.withStripes(walletMapper.selectByUserId(userId));
     }
 
     /**
-     * 获取用户钱包汇总
+     * 获取用户钱包汇总（读穿缓存）
      */
     public WalletSummaryResponse getWalletSummary(Long userId) {
-        List<Wallet> wallets = getWalletsByUserId(userId);
+        List<Wallet> wallets = walletBalanceCache.getWallets(userId,
+                () -> balanceRead(() -> getWalletsByUserId(userId)));
         return walletConverter.toWalletSummaryResponse(userId, wallets);
     }
 
+    /**
+     * 余额查询未开启缓存时走只读事务（开启从库路由时由从库承接）；开启缓存时从主库加载，
+     * 缓存在主库提交后失效，若由从库加载，滞后的余额会留在缓存中直到过期
+     */
+    private <T> T balanceRead(Supplier<T> query) {
+        return walletBalanceCache.isEnabled() ? query.get() : replicaReads.execute(query);
+    }
+
     /**
      * 创建新钱包
      */
@@ -286,11 +666,16 @@ public class WalletService {
         wallet.setFrozenBalance(BigDecimal.ZERO);
         wallet.setVersion(0);
         wallet.setStatus(1);
-        walletMapper.insert(wallet);
+        try {
+            walletMapper.insert(wallet);
+        } catch (DuplicateKeyException e) {
+            // 并发请求已创建该钱包，由调用方重新查询
+            log.info("钱包已由并发请求创建: userId={}, currency={}", userId, currency);
+        }
     }
 
     /**
-     * 创建交易记录对象
+     * 创建交易记录对象（余额已变更，直接以成功状态入库）
      */
     private WalletTransaction createTransaction(Long userId, String currency, BigDecimal amount,
                                                 String transactionNo, String businessType,
@@ -303,29 +688,113 @@ public class WalletService {
         transaction.setBusinessType(businessType);
         transaction.setBusinessId(businessId);
         transaction.setTransactionType(type.getCode());
-        transaction.setStatus(TransactionStatus.PROCESSING.getCode());
+        transaction.setStatus(TransactionStatus.SUCCESS.getCode());
         transaction.setRemark(remark);
         return transaction;
     }
 
     /**
-     * 记录余额变更历史
+     * 插入交易记录，提交后写入幂等缓存
      */
-    private void recordBalanceChange(WalletTransaction transaction, Wallet wallet, BigDecimal balanceAfter) {
+    private void insertTransaction(WalletTransaction transaction) {
+        try {
+            transactionMapper.insert(transaction);
+        } catch (DuplicateKeyException e) {
+            // 幂等键兜底：未预先占用幂等键的写入（冻结扣款）与已有交易重复，整体回滚后由重试返回原结果
+            idempotencyCache.recordBackstopConflict(transaction.getBusinessType(), transaction.getBusinessId());
+            throw new BusinessException("DUPLICATE_BUSINESS", "重复业务请求，请重试获取原交易结果");
+        }
+        idempotencyCache.putAfterCommit(transaction);
+    }
+
+    private WalletHold lockHold(String businessType, String businessId) {
+        WalletHold hold = holdMapper.selectByBusinessForUpdate(businessType, businessId);
+        if (hold == null) {
+            throw new BusinessException("HOLD_NOT_FOUND", "冻结单不存在");
+        }
+        return hold;
+    }
+
+    private static void requireHeld(WalletHold hold) {
+        if (!HoldStatus.HELD.getCode().equals(hold.getStatus())) {
+            throw new BusinessException("HOLD_NOT_ACTIVE", "冻结单" + HoldStatus.fromCode(hold.getStatus())
+                    .map(HoldStatus::getDesc).orElse("状态未知") + "，不能操作");
+        }
+    }
+
+    /**
+     * 释放冻结金额并把冻结单置为终态（解冻或过期），调用方已锁定冻结单
+     */
+    private void unfreeze(WalletHold hold, HoldStatus status) {
+        if (walletMapper.unfreeze(hold.getWalletId(), hold.getAmount()) == 0) {
+            throw new BusinessException("HOLD_INCONSISTENT", "冻结余额不足，冻结单与钱包不一致");
+        }
+        walletBalanceCache.evictAfterCommit(hold.getUserId(), hold.getCurrency());
+        Wallet wallet = walletMapper.selectById(hold.getWalletId());
+        recordFrozenChange(hold, wallet.getFrozenBalance(), hold.getAmount().negate());
+        holdMapper.finish(hold.getId(), status.getCode(), null, null);
+        hold.setStatus(status.getCode());
+        log.info("冻结已释放: holdNo={}, status={}, amount={}, frozenBalance={}",
+                hold.getHoldNo(), status, hold.getAmount(), wallet.getFrozenBalance());
+    }
+
+    /**
+     * 记录冻结余额变更：前后余额为冻结余额，关联冻结单ID、不关联交易；不参与余额对账，异步写入模式下也同步写入
+     */
+    private void recordFrozenChange(WalletHold hold, BigDecimal frozenAfter, BigDecimal change) {
         BalanceChangeHistory history = new BalanceChangeHistory();
-        history.setWalletId(wallet.getId());
-        history.setTransactionId(transaction.getId());
-        history.setChangeAmount(transaction.getAmount());
-        history.setBalanceBefore(transaction.getBalanceBefore());
-        history.setBalanceAfter(balanceAfter);
-        history.setChangeType("BALANCE");
+        history.setWalletId(hold.getWalletId());
+        history.setHoldId(hold.getId());
+        history.setChangeAmount(change);
+        history.setBalanceBefore(frozenAfter.subtract(change));
+        history.setBalanceAfter(frozenAfter);
+        history.setChangeType(FROZEN_CHANGE_TYPE);
+        history.setStripeNo(0);
         balanceChangeHistoryMapper.insert(history);
     }
 
+    private HoldResponse toHoldResponse(WalletHold hold, String message) {
+        return HoldResponse.builder()
+                .success(true)
+                .message(message)
+                .holdNo(hold.getHoldNo())
+                .userId(hold.getUserId())
+                .currency(hold.getCurrency())
+                .amount(hold.getAmount())
+                .capturedAmount(hold.getCapturedAmount())
+                .status(HoldStatus.fromCode(hold.getStatus()).orElse(null))
+                .transactionNo(hold.getTransactionNo())
+                .expiresAt(hold.getExpiresAt())
+                .businessType(hold.getBusinessType())
+                .businessId(hold.getBusinessId())
+                .build();
+    }
+
     /**
-     * 生成交易流水号
+     * 记录余额变更历史；扣款前发生分片归集时，归集记录先于本次变更写入并关联同一笔交易
+     * <p>
+     * 异步写入模式下，落在钱包主行且没有归集的变更与交易记录一一对应（交易记录带有前后余额），
+     * 事务提交后由 {@link BalanceHistoryProjectionService} 按交易记录补写，资金事务少一次插入；
+     * 落在分片上的变更需要记录分片号，仍同步写入
      */
-    private String generateTransactionNo() {
-        return "T" + System.currentTimeMillis() + UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+    private void recordBalanceChange(WalletTransaction transaction, Wallet wallet, StripeChange change) {
+        // 交易记录带的是钱包余额，只有未分片钱包的变更能由交易记录补写出变更历史
+        if (balanceHistoryProperties.getMode() == HistoryWriteMode.ASYNC
+                && !stripedWalletService.isStriped(wallet)) {
+            return;
+        }
+        if (!change.sweepChanges().isEmpty()) {
+            change.sweepChanges().forEach(sweep -> sweep.setTransactionId(transaction.getId()));
+            balanceChangeHistoryMapper.batchInsert(change.sweepChanges());
+        }
+        BalanceChangeHistory history = new BalanceChangeHistory();
+        history.setWalletId(wallet.getId());
+        history.setTransactionId(transaction.getId());
+        history.setChangeAmount(transaction.getAmount());
+        history.setBalanceBefore(change.balanceBefore());
+        history.setBalanceAfter(change.balanceAfter());
+        history.setChangeType("BALANCE");
+        history.setStripeNo(change.stripeNo());
+        balanceChangeHistoryMapper.insert(history);
     }
 }
\ No newline at end of file
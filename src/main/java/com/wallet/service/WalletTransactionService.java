@@ -1,13 +1,27 @@
 package com.wallet.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.wallet.config.TransactionQueryProperties;
 import com.wallet.dto.converter.WalletConverter;
+import com.wallet.dto.response.TransactionPageResponse;
 import com.wallet.dto.response.TransactionRecordResponse;
 import com.wallet.entity.WalletTransaction;
+import com.wallet.exception.BusinessException;
 import com.wallet.mapper.WalletTransactionMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 
@@ -20,9 +34,14 @@ public class WalletTransactionService {
 
     private final WalletConverter walletConverter;
 
+    private final TransactionQueryProperties properties;
+
+    private final ObjectMapper objectMapper;
+
     /**
      * 查询用户交易记录
      */
+    @Transactional(readOnly = true)
     public List<WalletTransaction> getTransactionsByUser(Long userId, String currency, Date startTime, Date endTime) {
         log.info("查询用户交易记录: userId={}, currency={}, startTime={}, endTime={}",
                 userId, currency, startTime, endTime);
@@ -31,7 +50,7 @@ public class WalletTransactionService {
     }
 
     /**
-     * 根据业务标识查询交易记录（用于幂等检查）
+     * 根据业务标识查询交易记录（用于幂等检查，必须读主库，不走只读事务）
      */
     public WalletTransaction getTransactionByBusiness(String businessType, String businessId) {
         return walletTransactionMapper.selectByBusiness(businessType, businessId);
@@ -40,9 +59,88 @@ public class WalletTransactionService {
     /**
      * 查询用户交易记录
      */
+    @Transactional(readOnly = true)
     public List<TransactionRecordResponse> getTransactionRecords(Long userId, String currency,
                                                                  Date startTime, Date endTime) {
         List<WalletTransaction> transactions = getTransactionsByUser(userId, currency, startTime, endTime);
         return walletConverter.toTransactionRecordResponses(transactions);
     }
-}
\ No newline at end of file
+
+    /**
+     * 游标分页查询用户交易记录，按 (created_at, id) 倒序
+     * <p>
+     * 游标是上一页最后一条记录的 (created_at, id)，翻到任意深度都只扫描一页的数据，
+     * 每页条数不超过配置上限。
+     */
+    @Transactional(readOnly = true)
+    public TransactionPageResponse getTransactionPage(Long userId, String currency, Date startTime, Date endTime,
+                                                      String cursor, Integer size) {
+        int pageSize = size == null || size <= 0
+                ? properties.getDefaultPageSize()
+                : Math.min(size, properties.getMaxPageSize());
+        Date cursorCreatedAt = null;
+        Long cursorId = null;
+        if (StringUtils.hasText(cursor)) {
+            long[] decoded = decodeCursor(cursor);
+            cursorCreatedAt = new Date(decoded[0]);
+            cursorId = decoded[1];
+        }
+
+        // 多取一条判断是否还有下一页
+        List<WalletTransaction> transactions = walletTransactionMapper.selectPageByUser(
+                userId, currency, startTime, endTime, cursorCreatedAt, cursorId, pageSize + 1);
+        boolean hasMore = transactions.size() > pageSize;
+        if (hasMore) {
+            transactions = transactions.subList(0, pageSize);
+        }
+
+        TransactionPageResponse response = new TransactionPageResponse();
+        response.setRecords(walletConverter.toTransactionRecordResponses(transactions));
+        response.setHasMore(hasMore);
+        if (hasMore) {
+            WalletTransaction last = transactions.get(transactions.size() - 1);
+            response.setNextCursor(encodeCursor(last.getCreatedAt(), last.getId()));
+        }
+        return response;
+    }
+
+    /**
+     * 流式导出用户交易记录，每条记录一行 NDJSON，不在内存中保留结果集
+     */
+    @Transactional(readOnly = true)
+    public void exportTransactions(Long userId, String currency, Date startTime, Date endTime,
+                                   OutputStream out) throws IOException {
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(out)) {
+            walletTransactionMapper.scanByUserAndTime(userId, currency, startTime, endTime, context -> {
+                try {
+                    writer.write(walletConverter.toTransactionRecordResponse(context.getResultObject()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.write('\n');
+        out.flush();
+    }
+
+    static String encodeCursor(Date createdAt, Long id) {
+        String raw = createdAt.getTime() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static long[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(':');
+            return new long[]{Long.parseLong(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1))};
+        } catch (IllegalArgumentException | StringIndexOutOfBoundsException e) {
+            throw new BusinessException("INVALID_CURSOR", "无效的分页游标");
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.cache.WalletBalanceCache;
+import com.wallet.config.TransferProperties;
+import com.wallet.dto.converter.WalletConverter;
+import com.wallet.dto.request.TransferRequest;
+import com.wallet.dto.response.BatchTransferResponse;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.dto.response.TransferResponse;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.TransactionStatus;
+import com.wallet.enums.TransactionType;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.idgen.TransactionNoGenerator;
+import com.wallet.ledger.LedgerEngine;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.metrics.WalletMetrics;
+import com.wallet.metrics.WalletMetrics.Operation;
+import com.wallet.metrics.WalletMetrics.Outcome;
+import com.wallet.metrics.WalletMetrics.Stage;
+import com.wallet.money.CurrencyScales;
+import com.wallet.service.StripedWalletService.LockedWallet;
+import com.wallet.service.StripedWalletService.StripeChange;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 钱包间转账
+ * <p>
+ * 一次转账（或一批转账）的扣款与入账在同一个数据库事务内完成：先按用户和币种查出涉及的全部钱包，
+ * 再按钱包ID升序一次性加行锁，任意两批转账即使方向相反也按同一顺序加锁，不会互相死锁。
+ * 不存在的转入方钱包在此之前由独立的短事务创建并提交，新插入行的锁不会带进按ID顺序加锁的事务。
+ * 每个钱包只执行一条净额 UPDATE，两条腿的流水与变更历史各用一条批量 INSERT 写入。
+ * 任意一笔余额不足时整批回滚。分片钱包另行锁定全部分片，按钱包余额（主行加分片）判断余额是否充足，
+ * 变更记在主行，主行不够扣时先归集分片（见 {@link StripedWalletService.LockedWallet}）。
+ * <p>
+ * 转出、转入流水的业务类型分别为请求业务类型加 {@value #DEBIT_SUFFIX}、{@value #CREDIT_SUFFIX} 后缀，
+ * 共用同一个业务ID，幂等以转出流水为准；后缀保留给转账，校验见 {@link BusinessTypes}。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WalletTransferService {
+
+    static final String DEBIT_SUFFIX = BusinessTypes.DEBIT_SUFFIX;
+
+    static final String CREDIT_SUFFIX = BusinessTypes.CREDIT_SUFFIX;
+
+    private final WalletMapper walletMapper;
+
+    private final WalletTransactionMapper transactionMapper;
+
+    private final BalanceChangeHistoryMapper balanceChangeHistoryMapper;
+
+    private final WalletConverter walletConverter;
+
+    private final IdempotencyCache idempotencyCache;
+
+    private final WalletBalanceCache walletBalanceCache;
+
+    private final WalletMetrics walletMetrics;
+
+    private final TransactionNoGenerator transactionNoGenerator;
+
+    private final TransferProperties properties;
+
+    private final LedgerEngine ledgerEngine;
+
+    private final CurrencyScales currencyScales;
+
+    private final StripedWalletService stripedWalletService;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * 单笔转账
+     */
+    public TransferResponse transfer(TransferRequest request) {
+        return execute(List.of(request)).getLegs().get(0);
+    }
+
+    /**
+     * 批量转账，全部成功或整体回滚
+     *
+     * @param legs 转账明细，按请求顺序依次计算余额
+     * @return 各笔结果
+     */
+    public BatchTransferResponse batchTransfer(List<TransferRequest> legs) {
+        return execute(legs);
+    }
+
+    private BatchTransferResponse execute(List<TransferRequest> legs) {
+        validate(legs);
+        legs.forEach(leg -> ledgerEngine.requireNotOwned(leg.getCurrency()));
+        long start = walletMetrics.start();
+        try {
+            createMissingWallets(legs);
+            return transactionTemplate.execute(status -> doTransfer(legs, start));
+        } catch (RuntimeException e) {
+            walletMetrics.failed(Operation.TRANSFER, start, e);
+            throw e;
+        }
+    }
+
+    private BatchTransferResponse doTransfer(List<TransferRequest> legs, long start) {
+        log.info("批量转账: legs={}", legs.size());
+
+        // 1. 批量幂等检查
+        Map<BusinessKey, WalletTransaction> processed = lookupProcessed(legs);
+        long stageStart = walletMetrics.stage(Operation.TRANSFER, Stage.IDEMPOTENCY_CHECK, start);
+
+        // 2. 按钱包ID升序加锁
+        List<TransferRequest> pending = new ArrayList<>(legs.size());
+        for (TransferRequest leg : legs) {
+            if (!processed.containsKey(debitKey(leg))) {
+                pending.add(leg);
+            }
+        }
+        Map<WalletKey, LockedWallet> wallets = pending.isEmpty() ? Map.of() : lockWallets(pending);
+        stageStart = walletMetrics.stage(Operation.TRANSFER, Stage.WALLET_LOOKUP, stageStart);
+
+        // 3. 按请求顺序计算每笔的前后余额
+        List<TransferResponse> responses = new ArrayList<>(legs.size());
+        List<WalletTransaction> applied = new ArrayList<>(pending.size() * 2);
+        List<StripeChange> changes = new ArrayList<>(pending.size() * 2);
+        int duplicates = 0;
+        for (TransferRequest leg : legs) {
+            BusinessKey debitKey = debitKey(leg);
+            WalletTransaction existingDebit = processed.get(debitKey);
+            if (existingDebit != null) {
+                responses.add(toDuplicateResponse(leg, existingDebit, processed.get(creditKey(leg))));
+                duplicates++;
+                continue;
+            }
+
+            WalletKey fromKey = new WalletKey(leg.getFromUserId(), leg.getCurrency());
+            WalletKey toKey = new WalletKey(leg.getToUserId(), leg.getCurrency());
+            LockedWallet from = wallets.get(fromKey);
+            if (from == null) {
+                throw new InsufficientBalanceException("转出钱包不存在: userId=" + leg.getFromUserId()
+                        + ", businessId=" + leg.getBusinessId());
+            }
+            // 钱包已加行锁，冻结余额在本事务内不会变化
+            BigDecimal fromAvailable = from.available();
+            if (fromAvailable.compareTo(leg.getAmount()) < 0) {
+                throw new InsufficientBalanceException("余额不足，当前可用余额: " + fromAvailable
+                        + ", businessId=" + leg.getBusinessId());
+            }
+
+            StripeChange debitChange = from.apply(leg.getAmount().negate());
+            StripeChange creditChange = wallets.get(toKey).apply(leg.getAmount());
+            WalletTransaction debit = createTransaction(leg, from.wallet(), leg.getFromUserId(),
+                    leg.getAmount().negate(), debitChange, debitKey.businessType());
+            WalletTransaction credit = createTransaction(leg, wallets.get(toKey).wallet(), leg.getToUserId(),
+                    leg.getAmount(), creditChange, leg.getBusinessType() + CREDIT_SUFFIX);
+            applied.add(debit);
+            applied.add(credit);
+            changes.add(debitChange);
+            changes.add(creditChange);
+            // 同一批内重复的业务ID按重复请求处理
+            processed.put(debitKey, debit);
+            processed.put(creditKey(leg), credit);
+            responses.add(TransferResponse.builder()
+                    .success(true)
+                    .message("转账成功")
+                    .businessType(leg.getBusinessType())
+                    .businessId(leg.getBusinessId())
+                    .debit(toResponse(debit, "转出成功"))
+                    .credit(toResponse(credit, "转入成功"))
+                    .build());
+        }
+
+        if (applied.isEmpty()) {
+            walletMetrics.completed(Operation.TRANSFER, start, Outcome.DUPLICATE);
+            return toBatchResponse(legs, responses, 0, duplicates);
+        }
+
+        // 4. 每个钱包一条净额 UPDATE，按钱包ID顺序执行；批内归集过的分片钱包清零分片
+        for (Map.Entry<WalletKey, LockedWallet> entry : wallets.entrySet()) {
+            stripedWalletService.applySweep(entry.getValue());
+            BigDecimal netAmount = entry.getValue().mainDelta();
+            if (netAmount.signum() == 0) {
+                continue;
+            }
+            int rows = walletMapper.updateBalance(entry.getKey().userId(), entry.getKey().currency(), netAmount);
+            if (rows == 0) {
+                throw new BusinessException("TRANSFER_FAILED", "批量更新余额失败");
+            }
+            walletBalanceCache.evictAfterCommit(entry.getKey().userId(), entry.getKey().currency());
+        }
+        stageStart = walletMetrics.stage(Operation.TRANSFER, Stage.BALANCE_UPDATE, stageStart);
+
+        // 5. 两条腿的流水一次批量插入
+        try {
+            transactionMapper.batchInsert(applied);
+        } catch (DuplicateKeyException e) {
+            // 唯一索引兜底：并发提交了相同业务ID的转账，整批回滚后由重试返回原结果
+            applied.forEach(transaction -> idempotencyCache.recordBackstopConflict(
+                    transaction.getBusinessType(), transaction.getBusinessId()));
+            throw new BusinessException("DUPLICATE_BUSINESS", "重复业务请求，请重试获取原交易结果");
+        }
+        applied.forEach(idempotencyCache::putAfterCommit);
+        stageStart = walletMetrics.stage(Operation.TRANSFER, Stage.TRANSACTION_INSERT, stageStart);
+
+        // 6. 余额变更历史一次批量插入
+        List<BalanceChangeHistory> histories = new ArrayList<>(applied.size());
+        for (int i = 0; i < applied.size(); i++) {
+            histories.addAll(changes.get(i).toHistories(applied.get(i)));
+        }
+        balanceChangeHistoryMapper.batchInsert(histories);
+        walletMetrics.stage(Operation.TRANSFER, Stage.HISTORY_INSERT, stageStart);
+        walletMetrics.completed(Operation.TRANSFER, start, Outcome.SUCCESS);
+
+        int appliedLegs = applied.size() / 2;
+        log.info("批量转账成功: legs={}, applied={}, duplicates={}, wallets={}",
+                legs.size(), appliedLegs, duplicates, wallets.size());
+        return toBatchResponse(legs, responses, appliedLegs, duplicates);
+    }
+
+    private void validate(List<TransferRequest> legs) {
+        if (legs == null || legs.isEmpty()) {
+            throw new BusinessException("INVALID_TRANSFER", "转账明细不能为空");
+        }
+        if (legs.size() > properties.getMaxLegs()) {
+            throw new BusinessException("INVALID_TRANSFER",
+                    "单次转账笔数超过上限: " + legs.size() + " > " + properties.getMaxLegs());
+        }
+        for (TransferRequest leg : legs) {
+            if (leg.getFromUserId() == null || leg.getToUserId() == null || !StringUtils.hasText(leg.getCurrency())
+                    || !StringUtils.hasText(leg.getBusinessType()) || !StringUtils.hasText(leg.getBusinessId())) {
+                throw new BusinessException("INVALID_TRANSFER", "转账参数不完整: businessId=" + leg.getBusinessId());
+            }
+            BusinessTypes.requireTransferType(leg.getBusinessType());
+            if (leg.getAmount() == null || leg.getAmount().signum() <= 0) {
+                throw new BusinessException("INVALID_TRANSFER", "转账金额必须大于0: businessId=" + leg.getBusinessId());
+            }
+            currencyScales.amount(leg.getCurrency(), leg.getAmount());
+            if (leg.getFromUserId().equals(leg.getToUserId())) {
+                throw new BusinessException("INVALID_TRANSFER", "不能转账给自己: businessId=" + leg.getBusinessId());
+            }
+        }
+    }
+
+    /**
+     * 查询已处理过的转账：缓存命中或布隆过滤器判定为新键的不再查库
+     */
+    private Map<BusinessKey, WalletTransaction> lookupProcessed(List<TransferRequest> legs) {
+        Map<BusinessKey, WalletTransaction> processed = new HashMap<>();
+        Set<BusinessKey> lookups = new LinkedHashSet<>();
+        for (TransferRequest leg : legs) {
+            BusinessKey debitKey = debitKey(leg);
+            BusinessKey creditKey = creditKey(leg);
+            WalletTransaction cachedDebit = idempotencyCache.get(debitKey.businessType(), debitKey.businessId());
+            WalletTransaction cachedCredit = idempotencyCache.get(creditKey.businessType(), creditKey.businessId());
+            if (cachedDebit != null && cachedCredit != null) {
+                processed.put(debitKey, cachedDebit);
+                processed.put(creditKey, cachedCredit);
+            } else if (!idempotencyCache.isDefinitelyNew(debitKey.businessType(), debitKey.businessId())) {
+                lookups.add(debitKey);
+                lookups.add(creditKey);
+            }
+        }
+        if (!lookups.isEmpty()) {
+            List<WalletTransaction> keys = new ArrayList<>(lookups.size());
+            lookups.forEach(key -> keys.add(key.toLookup()));
+            for (WalletTransaction existing : transactionMapper.selectByBusinessKeys(keys)) {
+                processed.put(new BusinessKey(existing.getBusinessType(), existing.getBusinessId()), existing);
+            }
+            for (BusinessKey key : lookups) {
+                idempotencyCache.recordLookup(key.businessType(), key.businessId(), processed.get(key));
+            }
+        }
+        return processed;
+    }
+
+    /**
+     * 在独立的短事务中批量创建不存在的转入方钱包并提交；转出方不存在时在计算余额时报错
+     */
+    private void createMissingWallets(List<TransferRequest> legs) {
+        Set<WalletKey> missing = new LinkedHashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<String> currencies = new HashSet<>();
+        for (TransferRequest leg : legs) {
+            missing.add(new WalletKey(leg.getToUserId(), leg.getCurrency()));
+            userIds.add(leg.getToUserId());
+            currencies.add(leg.getCurrency());
+        }
+        for (Wallet wallet : walletMapper.selectByUserIdsAndCurrencies(userIds, currencies)) {
+            missing.remove(new WalletKey(wallet.getUserId(), wallet.getCurrency()));
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        List<Wallet> created = new ArrayList<>(missing.size());
+        for (WalletKey key : missing) {
+            created.add(newWallet(key.userId(), key.currency()));
+        }
+        created.sort(Comparator.comparing(Wallet::getUserId));
+        log.info("转入钱包不存在，批量创建新钱包: count={}", created.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> walletMapper.batchInsert(created));
+        } catch (DuplicateKeyException e) {
+            // 并发的首次转入已创建了其中部分钱包：逐个创建，已存在的跳过
+            log.info("转入钱包已由并发请求创建，逐个创建: count={}", created.size());
+            createIndividually(created);
+        }
+    }
+
+    /**
+     * 按钱包ID升序锁定本批涉及的全部钱包（分片钱包连同全部分片），返回按ID排序的钱包
+     */
+    private Map<WalletKey, LockedWallet> lockWallets(List<TransferRequest> legs) {
+        Set<WalletKey> keys = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        Set<String> currencies = new HashSet<>();
+        for (TransferRequest leg : legs) {
+            keys.add(new WalletKey(leg.getFromUserId(), leg.getCurrency()));
+            keys.add(new WalletKey(leg.getToUserId(), leg.getCurrency()));
+            userIds.add(leg.getFromUserId());
+            userIds.add(leg.getToUserId());
+            currencies.add(leg.getCurrency());
+        }
+        List<Long> ids = new ArrayList<>(keys.size());
+        for (Wallet wallet : walletMapper.selectByUserIdsAndCurrencies(userIds, currencies)) {
+            if (keys.contains(new WalletKey(wallet.getUserId(), wallet.getCurrency()))) {
+                ids.add(wallet.getId());
+            }
+        }
+        ids.sort(Comparator.naturalOrder());
+        Map<WalletKey, LockedWallet> locked = new LinkedHashMap<>();
+        for (Wallet wallet : walletMapper.selectByIdsForUpdate(ids)) {
+            locked.put(new WalletKey(wallet.getUserId(), wallet.getCurrency()), stripedWalletService.lock(wallet));
+        }
+        return locked;
+    }
+
+    private WalletTransaction createTransaction(TransferRequest leg, Wallet wallet, Long userId, BigDecimal amount,
+                                                StripeChange change, String businessType) {
+        WalletTransaction transaction = new WalletTransaction();
+        transaction.setTransactionNo(transactionNoGenerator.next());
+        transaction.setWalletId(wallet.getId());
+        transaction.setUserId(userId);
+        transaction.setCurrency(leg.getCurrency());
+        transaction.setAmount(amount);
+        transaction.setBalanceBefore(change.walletBalanceBefore());
+        transaction.setBalanceAfter(change.walletBalanceAfter());
+        transaction.setTransactionType(TransactionType.TRANSFER.getCode());
+        transaction.setBusinessType(businessType);
+        transaction.setBusinessId(leg.getBusinessId());
+        transaction.setStatus(TransactionStatus.SUCCESS.getCode());
+        transaction.setRemark(leg.getRemark());
+        return transaction;
+    }
+
+    /**
+     * 逐个创建钱包，每个一个短事务；唯一键冲突说明已由其他事务创建
+     */
+    private void createIndividually(List<Wallet> wallets) {
+        for (Wallet wallet : wallets) {
+            try {
+                transactionTemplate.executeWithoutResult(status ->
+                        walletMapper.insert(newWallet(wallet.getUserId(), wallet.getCurrency())));
+            } catch (DuplicateKeyException e) {
+                log.debug("钱包已存在: userId={}, currency={}", wallet.getUserId(), wallet.getCurrency());
+            }
+        }
+    }
+
+    private Wallet newWallet(Long userId, String currency) {
+        Wallet wallet = new Wallet();
+        wallet.setUserId(userId);
+        wallet.setCurrency(currency);
+        wallet.setBalance(BigDecimal.ZERO);
+        wallet.setFrozenBalance(BigDecimal.ZERO);
+        wallet.setVersion(0);
+        wallet.setStatus(1);
+        return wallet;
+    }
+
+    private TransactionResponse toResponse(WalletTransaction transaction, String message) {
+        return TransactionResponse.builder()
+                .success(true)
+                .message(message)
+                .transactionNo(transaction.getTransactionNo())
+                .userId(transaction.getUserId())
+                .currency(transaction.getCurrency())
+                .amount(transaction.getAmount())
+                .balanceBefore(transaction.getBalanceBefore())
+                .balanceAfter(transaction.getBalanceAfter())
+                .businessType(transaction.getBusinessType())
+                .businessId(transaction.getBusinessId())
+                .remark(transaction.getRemark())
+                .build();
+    }
+
+    private TransferResponse toDuplicateResponse(TransferRequest leg, WalletTransaction debit,
+                                                 WalletTransaction credit) {
+        boolean success = TransactionStatus.SUCCESS.getCode().equals(debit.getStatus());
+        return TransferResponse.builder()
+                .success(success)
+                .message(success ? "重复请求，返回之前成功结果" : "重复请求，返回之前失败结果")
+                .businessType(leg.getBusinessType())
+                .businessId(leg.getBusinessId())
+                .debit(walletConverter.toDuplicateResponse(debit, leg.getFromUserId(), leg.getCurrency(),
+                        leg.getAmount().negate(), leg.getRemark()))
+                .credit(credit == null ? null : walletConverter.toDuplicateResponse(credit, leg.getToUserId(),
+                        leg.getCurrency(), leg.getAmount(), leg.getRemark()))
+                .build();
+    }
+
+    private BatchTransferResponse toBatchResponse(List<TransferRequest> legs, List<TransferResponse> responses,
+                                                  int appliedLegs, int duplicateLegs) {
+        return BatchTransferResponse.builder()
+                .totalLegs(legs.size())
+                .appliedLegs(appliedLegs)
+                .duplicateLegs(duplicateLegs)
+                .legs(responses)
+                .build();
+    }
+
+    private static BusinessKey debitKey(TransferRequest leg) {
+        return new BusinessKey(leg.getBusinessType() + DEBIT_SUFFIX, leg.getBusinessId());
+    }
+
+    private static BusinessKey creditKey(TransferRequest leg) {
+        return new BusinessKey(leg.getBusinessType() + CREDIT_SUFFIX, leg.getBusinessId());
+    }
+
+    private record WalletKey(Long userId, String currency) {
+    }
+
+    private record BusinessKey(String businessType, String businessId) {
+
+        WalletTransaction toLookup() {
+            WalletTransaction transaction = new WalletTransaction();
+            transaction.setBusinessType(businessType);
+            transaction.setBusinessId(businessId);
+            return transaction;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.wallet.storage;
+
+import com.wallet.entity.BalanceAggregate;
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.enums.TransactionStatus;
+import com.wallet.mapper.BalanceChangeHistoryMapper;
+import com.wallet.storage.InMemoryStore.HistoryKey;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * 余额变更历史表的内存实现，聚合与补写的口径与 BalanceChangeHistoryMapper.xml 一致
+ */
+@RequiredArgsConstructor
+public class InMemoryBalanceChangeHistoryMapper implements BalanceChangeHistoryMapper {
+
+    private static final String FROZEN = "FROZEN";
+
+    private static final String STRIPE_SWEEP = "STRIPE_SWEEP";
+
+    /**
+     * ORDER BY created_at, id
+     */
+    private static final Comparator<BalanceChangeHistory> OLDEST_FIRST = Comparator
+            .comparing(BalanceChangeHistory::getCreatedAt)
+            .thenComparing(BalanceChangeHistory::getId);
+
+    private final InMemoryStore store;
+
+    @Override
+    public int insert(BalanceChangeHistory history) {
+        insert(history, new Date());
+        return 1;
+    }
+
+    @Override
+    public int batchInsert(List<BalanceChangeHistory> histories) {
+        Date now = new Date();
+        histories.forEach(history -> insert(history, now));
+        return histories.size();
+    }
+
+    @Override
+    public List<BalanceChangeHistory> selectByWalletAndTime(Long walletId, Date startTime, Date endTime) {
+        return select(walletId, history -> !history.getCreatedAt().before(startTime)
+                && !history.getCreatedAt().after(endTime));
+    }
+
+    @Override
+    public void scanByWalletAndTime(Long walletId, Date startTime, Date endTime,
+                                    ResultHandler<BalanceChangeHistory> handler) {
+        MemoryResults.stream(selectByWalletAndTime(walletId, startTime, endTime), handler);
+    }
+
+    @Override
+    public BalanceChangeHistory selectLastChangeBefore(Long walletId, Date beforeTime) {
+        return last(select(walletId, history -> history.getCreatedAt().before(beforeTime)
+                && !FROZEN.equals(history.getChangeType())));
+    }
+
+    @Override
+    public BalanceChangeHistory selectLastStripeChangeBefore(Long walletId, int stripeNo, Date beforeTime) {
+        return last(select(walletId, history -> history.getCreatedAt().before(beforeTime)
+                && history.getStripeNo() == stripeNo && !FROZEN.equals(history.getChangeType())));
+    }
+
+    @Override
+    public BalanceAggregate aggregateByWallet(Long walletId, Date fromTime, Date toTime, boolean toInclusive) {
+        BalanceAggregate aggregate = new BalanceAggregate();
+        for (BalanceChangeHistory history : select(walletId, history -> counted(history)
+                && (fromTime == null || !history.getCreatedAt().before(fromTime))
+                && (toInclusive ? !history.getCreatedAt().after(toTime) : history.getCreatedAt().before(toTime)))) {
+            accumulate(aggregate, history);
+        }
+        return aggregate;
+    }
+
+    @Override
+    public List<BalanceAggregate> aggregateByWalletRange(Long fromWalletId, Long toWalletId,
+                                                         Date startTime, Date endTime) {
+        List<BalanceAggregate> aggregates = new ArrayList<>();
+        for (Long walletId : store.historiesByWallet.subMap(fromWalletId, true, toWalletId, true).keySet()) {
+            List<BalanceChangeHistory> changes = select(walletId, history -> counted(history)
+                    && !history.getCreatedAt().before(startTime) && !history.getCreatedAt().after(endTime));
+            if (changes.isEmpty()) {
+                continue;
+            }
+            BalanceAggregate aggregate = new BalanceAggregate();
+            aggregate.setWalletId(walletId);
+            changes.forEach(history -> accumulate(aggregate, history));
+            aggregates.add(aggregate);
+        }
+        return aggregates;
+    }
+
+    @Override
+    public List<BalanceChangeHistory> selectLastChangesBefore(Long fromWalletId, Long toWalletId, Date beforeTime) {
+        List<BalanceChangeHistory> lastChanges = new ArrayList<>();
+        for (Long walletId : store.historiesByWallet.subMap(fromWalletId, true, toWalletId, true).keySet()) {
+            // 每个分片取ID最大的一条
+            Map<Integer, BalanceChangeHistory> byStripe = new HashMap<>();
+            for (BalanceChangeHistory history : select(walletId, history -> history.getCreatedAt().before(beforeTime)
+                    && !FROZEN.equals(history.getChangeType()))) {
+                byStripe.merge(history.getStripeNo(), history,
+                        (current, candidate) -> candidate.getId() > current.getId() ? candidate : current);
+            }
+            lastChanges.addAll(byStripe.values());
+        }
+        return lastChanges;
+    }
+
+    /**
+     * 内存存储不归档变更历史
+     */
+    @Override
+    public List<BalanceChangeHistory> selectArchivedLastChangesBefore(Collection<Long> walletIds, Date beforeTime) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public Date selectFirstChangeTime(Long walletId, Date sinceTime) {
+        List<BalanceChangeHistory> changes = select(walletId,
+                history -> sinceTime == null || !history.getCreatedAt().before(sinceTime));
+        return changes.isEmpty() ? null : changes.get(0).getCreatedAt();
+    }
+
+    @Override
+    public int insertFromTransactions(Long afterId, Long toId) {
+        return insertFromTransactions(store.transactionsById.subMap(afterId, false, toId, true).values(), null);
+    }
+
+    @Override
+    public int insertFromTransactionsSince(Date since, Long toId) {
+        return insertFromTransactions(store.transactionsById.headMap(toId, true).values(), since);
+    }
+
+    private int insertFromTransactions(Collection<WalletTransaction> transactions, Date since) {
+        int inserted = 0;
+        for (WalletTransaction transaction : transactions) {
+            if (!TransactionStatus.SUCCESS.getCode().equals(transaction.getStatus())
+                    || (since != null && transaction.getCreatedAt().before(since))
+                    || store.historyCountByTransaction.containsKey(transaction.getId())) {
+                continue;
+            }
+            BalanceChangeHistory history = new BalanceChangeHistory();
+            history.setWalletId(transaction.getWalletId());
+            history.setTransactionId(transaction.getId());
+            history.setChangeAmount(transaction.getAmount());
+            history.setBalanceBefore(transaction.getBalanceBefore());
+            history.setBalanceAfter(transaction.getBalanceAfter());
+            history.setChangeType("BALANCE");
+            history.setStripeNo(0);
+            // 变更历史的创建时间沿用交易记录的创建时间
+            insert(history, transaction.getCreatedAt());
+            inserted++;
+        }
+        return inserted;
+    }
+
+    @Override
+    public long countTransactionsWithoutHistory(Long afterId, Date since) {
+        return store.transactionsById.values().stream()
+                .filter(transaction -> transaction.getId() > afterId || !transaction.getCreatedAt().before(since))
+                .filter(transaction -> TransactionStatus.SUCCESS.getCode().equals(transaction.getStatus()))
+                .filter(transaction -> !store.historyCountByTransaction.containsKey(transaction.getId()))
+                .count();
+    }
+
+    private void insert(BalanceChangeHistory history, Date createdAt) {
+        BalanceChangeHistory row = copy(history);
+        row.setId(store.historyIds.incrementAndGet());
+        row.setStripeNo(Objects.requireNonNullElse(row.getStripeNo(), 0));
+        row.setCreatedAt(createdAt);
+        Long transactionId = row.getTransactionId();
+        HistoryKey key = transactionId != null
+                ? new HistoryKey(transactionId, row.getChangeType(), row.getStripeNo()) : null;
+        if (key != null && !store.historyKeys.add(key)) {
+            throw new DuplicateKeyException("Duplicate entry '" + transactionId + "-" + row.getChangeType() + "-"
+                    + row.getStripeNo() + "' for key 'uk_transaction_change'");
+        }
+        store.historiesById.put(row.getId(), row);
+        Set<Long> walletHistories =
+                store.historiesByWallet.computeIfAbsent(row.getWalletId(), walletId -> new ConcurrentSkipListSet<>());
+        walletHistories.add(row.getId());
+        if (transactionId != null) {
+            store.historyCountByTransaction.merge(transactionId, 1, Integer::sum);
+        }
+        store.onRollback(() -> {
+            walletHistories.remove(row.getId());
+            store.historiesById.remove(row.getId());
+            if (transactionId != null) {
+                store.historyKeys.remove(key);
+                store.historyCountByTransaction.computeIfPresent(transactionId,
+                        (id, count) -> count > 1 ? count - 1 : null);
+            }
+        });
+    }
+
+    /**
+     * 钱包下满足条件的变更历史，按创建时间、ID升序
+     */
+    private List<BalanceChangeHistory> select(Long walletId, Predicate<BalanceChangeHistory> condition) {
+        Set<Long> ids = store.historiesByWallet.get(walletId);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<BalanceChangeHistory> histories = new ArrayList<>();
+        for (Long id : ids) {
+            BalanceChangeHistory history = store.historiesById.get(id);
+            if (history != null && condition.test(history)) {
+                histories.add(copy(history));
+            }
+        }
+        histories.sort(OLDEST_FIRST);
+        return histories;
+    }
+
+    private static BalanceChangeHistory last(List<BalanceChangeHistory> histories) {
+        return histories.isEmpty() ? null : histories.get(histories.size() - 1);
+    }
+
+    /**
+     * 分片归集只是钱包内部搬移、冻结余额变更不改变余额，都不计入流入、流出和变更次数
+     */
+    private static boolean counted(BalanceChangeHistory history) {
+        return !STRIPE_SWEEP.equals(history.getChangeType()) && !FROZEN.equals(history.getChangeType());
+    }
+
+    private static void accumulate(BalanceAggregate aggregate, BalanceChangeHistory history) {
+        aggregate.setChangeCount(aggregate.getChangeCount() + 1);
+        if (history.getChangeAmount().signum() > 0) {
+            aggregate.setTotalInflow(aggregate.getTotalInflow().add(history.getChangeAmount()));
+        } else if (history.getChangeAmount().signum() < 0) {
+            aggregate.setTotalOutflow(aggregate.getTotalOutflow().subtract(history.getChangeAmount()));
+        }
+    }
+
+    private static BalanceChangeHistory copy(BalanceChangeHistory source) {
+        BalanceChangeHistory history = new BalanceChangeHistory();
+        history.setId(source.getId());
+        history.setWalletId(source.getWalletId());
+        history.setTransactionId(source.getTransactionId());
+        history.setHoldId(source.getHoldId());
+        history.setChangeAmount(source.getChangeAmount());
+        history.setBalanceBefore(source.getBalanceBefore());
+        history.setBalanceAfter(source.getBalanceAfter());
+        history.setChangeType(source.getChangeType());
+        history.setStripeNo(source.getStripeNo());
+        history.setCreatedAt(source.getCreatedAt());
+        return history;
+    }
+}
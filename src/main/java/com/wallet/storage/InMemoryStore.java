@@ -0,0 +1,225 @@
+package com.wallet.storage;
+
+import com.wallet.entity.BalanceChangeHistory;
+import com.wallet.entity.Wallet;
+import com.wallet.entity.WalletTransaction;
+import org.springframework.dao.CannotAcquireLockException;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 内存存储的数据：钱包、交易记录、余额变更历史三张表及其索引
+ * <p>
+ * 主表按自增ID存放在跳表中，支持按ID区间扫描；唯一索引用 {@code putIfAbsent} 保证唯一，冲突时由映射器抛出
+ * DuplicateKeyException。交易记录与变更历史入库后不再修改原对象（更新时整体替换），读写都复制一份，
+ * 与数据库一样调用方拿到的对象互不影响。
+ * <p>
+ * 钱包行锁在事务中持有到事务结束（与 InnoDB 行锁一致），未提交的修改对其他线程不可见；
+ * 交易记录和变更历史插入后立即可见，回滚时删除。幂等键的占用同样持有到事务结束，其他事务插入相同的幂等键或
+ * 业务标识相同的交易记录时等待占用方提交或回滚（与 idempotency_key 主键上的行锁等待一致）。
+ */
+public class InMemoryStore {
+
+    final ConcurrentSkipListMap<Long, WalletRow> walletsById = new ConcurrentSkipListMap<>();
+
+    /**
+     * 唯一索引 uk_user_currency：用户ID → 币种 → 钱包行，币种有序（selectByUserId 按币种排序）
+     */
+    final ConcurrentHashMap<Long, ConcurrentSkipListMap<String, WalletRow>> walletsByUser = new ConcurrentHashMap<>();
+
+    final AtomicLong walletIds = new AtomicLong();
+
+    final ConcurrentSkipListMap<Long, WalletTransaction> transactionsById = new ConcurrentSkipListMap<>();
+
+    /**
+     * 业务标识唯一约束（数据库中为 idempotency_key 主键）：业务类型+业务ID → 交易ID
+     */
+    final ConcurrentHashMap<BusinessKey, Long> transactionsByBusiness = new ConcurrentHashMap<>();
+
+    /**
+     * 已占用的幂等键 → 占用方：事务中的占用在事务结束时移除（提交后由交易记录占用）；
+     * 不在事务中的占用立即提交（数据库中为 idempotency_key 中交易ID为空的行），写入交易记录后移除
+     */
+    final ConcurrentHashMap<BusinessKey, KeyClaim> claimedBusinessKeys = new ConcurrentHashMap<>();
+
+    /**
+     * 唯一索引 uk_transaction_no：交易流水号 → 交易ID
+     */
+    final ConcurrentHashMap<String, Long> transactionsByNo = new ConcurrentHashMap<>();
+
+    final ConcurrentHashMap<Long, ConcurrentSkipListSet<Long>> transactionsByUser = new ConcurrentHashMap<>();
+
+    final AtomicLong transactionIds = new AtomicLong();
+
+    final ConcurrentSkipListMap<Long, BalanceChangeHistory> historiesById = new ConcurrentSkipListMap<>();
+
+    /**
+     * 钱包ID → 变更历史ID，钱包ID有序（按钱包ID区间聚合）
+     */
+    final ConcurrentSkipListMap<Long, ConcurrentSkipListSet<Long>> historiesByWallet = new ConcurrentSkipListMap<>();
+
+    /**
+     * 交易ID → 关联的余额变更历史条数（不含冻结余额变更），用于补写历史时判重
+     */
+    final ConcurrentHashMap<Long, Integer> historyCountByTransaction = new ConcurrentHashMap<>();
+
+    /**
+     * 唯一索引 uk_transaction_change：(交易ID, 变更类型, 分片号)，交易ID为空的变更不参与
+     */
+    final Set<HistoryKey> historyKeys = ConcurrentHashMap.newKeySet();
+
+    final AtomicLong historyIds = new AtomicLong();
+
+    private final long lockWaitNanos;
+
+    public InMemoryStore(Duration lockWaitTimeout) {
+        this.lockWaitNanos = lockWaitTimeout.toNanos();
+    }
+
+    /**
+     * 清空全部数据（测试与基准准备数据使用）
+     */
+    public void clear() {
+        walletsById.clear();
+        walletsByUser.clear();
+        transactionsById.clear();
+        transactionsByBusiness.clear();
+        claimedBusinessKeys.clear();
+        transactionsByNo.clear();
+        transactionsByUser.clear();
+        historiesById.clear();
+        historiesByWallet.clear();
+        historyCountByTransaction.clear();
+        historyKeys.clear();
+    }
+
+    WalletRow walletRow(Long userId, String currency) {
+        ConcurrentSkipListMap<String, WalletRow> wallets = walletsByUser.get(userId);
+        return wallets != null ? wallets.get(currency) : null;
+    }
+
+    /**
+     * 锁定钱包行后执行修改：事务中行锁持有到事务结束，事务外执行完立即提交并释放。
+     * 回调拿到的是可直接修改的当前值，行已因插入回滚而删除时为 null。
+     */
+    <T> T write(WalletRow row, Function<Wallet, T> action) {
+        MemoryTransaction transaction = MemoryTransaction.current();
+        if (transaction == null || !row.lock.isHeldByCurrentThread()) {
+            acquire(row);
+            if (transaction != null) {
+                transaction.locked(row);
+            }
+        }
+        try {
+            return action.apply(row.current());
+        } finally {
+            if (transaction == null) {
+                row.commit();
+                row.unlock();
+            }
+        }
+    }
+
+    /**
+     * 新插入的行由插入方锁定，提交前其他线程不可见；回滚时从索引中移除
+     */
+    void inserted(WalletRow row, Runnable removeFromIndexes) {
+        MemoryTransaction transaction = MemoryTransaction.current();
+        if (transaction == null) {
+            row.commit();
+            row.unlock();
+            return;
+        }
+        transaction.locked(row);
+        transaction.onRollback(removeFromIndexes);
+    }
+
+    /**
+     * 在事务中登记回滚时的撤销动作，不在事务中时语句已提交，无需撤销
+     */
+    void onRollback(Runnable action) {
+        MemoryTransaction transaction = MemoryTransaction.current();
+        if (transaction != null) {
+            transaction.onRollback(action);
+        }
+    }
+
+    /**
+     * 占用幂等键：事务中的占用持有到事务结束，已被占用时返回 false
+     */
+    boolean claim(BusinessKey key) {
+        MemoryTransaction transaction = MemoryTransaction.current();
+        KeyClaim claim = new KeyClaim(transaction);
+        if (claimedBusinessKeys.putIfAbsent(key, claim) != null) {
+            return false;
+        }
+        if (transaction != null) {
+            transaction.onCompletion(() -> {
+                claimedBusinessKeys.remove(key, claim);
+                claim.completed.countDown();
+            });
+        }
+        return true;
+    }
+
+    /**
+     * 等待其他事务对幂等键的占用结束，返回剩下的占用：本事务的占用、不在事务中已提交的占用，没有时返回 null
+     */
+    KeyClaim awaitClaim(BusinessKey key) {
+        MemoryTransaction transaction = MemoryTransaction.current();
+        long deadline = System.nanoTime() + lockWaitNanos;
+        while (true) {
+            KeyClaim claim = claimedBusinessKeys.get(key);
+            if (claim == null || claim.owner == null || claim.owner == transaction) {
+                return claim;
+            }
+            try {
+                if (!claim.completed.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new CannotAcquireLockException("幂等键锁等待超时: " + key);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CannotAcquireLockException("等待幂等键锁时被中断: " + key, e);
+            }
+        }
+    }
+
+    private void acquire(WalletRow row) {
+        try {
+            if (!row.lock.tryLock(lockWaitNanos, TimeUnit.NANOSECONDS)) {
+                throw new CannotAcquireLockException("钱包行锁等待超时: walletId=" + row.id);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CannotAcquireLockException("等待钱包行锁时被中断: walletId=" + row.id, e);
+        }
+    }
+
+    record BusinessKey(String businessType, String businessId) {
+    }
+
+    record HistoryKey(Long transactionId, String changeType, int stripeNo) {
+    }
+
+    /**
+     * 幂等键的占用方，owner 为空表示不在事务中占用（已提交）
+     */
+    static final class KeyClaim {
+
+        final MemoryTransaction owner;
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        private KeyClaim(MemoryTransaction owner) {
+            this.owner = owner;
+        }
+    }
+}
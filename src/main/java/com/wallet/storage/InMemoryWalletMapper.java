@@ -0,0 +1,257 @@
+package com.wallet.storage;
+
+import com.wallet.entity.BalanceDelta;
+import com.wallet.entity.Wallet;
+import com.wallet.mapper.WalletMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 钱包表的内存实现，条件更新的语义与 {@link WalletMapper} 的 SQL 一致：
+ * 条件不满足时影响行数为 0，且与数据库一样被检查的行同样会被锁住
+ */
+@RequiredArgsConstructor
+public class InMemoryWalletMapper implements WalletMapper {
+
+    private final InMemoryStore store;
+
+    @Override
+    public Wallet selectByUserAndCurrency(Long userId, String currency) {
+        WalletRow row = store.walletRow(userId, currency);
+        return row != null ? row.read() : null;
+    }
+
+    @Override
+    public Wallet selectByUserAndCurrencyForUpdate(Long userId, String currency) {
+        WalletRow row = store.walletRow(userId, currency);
+        return row != null ? lockAndRead(row) : null;
+    }
+
+    @Override
+    public List<Wallet> selectByUserIdsAndCurrencies(Collection<Long> userIds, Collection<String> currencies) {
+        List<Wallet> wallets = new ArrayList<>();
+        for (Long userId : userIds) {
+            for (String currency : currencies) {
+                Wallet wallet = selectByUserAndCurrency(userId, currency);
+                if (wallet != null) {
+                    wallets.add(wallet);
+                }
+            }
+        }
+        return wallets;
+    }
+
+    @Override
+    public List<Wallet> selectByIdsForUpdate(List<Long> ids) {
+        List<Wallet> wallets = new ArrayList<>(ids.size());
+        for (Long id : new TreeSet<>(ids)) {
+            WalletRow row = store.walletsById.get(id);
+            Wallet wallet = row != null ? lockAndRead(row) : null;
+            if (wallet != null) {
+                wallets.add(wallet);
+            }
+        }
+        return wallets;
+    }
+
+    @Override
+    public List<Wallet> selectByUserId(Long userId) {
+        ConcurrentSkipListMap<String, WalletRow> rows = store.walletsByUser.get(userId);
+        return rows != null ? visible(rows.values()) : new ArrayList<>();
+    }
+
+    @Override
+    public List<Long> selectIdsAfter(Long afterId, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        for (WalletRow row : store.walletsById.tailMap(afterId, false).values()) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            if (row.read() != null) {
+                ids.add(row.id);
+            }
+        }
+        return ids;
+    }
+
+    @Override
+    public Long selectMinId() {
+        return firstVisibleId(store.walletsById.values());
+    }
+
+    @Override
+    public Long selectMaxId() {
+        return firstVisibleId(store.walletsById.descendingMap().values());
+    }
+
+    @Override
+    public List<Wallet> selectByIdRange(Long fromId, Long toId) {
+        return visible(store.walletsById.subMap(fromId, true, toId, true).values());
+    }
+
+    @Override
+    public int insert(Wallet wallet) {
+        Date now = new Date();
+        Wallet row = WalletRow.copy(wallet);
+        row.setId(store.walletIds.incrementAndGet());
+        row.setBalance(Objects.requireNonNullElse(row.getBalance(), BigDecimal.ZERO));
+        row.setFrozenBalance(Objects.requireNonNullElse(row.getFrozenBalance(), BigDecimal.ZERO));
+        row.setVersion(Objects.requireNonNullElse(row.getVersion(), 0));
+        row.setStripeCount(0);
+        row.setCreatedAt(now);
+        row.setUpdatedAt(now);
+
+        WalletRow walletRow = new WalletRow(row);
+        walletRow.lock.lock();
+        ConcurrentSkipListMap<String, WalletRow> userWallets =
+                store.walletsByUser.computeIfAbsent(row.getUserId(), userId -> new ConcurrentSkipListMap<>());
+        if (userWallets.putIfAbsent(row.getCurrency(), walletRow) != null) {
+            walletRow.unlock();
+            throw new DuplicateKeyException("Duplicate entry '" + row.getUserId() + "-" + row.getCurrency()
+                    + "' for key 'uk_user_currency'");
+        }
+        store.walletsById.put(row.getId(), walletRow);
+        store.inserted(walletRow, () -> {
+            userWallets.remove(row.getCurrency(), walletRow);
+            store.walletsById.remove(row.getId(), walletRow);
+        });
+        wallet.setId(row.getId());
+        return 1;
+    }
+
+    @Override
+    public int batchInsert(List<Wallet> wallets) {
+        wallets.forEach(this::insert);
+        return wallets.size();
+    }
+
+    @Override
+    public int updateBalance(Long userId, String currency, BigDecimal amount) {
+        return update(store.walletRow(userId, currency), wallet -> true,
+                wallet -> wallet.setBalance(wallet.getBalance().add(amount)));
+    }
+
+    @Override
+    public int batchIncreaseBalance(List<BalanceDelta> deltas) {
+        int rows = 0;
+        for (BalanceDelta delta : deltas) {
+            rows += update(store.walletsById.get(delta.getWalletId()), wallet -> true,
+                    wallet -> wallet.setBalance(wallet.getBalance().add(delta.getAmount())));
+        }
+        return rows;
+    }
+
+    @Override
+    public int updateStripeCount(Long id, int stripeCount) {
+        return write(store.walletsById.get(id), wallet -> true, wallet -> {
+            wallet.setStripeCount(stripeCount);
+            wallet.setUpdatedAt(new Date());
+        });
+    }
+
+    @Override
+    public int decreaseBalance(Long userId, String currency, BigDecimal amount, Integer version) {
+        return update(store.walletRow(userId, currency),
+                wallet -> available(wallet).compareTo(amount) >= 0 && wallet.getVersion().equals(version),
+                wallet -> wallet.setBalance(wallet.getBalance().subtract(amount)));
+    }
+
+    @Override
+    public int decreaseBalanceIfSufficient(Long userId, String currency, BigDecimal amount) {
+        return update(store.walletRow(userId, currency),
+                wallet -> available(wallet).compareTo(amount) >= 0,
+                wallet -> wallet.setBalance(wallet.getBalance().subtract(amount)));
+    }
+
+    @Override
+    public int freeze(Long userId, String currency, BigDecimal amount) {
+        return update(store.walletRow(userId, currency),
+                wallet -> available(wallet).compareTo(amount) >= 0,
+                wallet -> wallet.setFrozenBalance(wallet.getFrozenBalance().add(amount)));
+    }
+
+    @Override
+    public int captureFrozen(Long id, BigDecimal heldAmount, BigDecimal captureAmount) {
+        return update(store.walletsById.get(id),
+                wallet -> wallet.getFrozenBalance().compareTo(heldAmount) >= 0,
+                wallet -> {
+                    wallet.setBalance(wallet.getBalance().subtract(captureAmount));
+                    wallet.setFrozenBalance(wallet.getFrozenBalance().subtract(heldAmount));
+                });
+    }
+
+    @Override
+    public int unfreeze(Long id, BigDecimal amount) {
+        return update(store.walletsById.get(id),
+                wallet -> wallet.getFrozenBalance().compareTo(amount) >= 0,
+                wallet -> wallet.setFrozenBalance(wallet.getFrozenBalance().subtract(amount)));
+    }
+
+    @Override
+    public Wallet selectById(Long id) {
+        WalletRow row = store.walletsById.get(id);
+        return row != null ? row.read() : null;
+    }
+
+    /**
+     * 条件满足时修改余额并递增版本号，返回影响行数
+     */
+    private int update(WalletRow row, Predicate<Wallet> condition, Consumer<Wallet> change) {
+        return write(row, condition, change.andThen(wallet -> {
+            wallet.setVersion(wallet.getVersion() + 1);
+            wallet.setUpdatedAt(new Date());
+        }));
+    }
+
+    private int write(WalletRow row, Predicate<Wallet> condition, Consumer<Wallet> change) {
+        if (row == null) {
+            return 0;
+        }
+        return store.write(row, wallet -> {
+            if (wallet == null || !condition.test(wallet)) {
+                return 0;
+            }
+            change.accept(wallet);
+            return 1;
+        });
+    }
+
+    private Wallet lockAndRead(WalletRow row) {
+        return store.write(row, wallet -> wallet != null ? WalletRow.copy(wallet) : null);
+    }
+
+    private static List<Wallet> visible(Collection<WalletRow> rows) {
+        List<Wallet> wallets = new ArrayList<>();
+        for (WalletRow row : rows) {
+            Wallet wallet = row.read();
+            if (wallet != null) {
+                wallets.add(wallet);
+            }
+        }
+        return wallets;
+    }
+
+    private static Long firstVisibleId(Collection<WalletRow> rows) {
+        for (WalletRow row : rows) {
+            if (row.read() != null) {
+                return row.id;
+            }
+        }
+        return null;
+    }
+
+    private static BigDecimal available(Wallet wallet) {
+        return wallet.getBalance().subtract(wallet.getFrozenBalance());
+    }
+}
@@ -0,0 +1,233 @@
+package com.wallet.storage;
+
+import com.wallet.entity.IdempotencyKey;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.mapper.WalletTransactionMapper;
+import com.wallet.storage.InMemoryStore.BusinessKey;
+import com.wallet.storage.InMemoryStore.KeyClaim;
+import lombok.RequiredArgsConstructor;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * 交易记录表的内存实现，业务标识或交易流水号重复时抛出 DuplicateKeyException
+ */
+@RequiredArgsConstructor
+public class InMemoryWalletTransactionMapper implements WalletTransactionMapper {
+
+    /**
+     * ORDER BY created_at DESC, id DESC
+     */
+    private static final Comparator<WalletTransaction> NEWEST_FIRST = Comparator
+            .comparing(WalletTransaction::getCreatedAt)
+            .thenComparing(WalletTransaction::getId)
+            .reversed();
+
+    private final InMemoryStore store;
+
+    @Override
+    public int insert(WalletTransaction transaction) {
+        Date now = new Date();
+        WalletTransaction row = copy(transaction);
+        row.setId(store.transactionIds.incrementAndGet());
+        row.setCreatedAt(now);
+        row.setUpdatedAt(now);
+
+        // 业务标识被其他事务占用时等待其结束：提交后以唯一键冲突失败，回滚后照常写入
+        BusinessKey businessKey = businessKey(row.getBusinessType(), row.getBusinessId());
+        KeyClaim claim = businessKey != null ? store.awaitClaim(businessKey) : null;
+        if (businessKey != null && store.transactionsByBusiness.putIfAbsent(businessKey, row.getId()) != null) {
+            throw duplicateBusinessKey(businessKey);
+        }
+        if (row.getTransactionNo() != null
+                && store.transactionsByNo.putIfAbsent(row.getTransactionNo(), row.getId()) != null) {
+            if (businessKey != null) {
+                store.transactionsByBusiness.remove(businessKey, row.getId());
+            }
+            throw new DuplicateKeyException("Duplicate entry '" + row.getTransactionNo()
+                    + "' for key 'uk_transaction_no'");
+        }
+        // 不在事务中的占用改由交易记录占用，本事务的占用在事务结束时释放
+        if (claim != null && claim.owner == null) {
+            store.claimedBusinessKeys.remove(businessKey, claim);
+            store.onRollback(() -> store.claimedBusinessKeys.putIfAbsent(businessKey, claim));
+        }
+        store.transactionsById.put(row.getId(), row);
+        ConcurrentSkipListSet<Long> userTransactions =
+                store.transactionsByUser.computeIfAbsent(row.getUserId(), userId -> new ConcurrentSkipListSet<>());
+        userTransactions.add(row.getId());
+        store.onRollback(() -> {
+            userTransactions.remove(row.getId());
+            store.transactionsById.remove(row.getId());
+            if (row.getTransactionNo() != null) {
+                store.transactionsByNo.remove(row.getTransactionNo(), row.getId());
+            }
+            if (businessKey != null) {
+                store.transactionsByBusiness.remove(businessKey, row.getId());
+            }
+        });
+        transaction.setId(row.getId());
+        return 1;
+    }
+
+    @Override
+    public int batchInsert(List<WalletTransaction> transactions) {
+        transactions.forEach(this::insert);
+        return transactions.size();
+    }
+
+    /**
+     * 与数据库一致，与尚未提交的占用冲突时等待占用方事务结束：提交后抛出 DuplicateKeyException，回滚后占用成功
+     */
+    @Override
+    public int insertIdempotencyKey(IdempotencyKey key) {
+        BusinessKey businessKey = new BusinessKey(key.getBusinessType(), key.getBusinessId());
+        while (true) {
+            if (store.awaitClaim(businessKey) != null || store.transactionsByBusiness.containsKey(businessKey)) {
+                throw duplicateBusinessKey(businessKey);
+            }
+            if (store.claim(businessKey)) {
+                return 1;
+            }
+        }
+    }
+
+    @Override
+    public WalletTransaction selectByIdempotencyKey(IdempotencyKey key) {
+        BusinessKey businessKey = businessKey(key.getBusinessType(), key.getBusinessId());
+        Long id = businessKey != null ? store.transactionsByBusiness.get(businessKey) : null;
+        return id != null ? selectById(id) : null;
+    }
+
+    @Override
+    public List<WalletTransaction> selectByIdempotencyKeys(List<IdempotencyKey> keys) {
+        List<WalletTransaction> existing = new ArrayList<>();
+        for (IdempotencyKey key : keys) {
+            WalletTransaction found = selectByIdempotencyKey(key);
+            if (found != null) {
+                existing.add(found);
+            }
+        }
+        return existing;
+    }
+
+    @Override
+    public List<WalletTransaction> selectByUserAndTime(Long userId, String currency, Date startTime, Date endTime) {
+        return selectSorted(userId, currency, startTime, endTime);
+    }
+
+    @Override
+    public List<WalletTransaction> selectPageByUser(Long userId, String currency, Date startTime, Date endTime,
+                                                    Date cursorCreatedAt, Long cursorId, int limit) {
+        List<WalletTransaction> page = new ArrayList<>(limit);
+        for (WalletTransaction transaction : selectSorted(userId, currency, startTime, endTime)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (cursorCreatedAt == null || transaction.getCreatedAt().before(cursorCreatedAt)
+                    || (transaction.getCreatedAt().equals(cursorCreatedAt) && transaction.getId() < cursorId)) {
+                page.add(transaction);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void scanByUserAndTime(Long userId, String currency, Date startTime, Date endTime,
+                                  ResultHandler<WalletTransaction> handler) {
+        MemoryResults.stream(selectSorted(userId, currency, startTime, endTime), handler);
+    }
+
+    @Override
+    public void scanBusinessKeysSince(Date since, ResultHandler<WalletTransaction> handler) {
+        List<WalletTransaction> keys = new ArrayList<>();
+        for (WalletTransaction transaction : store.transactionsById.values()) {
+            if (!transaction.getCreatedAt().before(since)) {
+                WalletTransaction key = new WalletTransaction();
+                key.setBusinessType(transaction.getBusinessType());
+                key.setBusinessId(transaction.getBusinessId());
+                keys.add(key);
+            }
+        }
+        MemoryResults.stream(keys, handler);
+    }
+
+    @Override
+    public List<WalletTransaction> selectIdsAfter(Long afterId, int limit) {
+        List<WalletTransaction> transactions = new ArrayList<>(limit);
+        for (WalletTransaction transaction : store.transactionsById.tailMap(afterId, false).values()) {
+            if (transactions.size() >= limit) {
+                break;
+            }
+            WalletTransaction idAndTime = new WalletTransaction();
+            idAndTime.setId(transaction.getId());
+            idAndTime.setCreatedAt(transaction.getCreatedAt());
+            transactions.add(idAndTime);
+        }
+        return transactions;
+    }
+
+    private WalletTransaction selectById(Long id) {
+        WalletTransaction transaction = store.transactionsById.get(id);
+        return transaction != null ? copy(transaction) : null;
+    }
+
+    /**
+     * 用户在时间范围内的交易记录，按创建时间、ID倒序；currency 为空表示全部币种
+     */
+    private List<WalletTransaction> selectSorted(Long userId, String currency, Date startTime, Date endTime) {
+        ConcurrentSkipListSet<Long> ids = store.transactionsByUser.get(userId);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<WalletTransaction> transactions = new ArrayList<>();
+        for (Long id : ids) {
+            WalletTransaction transaction = store.transactionsById.get(id);
+            if (transaction == null
+                    || (currency != null && !currency.isEmpty() && !currency.equals(transaction.getCurrency()))
+                    || (startTime != null && transaction.getCreatedAt().before(startTime))
+                    || (endTime != null && transaction.getCreatedAt().after(endTime))) {
+                continue;
+            }
+            transactions.add(copy(transaction));
+        }
+        transactions.sort(NEWEST_FIRST);
+        return transactions;
+    }
+
+    private static DuplicateKeyException duplicateBusinessKey(BusinessKey businessKey) {
+        return new DuplicateKeyException("Duplicate entry '" + businessKey.businessType() + "-"
+                + businessKey.businessId() + "' for key 'idempotency_key.PRIMARY'");
+    }
+
+    private static BusinessKey businessKey(String businessType, String businessId) {
+        // 与数据库唯一索引一致，含 NULL 的业务标识不参与唯一约束
+        return businessType != null && businessId != null ? new BusinessKey(businessType, businessId) : null;
+    }
+
+    static WalletTransaction copy(WalletTransaction source) {
+        WalletTransaction transaction = new WalletTransaction();
+        transaction.setId(source.getId());
+        transaction.setTransactionNo(source.getTransactionNo());
+        transaction.setWalletId(source.getWalletId());
+        transaction.setUserId(source.getUserId());
+        transaction.setCurrency(source.getCurrency());
+        transaction.setAmount(source.getAmount());
+        transaction.setBalanceBefore(source.getBalanceBefore());
+        transaction.setBalanceAfter(source.getBalanceAfter());
+        transaction.setTransactionType(source.getTransactionType());
+        transaction.setBusinessType(source.getBusinessType());
+        transaction.setBusinessId(source.getBusinessId());
+        transaction.setStatus(source.getStatus());
+        transaction.setRemark(source.getRemark());
+        transaction.setCreatedAt(source.getCreatedAt());
+        transaction.setUpdatedAt(source.getUpdatedAt());
+        return transaction;
+    }
+}
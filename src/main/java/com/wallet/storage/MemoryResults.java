@@ -0,0 +1,51 @@
+package com.wallet.storage;
+
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+
+/**
+ * 把内存查询结果逐条交给 MyBatis 的 ResultHandler，语义与流式查询一致（handler 可调用 stop 提前结束）
+ */
+final class MemoryResults {
+
+    private MemoryResults() {
+    }
+
+    static <T> void stream(Iterable<T> results, ResultHandler<T> handler) {
+        Context<T> context = new Context<>();
+        for (T result : results) {
+            context.result = result;
+            context.count++;
+            handler.handleResult(context);
+            if (context.stopped) {
+                return;
+            }
+        }
+    }
+
+    private static final class Context<T> implements ResultContext<T> {
+        private T result;
+        private int count;
+        private boolean stopped;
+
+        @Override
+        public T getResultObject() {
+            return result;
+        }
+
+        @Override
+        public int getResultCount() {
+            return count;
+        }
+
+        @Override
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        @Override
+        public void stop() {
+            stopped = true;
+        }
+    }
+}
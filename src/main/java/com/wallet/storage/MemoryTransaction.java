@@ -0,0 +1,72 @@
+package com.wallet.storage;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 内存存储在 Spring 事务中的状态：本事务锁定的钱包行、回滚时撤销的插入、更新与事务结束时释放的幂等键占用
+ * <p>
+ * 注册为事务同步，随外层事务挂起和恢复；事务结束时提交或回滚钱包行，然后释放行锁和幂等键占用。
+ */
+final class MemoryTransaction implements TransactionSynchronization {
+
+    private final List<WalletRow> rows = new ArrayList<>();
+
+    private final List<Runnable> rollbackActions = new ArrayList<>();
+
+    private final List<Runnable> completionActions = new ArrayList<>();
+
+    /**
+     * 当前线程所在事务的内存存储状态，不在事务中时返回 null（每条语句单独提交）
+     */
+    static MemoryTransaction current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof MemoryTransaction transaction) {
+                return transaction;
+            }
+        }
+        MemoryTransaction transaction = new MemoryTransaction();
+        TransactionSynchronizationManager.registerSynchronization(transaction);
+        return transaction;
+    }
+
+    void locked(WalletRow row) {
+        rows.add(row);
+    }
+
+    void onRollback(Runnable action) {
+        rollbackActions.add(action);
+    }
+
+    /**
+     * 事务结束（提交或回滚，回滚动作执行之后）时执行
+     */
+    void onCompletion(Runnable action) {
+        completionActions.add(action);
+    }
+
+    @Override
+    public void afterCompletion(int status) {
+        try {
+            if (status == STATUS_COMMITTED) {
+                rows.forEach(WalletRow::commit);
+            } else {
+                rows.forEach(WalletRow::rollback);
+                for (int i = rollbackActions.size() - 1; i >= 0; i--) {
+                    rollbackActions.get(i).run();
+                }
+            }
+        } finally {
+            for (int i = rows.size() - 1; i >= 0; i--) {
+                rows.get(i).unlock();
+            }
+            completionActions.forEach(Runnable::run);
+        }
+    }
+}
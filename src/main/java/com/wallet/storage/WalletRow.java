@@ -0,0 +1,75 @@
+package com.wallet.storage;
+
+import com.wallet.entity.Wallet;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 内存中的一行钱包
+ * <p>
+ * current 为持有行锁的事务看到的最新值，committed 为已提交的值；其他线程只读 committed（读已提交），
+ * 新插入、尚未提交的行 committed 为 null，对其他线程不可见。
+ */
+final class WalletRow {
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    final Long id;
+
+    private volatile Wallet committed;
+
+    private Wallet current;
+
+    private volatile boolean removed;
+
+    WalletRow(Wallet inserted) {
+        this.id = inserted.getId();
+        this.current = inserted;
+    }
+
+    /**
+     * 持有行锁的线程读到本事务内的最新值，其他线程读到已提交的值
+     */
+    Wallet read() {
+        Wallet wallet = lock.isHeldByCurrentThread() ? current : committed;
+        return wallet != null && !removed ? copy(wallet) : null;
+    }
+
+    /**
+     * 本事务内可修改的当前值，调用方须持有行锁；行已因插入回滚而删除时返回 null
+     */
+    Wallet current() {
+        return removed ? null : current;
+    }
+
+    void commit() {
+        committed = copy(current);
+    }
+
+    void rollback() {
+        if (committed == null) {
+            removed = true;
+        } else {
+            current = copy(committed);
+        }
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    static Wallet copy(Wallet source) {
+        Wallet wallet = new Wallet();
+        wallet.setId(source.getId());
+        wallet.setUserId(source.getUserId());
+        wallet.setCurrency(source.getCurrency());
+        wallet.setBalance(source.getBalance());
+        wallet.setFrozenBalance(source.getFrozenBalance());
+        wallet.setVersion(source.getVersion());
+        wallet.setStatus(source.getStatus());
+        wallet.setStripeCount(source.getStripeCount());
+        wallet.setCreatedAt(source.getCreatedAt());
+        wallet.setUpdatedAt(source.getUpdatedAt());
+        return wallet;
+    }
+}
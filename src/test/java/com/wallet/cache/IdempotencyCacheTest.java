@@ -0,0 +1,89 @@
+package com.wallet.cache;
+
+import com.wallet.dto.response.IdempotencyCacheStats;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.entity.Wallet;
+import com.wallet.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "wallet.idempotency-cache.bloom-filter-enabled=true")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class IdempotencyCacheTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clearCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    /**
+     * 单笔充值直接占用幂等键，不经过布隆过滤器；重复请求从缓存返回原结果
+     */
+    @Test
+    void testDuplicate_AnsweredFromCache() {
+        // Given
+        IdempotencyCacheStats before = idempotencyCache.stats();
+
+        // When
+        TransactionResponse first = walletService.recharge(1001L, "CNY", new BigDecimal("100.00"),
+                "CACHE_TEST", "CACHE_001", "首次充值");
+        TransactionResponse second = walletService.recharge(1001L, "CNY", new BigDecimal("100.00"),
+                "CACHE_TEST", "CACHE_001", "重复充值");
+
+        // Then
+        IdempotencyCacheStats after = idempotencyCache.stats();
+        assertEquals(before.getBloomSkips(), after.getBloomSkips());
+        assertEquals(before.getHits() + 1, after.getHits());
+        assertEquals(before.getMisses(), after.getMisses());
+
+        assertEquals(first.getTransactionNo(), second.getTransactionNo());
+        assertEquals("重复请求，返回之前成功结果", second.getMessage());
+        assertEquals(0, first.getBalanceAfter().compareTo(second.getBalanceAfter()));
+
+        Wallet wallet = walletService.getWallet(1001L, "CNY");
+        assertEquals(0, new BigDecimal("1100.00").compareTo(wallet.getBalance()));
+    }
+
+    /**
+     * 缓存未见过、但数据库已存在的业务键（如其他节点处理过）占用幂等键失败，直接返回原交易结果
+     */
+    @Test
+    void testClaim_KeyProcessedElsewhere() {
+        // Given - 模拟其他节点已处理过的交易，幂等键由触发器写入
+        Long walletId = walletService.getWallet(1001L, "CNY").getId();
+        jdbcTemplate.update("INSERT INTO wallet_transaction(transaction_no, wallet_id, user_id, currency, amount, " +
+                        "balance_before, balance_after, transaction_type, business_type, business_id, status) " +
+                        "VALUES(?, ?, 1001, 'CNY', 100, 900, 1000, 1, 'CACHE_TEST', 'CACHE_REMOTE', 1)",
+                "T_REMOTE_001", walletId);
+        IdempotencyCacheStats before = idempotencyCache.stats();
+
+        // When
+        TransactionResponse duplicate = walletService.recharge(1001L, "CNY", new BigDecimal("100.00"),
+                "CACHE_TEST", "CACHE_REMOTE", "重复充值");
+
+        // Then - 首次请求即返回原交易，不依赖唯一索引回滚后重试
+        assertEquals("T_REMOTE_001", duplicate.getTransactionNo());
+        assertEquals("重复请求，返回之前成功结果", duplicate.getMessage());
+        assertEquals(before.getBackstopConflicts(), idempotencyCache.stats().getBackstopConflicts());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(walletService.getWallet(1001L, "CNY").getBalance()));
+    }
+}
@@ -0,0 +1,110 @@
+package com.wallet.cache;
+
+import com.wallet.dto.response.CurrencyBalance;
+import com.wallet.service.WalletService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Slf4j
+@SpringBootTest(properties = "logging.level.com.wallet=INFO")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletBalanceCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletBalanceCache walletBalanceCache;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void clearCache() {
+        walletBalanceCache.invalidateAll();
+    }
+
+    /**
+     * 提交后的充值立即反映到缓存的余额与汇总，回滚的充值不影响缓存
+     */
+    @Test
+    void testBalance_InvalidatedAfterCommit() {
+        // Given - 预热缓存
+        assertEquals(0, new BigDecimal("1000.00").compareTo(walletService.getCurrencyBalance(1001L, "CNY").getBalance()));
+        walletService.getWalletSummary(1001L);
+
+        // When - 回滚的充值
+        transactionTemplate.executeWithoutResult(status -> {
+            walletService.recharge(1001L, "CNY", new BigDecimal("50.00"), "CACHE_BALANCE", "CB_ROLLBACK", null);
+            status.setRollbackOnly();
+        });
+
+        // Then
+        assertEquals(0, new BigDecimal("1000.00").compareTo(walletService.getCurrencyBalance(1001L, "CNY").getBalance()));
+
+        // When - 提交的充值
+        walletService.recharge(1001L, "CNY", new BigDecimal("50.00"), "CACHE_BALANCE", "CB_COMMIT", null);
+
+        // Then
+        assertEquals(0, new BigDecimal("1050.00").compareTo(walletService.getCurrencyBalance(1001L, "CNY").getBalance()));
+        CurrencyBalance summary = walletService.getWalletSummary(1001L).getBalanceByCurrency("CNY").orElseThrow();
+        assertEquals(0, new BigDecimal("1050.00").compareTo(summary.getBalance()));
+    }
+
+    /**
+     * 余额接口压测：每次都失效缓存（等同无缓存）vs 缓存命中
+     */
+    @Test
+    @Tag("perf")
+    void testBalanceEndpoint_WithAndWithoutCache() throws Exception {
+        int requests = 2000;
+
+        // 预热
+        for (int i = 0; i < 200; i++) {
+            callBalance();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            walletBalanceCache.invalidateAll();
+            callBalance();
+        }
+        double uncachedQps = requests / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+        start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            callBalance();
+        }
+        double cachedQps = requests / ((System.nanoTime() - start) / 1_000_000_000.0);
+
+        log.info("余额接口: 无缓存={} QPS, 有缓存={} QPS, 提升={}x", String.format("%.0f", uncachedQps),
+                String.format("%.0f", cachedQps), String.format("%.2f", cachedQps / uncachedQps));
+    }
+
+    private void callBalance() throws Exception {
+        mockMvc.perform(get("/api/wallet/balance").param("userId", "1001").param("currency", "CNY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.balance").value(1000.0));
+    }
+}
@@ -0,0 +1,184 @@
+package com.wallet.controller;
+
+import com.wallet.WalletApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * /api/wallet/withdraw 压测：Tomcat 平台线程 vs 虚拟线程（虚拟线程需 Java 21）
+ * <p>
+ * 每种模式启动一个独立的应用（真实 Tomcat + 独立的 H2 内存库），开启准入限流，
+ * 200 个并发客户端共发送 4000 个提现请求，统计吞吐与 p99 延迟。
+ */
+@Slf4j
+@Tag("perf")
+class WalletWithdrawLoadTest {
+
+    private static final int CONCURRENCY = 200;
+
+    private static final int REQUESTS = 4000;
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Test
+    void testWithdraw_PlatformThreads() throws Exception {
+        LoadResult platform = runLoad(false);
+
+        log.info("平台线程: {}", platform);
+        platform.assertConsistent();
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    void testWithdraw_PlatformVsVirtualThreads() throws Exception {
+        LoadResult platform = runLoad(false);
+        LoadResult virtual = runLoad(true);
+
+        log.info("平台线程: {}", platform);
+        log.info("虚拟线程: {}", virtual);
+        platform.assertConsistent();
+        virtual.assertConsistent();
+    }
+
+    private LoadResult runLoad(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(WalletApplication.class)
+                .profiles("test")
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--server.tomcat.threads.max=50",
+                        "--spring.datasource.hikari.maximum-pool-size=10",
+                        "--wallet.admission.enabled=true",
+                        "--wallet.withdraw.mode=ATOMIC",
+                        "--wallet.admission.acquire-timeout=5s",
+                        "--logging.level.com.wallet=WARN",
+                        "--logging.level.com.wallet.controller.WalletWithdrawLoadTest=INFO",
+                        "--logging.level.org.springframework.jdbc.core.JdbcTemplate=WARN");
+        try {
+            int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            BigDecimal before = balance(jdbcTemplate);
+
+            LoadResult result = sendWithdraws(port, mode);
+            result.balanceBefore = before;
+            result.balanceAfter = balance(jdbcTemplate);
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+
+    private LoadResult sendWithdraws(int port, String mode) throws InterruptedException {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(8);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(clientExecutor)
+                .build();
+        URI uri = URI.create("http://localhost:" + port + "/api/wallet/withdraw");
+        LoadResult result = new LoadResult(mode);
+        AtomicInteger next = new AtomicInteger();
+
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENCY);
+        long start = System.nanoTime();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            clients.execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < REQUESTS) {
+                    String body = "{\"userId\":1001,\"currency\":\"CNY\",\"amount\":" + AMOUNT
+                            + ",\"businessType\":\"LOAD_TEST\",\"businessId\":\"LOAD_" + index + "\"}";
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build();
+                    long requestStart = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        result.latencies[index] = System.nanoTime() - requestStart;
+                        if (response.statusCode() == 503) {
+                            result.rejected.incrementAndGet();
+                        } else if (response.statusCode() == 200 && response.body().contains("\"success\":true")) {
+                            result.success.incrementAndGet();
+                        } else {
+                            result.failed.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        result.latencies[index] = System.nanoTime() - requestStart;
+                        result.failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(5, TimeUnit.MINUTES));
+        result.elapsedNanos = System.nanoTime() - start;
+        clientExecutor.shutdownNow();
+        return result;
+    }
+
+    private static BigDecimal balance(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE user_id = 1001 AND currency = 'CNY'", BigDecimal.class);
+    }
+
+    private static class LoadResult {
+        private final String mode;
+        private final long[] latencies = new long[REQUESTS];
+        private final AtomicInteger success = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private long elapsedNanos;
+        private BigDecimal balanceBefore;
+        private BigDecimal balanceAfter;
+
+        LoadResult(String mode) {
+            this.mode = mode;
+        }
+
+        long throughput() {
+            return success.get() * 1_000_000_000L / Math.max(elapsedNanos, 1);
+        }
+
+        long percentileMillis(double percentile) {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000;
+        }
+
+        /**
+         * 所有请求都得到明确结果，成功的提现与余额变化一致
+         */
+        void assertConsistent() {
+            assertEquals(0, failed.get(), mode + " 存在失败请求");
+            assertEquals(REQUESTS, success.get() + rejected.get());
+            BigDecimal withdrawn = AMOUNT.multiply(BigDecimal.valueOf(success.get()));
+            assertEquals(0, balanceBefore.subtract(withdrawn).compareTo(balanceAfter));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("成功=%d, 准入拒绝=%d, 失败=%d, 吞吐=%d req/s, p50=%dms, p99=%dms",
+                    success.get(), rejected.get(), failed.get(), throughput(),
+                    percentileMillis(0.50), percentileMillis(0.99));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.wallet.datasource;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.filter.AdmissionControlFilter;
+import com.wallet.service.ReconciliationService;
+import com.wallet.service.WalletService;
+import com.wallet.service.WalletTransactionService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 只读从库路由：两个 H2 内存库模拟从库（不复制，各自写入不同余额以区分读到的库），
+ * 只读查询在健康从库间轮询、资金变动走主库、复制延迟超限或不可达的从库被摘除、全部不可用时回落主库
+ */
+@Slf4j
+@SpringBootTest(properties = {"wallet.balance-cache.enabled=false",
+        "spring.datasource.hikari.maximum-pool-size=12",
+        "wallet.read-replica.enabled=true",
+        "wallet.read-replica.health-check-interval=1h",
+        "wallet.read-replica.max-lag=5s",
+        "wallet.read-replica.replicas[0].name=replica-a",
+        "wallet.read-replica.replicas[0].url=" + ReadReplicaRoutingTest.REPLICA_A,
+        "wallet.read-replica.replicas[0].username=sa",
+        "wallet.read-replica.replicas[0].driver-class-name=org.h2.Driver",
+        "wallet.read-replica.replicas[1].name=replica-b",
+        "wallet.read-replica.replicas[1].url=" + ReadReplicaRoutingTest.REPLICA_B,
+        "wallet.read-replica.replicas[1].username=sa",
+        "wallet.read-replica.replicas[1].driver-class-name=org.h2.Driver"})
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class ReadReplicaRoutingTest {
+
+    static final String REPLICA_A = "jdbc:h2:mem:replica_a;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    static final String REPLICA_B = "jdbc:h2:mem:replica_b;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    private static final BigDecimal PRIMARY_BALANCE = new BigDecimal("1000.00");
+
+    private static final BigDecimal REPLICA_A_BALANCE = new BigDecimal("111.00");
+
+    private static final BigDecimal REPLICA_B_BALANCE = new BigDecimal("222.00");
+
+    @Autowired
+    private ReplicaHealthChecker healthChecker;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletTransactionService transactionService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private AdmissionControlFilter admissionControlFilter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private JdbcTemplate replicaA;
+
+    private JdbcTemplate replicaB;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @BeforeEach
+    void clearIdempotencyCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    @BeforeEach
+    void setUpReplicas() {
+        replicaA = initReplica(REPLICA_A, REPLICA_A_BALANCE);
+        replicaB = initReplica(REPLICA_B, REPLICA_B_BALANCE);
+    }
+
+    @Test
+    void testReadOnlyQueries_RoundRobinAcrossReplicasAndWritesStayOnPrimary() {
+        // Given
+        assertEquals(2, healthChecker.check());
+
+        // When - 余额查询走只读事务，提现按主库余额扣减
+        Set<BigDecimal> seen = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            seen.add(balance());
+        }
+        walletService.withdraw(1001L, "CNY", new BigDecimal("500.00"), "TEST_REPLICA", "W001", null);
+
+        // Then - 两个从库轮流承接读请求；提现金额超过从库余额仍成功，说明扣款在主库
+        assertEquals(Set.of(REPLICA_A_BALANCE, REPLICA_B_BALANCE), normalized(seen));
+        assertEquals(0, new BigDecimal("500.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE user_id = 1001 AND currency = 'CNY'", BigDecimal.class)));
+        assertEquals(0, REPLICA_A_BALANCE.compareTo(replicaA.queryForObject(
+                "SELECT balance FROM wallet WHERE user_id = 1001 AND currency = 'CNY'", BigDecimal.class)));
+        // 从库不复制，交易记录查询读不到主库刚写入的交易
+        assertTrue(transactionService.getTransactionsByUser(1001L, "CNY", null, null).isEmpty());
+        assertNotNull(jdbcTemplate.queryForObject(
+                "SELECT beat_at FROM replication_heartbeat WHERE id = 1", Timestamp.class));
+    }
+
+    @Test
+    void testAdmissionLimit_FollowsPrimaryPoolBehindProxy() {
+        // Then - 数据源是懒连接代理，准入上限仍取主库连接池大小
+        assertEquals(12, admissionControlFilter.getAvailablePermits());
+    }
+
+    @Test
+    void testLaggingReplica_ExcludedUntilCaughtUp() {
+        // Given - replica-b 的心跳停在一小时前
+        replicaB.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1",
+                new Timestamp(System.currentTimeMillis() - 3_600_000));
+
+        // When
+        int healthy = healthChecker.check();
+
+        // Then - 只读请求只落到 replica-a，对账同样由从库承接
+        assertEquals(1, healthy);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, REPLICA_A_BALANCE.compareTo(balance()));
+        }
+        ReconciliationResult result = reconciliationService.reconcile(1001L, "CNY",
+                new Date(System.currentTimeMillis() - 60_000), new Date());
+        assertEquals(0, REPLICA_A_BALANCE.compareTo(result.getActualClosingBalance()));
+
+        // 追上后恢复
+        replicaB.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1",
+                new Timestamp(System.currentTimeMillis()));
+        assertEquals(2, healthChecker.check());
+    }
+
+    @Test
+    void testNoHealthyReplica_FallsBackToPrimary() {
+        // Given - replica-a 查询失败（心跳表缺失），replica-b 延迟超限
+        replicaA.execute("DROP TABLE replication_heartbeat");
+        replicaB.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1",
+                new Timestamp(System.currentTimeMillis() - 3_600_000));
+
+        // When
+        int healthy = healthChecker.check();
+
+        // Then
+        assertEquals(0, healthy);
+        assertEquals(0, PRIMARY_BALANCE.compareTo(balance()));
+    }
+
+    private BigDecimal balance() {
+        return walletService.getCurrencyBalance(1001L, "CNY").getBalance();
+    }
+
+    private static Set<BigDecimal> normalized(Set<BigDecimal> values) {
+        Set<BigDecimal> result = new HashSet<>();
+        values.forEach(value -> result.add(value.setScale(2)));
+        return result;
+    }
+
+    /**
+     * 建表并写入测试数据，从库余额改为与主库不同的值，心跳为当前时间
+     */
+    private static JdbcTemplate initReplica(String url, BigDecimal balance) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql"), new ClassPathResource("data-test.sql"))
+                .execute(dataSource);
+        JdbcTemplate replica = new JdbcTemplate(dataSource);
+        replica.update("UPDATE wallet SET balance = ? WHERE user_id = 1001 AND currency = 'CNY'", balance);
+        replica.update("DELETE FROM replication_heartbeat");
+        replica.update("INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, ?)",
+                new Timestamp(System.currentTimeMillis()));
+        return replica;
+    }
+}
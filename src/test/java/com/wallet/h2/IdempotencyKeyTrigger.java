@@ -0,0 +1,41 @@
+package com.wallet.h2;
+
+import com.wallet.entity.IdempotencyKey;
+import org.h2.tools.TriggerAdapter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * H2 下 trg_idempotency_key 触发器的实现，与 MySQL 的触发器一致：已占用的幂等键补上交易ID、创建时间和状态，
+ * 未占用的直接插入，业务标识重复时交易记录的插入以唯一键冲突失败
+ */
+public class IdempotencyKeyTrigger extends TriggerAdapter {
+
+    @Override
+    public void fire(Connection conn, ResultSet oldRow, ResultSet newRow) throws SQLException {
+        byte[] keyHash = IdempotencyKey.hash(newRow.getString("BUSINESS_TYPE"), newRow.getString("BUSINESS_ID"));
+        try (PreparedStatement update = conn.prepareStatement(
+                "UPDATE idempotency_key SET transaction_id = ?, status = ?, created_at = ? " +
+                        "WHERE key_hash = ? AND transaction_id IS NULL")) {
+            bind(update, newRow, keyHash);
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO idempotency_key(transaction_id, status, created_at, key_hash) VALUES (?, ?, ?, ?)")) {
+            bind(insert, newRow, keyHash);
+            insert.executeUpdate();
+        }
+    }
+
+    private static void bind(PreparedStatement statement, ResultSet newRow, byte[] keyHash) throws SQLException {
+        statement.setLong(1, newRow.getLong("ID"));
+        statement.setInt(2, newRow.getInt("STATUS"));
+        statement.setTimestamp(3, newRow.getTimestamp("CREATED_AT"));
+        statement.setBytes(4, keyHash);
+    }
+}
@@ -0,0 +1,130 @@
+package com.wallet.idgen;
+
+import com.wallet.config.TransactionNoConfig;
+import com.wallet.config.TransactionNoProperties;
+import com.wallet.enums.TransactionNoType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Snowflake 流水号：多节点多线程无冲突、单节点单调、时钟回拨与序号溢出，以及必须显式配置节点ID
+ */
+class SnowflakeTransactionNoGeneratorTest {
+
+    private static final int NODES = 8;
+
+    private static final int THREADS_PER_NODE = 4;
+
+    private static final int IDS_PER_THREAD = 50_000;
+
+    @Test
+    void testNext_NoCollisionAcrossNodes() throws Exception {
+        // Given - 8 个节点共用同一时钟，每个节点 4 个线程并发生成
+        List<SnowflakeTransactionNoGenerator> generators = new ArrayList<>();
+        for (int node = 0; node < NODES; node++) {
+            generators.add(new SnowflakeTransactionNoGenerator(node * 100));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(NODES * THREADS_PER_NODE);
+
+        // When
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (SnowflakeTransactionNoGenerator generator : generators) {
+            for (int t = 0; t < THREADS_PER_NODE; t++) {
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[IDS_PER_THREAD];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+        }
+        long[] all = new long[NODES * THREADS_PER_NODE * IDS_PER_THREAD];
+        int offset = 0;
+        for (Future<long[]> future : futures) {
+            long[] ids = future.get();
+            // 单个线程内严格递增
+            for (int i = 1; i < ids.length; i++) {
+                assertTrue(ids[i] > ids[i - 1]);
+            }
+            System.arraycopy(ids, 0, all, offset, ids.length);
+            offset += ids.length;
+        }
+        executor.shutdown();
+
+        // Then
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "重复的ID " + all[i]);
+        }
+    }
+
+    @Test
+    void testNext_SortableString() {
+        SnowflakeTransactionNoGenerator generator = new SnowflakeTransactionNoGenerator(7);
+
+        String previous = generator.next();
+        for (int i = 0; i < 100_000; i++) {
+            String current = generator.next();
+            assertEquals(20, current.length());
+            assertTrue(current.compareTo(previous) > 0, previous + " >= " + current);
+            previous = current;
+        }
+        long id = SnowflakeTransactionNoGenerator.parse(previous);
+        assertEquals(7, SnowflakeTransactionNoGenerator.nodeIdOf(id));
+        assertTrue(Math.abs(SnowflakeTransactionNoGenerator.timestampOf(id) - System.currentTimeMillis()) < 60_000);
+    }
+
+    @Test
+    void testNextId_ClockBackwardsAndSequenceOverflow() {
+        // Given - 时钟停在同一毫秒
+        AtomicLong clock = new AtomicLong(SnowflakeTransactionNoGenerator.EPOCH_MILLIS + 1_000);
+        SnowflakeTransactionNoGenerator generator = new SnowflakeTransactionNoGenerator(3, clock::get);
+
+        // When - 同一毫秒内生成超过 4096 个，随后时钟回拨
+        long previous = generator.nextId();
+        for (int i = 0; i < 5000; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            previous = id;
+        }
+        clock.addAndGet(-500);
+        long afterRollback = generator.nextId();
+
+        // Then - 序号用满后借用下一毫秒，回拨后仍然递增，节点ID不变
+        assertEquals(clock.get() + 500 + 1, SnowflakeTransactionNoGenerator.timestampOf(previous));
+        assertTrue(afterRollback > previous);
+        assertEquals(3, SnowflakeTransactionNoGenerator.nodeIdOf(afterRollback));
+    }
+
+    @Test
+    void testConstructor_RejectsInvalidNodeId() {
+        assertThrows(IllegalArgumentException.class, () -> new SnowflakeTransactionNoGenerator(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> new SnowflakeTransactionNoGenerator(SnowflakeTransactionNoGenerator.MAX_NODE_ID + 1));
+    }
+
+    @Test
+    void testConfig_RequiresExplicitNodeId() {
+        // Given
+        TransactionNoConfig config = new TransactionNoConfig();
+        TransactionNoProperties properties = new TransactionNoProperties();
+
+        // When & Then - 未配置节点ID时拒绝启动，随机方式不需要节点ID
+        assertThrows(IllegalStateException.class, () -> config.transactionNoGenerator(properties));
+        properties.setNodeId(5);
+        assertInstanceOf(SnowflakeTransactionNoGenerator.class, config.transactionNoGenerator(properties));
+        properties.setNodeId(null);
+        properties.setType(TransactionNoType.RANDOM);
+        assertInstanceOf(RandomTransactionNoGenerator.class, config.transactionNoGenerator(properties));
+    }
+}
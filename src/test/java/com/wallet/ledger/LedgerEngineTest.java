@@ -0,0 +1,470 @@
+package com.wallet.ledger;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.config.LedgerProperties;
+import com.wallet.dto.request.RechargeRequest;
+import com.wallet.dto.request.TransferRequest;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.load.LedgerInvariants;
+import com.wallet.service.StripedWalletService;
+import com.wallet.service.WalletBulkRechargeService;
+import com.wallet.service.WalletService;
+import com.wallet.service.WalletTransferService;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存账本：余额在内存中计算并异步投影到数据库、余额不足的请求不写日志、相同业务请求只执行一次、
+ * 崩溃后重放日志恢复已答复的请求、尾部不完整记录被截断、日志段滚动与删除、并发提现不超额，
+ * 以及投影冲突时分片停止服务、其他写路径拒绝内存账本处理的币种
+ */
+@Slf4j
+@SpringBootTest(properties = {"wallet.ledger.enabled=true",
+        "wallet.ledger.currencies=CNY",
+        "wallet.ledger.shards=2",
+        "wallet.ledger.journal-dir=target/ledger-journal-test/${random.uuid}",
+        "wallet.ledger.journal-segment-size=4096",
+        "wallet.ledger.projection-batch-size=16",
+        "wallet.idempotency-cache.bloom-filter-enabled=true"})
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class LedgerEngineTest {
+
+    private static final String BUSINESS_TYPE = "TEST_LEDGER";
+
+    @Autowired
+    private LedgerEngine ledgerEngine;
+
+    @Autowired
+    private LedgerProperties properties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletTransferService transferService;
+
+    @Autowired
+    private WalletBulkRechargeService bulkRechargeService;
+
+    @Autowired
+    private StripedWalletService stripedWalletService;
+
+    @BeforeEach
+    void clearIdempotencyCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    /**
+     * 测试数据每次重建，钱包ID随之变化：清空日志并重启账本，丢弃上一个测试加载的内存钱包
+     */
+    @BeforeEach
+    void restartEngine() {
+        ledgerEngine.stop();
+        FileSystemUtils.deleteRecursively(new File(properties.getJournalDir()));
+        ledgerEngine.start();
+    }
+
+    @AfterEach
+    void stopEngine() {
+        ledgerEngine.stop();
+    }
+
+    @Test
+    void testRechargeAndWithdraw_ProjectedToDatabase() {
+        // When
+        TransactionResponse recharged = recharge(1001L, "100.00", "R001");
+        TransactionResponse withdrawn = ledgerEngine.withdraw(1001L, "CNY", new BigDecimal("30.00"),
+                BUSINESS_TYPE, "W001", null);
+
+        // Then - 答复时内存余额已变更，投影后数据库一致
+        assertEquals(0, new BigDecimal("1100.00").compareTo(recharged.getBalanceAfter()));
+        assertEquals(0, new BigDecimal("1070.00").compareTo(withdrawn.getBalanceAfter()));
+        assertEquals(0, new BigDecimal("-30.00").compareTo(withdrawn.getAmount()));
+        assertEquals(0, new BigDecimal("1070.00").compareTo(
+                ledgerEngine.getCurrencyBalance(1001L, "CNY").getBalance()));
+
+        awaitProjected();
+        assertEquals(0, new BigDecimal("1070.00").compareTo(balance(1001L)));
+        assertEquals(2, transactionCount(1001L));
+        assertEquals(0, new BigDecimal("-30.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT amount FROM wallet_transaction WHERE transaction_no = ?", BigDecimal.class,
+                withdrawn.getTransactionNo())));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history h " +
+                "JOIN wallet_transaction t ON h.transaction_id = t.id WHERE t.user_id = 1001 " +
+                "AND h.balance_after = t.balance_after", Integer.class));
+
+        // 钱包不存在时充值创建钱包
+        recharge(1004L, "5.00", "R002");
+        awaitProjected();
+        assertEquals(0, new BigDecimal("5.00").compareTo(balance(1004L)));
+    }
+
+    @Test
+    void testWithdraw_InsufficientBalanceRejectedWithoutJournal() {
+        // When
+        InsufficientBalanceException rejected = assertThrows(InsufficientBalanceException.class,
+                () -> ledgerEngine.withdraw(1002L, "CNY", new BigDecimal("500.01"), BUSINESS_TYPE, "W001", null));
+
+        // Then - 被拒绝的请求不占用业务ID，也不产生日志记录
+        assertTrue(rejected.getMessage().contains("500"));
+        assertEquals("INVALID_AMOUNT", assertThrows(BusinessException.class, () -> ledgerEngine.withdraw(1002L,
+                "CNY", new BigDecimal("1.001"), BUSINESS_TYPE, "W001", null)).getCode());
+        ledgerEngine.pauseProjection();
+        ledgerEngine.withdraw(1002L, "CNY", new BigDecimal("500.00"), BUSINESS_TYPE, "W001", null);
+        ledgerEngine.halt();
+        assertEquals(1, journalRecordCount());
+
+        ledgerEngine.start();
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(1002L)));
+        assertEquals(1, transactionCount(1002L));
+    }
+
+    @Test
+    void testDuplicateRequests_ExecutedOnce() throws Exception {
+        // Given - 10 个线程同时提交同一业务请求
+        int threads = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<TransactionResponse>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> recharge(1003L, "10.00", "D001"), executor));
+        }
+        Set<String> transactionNos = futures.stream().map(CompletableFuture::join)
+                .map(TransactionResponse::getTransactionNo).collect(Collectors.toSet());
+        executor.shutdown();
+        awaitProjected();
+        TransactionResponse replayed = recharge(1003L, "10.00", "D001");
+
+        // Then - 处理中的重复请求等待原请求，投影后的重复请求按数据库判断
+        assertEquals(1, transactionNos.size());
+        assertEquals(transactionNos.iterator().next(), replayed.getTransactionNo());
+        assertEquals("重复请求，返回之前成功结果", replayed.getMessage());
+        assertEquals(0, new BigDecimal("10.00").compareTo(balance(1003L)));
+        assertEquals(1, transactionCount(1003L));
+    }
+
+    @Test
+    void testDuplicateWrittenElsewhere_FoundInDatabase() {
+        // Given - 其他节点写入的交易不在本节点的布隆过滤器中
+        insertTransaction(1001L, "TX_OTHER_NODE", "E001");
+
+        // When
+        TransactionResponse replayed = recharge(1001L, "10.00", "E001");
+
+        // Then - 仍按数据库判为重复，不重复入账
+        assertEquals("TX_OTHER_NODE", replayed.getTransactionNo());
+        assertEquals("重复请求，返回之前成功结果", replayed.getMessage());
+        assertEquals(0, ledgerEngine.pendingProjection());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(
+                ledgerEngine.getCurrencyBalance(1001L, "CNY").getBalance()));
+    }
+
+    @Test
+    void testProjectionConflict_ShardStopsInsteadOfRetrying() {
+        // Given - 已答复的请求投影前，同一业务键的交易被其他节点写入
+        ledgerEngine.pauseProjection();
+        recharge(1001L, "10.00", "P001");
+        insertTransaction(1001L, "TX_CONFLICT", "P001");
+
+        // When
+        ledgerEngine.resumeProjection();
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (ledgerEngine.brokenShards() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "分片未停止服务");
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        // Then - 分片拒绝新请求，冲突的记录留待人工处理，数据库余额未变
+        BusinessException rejected = assertThrows(BusinessException.class,
+                () -> recharge(1001L, "1.00", "P002"));
+        assertEquals("LEDGER_PROJECTION_FAILED", rejected.getCode());
+        assertEquals(1, ledgerEngine.pendingProjection());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance(1001L)));
+    }
+
+    @Test
+    void testProjection_AppliesNetChangeToWalletRow() {
+        // Given - 钱包已加载到内存后数据库余额被直接修改
+        recharge(1001L, "10.00", "N001");
+        awaitProjected();
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + 5 WHERE user_id = 1001 AND currency = 'CNY'");
+
+        // When
+        recharge(1001L, "20.00", "N002");
+        awaitProjected();
+
+        // Then - 投影只加上本批的变化量，不用内存余额覆盖
+        assertEquals(0, new BigDecimal("1035.00").compareTo(balance(1001L)));
+    }
+
+    @Test
+    void testDatabaseWritePaths_RejectedForOwnedCurrency() {
+        // Given
+        TransferRequest transfer = new TransferRequest();
+        transfer.setFromUserId(1001L);
+        transfer.setToUserId(1002L);
+        transfer.setCurrency("CNY");
+        transfer.setAmount(new BigDecimal("1.00"));
+        transfer.setBusinessType(BUSINESS_TYPE);
+        transfer.setBusinessId("T001");
+        RechargeRequest item = new RechargeRequest();
+        item.setUserId(1001L);
+        item.setCurrency("CNY");
+        item.setAmount(new BigDecimal("1.00"));
+        item.setBusinessType(BUSINESS_TYPE);
+        item.setBusinessId("B001");
+        jdbcTemplate.update("INSERT INTO wallet_hold(hold_no, wallet_id, user_id, currency, amount, status, " +
+                "business_type, business_id, expires_at) SELECT 'H001', id, user_id, currency, 100, 0, ?, 'H001', ? " +
+                "FROM wallet WHERE user_id = 1001 AND currency = 'CNY'", BUSINESS_TYPE,
+                new Timestamp(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1)));
+
+        // When / Then - 直接修改数据库余额的服务方法都拒绝，不依赖接口层的检查
+        List<Executable> writes = List.of(
+                () -> walletService.recharge(1001L, "CNY", new BigDecimal("1.00"), BUSINESS_TYPE, "S001", null),
+                () -> walletService.withdraw(1001L, "CNY", new BigDecimal("1.00"), BUSINESS_TYPE, "S002", null),
+                () -> walletService.freeze(1001L, "CNY", new BigDecimal("1.00"), BUSINESS_TYPE, "F001", null, null),
+                () -> walletService.capture(BUSINESS_TYPE, "H001", null),
+                () -> walletService.release(BUSINESS_TYPE, "H001"),
+                () -> transferService.transfer(transfer),
+                () -> bulkRechargeService.bulkRecharge(List.of(item)),
+                () -> stripedWalletService.enableStriping(1001L, "CNY", 2));
+        for (Executable write : writes) {
+            assertEquals("LEDGER_OWNED_CURRENCY", assertThrows(BusinessException.class, write).getCode());
+        }
+
+        // 账本停止后（以及启动完成前）同样拒绝，归属不随运行状态变化
+        ledgerEngine.stop();
+        for (Executable write : writes) {
+            assertEquals("LEDGER_OWNED_CURRENCY", assertThrows(BusinessException.class, write).getCode());
+        }
+        assertEquals("LEDGER_UNAVAILABLE", assertThrows(BusinessException.class,
+                () -> recharge(1001L, "1.00", "S003")).getCode());
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance(1001L)));
+        assertEquals(0, transactionCount(1001L));
+    }
+
+    @Test
+    void testCrash_JournalReplayedOnRestart() {
+        // Given - 投影暂停，已答复的请求只存在于日志中
+        ledgerEngine.pauseProjection();
+        for (int i = 0; i < 5; i++) {
+            recharge(1001L, "10.00", "C" + i);
+        }
+        ledgerEngine.withdraw(1001L, "CNY", new BigDecimal("20.00"), BUSINESS_TYPE, "CW", null);
+        assertEquals(0, transactionCount(1001L));
+
+        // When - 崩溃后重启
+        ledgerEngine.halt();
+        ledgerEngine.start();
+
+        // Then - 启动时重放日志写入数据库，投影序号推进到最后一条记录
+        assertEquals(0, new BigDecimal("1030.00").compareTo(balance(1001L)));
+        assertEquals(6, transactionCount(1001L));
+        assertEquals(6L, jdbcTemplate.queryForObject("SELECT SUM(last_seq) FROM ledger_projection", Long.class));
+        assertEquals(0, new BigDecimal("1030.00").compareTo(
+                ledgerEngine.getCurrencyBalance(1001L, "CNY").getBalance()));
+
+        // 重放过的请求不会再次执行，之后的请求基于恢复后的余额
+        assertEquals("重复请求，返回之前成功结果", recharge(1001L, "10.00", "C0").getMessage());
+        assertEquals(0, new BigDecimal("1040.00").compareTo(recharge(1001L, "10.00", "C5").getBalanceAfter()));
+    }
+
+    @Test
+    void testTornTail_TruncatedOnRecovery() throws IOException {
+        // Given - 第三条记录写到一半时崩溃（内容被破坏，校验不通过）
+        ledgerEngine.pauseProjection();
+        recharge(1003L, "10.00", "T001");
+        recharge(1003L, "20.00", "T002");
+        recharge(1003L, "30.00", "T003");
+        ledgerEngine.halt();
+        corruptLastRecord();
+
+        // When
+        ledgerEngine.start();
+
+        // Then - 只恢复前两条，第三条可以用相同业务ID重新提交
+        assertEquals(0, new BigDecimal("30.00").compareTo(balance(1003L)));
+        assertEquals(2, transactionCount(1003L));
+        TransactionResponse retried = recharge(1003L, "30.00", "T003");
+        assertNotEquals("重复请求，返回之前成功结果", retried.getMessage());
+        assertEquals(0, new BigDecimal("60.00").compareTo(retried.getBalanceAfter()));
+    }
+
+    @Test
+    void testJournalSegments_RolledAndDeletedAfterProjection() throws IOException {
+        // When - 4KB 的段约容纳 20 条记录
+        for (int i = 0; i < 100; i++) {
+            recharge(1003L, "1.00", "S" + i);
+        }
+        awaitProjected();
+
+        // Then - 已投影的旧段删除，每个分片只剩当前段
+        assertEquals(0, new BigDecimal("100.00").compareTo(balance(1003L)));
+        assertEquals(100, transactionCount(1003L));
+        assertEquals(properties.getShards(), segments().size());
+    }
+
+    @Test
+    void testConcurrentOperations_NeverOverdraw() {
+        // Given - 8 个钱包各充值 100，8 个线程交替充值和提现
+        long fromUserId = 2001L;
+        long toUserId = 2008L;
+        for (long userId = fromUserId; userId <= toUserId; userId++) {
+            recharge(userId, "100.00", "SEED" + userId);
+        }
+        int threads = 8;
+        int operationsPerThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Map<Long, BigDecimal>>> futures = new ArrayList<>();
+
+        // When - 各线程记下自己成功的金额变化
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                Map<Long, BigDecimal> changes = new HashMap<>();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    long userId = fromUserId + (thread + i) % 8;
+                    String businessId = "P" + thread + "_" + i;
+                    try {
+                        TransactionResponse response = i % 3 == 0
+                                ? recharge(userId, "7.00", businessId)
+                                : ledgerEngine.withdraw(userId, "CNY", new BigDecimal("9.00"),
+                                        BUSINESS_TYPE, businessId, null);
+                        changes.merge(userId, response.getAmount(), BigDecimal::add);
+                    } catch (InsufficientBalanceException e) {
+                        // 余额不足，忽略
+                    }
+                }
+                return changes;
+            }, executor));
+        }
+        Map<Long, BigDecimal> expected = new HashMap<>();
+        for (long userId = fromUserId; userId <= toUserId; userId++) {
+            expected.put(userId, new BigDecimal("100.00"));
+        }
+        futures.forEach(future -> future.join().forEach((userId, change) -> expected.merge(userId, change, BigDecimal::add)));
+        executor.shutdown();
+        awaitProjected();
+
+        // Then - 数据库余额、交易流水和变更历史与客户端记账一致，且从未透支
+        List<String> violations = new LedgerInvariants(jdbcTemplate).check(fromUserId, toUserId, "CNY", expected);
+        assertTrue(violations.isEmpty(), String.join("\n", violations));
+        for (long userId = fromUserId; userId <= toUserId; userId++) {
+            assertEquals(0, expected.get(userId).compareTo(ledgerEngine.getCurrencyBalance(userId, "CNY").getBalance()));
+        }
+    }
+
+    private TransactionResponse recharge(Long userId, String amount, String businessId) {
+        return ledgerEngine.recharge(userId, "CNY", new BigDecimal(amount), BUSINESS_TYPE, businessId, null);
+    }
+
+    private void awaitProjected() {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (ledgerEngine.pendingProjection() > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "投影超时");
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void insertTransaction(Long userId, String transactionNo, String businessId) {
+        jdbcTemplate.update("INSERT INTO wallet_transaction(transaction_no, wallet_id, user_id, currency, amount, " +
+                "balance_before, balance_after, transaction_type, business_type, business_id, status) " +
+                "SELECT ?, id, user_id, 'USD', 10, 0, 10, 1, ?, ?, 1 FROM wallet WHERE user_id = ? AND currency = 'CNY'",
+                transactionNo, BUSINESS_TYPE, businessId, userId);
+    }
+
+    private BigDecimal balance(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallet WHERE user_id = ? AND currency = 'CNY'",
+                BigDecimal.class, userId);
+    }
+
+    private int transactionCount(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transaction WHERE user_id = ?",
+                Integer.class, userId);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(properties.getJournalDir()))) {
+            return files.sorted().toList();
+        }
+    }
+
+    private int journalRecordCount() {
+        int[] count = {0};
+        for (int shard = 0; shard < properties.getShards(); shard++) {
+            LedgerJournal.recover(Paths.get(properties.getJournalDir()), shard, 0L, record -> count[0]++);
+        }
+        return count[0];
+    }
+
+    /**
+     * 找到含有记录的段，破坏其最后一条记录的最后一个字节
+     */
+    private void corruptLastRecord() throws IOException {
+        for (Path segment : segments()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                int lastEnd = -1;
+                int length;
+                while ((length = buffer.getInt(buffer.position())) > 0) {
+                    lastEnd = buffer.position() + Integer.BYTES * 2 + length;
+                    buffer.position(lastEnd);
+                }
+                if (lastEnd > 0) {
+                    buffer.put(lastEnd - 1, (byte) (buffer.get(lastEnd - 1) ^ 0x7F));
+                    return;
+                }
+            }
+        }
+        fail("日志中没有记录");
+    }
+}
@@ -0,0 +1,108 @@
+package com.wallet.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 通过 /api/wallet 接口调用，失败原因从 ApiResponse 的 message 中识别
+ */
+public class HttpLoadTarget implements LoadTarget {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+
+    private final ObjectMapper objectMapper;
+
+    private final String baseUrl;
+
+    public HttpLoadTarget(HttpClient client, ObjectMapper objectMapper, int port) {
+        this.client = client;
+        this.objectMapper = objectMapper;
+        this.baseUrl = "http://localhost:" + port + "/api/wallet";
+    }
+
+    @Override
+    public LoadCallResult recharge(Long userId, String currency, BigDecimal amount,
+                                   String businessType, String businessId) {
+        return money("/recharge", userId, currency, amount, businessType, businessId);
+    }
+
+    @Override
+    public LoadCallResult withdraw(Long userId, String currency, BigDecimal amount,
+                                   String businessType, String businessId) {
+        return money("/withdraw", userId, currency, amount, businessType, businessId);
+    }
+
+    @Override
+    public LoadCallResult balance(Long userId, String currency) {
+        return query("/balance?userId=" + userId + "&currency=" + currency);
+    }
+
+    @Override
+    public LoadCallResult transactions(Long userId, String currency) {
+        return query("/transactions/page?userId=" + userId + "&currency=" + currency);
+    }
+
+    private LoadCallResult money(String path, Long userId, String currency, BigDecimal amount,
+                                 String businessType, String businessId) {
+        try {
+            String body = objectMapper.writeValueAsString(Map.of(
+                    "userId", userId,
+                    "currency", currency,
+                    "amount", amount,
+                    "businessType", businessType,
+                    "businessId", businessId));
+            HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body)));
+            if (response.statusCode() == 503) {
+                return LoadCallResult.of(LoadOutcome.REJECTED);
+            }
+            JsonNode json = objectMapper.readTree(response.body());
+            if (json.path("success").asBoolean()) {
+                return LoadCallResult.success(json.path("data").path("transactionNo").asText(null));
+            }
+            String message = json.path("message").asText("");
+            if (message.contains("余额不足")) {
+                return LoadCallResult.of(LoadOutcome.REJECTED);
+            }
+            if (message.contains("冲突") || message.contains("重复业务请求")) {
+                return LoadCallResult.of(LoadOutcome.CONFLICT);
+            }
+            return LoadCallResult.of(LoadOutcome.ERROR);
+        } catch (IOException e) {
+            return LoadCallResult.of(LoadOutcome.ERROR);
+        }
+    }
+
+    private LoadCallResult query(String pathAndQuery) {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + pathAndQuery)).GET());
+        if (response.statusCode() == 503) {
+            return LoadCallResult.of(LoadOutcome.REJECTED);
+        }
+        return LoadCallResult.of(response.statusCode() == 200 && response.body().contains("\"success\":true")
+                ? LoadOutcome.SUCCESS : LoadOutcome.ERROR);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) {
+        try {
+            return client.send(request.timeout(TIMEOUT).build(), HttpResponse.BodyHandlers.ofString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
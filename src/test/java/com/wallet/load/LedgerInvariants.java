@@ -0,0 +1,93 @@
+package com.wallet.load;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测结束后的账务不变量检查，只检查 [fromUserId, toUserId] 区间内的钱包
+ * <ul>
+ *     <li>余额与冻结金额非负</li>
+ *     <li>钱包余额等于余额变更历史的 change_amount 之和（不含冻结余额变更）</li>
+ *     <li>冻结金额等于冻结中的冻结单金额之和</li>
+ *     <li>钱包余额等于成功交易流水的 amount 之和</li>
+ *     <li>同一 business_id 只有一条交易流水</li>
+ *     <li>钱包余额等于客户端按成功请求记账得出的预期余额</li>
+ * </ul>
+ */
+@RequiredArgsConstructor
+public class LedgerInvariants {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param expectedBalances 用户ID -> 客户端记账得出的预期余额，为null时跳过该项
+     * @return 违反不变量的描述，全部满足时为空
+     */
+    public List<String> check(long fromUserId, long toUserId, String currency,
+                              Map<Long, BigDecimal> expectedBalances) {
+        List<String> violations = new ArrayList<>();
+
+        jdbcTemplate.query("SELECT user_id, balance, frozen_balance FROM wallet " +
+                        "WHERE user_id BETWEEN ? AND ? AND currency = ? AND (balance < 0 OR frozen_balance < 0)",
+                rs -> {
+                    violations.add("余额为负: userId=" + rs.getLong("user_id") + ", balance="
+                            + rs.getBigDecimal("balance") + ", frozen=" + rs.getBigDecimal("frozen_balance"));
+                }, fromUserId, toUserId, currency);
+
+        jdbcTemplate.query("SELECT w.user_id, w.balance, COALESCE(SUM(h.change_amount), 0) AS total " +
+                        "FROM wallet w LEFT JOIN balance_change_history h ON h.wallet_id = w.id " +
+                        "AND h.change_type <> 'FROZEN' " +
+                        "WHERE w.user_id BETWEEN ? AND ? AND w.currency = ? GROUP BY w.user_id, w.balance",
+                rs -> {
+                    if (rs.getBigDecimal("balance").compareTo(rs.getBigDecimal("total")) != 0) {
+                        violations.add("余额与变更历史不符: userId=" + rs.getLong("user_id") + ", balance="
+                                + rs.getBigDecimal("balance") + ", 历史合计=" + rs.getBigDecimal("total"));
+                    }
+                }, fromUserId, toUserId, currency);
+
+        jdbcTemplate.query("SELECT w.user_id, w.frozen_balance, COALESCE(SUM(d.amount), 0) AS total " +
+                        "FROM wallet w LEFT JOIN wallet_hold d ON d.wallet_id = w.id AND d.status = 0 " +
+                        "WHERE w.user_id BETWEEN ? AND ? AND w.currency = ? GROUP BY w.user_id, w.frozen_balance",
+                rs -> {
+                    if (rs.getBigDecimal("frozen_balance").compareTo(rs.getBigDecimal("total")) != 0) {
+                        violations.add("冻结金额与冻结单不符: userId=" + rs.getLong("user_id") + ", frozen="
+                                + rs.getBigDecimal("frozen_balance") + ", 冻结单合计=" + rs.getBigDecimal("total"));
+                    }
+                }, fromUserId, toUserId, currency);
+
+        jdbcTemplate.query("SELECT w.user_id, w.balance, COALESCE(SUM(t.amount), 0) AS total " +
+                        "FROM wallet w LEFT JOIN wallet_transaction t ON t.wallet_id = w.id AND t.status = 1 " +
+                        "WHERE w.user_id BETWEEN ? AND ? AND w.currency = ? GROUP BY w.user_id, w.balance",
+                rs -> {
+                    if (rs.getBigDecimal("balance").compareTo(rs.getBigDecimal("total")) != 0) {
+                        violations.add("余额与交易流水不符: userId=" + rs.getLong("user_id") + ", balance="
+                                + rs.getBigDecimal("balance") + ", 流水合计=" + rs.getBigDecimal("total"));
+                    }
+                }, fromUserId, toUserId, currency);
+
+        jdbcTemplate.query("SELECT business_id, COUNT(*) AS cnt FROM wallet_transaction " +
+                        "WHERE user_id BETWEEN ? AND ? GROUP BY business_id HAVING COUNT(*) > 1",
+                rs -> {
+                    violations.add("重复业务ID: businessId=" + rs.getString("business_id")
+                            + ", count=" + rs.getInt("cnt"));
+                }, fromUserId, toUserId);
+
+        if (expectedBalances != null) {
+            jdbcTemplate.query("SELECT user_id, balance FROM wallet " +
+                            "WHERE user_id BETWEEN ? AND ? AND currency = ?",
+                    rs -> {
+                        BigDecimal expected = expectedBalances.get(rs.getLong("user_id"));
+                        if (expected != null && expected.compareTo(rs.getBigDecimal("balance")) != 0) {
+                            violations.add("余额与客户端记账不符: userId=" + rs.getLong("user_id") + ", balance="
+                                    + rs.getBigDecimal("balance") + ", 预期=" + expected);
+                        }
+                    }, fromUserId, toUserId, currency);
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,15 @@
+package com.wallet.load;
+
+/**
+ * 单次调用结果，资金操作成功时带交易流水号
+ */
+public record LoadCallResult(LoadOutcome outcome, String transactionNo) {
+
+    public static LoadCallResult of(LoadOutcome outcome) {
+        return new LoadCallResult(outcome, null);
+    }
+
+    public static LoadCallResult success(String transactionNo) {
+        return new LoadCallResult(LoadOutcome.SUCCESS, transactionNo);
+    }
+}
@@ -0,0 +1,47 @@
+package com.wallet.load;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 操作配比（按权重随机）及资金操作中重放已成功业务ID的比例
+ */
+@Getter
+@Builder
+public class LoadMix {
+
+    @Builder.Default
+    private final int rechargeWeight = 30;
+
+    @Builder.Default
+    private final int withdrawWeight = 40;
+
+    @Builder.Default
+    private final int balanceWeight = 20;
+
+    @Builder.Default
+    private final int transactionsWeight = 10;
+
+    /**
+     * 资金操作中重放之前成功请求（相同业务ID、相同金额）的比例
+     */
+    @Builder.Default
+    private final double replayRatio = 0.05;
+
+    LoadOperation next(ThreadLocalRandom random) {
+        int total = rechargeWeight + withdrawWeight + balanceWeight + transactionsWeight;
+        int value = random.nextInt(total);
+        if ((value -= rechargeWeight) < 0) {
+            return LoadOperation.RECHARGE;
+        }
+        if ((value -= withdrawWeight) < 0) {
+            return LoadOperation.WITHDRAW;
+        }
+        if (value - balanceWeight < 0) {
+            return LoadOperation.BALANCE;
+        }
+        return LoadOperation.TRANSACTIONS;
+    }
+}
@@ -0,0 +1,11 @@
+package com.wallet.load;
+
+/**
+ * 压测操作类型
+ */
+public enum LoadOperation {
+    RECHARGE,
+    WITHDRAW,
+    BALANCE,
+    TRANSACTIONS
+}
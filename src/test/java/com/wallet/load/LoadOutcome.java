@@ -0,0 +1,27 @@
+package com.wallet.load;
+
+/**
+ * 单次调用结果分类
+ */
+public enum LoadOutcome {
+    /**
+     * 成功执行（查询成功、或资金操作入账）
+     */
+    SUCCESS,
+    /**
+     * 重放已成功的业务ID，返回了原交易
+     */
+    DUPLICATE,
+    /**
+     * 余额不足或被准入限流拒绝，没有副作用
+     */
+    REJECTED,
+    /**
+     * 并发冲突（乐观锁重试耗尽、唯一索引兜底），没有副作用
+     */
+    CONFLICT,
+    /**
+     * 其他异常，副作用未知
+     */
+    ERROR
+}
@@ -0,0 +1,79 @@
+package com.wallet.load;
+
+import lombok.Getter;
+import org.HdrHistogram.Histogram;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测结果：各操作的结果计数、延迟直方图（纳秒）与不变量检查结果
+ */
+@Getter
+public class LoadReport {
+
+    private final long elapsedNanos;
+
+    private final Map<LoadOperation, Histogram> latencies;
+
+    private final Map<LoadOperation, long[]> outcomes;
+
+    private final List<String> violations;
+
+    LoadReport(long elapsedNanos, Map<LoadOperation, Histogram> latencies,
+               Map<LoadOperation, long[]> outcomes, List<String> violations) {
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies;
+        this.outcomes = outcomes;
+        this.violations = violations;
+    }
+
+    public long count(LoadOperation operation, LoadOutcome outcome) {
+        return outcomes.get(operation)[outcome.ordinal()];
+    }
+
+    public long count(LoadOutcome outcome) {
+        long total = 0;
+        for (long[] counts : outcomes.values()) {
+            total += counts[outcome.ordinal()];
+        }
+        return total;
+    }
+
+    public long totalOperations() {
+        long total = 0;
+        for (Histogram histogram : latencies.values()) {
+            total += histogram.getTotalCount();
+        }
+        return total;
+    }
+
+    /**
+     * 每秒完成的调用数（含失败）
+     */
+    public long throughput() {
+        return totalOperations() * 1_000_000_000L / Math.max(elapsedNanos, 1);
+    }
+
+    public boolean isConsistent() {
+        return violations.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("耗时=%dms, 调用=%d, 吞吐=%d ops/s, 不变量违反=%d%n",
+                elapsedNanos / 1_000_000, totalOperations(), throughput(), violations.size()));
+        sb.append(String.format("%-13s %7s %7s %9s %8s %8s %6s %9s %9s %9s%n", "operation", "count",
+                "success", "duplicate", "rejected", "conflict", "error", "p50(us)", "p99(us)", "max(us)"));
+        Map<LoadOperation, Histogram> ordered = new EnumMap<>(latencies);
+        ordered.forEach((operation, histogram) -> sb.append(String.format(
+                "%-13s %7d %7d %9d %8d %8d %6d %9d %9d %9d%n", operation, histogram.getTotalCount(),
+                count(operation, LoadOutcome.SUCCESS), count(operation, LoadOutcome.DUPLICATE),
+                count(operation, LoadOutcome.REJECTED), count(operation, LoadOutcome.CONFLICT),
+                count(operation, LoadOutcome.ERROR), histogram.getValueAtPercentile(50) / 1000,
+                histogram.getValueAtPercentile(99) / 1000, histogram.getMaxValue() / 1000)));
+        violations.forEach(violation -> sb.append("  ! ").append(violation).append(System.lineSeparator()));
+        return sb.toString();
+    }
+}
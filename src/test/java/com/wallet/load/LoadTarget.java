@@ -0,0 +1,17 @@
+package com.wallet.load;
+
+import java.math.BigDecimal;
+
+/**
+ * 压测目标：服务层直接调用或 HTTP 接口
+ */
+public interface LoadTarget {
+
+    LoadCallResult recharge(Long userId, String currency, BigDecimal amount, String businessType, String businessId);
+
+    LoadCallResult withdraw(Long userId, String currency, BigDecimal amount, String businessType, String businessId);
+
+    LoadCallResult balance(Long userId, String currency);
+
+    LoadCallResult transactions(Long userId, String currency);
+}
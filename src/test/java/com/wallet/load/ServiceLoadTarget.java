@@ -0,0 +1,71 @@
+package com.wallet.load;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.ConcurrentUpdateException;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.service.WalletGroupCommitService;
+import com.wallet.service.WalletService;
+import com.wallet.service.WalletTransactionService;
+import lombok.RequiredArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+/**
+ * 直接调用服务层；与控制器一致，开启组提交时资金操作走组提交服务
+ */
+@RequiredArgsConstructor
+public class ServiceLoadTarget implements LoadTarget {
+
+    private static final int PAGE_SIZE = 20;
+
+    private final WalletService walletService;
+
+    private final WalletGroupCommitService groupCommitService;
+
+    private final WalletTransactionService transactionService;
+
+    @Override
+    public LoadCallResult recharge(Long userId, String currency, BigDecimal amount,
+                                   String businessType, String businessId) {
+        return money(() -> groupCommitService.isEnabled()
+                ? groupCommitService.recharge(userId, currency, amount, businessType, businessId, null)
+                : walletService.recharge(userId, currency, amount, businessType, businessId, null));
+    }
+
+    @Override
+    public LoadCallResult withdraw(Long userId, String currency, BigDecimal amount,
+                                   String businessType, String businessId) {
+        return money(() -> groupCommitService.isEnabled()
+                ? groupCommitService.withdraw(userId, currency, amount, businessType, businessId, null)
+                : walletService.withdraw(userId, currency, amount, businessType, businessId, null));
+    }
+
+    @Override
+    public LoadCallResult balance(Long userId, String currency) {
+        walletService.getCurrencyBalance(userId, currency);
+        return LoadCallResult.of(LoadOutcome.SUCCESS);
+    }
+
+    @Override
+    public LoadCallResult transactions(Long userId, String currency) {
+        transactionService.getTransactionPage(userId, currency, null, null, null, PAGE_SIZE);
+        return LoadCallResult.of(LoadOutcome.SUCCESS);
+    }
+
+    private LoadCallResult money(Supplier<TransactionResponse> call) {
+        try {
+            TransactionResponse response = call.get();
+            return Boolean.TRUE.equals(response.getSuccess())
+                    ? LoadCallResult.success(response.getTransactionNo())
+                    : LoadCallResult.of(LoadOutcome.ERROR);
+        } catch (InsufficientBalanceException e) {
+            return LoadCallResult.of(LoadOutcome.REJECTED);
+        } catch (ConcurrentUpdateException e) {
+            return LoadCallResult.of(LoadOutcome.CONFLICT);
+        } catch (BusinessException e) {
+            return LoadCallResult.of("DUPLICATE_BUSINESS".equals(e.getCode()) ? LoadOutcome.CONFLICT : LoadOutcome.ERROR);
+        }
+    }
+}
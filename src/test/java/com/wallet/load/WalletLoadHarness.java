@@ -0,0 +1,269 @@
+package com.wallet.load;
+
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 钱包并发压测工具
+ * <p>
+ * 先为 wallets 个新用户（baseUserId+1 起，必须是未使用过的用户ID）各充值 initialBalance，
+ * 再由 threads 个线程按 {@link LoadMix} 的配比对这些钱包随机发起充值、提现、余额查询和交易记录查询。
+ * 客户端按成功的资金请求记账；重放已成功的业务ID时必须拿回原交易流水号。
+ * 结束后用 {@link LedgerInvariants} 核对数据库中的账务不变量。
+ */
+@Slf4j
+@Builder
+public class WalletLoadHarness {
+
+    private static final int REPLAY_POOL_SIZE = 1024;
+
+    private static final String RECHARGE_TYPE = "LOAD_RECHARGE";
+
+    private static final String WITHDRAW_TYPE = "LOAD_WITHDRAW";
+
+    private final LoadTarget target;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final long baseUserId;
+
+    @Builder.Default
+    private final LoadMix mix = LoadMix.builder().build();
+
+    @Builder.Default
+    private final int threads = 16;
+
+    @Builder.Default
+    private final int operationsPerThread = 200;
+
+    @Builder.Default
+    private final int wallets = 8;
+
+    @Builder.Default
+    private final String currency = "CNY";
+
+    @Builder.Default
+    private final BigDecimal initialBalance = new BigDecimal("100.00");
+
+    /**
+     * 单笔资金操作的最大金额，实际金额在 0.01 到该值之间均匀分布
+     */
+    @Builder.Default
+    private final BigDecimal maxAmount = new BigDecimal("20.00");
+
+    public LoadReport run() throws InterruptedException {
+        RunState state = new RunState(UUID.randomUUID().toString().substring(0, 8));
+        for (int i = 0; i < wallets; i++) {
+            LoadCallResult seeded = target.recharge(userId(i), currency, initialBalance,
+                    RECHARGE_TYPE, state.runId + "_SEED_" + i);
+            if (seeded.outcome() != LoadOutcome.SUCCESS) {
+                throw new IllegalStateException("初始化钱包失败: userId=" + userId(i) + ", " + seeded.outcome());
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<WorkerStats>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                startLatch.await();
+                return work(state);
+            }));
+        }
+        long start = System.nanoTime();
+        startLatch.countDown();
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+            throw new IllegalStateException("压测线程未在限定时间内结束");
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Map<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation.class);
+        Map<LoadOperation, long[]> outcomes = new EnumMap<>(LoadOperation.class);
+        for (LoadOperation operation : LoadOperation.values()) {
+            latencies.put(operation, new Histogram(3));
+            outcomes.put(operation, new long[LoadOutcome.values().length]);
+        }
+        for (Future<WorkerStats> future : futures) {
+            WorkerStats stats;
+            try {
+                stats = future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("压测线程异常", e);
+            }
+            stats.latencies.forEach((operation, histogram) -> latencies.get(operation).add(histogram));
+            stats.outcomes.forEach((operation, counts) -> {
+                long[] total = outcomes.get(operation);
+                for (int i = 0; i < counts.length; i++) {
+                    total[i] += counts[i];
+                }
+            });
+        }
+
+        // 结果未知的资金请求无法在客户端记账，此时只核对数据库内部的一致性
+        Map<Long, BigDecimal> expectedBalances = null;
+        if (outcomes.get(LoadOperation.RECHARGE)[LoadOutcome.ERROR.ordinal()] == 0
+                && outcomes.get(LoadOperation.WITHDRAW)[LoadOutcome.ERROR.ordinal()] == 0) {
+            expectedBalances = new HashMap<>();
+            for (int i = 0; i < wallets; i++) {
+                expectedBalances.put(userId(i), initialBalance.add(BigDecimal.valueOf(state.ledger.get(i), 2)));
+            }
+        }
+        List<String> violations = new ArrayList<>(state.violations);
+        violations.addAll(new LedgerInvariants(jdbcTemplate)
+                .check(userId(0), userId(wallets - 1), currency, expectedBalances));
+
+        LoadReport report = new LoadReport(elapsed, latencies, outcomes, violations);
+        log.info("钱包压测完成: 线程={}, 钱包={}\n{}", threads, wallets, report);
+        return report;
+    }
+
+    private WorkerStats work(RunState state) {
+        WorkerStats stats = new WorkerStats();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int n = 0; n < operationsPerThread; n++) {
+            LoadOperation operation = mix.next(random);
+            int wallet = random.nextInt(wallets);
+            long start = System.nanoTime();
+            LoadOutcome outcome;
+            try {
+                outcome = execute(operation, wallet, random, state);
+            } catch (RuntimeException e) {
+                log.warn("压测调用异常: operation={}, error={}", operation, e.getMessage());
+                outcome = LoadOutcome.ERROR;
+            }
+            stats.latencies.get(operation).recordValue(System.nanoTime() - start);
+            stats.outcomes.get(operation)[outcome.ordinal()]++;
+        }
+        return stats;
+    }
+
+    private LoadOutcome execute(LoadOperation operation, int wallet, ThreadLocalRandom random, RunState state) {
+        switch (operation) {
+            case BALANCE:
+                return target.balance(userId(wallet), currency).outcome();
+            case TRANSACTIONS:
+                return target.transactions(userId(wallet), currency).outcome();
+            default:
+                break;
+        }
+
+        MoneyRequest replay = random.nextDouble() < mix.getReplayRatio() ? state.pickReplay(random) : null;
+        if (replay != null) {
+            return replay(replay, state);
+        }
+
+        long cents = 1 + random.nextLong(maxAmount.movePointRight(2).longValueExact());
+        MoneyRequest request = new MoneyRequest(operation, wallet, cents,
+                state.runId + "_" + state.sequence.incrementAndGet());
+        LoadCallResult result = call(request);
+        if (result.outcome() == LoadOutcome.SUCCESS) {
+            state.ledger.addAndGet(wallet, operation == LoadOperation.RECHARGE ? cents : -cents);
+            request.transactionNo = result.transactionNo();
+            state.remember(request);
+        }
+        return result.outcome();
+    }
+
+    /**
+     * 重放成功过的请求：要么返回原交易，要么被并发兜底拒绝，不允许产生新的交易
+     */
+    private LoadOutcome replay(MoneyRequest request, RunState state) {
+        LoadCallResult result = call(request);
+        switch (result.outcome()) {
+            case SUCCESS:
+                if (!Objects.equals(request.transactionNo, result.transactionNo())) {
+                    state.violations.add("重放产生了新交易: businessId=" + request.businessId
+                            + ", 原交易=" + request.transactionNo + ", 新交易=" + result.transactionNo());
+                }
+                return LoadOutcome.DUPLICATE;
+            case REJECTED:
+                state.violations.add("重放未识别为重复请求: businessId=" + request.businessId);
+                return LoadOutcome.REJECTED;
+            default:
+                return result.outcome();
+        }
+    }
+
+    private LoadCallResult call(MoneyRequest request) {
+        BigDecimal amount = BigDecimal.valueOf(request.cents, 2);
+        return request.operation == LoadOperation.RECHARGE
+                ? target.recharge(userId(request.wallet), currency, amount, RECHARGE_TYPE, request.businessId)
+                : target.withdraw(userId(request.wallet), currency, amount, WITHDRAW_TYPE, request.businessId);
+    }
+
+    private long userId(int wallet) {
+        return baseUserId + 1 + wallet;
+    }
+
+    private class RunState {
+        private final String runId;
+        private final AtomicLong sequence = new AtomicLong();
+        private final AtomicLongArray ledger = new AtomicLongArray(wallets);
+        private final AtomicReferenceArray<MoneyRequest> replayPool = new AtomicReferenceArray<>(REPLAY_POOL_SIZE);
+        private final AtomicLong remembered = new AtomicLong();
+        private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+
+        RunState(String runId) {
+            this.runId = runId;
+        }
+
+        void remember(MoneyRequest request) {
+            replayPool.set((int) (remembered.getAndIncrement() % REPLAY_POOL_SIZE), request);
+        }
+
+        MoneyRequest pickReplay(ThreadLocalRandom random) {
+            int filled = (int) Math.min(remembered.get(), REPLAY_POOL_SIZE);
+            return filled == 0 ? null : replayPool.get(random.nextInt(filled));
+        }
+    }
+
+    private static class MoneyRequest {
+        private final LoadOperation operation;
+        private final int wallet;
+        private final long cents;
+        private final String businessId;
+        private volatile String transactionNo;
+
+        MoneyRequest(LoadOperation operation, int wallet, long cents, String businessId) {
+            this.operation = operation;
+            this.wallet = wallet;
+            this.cents = cents;
+            this.businessId = businessId;
+        }
+    }
+
+    private static class WorkerStats {
+        private final Map<LoadOperation, Histogram> latencies = new EnumMap<>(LoadOperation.class);
+        private final Map<LoadOperation, long[]> outcomes = new EnumMap<>(LoadOperation.class);
+
+        WorkerStats() {
+            for (LoadOperation operation : LoadOperation.values()) {
+                latencies.put(operation, new Histogram(3));
+                outcomes.put(operation, new long[LoadOutcome.values().length]);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.wallet.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wallet.config.WithdrawProperties;
+import com.wallet.enums.WithdrawMode;
+import com.wallet.service.WalletGroupCommitService;
+import com.wallet.service.WalletService;
+import com.wallet.service.WalletTransactionService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.net.http.HttpClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 并发压测：少量钱包上的高冲突充值/提现/查询混合负载，结束后账务不变量全部成立
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"logging.level.com.wallet=WARN", "logging.level.com.wallet.load=INFO",
+                "logging.level.org.springframework.jdbc.core.JdbcTemplate=WARN"})
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Tag("perf")
+class WalletLoadHarnessTest {
+
+    private static final long BASE_USER_ID = 300_000L;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletGroupCommitService groupCommitService;
+
+    @Autowired
+    private WalletTransactionService transactionService;
+
+    @Autowired
+    private WithdrawProperties withdrawProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void restoreWithdrawMode() {
+        withdrawProperties.setMode(WithdrawMode.OPTIMISTIC);
+    }
+
+    @Test
+    void testServiceLoad_OptimisticWithdraw() throws Exception {
+        LoadReport report = harness(serviceTarget()).run();
+
+        assertHealthy(report);
+    }
+
+    @Test
+    void testServiceLoad_AtomicWithdraw() throws Exception {
+        withdrawProperties.setMode(WithdrawMode.ATOMIC);
+
+        LoadReport report = harness(serviceTarget()).run();
+
+        assertHealthy(report);
+    }
+
+    @Test
+    void testHttpLoad() throws Exception {
+        LoadTarget target = new HttpLoadTarget(HttpClient.newHttpClient(), objectMapper, port);
+
+        LoadReport report = harness(target).run();
+
+        assertHealthy(report);
+    }
+
+    @Test
+    void testLedgerInvariants_DetectTampering() throws Exception {
+        // Given
+        harness(serviceTarget()).run();
+        jdbcTemplate.update("UPDATE wallet SET balance = -1 WHERE user_id = ?", BASE_USER_ID + 1);
+
+        // When
+        var violations = new LedgerInvariants(jdbcTemplate).check(BASE_USER_ID + 1, BASE_USER_ID + 8, "CNY", null);
+
+        // Then - 负余额、与变更历史不符、与交易流水不符
+        assertEquals(3, violations.size(), violations.toString());
+    }
+
+    private WalletLoadHarness harness(LoadTarget target) {
+        return WalletLoadHarness.builder()
+                .target(target)
+                .jdbcTemplate(jdbcTemplate)
+                .baseUserId(BASE_USER_ID)
+                .threads(16)
+                .operationsPerThread(150)
+                .wallets(8)
+                .initialBalance(new BigDecimal("50.00"))
+                .build();
+    }
+
+    private ServiceLoadTarget serviceTarget() {
+        return new ServiceLoadTarget(walletService, groupCommitService, transactionService);
+    }
+
+    /**
+     * 无未知结果的调用，不变量全部成立，且余额不足拦截确实被触发过
+     */
+    private static void assertHealthy(LoadReport report) {
+        assertTrue(report.isConsistent(), report.toString());
+        assertEquals(0, report.count(LoadOutcome.ERROR), report.toString());
+        assertTrue(report.count(LoadOperation.WITHDRAW, LoadOutcome.SUCCESS) > 0);
+        assertTrue(report.count(LoadOperation.WITHDRAW, LoadOutcome.REJECTED) > 0);
+        assertTrue(report.count(LoadOutcome.DUPLICATE) > 0);
+    }
+}
@@ -0,0 +1,117 @@
+package com.wallet.metrics;
+
+import com.wallet.config.WithdrawProperties;
+import com.wallet.enums.WithdrawMode;
+import com.wallet.exception.InsufficientBalanceException;
+import com.wallet.service.WalletService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 资金操作各阶段指标、Mapper 语句指标与 Prometheus 端点
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletMetricsTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WithdrawProperties withdrawProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @AfterEach
+    void restoreWithdrawMode() {
+        withdrawProperties.setMode(WithdrawMode.OPTIMISTIC);
+    }
+
+    @Test
+    void testRecharge_RecordsStagesAndOutcomes() {
+        // Given
+        long success = operationCount("recharge", "success");
+        long duplicate = operationCount("recharge", "duplicate");
+        long historyInserts = stageTimer("recharge", "history_insert").count();
+        long commits = meterRegistry.get("wallet.operation.commit").tag("operation", "recharge").timer().count();
+
+        // When
+        walletService.recharge(1001L, "CNY", new BigDecimal("10.00"), "METRICS_TEST", "METRICS_R001", null);
+        walletService.recharge(1001L, "CNY", new BigDecimal("10.00"), "METRICS_TEST", "METRICS_R001", null);
+
+        // Then
+        assertEquals(success + 1, operationCount("recharge", "success"));
+        assertEquals(duplicate + 1, operationCount("recharge", "duplicate"));
+        assertEquals(historyInserts + 1, stageTimer("recharge", "history_insert").count());
+        assertEquals(commits + 1, meterRegistry.get("wallet.operation.commit")
+                .tag("operation", "recharge").timer().count());
+        for (WalletMetrics.Stage stage : WalletMetrics.Stage.values()) {
+            assertTrue(stageTimer("recharge", stage.name().toLowerCase()).count() > 0, stage.name());
+        }
+        assertTrue(meterRegistry.get("wallet.mapper").tag("statement", "WalletMapper.updateBalance")
+                .tag("outcome", "success").timer().count() > 0);
+    }
+
+    @Test
+    void testWithdraw_CountsInsufficientBalance() {
+        for (WithdrawMode mode : WithdrawMode.values()) {
+            // Given
+            withdrawProperties.setMode(mode);
+            String operation = mode == WithdrawMode.ATOMIC ? "withdraw_atomic" : "withdraw";
+            double errors = errorCount(operation, "insufficient_balance");
+
+            // When
+            assertThrows(InsufficientBalanceException.class, () -> walletService.withdraw(1003L, "CNY",
+                    new BigDecimal("1.00"), "METRICS_TEST", "METRICS_W_" + mode, null));
+
+            // Then
+            assertEquals(errors + 1, errorCount(operation, "insufficient_balance"));
+            assertTrue(operationCount(operation, "insufficient_balance") > 0);
+        }
+    }
+
+    @Test
+    void testPrometheusEndpoint() {
+        walletService.recharge(1001L, "CNY", new BigDecimal("10.00"), "METRICS_TEST", "METRICS_P001", null);
+
+        String body = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        assertTrue(body.contains("wallet_operation_seconds_bucket{"), "操作耗时应输出直方图");
+        assertTrue(body.contains("wallet_operation_stage_seconds_count{"));
+        assertTrue(body.contains("wallet_operation_errors_total{"));
+        assertTrue(body.contains("wallet_mapper_seconds_count{"));
+        assertFalse(body.contains("wallet_mapper_seconds_bucket{"), "Mapper 耗时默认不输出直方图");
+    }
+
+    private long operationCount(String operation, String outcome) {
+        return meterRegistry.get("wallet.operation").tag("operation", operation).tag("outcome", outcome)
+                .timer().count();
+    }
+
+    private Timer stageTimer(String operation, String stage) {
+        return meterRegistry.get("wallet.operation.stage").tag("operation", operation).tag("stage", stage).timer();
+    }
+
+    private double errorCount(String operation, String reason) {
+        return meterRegistry.get("wallet.operation.errors").tag("operation", operation).tag("reason", reason)
+                .counter().count();
+    }
+}
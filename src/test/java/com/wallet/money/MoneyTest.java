@@ -0,0 +1,63 @@
+package com.wallet.money;
+
+import com.wallet.config.MoneyProperties;
+import com.wallet.exception.BusinessException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 定点金额：与 BigDecimal 互转、溢出检查、按币种校验小数位
+ */
+class MoneyTest {
+
+    @Test
+    void testConversion_RoundTrip() {
+        // Given
+        BigDecimal amount = new BigDecimal("1234.56");
+
+        // When
+        Money money = Money.of(amount);
+
+        // Then - 单位数为 1e-8 的整数倍，转回后小数位与库表一致
+        assertEquals(123_456_000_000L, money.units());
+        assertEquals(new BigDecimal("1234.56000000"), money.toBigDecimal());
+        assertEquals(Money.of(new BigDecimal("1234.56000000")), money);
+        assertEquals(0, Money.of(new BigDecimal("0.10")).add(Money.of(new BigDecimal("0.20")))
+                .toBigDecimal().compareTo(new BigDecimal("0.3")));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.000000001")));
+    }
+
+    @Test
+    void testArithmetic_OverflowThrows() {
+        // Given
+        Money max = Money.ofUnits(Long.MAX_VALUE);
+
+        // When & Then
+        assertThrows(ArithmeticException.class, () -> max.add(Money.ofUnits(1)));
+        assertThrows(ArithmeticException.class, () -> Money.ofUnits(Long.MIN_VALUE).negate());
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("100000000000")));
+        assertTrue(Money.of(new BigDecimal("-1")).isLessThan(Money.ZERO));
+    }
+
+    @Test
+    void testCurrencyScales_RejectsExcessDecimals() {
+        // Given - CNY 两位小数，JPY 无小数，其他币种按默认 8 位
+        MoneyProperties properties = new MoneyProperties();
+        properties.setScales(Map.of("CNY", 2, "JPY", 0));
+        CurrencyScales scales = new CurrencyScales(properties);
+
+        // When & Then
+        assertEquals(Money.of(new BigDecimal("10.5")), scales.amount("CNY", new BigDecimal("10.50")));
+        assertEquals(Money.of(new BigDecimal("100")), scales.amount("JPY", new BigDecimal("100.000")));
+        assertEquals("INVALID_AMOUNT",
+                assertThrows(BusinessException.class, () -> scales.amount("CNY", new BigDecimal("0.001"))).getCode());
+        assertThrows(BusinessException.class, () -> scales.amount("JPY", new BigDecimal("0.5")));
+        assertThrows(BusinessException.class, () -> scales.amount("BTC", new BigDecimal("1e12")));
+        assertThrows(BusinessException.class, () -> scales.amount("CNY", null));
+        assertEquals(8, scales.scaleOf("BTC"));
+    }
+}
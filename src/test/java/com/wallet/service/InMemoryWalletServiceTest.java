@@ -0,0 +1,72 @@
+package com.wallet.service;
+
+import com.wallet.entity.Wallet;
+import com.wallet.mapper.WalletMapper;
+import com.wallet.storage.InMemoryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 内存存储下重跑 {@link WalletServiceTest}：每个测试前清空内存存储并写入与 data-test.sql 相同的钱包，
+ * 另外确认资金操作不再写数据库
+ */
+@SpringBootTest(properties = {"logging.level.com.wallet=WARN", "logging.level.com.wallet.mapper=WARN",
+        "wallet.storage.type=MEMORY"})
+@ActiveProfiles("test")
+class InMemoryWalletServiceTest extends WalletServiceTest {
+
+    @Autowired
+    private InMemoryStore store;
+
+    @Autowired
+    private WalletMapper walletMapper;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seedWallets() {
+        store.clear();
+        insertWallet(1001L, "CNY", "1000.00");
+        insertWallet(1001L, "USD", "100.00");
+        insertWallet(1002L, "CNY", "500.00");
+        insertWallet(1003L, "CNY", "0.00");
+    }
+
+    @Test
+    void testMemoryStorage_DoesNotTouchDatabase() {
+        // When
+        walletService.recharge(1001L, "CNY", new BigDecimal("100.00"), "TEST_MEMORY", "TEST_M001", null);
+        walletService.withdraw(1002L, "CNY", new BigDecimal("50.00"), "TEST_MEMORY", "TEST_M002", null);
+
+        // Then - 内存中余额已变更，数据库保持 data-test.sql 的初始数据
+        assertEquals(0, new BigDecimal("1100.00").compareTo(walletService.getWallet(1001L, "CNY").getBalance()));
+        assertEquals(0, new BigDecimal("450.00").compareTo(walletService.getWallet(1002L, "CNY").getBalance()));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT balance FROM wallet WHERE user_id = 1001 AND currency = 'CNY'", BigDecimal.class)));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_transaction WHERE business_type = 'TEST_MEMORY'", Integer.class));
+    }
+
+    private void insertWallet(Long userId, String currency, String balance) {
+        Wallet wallet = new Wallet();
+        wallet.setUserId(userId);
+        wallet.setCurrency(currency);
+        wallet.setBalance(new BigDecimal(balance));
+        wallet.setFrozenBalance(BigDecimal.ZERO);
+        wallet.setVersion(0);
+        wallet.setStatus(1);
+        walletMapper.insert(wallet);
+    }
+}
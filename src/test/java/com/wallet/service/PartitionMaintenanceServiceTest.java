@@ -0,0 +1,128 @@
+package com.wallet.service;
+
+import com.wallet.dto.response.PlatformReconciliationReport;
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.dto.response.WalletMismatch;
+import com.wallet.entity.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分区归档：保留期之前的交易与变更历史移入归档表，幂等检查与期初余额仍能查到归档的数据
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class PartitionMaintenanceServiceTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Autowired
+    private PartitionMaintenanceService partitionMaintenanceService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private PlatformReconciliationService platformReconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Long walletId;
+
+    /**
+     * 用户 1003 的钱包 8 个月前充值 100 后再无变动，1001 的钱包刚刚充值过一笔
+     */
+    @BeforeEach
+    void setUpHistory() {
+        jdbcTemplate.update("UPDATE wallet SET balance = 100.00 WHERE user_id = 1003 AND currency = 'CNY'");
+        walletId = walletService.getWallet(1003L, "CNY").getId();
+        Timestamp longAgo = Timestamp.valueOf(LocalDateTime.now().minusMonths(8));
+        jdbcTemplate.update("INSERT INTO wallet_transaction(transaction_no, wallet_id, user_id, currency, amount, " +
+                        "balance_before, balance_after, transaction_type, business_type, business_id, status, " +
+                        "created_at) VALUES('T_ARCHIVE_001', ?, 1003, 'CNY', 100.00, 0, 100.00, 1, " +
+                        "'ARCHIVE_TEST', 'ARCHIVE_001', 1, ?)",
+                walletId, longAgo);
+        Long transactionId = jdbcTemplate.queryForObject(
+                "SELECT id FROM wallet_transaction WHERE transaction_no = 'T_ARCHIVE_001'", Long.class);
+        jdbcTemplate.update("INSERT INTO balance_change_history(wallet_id, transaction_id, change_amount, " +
+                        "balance_before, balance_after, change_type, stripe_no, created_at) " +
+                        "VALUES(?, ?, 100.00, 0, 100.00, 'BALANCE', 0, ?)",
+                walletId, transactionId, longAgo);
+        walletService.recharge(1001L, "CNY", new BigDecimal("10.00"), "ARCHIVE_TEST", "RECENT_001", "近期充值");
+    }
+
+    @Test
+    void testMaintain_MovesRowsBeforeRetentionToArchive() {
+        // When
+        long archived = partitionMaintenanceService.maintain(LocalDate.now());
+
+        // Then - 只归档 8 个月前的交易和变更历史，近期数据留在在线表
+        assertEquals(2, archived);
+        assertEquals(0, count("SELECT COUNT(*) FROM wallet_transaction WHERE business_id = 'ARCHIVE_001'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM wallet_transaction_archive WHERE business_id = 'ARCHIVE_001'"));
+        assertEquals(1, count("SELECT COUNT(*) FROM wallet_transaction WHERE business_id = 'RECENT_001'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM balance_change_history WHERE wallet_id = " + walletId));
+        assertEquals(1, count("SELECT COUNT(*) FROM balance_change_history_archive WHERE wallet_id = " + walletId));
+
+        // 再次执行没有可归档的数据
+        assertEquals(0, partitionMaintenanceService.maintain(LocalDate.now()));
+    }
+
+    @Test
+    void testRecharge_ArchivedBusinessIdIsDuplicate() {
+        // Given
+        partitionMaintenanceService.maintain(LocalDate.now());
+
+        // When
+        TransactionResponse response = walletService.recharge(1003L, "CNY", new BigDecimal("100.00"),
+                "ARCHIVE_TEST", "ARCHIVE_001", "重复充值");
+
+        // Then - 经幂等键表找到归档的原交易，余额不变
+        assertEquals("T_ARCHIVE_001", response.getTransactionNo());
+        assertEquals("重复请求，返回之前成功结果", response.getMessage());
+        assertEquals(0, new BigDecimal("100.00").compareTo(walletService.getWallet(1003L, "CNY").getBalance()));
+    }
+
+    @Test
+    void testReconcile_DormantWalletUsesArchivedOpeningBalance() {
+        // Given
+        partitionMaintenanceService.maintain(LocalDate.now());
+        Date endTime = new Date();
+        Date startTime = new Date(endTime.getTime() - DAY);
+
+        // When
+        Wallet wallet = walletService.getWallet(1003L, "CNY");
+        ReconciliationResult single = reconciliationService.reconcile(wallet, startTime, endTime);
+        PlatformReconciliationReport report = platformReconciliationService.reconcileAllWallets(
+                startTime, endTime, 1, 100);
+
+        // Then - 变更历史已全部归档的钱包期初余额取自归档表
+        assertEquals(0, new BigDecimal("100.00").compareTo(single.getOpeningBalance()));
+        assertTrue(single.getIsBalanced());
+        assertTrue(report.getMismatches().stream().map(WalletMismatch::getWalletId).noneMatch(walletId::equals));
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
@@ -0,0 +1,150 @@
+package com.wallet.service;
+
+import com.wallet.dto.response.PlatformReconciliationReport;
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.dto.response.WalletMismatch;
+import com.wallet.entity.Wallet;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 全平台对账：分区并行 + 按钱包分组聚合，结果与逐个钱包对账一致
+ */
+@Slf4j
+@SpringBootTest(properties = "logging.level.com.wallet=INFO")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class PlatformReconciliationServiceTest {
+
+    private static final int WALLETS = 5000;
+
+    private static final long BASE_USER_ID = 200_000L;
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @TempDir
+    static Path reportDir;
+
+    @DynamicPropertySource
+    static void reportDir(DynamicPropertyRegistry registry) {
+        registry.add("wallet.platform-reconciliation.report-dir", () -> reportDir.toString());
+    }
+
+    @Autowired
+    private PlatformReconciliationService platformReconciliationService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Date startTime;
+
+    private Date endTime;
+
+    /**
+     * 每个钱包期初前一笔 +100，对账期内 +10、+20、-5，期末余额 125
+     */
+    @BeforeEach
+    void setUpWallets() {
+        Date now = new Date();
+        startTime = new Date(now.getTime() - 24 * HOUR);
+        endTime = now;
+        jdbcTemplate.update("INSERT INTO wallet(user_id, currency, balance, version, status) " +
+                "SELECT CAST(? AS BIGINT) + X, 'CNY', 125.00, 0, 1 FROM SYSTEM_RANGE(1, CAST(? AS BIGINT))",
+                BASE_USER_ID, WALLETS);
+        insertChanges(new BigDecimal("100.00"), BigDecimal.ZERO, new Timestamp(now.getTime() - 48 * HOUR));
+        insertChanges(new BigDecimal("10.00"), new BigDecimal("100.00"), new Timestamp(now.getTime() - 3 * HOUR));
+        insertChanges(new BigDecimal("20.00"), new BigDecimal("110.00"), new Timestamp(now.getTime() - 2 * HOUR));
+        insertChanges(new BigDecimal("-5.00"), new BigDecimal("130.00"), new Timestamp(now.getTime() - HOUR));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM wallet WHERE user_id > ?", BASE_USER_ID);
+        jdbcTemplate.execute("TRUNCATE TABLE balance_change_history");
+    }
+
+    @Test
+    void testReconcileAllWallets_ReportsMismatches() throws Exception {
+        // Given - 篡改 3 个钱包的余额
+        jdbcTemplate.update("UPDATE wallet SET balance = balance + 1 WHERE user_id IN (?, ?, ?)",
+                BASE_USER_ID + 7, BASE_USER_ID + 2500, BASE_USER_ID + WALLETS);
+
+        // When
+        PlatformReconciliationReport report = platformReconciliationService.reconcileAllWallets(
+                startTime, endTime, 4, 512);
+
+        // Then - data-test.sql 中没有变更历史的非零余额钱包同样不平
+        Set<Long> mismatchedUsers = report.getMismatches().stream()
+                .map(WalletMismatch::getUserId)
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(1001L, 1002L, BASE_USER_ID + 7, BASE_USER_ID + 2500, BASE_USER_ID + WALLETS),
+                mismatchedUsers);
+        assertEquals(WALLETS + 4, report.getTotalWallets());
+        assertEquals(WALLETS * 3L, report.getTotalChanges());
+        assertEquals(report.getTotalWallets() - 6, report.getBalancedWallets());
+
+        WalletMismatch tampered = report.getMismatches().stream()
+                .filter(mismatch -> mismatch.getUserId() == BASE_USER_ID + 7)
+                .findFirst().orElseThrow();
+        assertEquals(0, new BigDecimal("1.00").compareTo(tampered.getDifference()));
+
+        // 与逐个钱包对账结果一致
+        Wallet wallet = walletService.getWallet(BASE_USER_ID + 7, "CNY");
+        ReconciliationResult single = reconciliationService.reconcile(wallet, startTime, endTime);
+        assertEquals(0, single.getCalculatedClosingBalance().compareTo(tampered.getCalculatedClosingBalance()));
+        assertEquals(0, single.getOpeningBalance().compareTo(tampered.getOpeningBalance()));
+
+        List<String> lines = Files.readAllLines(Paths.get(report.getReportFile()));
+        assertEquals(report.getMismatches().size() + 1, lines.size());
+        assertSame(report, platformReconciliationService.getLastReport());
+    }
+
+    @Test
+    void testReconcileAllWallets_Throughput() {
+        for (int parallelism : new int[]{1, 4}) {
+            PlatformReconciliationReport report = platformReconciliationService.reconcileAllWallets(
+                    startTime, endTime, parallelism, 500);
+            log.info("全平台对账: 并行度={}, 分区={}, 钱包数={}, 耗时={}ms, {} 钱包/秒",
+                    parallelism, report.getPartitions(), report.getTotalWallets(),
+                    report.getElapsedMillis(), report.getWalletsPerSecond());
+            assertEquals(3, report.getMismatches().size());
+        }
+    }
+
+    private void insertChanges(BigDecimal amount, BigDecimal before, Timestamp createdAt) {
+        jdbcTemplate.update("INSERT INTO balance_change_history(wallet_id, transaction_id, change_amount, " +
+                        "balance_before, balance_after, change_type, created_at) " +
+                        "SELECT id, NULL, CAST(? AS DECIMAL(20,8)), CAST(? AS DECIMAL(20,8)), " +
+                        "CAST(? AS DECIMAL(20,8)), 'BALANCE', CAST(? AS TIMESTAMP) FROM wallet WHERE user_id > ?",
+                amount, before, before.add(amount), createdAt, BASE_USER_ID);
+    }
+}
@@ -0,0 +1,155 @@
+package com.wallet.service;
+
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.entity.Wallet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 基于检查点的汇总对账与明细对账结果一致，余额超出 Money 范围时各种对账方式仍然正确
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class ReconciliationCheckpointTest {
+
+    private static final int DAYS = 30;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private BalanceCheckpointService checkpointService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private PlatformReconciliationService platformReconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Long userId = 1003L;
+
+    private final String currency = "CNY";
+
+    private Date now;
+
+    /**
+     * 过去 30 天每天 3 笔变更：两笔充值一笔提现
+     */
+    @BeforeEach
+    void setUpHistory() {
+        now = new Date();
+        Wallet wallet = walletService.getWallet(userId, currency);
+        BigDecimal balance = BigDecimal.ZERO;
+        for (int day = DAYS; day >= 1; day--) {
+            for (int i = 0; i < 3; i++) {
+                BigDecimal change = i < 2 ? new BigDecimal("10.00").multiply(BigDecimal.valueOf(i + 1))
+                        : new BigDecimal("-7.50");
+                Timestamp createdAt = new Timestamp(now.getTime() - day * DAY + i * TimeUnit.HOURS.toMillis(5));
+                jdbcTemplate.update("INSERT INTO balance_change_history(wallet_id, transaction_id, change_amount, " +
+                                "balance_before, balance_after, change_type, created_at) VALUES (?, NULL, ?, ?, ?, 'BALANCE', ?)",
+                        wallet.getId(), change, balance, balance.add(change), createdAt);
+                balance = balance.add(change);
+            }
+        }
+        jdbcTemplate.update("UPDATE wallet SET balance = ? WHERE id = ?", balance, wallet.getId());
+    }
+
+    @Test
+    void testAdvance_CreatesDailyCheckpoints() {
+        // When
+        int created = checkpointService.advanceAll(now);
+
+        // Then - 每个有变更的自然日生成一个检查点，重复推进不会重复生成
+        assertTrue(created >= DAYS - 1, "created=" + created);
+        assertEquals(0, checkpointService.advanceAll(now));
+    }
+
+    @Test
+    void testReconcileSummary_MatchesDetailedReconcile() {
+        // Given - 推进检查点后再产生一笔检查点之后的变更
+        checkpointService.advanceAll(now);
+        walletService.recharge(userId, currency, new BigDecimal("33.00"), "CHECKPOINT_TEST", "CP_R001", null);
+
+        Date[][] windows = {
+                {new Date(now.getTime() - 20 * DAY), new Date(now.getTime() + DAY)},
+                {new Date(now.getTime() - 25 * DAY - 3_600_000), new Date(now.getTime() - 3 * DAY)},
+                {new Date(now.getTime() - 40 * DAY), new Date(now.getTime() - 35 * DAY)},
+                {new Date(now.getTime() - 2 * DAY), new Date(now.getTime() + DAY)}
+        };
+
+        for (Date[] window : windows) {
+            // When
+            ReconciliationResult detailed = reconciliationService.reconcile(userId, currency, window[0], window[1]);
+            ReconciliationResult summary = reconciliationService.reconcileSummary(userId, currency, window[0], window[1]);
+
+            // Then
+            assertEquals(0, detailed.getOpeningBalance().compareTo(summary.getOpeningBalance()));
+            assertEquals(0, detailed.getCalculatedClosingBalance().compareTo(summary.getCalculatedClosingBalance()));
+            assertEquals(0, detailed.getTotalInflow().compareTo(summary.getTotalInflow()));
+            assertEquals(0, detailed.getTotalOutflow().compareTo(summary.getTotalOutflow()));
+            assertEquals(detailed.getTotalChanges(), summary.getTotalChanges());
+            assertEquals(detailed.getIsBalanced(), summary.getIsBalanced());
+            assertNull(summary.getChanges());
+        }
+
+        ReconciliationResult upToNow = reconciliationService.reconcileSummary(
+                userId, currency, windows[0][0], windows[0][1]);
+        assertTrue(upToNow.getIsBalanced());
+    }
+
+    @Test
+    void testReconcile_BalancesBeyondMoneyRange() {
+        // Given - 1002 的余额先到 500 亿，对账期内 +600 亿、-100 亿，期末 1000 亿超出 Money 的 ±922 亿
+        Wallet wallet = walletService.getWallet(1002L, currency);
+        BigDecimal[] changes = {new BigDecimal("50000000000.00"), new BigDecimal("60000000000.00"),
+                new BigDecimal("-10000000000.00")};
+        long[] daysAgo = {3, 2, 1};
+        BigDecimal balance = BigDecimal.ZERO;
+        for (int i = 0; i < changes.length; i++) {
+            jdbcTemplate.update("INSERT INTO balance_change_history(wallet_id, transaction_id, change_amount, " +
+                            "balance_before, balance_after, change_type, created_at) VALUES (?, NULL, ?, ?, ?, 'BALANCE', ?)",
+                    wallet.getId(), changes[i], balance, balance.add(changes[i]),
+                    new Timestamp(now.getTime() - daysAgo[i] * DAY));
+            balance = balance.add(changes[i]);
+        }
+        jdbcTemplate.update("UPDATE wallet SET balance = ? WHERE id = ?", balance, wallet.getId());
+        Date endTime = new Date(now.getTime() + DAY);
+
+        // When - 期初在范围内、累加时越界；以及期初本身已越界
+        Date[] startTimes = {new Date(now.getTime() - 2 * DAY - 3_600_000), new Date(now.getTime() - DAY - 3_600_000)};
+        for (Date startTime : startTimes) {
+            ReconciliationResult detailed = reconciliationService.reconcile(1002L, currency, startTime, endTime);
+            ReconciliationResult streaming = reconciliationService.reconcileStreaming(1002L, currency, startTime, endTime);
+            ReconciliationResult summary = reconciliationService.reconcileSummary(1002L, currency, startTime, endTime);
+
+            // Then
+            for (ReconciliationResult result : new ReconciliationResult[]{detailed, streaming, summary}) {
+                assertTrue(result.getIsBalanced());
+                assertEquals(0, new BigDecimal("100000000000.00").compareTo(result.getCalculatedClosingBalance()));
+                assertEquals(0, new BigDecimal("10000000000.00").compareTo(result.getTotalOutflow()));
+            }
+        }
+        assertEquals(0, new BigDecimal("60000000000.00").compareTo(
+                reconciliationService.reconcile(1002L, currency, startTimes[0], endTime).getTotalInflow()));
+        assertTrue(platformReconciliationService.reconcileAllWallets(startTimes[0], endTime, 1, 100)
+                .getMismatches().stream().noneMatch(m -> m.getWalletId().equals(wallet.getId())));
+    }
+}
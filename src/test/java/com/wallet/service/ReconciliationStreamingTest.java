@@ -0,0 +1,176 @@
+package com.wallet.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.entity.Wallet;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 流式对账：一百万条变更记录下单次遍历汇总，堆内存占用有界
+ */
+@Slf4j
+@SpringBootTest(properties = "logging.level.com.wallet=INFO")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Tag("perf")
+class ReconciliationStreamingTest {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final int SAMPLE_EVERY = 100_000;
+
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Long userId = 1003L;
+
+    private final String currency = "CNY";
+
+    private Date startTime;
+
+    private Date endTime;
+
+    /**
+     * 每条变更 +1.00，期末余额 1,000,000
+     */
+    @BeforeEach
+    void setUpHistory() {
+        Date now = new Date();
+        startTime = new Date(now.getTime() - 2 * DAY);
+        endTime = new Date(now.getTime() + DAY);
+        Wallet wallet = walletService.getWallet(userId, currency);
+        jdbcTemplate.update("INSERT INTO balance_change_history(wallet_id, transaction_id, change_amount, " +
+                        "balance_before, balance_after, change_type, created_at) " +
+                        "SELECT CAST(? AS BIGINT), NULL, 1.00, X - 1, X, 'BALANCE', " +
+                        "DATEADD('MILLISECOND', X, CAST(? AS TIMESTAMP)) " +
+                        "FROM SYSTEM_RANGE(1, CAST(? AS BIGINT))",
+                wallet.getId(), new Timestamp(now.getTime() - DAY), ROWS);
+        jdbcTemplate.update("UPDATE wallet SET balance = ? WHERE id = ?", ROWS, wallet.getId());
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("TRUNCATE TABLE balance_change_history");
+    }
+
+    @Test
+    void testReconcileStreaming_SinglePassSummary() {
+        // When
+        long start = System.currentTimeMillis();
+        ReconciliationResult result = reconciliationService.reconcileStreaming(userId, currency, startTime, endTime);
+        log.info("流式对账 {} 条变更耗时 {}ms", ROWS, System.currentTimeMillis() - start);
+
+        // Then
+        assertEquals(ROWS, result.getTotalChanges());
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getOpeningBalance()));
+        assertEquals(0, BigDecimal.valueOf(ROWS).compareTo(result.getTotalInflow()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(result.getTotalOutflow()));
+        assertEquals(0, BigDecimal.valueOf(ROWS).compareTo(result.getCalculatedClosingBalance()));
+        assertTrue(result.getIsBalanced());
+        assertNull(result.getChanges());
+    }
+
+    @Test
+    void testStreamReconcile_BoundedHeap() throws Exception {
+        // Given - 内存数据库的表数据本身就在堆上，JSON 序列化会在 H2 持有的 BigDecimal 上缓存字符串，
+        // 先完整输出一遍让这部分一次性增长落地，再测量流式输出本身的堆占用
+        reconciliationService.streamReconcile(userId, currency, startTime, endTime, OutputStream.nullOutputStream());
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream();
+
+        // When
+        reconciliationService.streamReconcile(userId, currency, startTime, endTime, out);
+
+        // Then - 流式输出全部变更行 + 一行汇总，期间堆内存增长有界
+        log.info("NDJSON 输出: 行数={}, 字节数={}, 堆内存增长峰值={}MB",
+                out.lines, out.bytes, out.maxGrowth / 1024 / 1024);
+        assertEquals(ROWS + 1, out.lines);
+        assertTrue(out.maxGrowth < MAX_HEAP_GROWTH, "堆内存增长 " + out.maxGrowth + " 字节");
+
+        JsonNode summary = objectMapper.readTree(out.lastLine.toString(StandardCharsets.UTF_8));
+        assertEquals("SUMMARY", summary.get("type").asText());
+        assertEquals(ROWS, summary.get("data").get("totalChanges").asInt());
+        assertTrue(summary.get("data").get("isBalanced").asBoolean());
+    }
+
+    /**
+     * 只保留最后一行的计数输出流，每输出 SAMPLE_EVERY 行触发一次 GC 并记录存活堆内存
+     */
+    private static class HeapSamplingOutputStream extends OutputStream {
+
+        private final long baseline = usedHeapAfterGc();
+
+        private long lines;
+
+        private long bytes;
+
+        private long maxGrowth;
+
+        private ByteArrayOutputStream lastLine = new ByteArrayOutputStream();
+
+        private ByteArrayOutputStream currentLine = new ByteArrayOutputStream();
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytes += len;
+            int lineStart = off;
+            for (int i = off; i < off + len; i++) {
+                if (b[i] != '\n') {
+                    continue;
+                }
+                currentLine.write(b, lineStart, i - lineStart);
+                lineStart = i + 1;
+                lines++;
+                lastLine = currentLine;
+                currentLine = new ByteArrayOutputStream();
+                if (lines % SAMPLE_EVERY == 0) {
+                    maxGrowth = Math.max(maxGrowth, usedHeapAfterGc() - baseline);
+                }
+            }
+            currentLine.write(b, lineStart, off + len - lineStart);
+        }
+
+        private static long usedHeapAfterGc() {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+}
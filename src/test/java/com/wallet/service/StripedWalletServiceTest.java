@@ -0,0 +1,254 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.dto.response.PlatformReconciliationReport;
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热点钱包分片：入账分散、分片扣款与归集、汇总余额、分片感知的对账，
+ * 以及交易记录中的钱包余额与变更历史中的分片余额
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class StripedWalletServiceTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private StripedWalletService stripedWalletService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private PlatformReconciliationService platformReconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @BeforeEach
+    void clearIdempotencyCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    @Test
+    void testCredit_SpreadsAcrossStripesAndReadsSummedBalance() {
+        // Given
+        stripedWalletService.enableStriping(1001L, "CNY", 4);
+
+        // When
+        for (int i = 0; i < 8; i++) {
+            walletService.recharge(1001L, "CNY", new BigDecimal("10.00"), "TEST_STRIPE", "C" + i, null);
+        }
+
+        // Then - 钱包主行不变，每个分片各入账两笔
+        assertEquals(0, new BigDecimal("1000.00").compareTo(mainBalance(1001L)));
+        assertEquals(4, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_stripe s JOIN wallet w " +
+                "ON s.wallet_id = w.id WHERE w.user_id = 1001 AND w.currency = 'CNY' AND s.balance = 20",
+                Integer.class));
+        assertEquals(0, new BigDecimal("1080.00").compareTo(
+                walletService.getCurrencyBalance(1001L, "CNY").getBalance()));
+        assertEquals(0, new BigDecimal("1080.00").compareTo(walletService.getWalletSummary(1001L)
+                .getBalanceByCurrency("CNY").orElseThrow().getBalance()));
+    }
+
+    @Test
+    void testEnableStriping_OnlyGrows() {
+        // Given
+        stripedWalletService.enableStriping(1002L, "CNY", 4);
+
+        // When & Then
+        assertThrows(BusinessException.class, () -> stripedWalletService.enableStriping(1002L, "CNY", 2));
+        assertThrows(BusinessException.class, () -> stripedWalletService.enableStriping(1002L, "CNY", 0));
+        assertThrows(BusinessException.class, () -> stripedWalletService.enableStriping(9999L, "CNY", 2));
+        assertEquals(8, stripedWalletService.enableStriping(1002L, "CNY", 8).getStripeCount());
+        assertEquals(8, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_stripe", Integer.class));
+    }
+
+    @Test
+    void testDebit_PicksStripeThenSweeps() {
+        // Given - 1003 主行为0，两个分片各 30
+        stripedWalletService.enableStriping(1003L, "CNY", 2);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "D1", null);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "D2", null);
+
+        // When - 单个分片足够，直接从分片扣减
+        walletService.withdraw(1003L, "CNY", new BigDecimal("25.00"), "TEST_STRIPE", "W1", null);
+
+        // Then
+        assertEquals(0, BigDecimal.ZERO.compareTo(mainBalance(1003L)));
+        assertEquals(0, new BigDecimal("35.00").compareTo(
+                walletService.getCurrencyBalance(1003L, "CNY").getBalance()));
+
+        // When - 没有单个分片足够（5 和 30），归集到主行后扣减
+        walletService.withdrawAtomic(1003L, "CNY", new BigDecimal("33.00"), "TEST_STRIPE", "W2", null);
+
+        // Then - 分片清零，余额全部在主行
+        assertEquals(0, new BigDecimal("2.00").compareTo(mainBalance(1003L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(jdbcTemplate.queryForObject(
+                "SELECT SUM(balance) FROM wallet_stripe", BigDecimal.class)));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history " +
+                "WHERE change_type = 'STRIPE_SWEEP'", Integer.class));
+
+        // When & Then - 合计余额也不够时拒绝，余额不变
+        assertThrows(InsufficientBalanceException.class, () -> walletService.withdraw(
+                1003L, "CNY", new BigDecimal("5.00"), "TEST_STRIPE", "W3", null));
+        assertEquals(0, new BigDecimal("2.00").compareTo(
+                walletService.getCurrencyBalance(1003L, "CNY").getBalance()));
+    }
+
+    @Test
+    void testReconcile_UnderstandsStripes() throws Exception {
+        // Given - 对账期前后各有分片入账、分片扣款和归集
+        stripedWalletService.enableStriping(1003L, "CNY", 3);
+        for (int i = 0; i < 6; i++) {
+            walletService.recharge(1003L, "CNY", new BigDecimal("10.00"), "TEST_STRIPE", "B" + i, null);
+        }
+        walletService.withdraw(1003L, "CNY", new BigDecimal("5.00"), "TEST_STRIPE", "BW", null);
+        Thread.sleep(20);
+        Date startTime = new Date();
+        Thread.sleep(20);
+        for (int i = 0; i < 3; i++) {
+            walletService.recharge(1003L, "CNY", new BigDecimal("1.00"), "TEST_STRIPE", "A" + i, null);
+        }
+        walletService.withdraw(1003L, "CNY", new BigDecimal("50.00"), "TEST_STRIPE", "AW", null);
+        Date endTime = new Date(System.currentTimeMillis() + 1000);
+
+        // When
+        ReconciliationResult detail = reconciliationService.reconcile(1003L, "CNY", startTime, endTime);
+        ReconciliationResult streaming = reconciliationService.reconcileStreaming(1003L, "CNY", startTime, endTime);
+        ReconciliationResult summary = reconciliationService.reconcileSummary(1003L, "CNY", startTime, endTime);
+        PlatformReconciliationReport platform = platformReconciliationService.reconcileAllWallets(
+                startTime, endTime, 1, 100);
+
+        // Then - 期初 55 = 各分片期初之和；归集不计入流入流出
+        for (ReconciliationResult result : List.of(detail, streaming, summary)) {
+            assertTrue(result.getIsBalanced());
+            assertEquals(0, new BigDecimal("55.00").compareTo(result.getOpeningBalance()));
+            assertEquals(0, new BigDecimal("8.00").compareTo(result.getActualClosingBalance()));
+            assertEquals(0, new BigDecimal("3.00").compareTo(result.getTotalInflow()));
+            assertEquals(0, new BigDecimal("50.00").compareTo(result.getTotalOutflow()));
+            assertEquals(4, result.getTotalChanges());
+        }
+        Long walletId = walletService.getWallet(1003L, "CNY").getId();
+        assertTrue(platform.getMismatches().stream().noneMatch(m -> m.getWalletId().equals(walletId)));
+    }
+
+    @Test
+    void testConcurrentCreditsAndDebits_StayConsistent() throws Exception {
+        // Given
+        stripedWalletService.enableStriping(1001L, "CNY", 4);
+        AtomicInteger debited = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // When - 一半线程入账，一半线程每次扣 30，扣款会反复触发分片扣减和归集
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        String businessId = "M" + thread + "_" + i;
+                        if (thread % 2 == 0) {
+                            walletService.recharge(1001L, "CNY", new BigDecimal("10.00"), "TEST_STRIPE", businessId, null);
+                        } else {
+                            try {
+                                walletService.withdrawAtomic(1001L, "CNY", new BigDecimal("30.00"),
+                                        "TEST_STRIPE", businessId, null);
+                                debited.incrementAndGet();
+                            } catch (InsufficientBalanceException ignored) {
+                                // 余额暂时不足，跳过
+                            }
+                        }
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then - 1000 + 200 * 10 - debited * 30
+        BigDecimal expected = new BigDecimal("3000.00").subtract(new BigDecimal("30.00").multiply(
+                BigDecimal.valueOf(debited.get())));
+        assertEquals(0, expected.compareTo(walletService.getWallet(1001L, "CNY").getBalance()));
+        assertTrue(jdbcTemplate.queryForObject("SELECT MIN(balance) FROM wallet_stripe", BigDecimal.class)
+                .signum() >= 0);
+        log.info("并发入账/扣款: 扣款成功 {} 笔, 最终余额 {}", debited.get(), expected);
+    }
+
+    @Test
+    void testTransaction_RecordsWalletBalanceWithStripeHistory() {
+        // Given - 1003 主行为0，两个分片
+        stripedWalletService.enableStriping(1003L, "CNY", 2);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "S1", null);
+
+        // When - 第二笔落到另一个分片，分片余额 0 -> 30，钱包余额 30 -> 60
+        TransactionResponse credit = walletService.recharge(1003L, "CNY", new BigDecimal("30.00"),
+                "TEST_STRIPE", "S2", null);
+        TransactionResponse debit = walletService.withdraw(1003L, "CNY", new BigDecimal("25.00"),
+                "TEST_STRIPE", "S3", null);
+        TransactionResponse sweep = walletService.withdrawAtomic(1003L, "CNY", new BigDecimal("33.00"),
+                "TEST_STRIPE", "S4", null);
+
+        // Then - 响应和交易记录是钱包余额
+        assertBalances(credit, "30.00", "60.00");
+        assertBalances(debit, "60.00", "35.00");
+        assertBalances(sweep, "35.00", "2.00");
+
+        // 余额变更历史仍是分片余额
+        assertEquals(0, new BigDecimal("30.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT h.balance_after FROM balance_change_history h JOIN wallet_transaction t " +
+                        "ON h.transaction_id = t.id WHERE t.business_id = 'S2' AND h.change_type = 'BALANCE'",
+                BigDecimal.class)));
+        assertEquals(0, new BigDecimal("5.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT h.balance_after FROM balance_change_history h JOIN wallet_transaction t " +
+                        "ON h.transaction_id = t.id WHERE t.business_id = 'S3' AND h.change_type = 'BALANCE'",
+                BigDecimal.class)));
+    }
+
+    private void assertBalances(TransactionResponse response, String before, String after) {
+        assertEquals(0, new BigDecimal(before).compareTo(response.getBalanceBefore()));
+        assertEquals(0, new BigDecimal(after).compareTo(response.getBalanceAfter()));
+        Map<String, Object> row = jdbcTemplate.queryForMap("SELECT balance_before, balance_after " +
+                "FROM wallet_transaction WHERE transaction_no = ?", response.getTransactionNo());
+        assertEquals(0, new BigDecimal(before).compareTo((BigDecimal) row.get("BALANCE_BEFORE")));
+        assertEquals(0, new BigDecimal(after).compareTo((BigDecimal) row.get("BALANCE_AFTER")));
+    }
+
+    private BigDecimal mainBalance(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallet WHERE user_id = ? AND currency = 'CNY'",
+                BigDecimal.class, userId);
+    }
+}
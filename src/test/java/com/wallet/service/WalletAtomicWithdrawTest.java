@@ -0,0 +1,138 @@
+package com.wallet.service;
+
+import com.wallet.entity.Wallet;
+import com.wallet.exception.ConcurrentUpdateException;
+import com.wallet.exception.InsufficientBalanceException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 条件扣减提现 vs 乐观锁提现：64 个并发提现线程争用同一钱包
+ */
+@Slf4j
+@SpringBootTest(properties = "logging.level.com.wallet=INFO")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletAtomicWithdrawTest {
+
+    private static final int THREADS = 64;
+
+    private static final int WITHDRAWS_PER_THREAD = 5;
+
+    @Autowired
+    private WalletService walletService;
+
+    /**
+     * 余额充足时条件扣减不会出现任何拒绝，乐观锁会大量冲突
+     */
+    @Test
+    void testWithdraw_RejectionRateUnderContention() throws InterruptedException {
+        // Given - 余额 1000，总共提现 64 * 5 * 1 = 320
+        Long userId = 1001L;
+        String currency = "CNY";
+        BigDecimal amount = new BigDecimal("1.00");
+
+        // When
+        WithdrawStats optimistic = runConcurrentWithdraws("OPT", (businessId) ->
+                walletService.withdraw(userId, currency, amount, "OPTIMISTIC_TEST", businessId, null));
+        WithdrawStats atomic = runConcurrentWithdraws("ATM", (businessId) ->
+                walletService.withdrawAtomic(userId, currency, amount, "ATOMIC_TEST", businessId, null));
+
+        log.info("乐观锁提现: 成功={}, 冲突拒绝={}, 拒绝率={}%, 成功吞吐={} TPS",
+                optimistic.success, optimistic.conflicts, optimistic.rejectionRate(), optimistic.tps());
+        log.info("条件扣减提现: 成功={}, 冲突拒绝={}, 拒绝率={}%, 成功吞吐={} TPS",
+                atomic.success, atomic.conflicts, atomic.rejectionRate(), atomic.tps());
+
+        // Then
+        assertEquals(THREADS * WITHDRAWS_PER_THREAD, atomic.success.get());
+        assertEquals(0, atomic.conflicts.get());
+        assertEquals(0, atomic.insufficient.get());
+
+        Wallet wallet = walletService.getWallet(userId, currency);
+        BigDecimal expected = new BigDecimal("1000.00")
+                .subtract(amount.multiply(BigDecimal.valueOf(optimistic.success.get() + atomic.success.get())));
+        assertEquals(0, expected.compareTo(wallet.getBalance()));
+    }
+
+    /**
+     * 条件扣减在余额耗尽时只拒绝真正超额的请求，不会超扣
+     */
+    @Test
+    void testWithdrawAtomic_NoOverdraft() throws InterruptedException {
+        // Given - 余额 500，每笔 10，最多成功 50 笔
+        Long userId = 1002L;
+        String currency = "CNY";
+        BigDecimal amount = new BigDecimal("10.00");
+
+        // When
+        WithdrawStats atomic = runConcurrentWithdraws("DRAIN", (businessId) ->
+                walletService.withdrawAtomic(userId, currency, amount, "ATOMIC_DRAIN", businessId, null));
+
+        // Then
+        assertEquals(50, atomic.success.get());
+        assertEquals(THREADS * WITHDRAWS_PER_THREAD - 50, atomic.insufficient.get());
+        assertEquals(0, atomic.conflicts.get());
+        assertEquals(0, BigDecimal.ZERO.compareTo(walletService.getWallet(userId, currency).getBalance()));
+    }
+
+    private WithdrawStats runConcurrentWithdraws(String prefix, java.util.function.Consumer<String> withdraw)
+            throws InterruptedException {
+        WithdrawStats stats = new WithdrawStats();
+        CountDownLatch startLatch = new CountDownLatch(1);
+        CountDownLatch endLatch = new CountDownLatch(THREADS);
+
+        for (int i = 0; i < THREADS; i++) {
+            int threadId = i;
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    for (int j = 0; j < WITHDRAWS_PER_THREAD; j++) {
+                        try {
+                            withdraw.accept(prefix + "_" + threadId + "_" + j);
+                            stats.success.incrementAndGet();
+                        } catch (ConcurrentUpdateException e) {
+                            stats.conflicts.incrementAndGet();
+                        } catch (InsufficientBalanceException e) {
+                            stats.insufficient.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    endLatch.countDown();
+                }
+            }).start();
+        }
+
+        long start = System.nanoTime();
+        startLatch.countDown();
+        endLatch.await();
+        stats.elapsedNanos = System.nanoTime() - start;
+        return stats;
+    }
+
+    private static class WithdrawStats {
+        private final AtomicInteger success = new AtomicInteger();
+        private final AtomicInteger conflicts = new AtomicInteger();
+        private final AtomicInteger insufficient = new AtomicInteger();
+        private long elapsedNanos;
+
+        long rejectionRate() {
+            return conflicts.get() * 100L / (THREADS * WITHDRAWS_PER_THREAD);
+        }
+
+        long tps() {
+            return success.get() * 1_000_000_000L / Math.max(elapsedNanos, 1);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.dto.request.RechargeRequest;
+import com.wallet.dto.response.BulkRechargeResponse;
+import com.wallet.dto.response.TransactionResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 批量充值：逐条结果、集合幂等、批量建钱包、分段事务、分片钱包的钱包余额，以及与逐笔充值的吞吐对比
+ */
+@Slf4j
+@SpringBootTest(properties = "wallet.bulk-recharge.chunk-size=300")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletBulkRechargeServiceTest {
+
+    private static final int ITEMS = 2000;
+
+    private static final long BASE_USER_ID = 800_000L;
+
+    @Autowired
+    private WalletBulkRechargeService bulkRechargeService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @Autowired
+    private StripedWalletService stripedWalletService;
+
+    @BeforeEach
+    void clearIdempotencyCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    @Test
+    void testBulkRecharge_PerItemResults() {
+        // Given - 已有钱包两笔、新钱包一笔、请求内重复一笔、非法金额两笔
+        walletService.recharge(1002L, "CNY", new BigDecimal("5.00"), "REWARD", "OLD", null);
+        List<RechargeRequest> items = List.of(
+                item(1001L, "10.00", "A"),
+                item(1001L, "20.00", "B"),
+                item(BASE_USER_ID, "30.00", "C"),
+                item(1001L, "10.00", "A"),
+                item(1003L, "0", "D"),
+                item(1002L, "5.00", "OLD"),
+                item(1003L, "1.001", "E"));
+
+        // When
+        BulkRechargeResponse response = bulkRechargeService.bulkRecharge(items);
+
+        // Then
+        assertEquals(7, response.getTotalItems());
+        assertEquals(5, response.getSucceededItems());
+        assertEquals(2, response.getFailedItems());
+        List<TransactionResponse> results = response.getResults();
+        assertEquals(0, new BigDecimal("1010.00").compareTo(results.get(0).getBalanceAfter()));
+        assertEquals(0, new BigDecimal("1030.00").compareTo(results.get(1).getBalanceAfter()));
+        assertEquals(0, new BigDecimal("30.00").compareTo(results.get(2).getBalanceAfter()));
+        assertEquals(results.get(0).getTransactionNo(), results.get(3).getTransactionNo());
+        assertFalse(results.get(4).getSuccess());
+        assertEquals("重复请求，返回之前成功结果", results.get(5).getMessage());
+        assertFalse(results.get(6).getSuccess());
+        assertTrue(results.get(6).getMessage().contains("最多 2 位小数"));
+
+        assertEquals(0, new BigDecimal("1030.00").compareTo(balance(1001L)));
+        assertEquals(0, new BigDecimal("505.00").compareTo(balance(1002L)));
+        assertEquals(0, new BigDecimal("30.00").compareTo(balance(BASE_USER_ID)));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history h " +
+                "JOIN wallet_transaction t ON h.transaction_id = t.id WHERE t.business_id IN (?, ?, ?)",
+                Integer.class, "A", "B", "C"));
+    }
+
+    @Test
+    void testBulkRecharge_ReplayIsIdempotentAcrossChunks() {
+        // Given
+        List<RechargeRequest> items = rewards("R");
+        bulkRechargeService.bulkRecharge(items);
+
+        // When
+        BulkRechargeResponse replay = bulkRechargeService.bulkRecharge(items);
+
+        // Then
+        assertEquals(ITEMS, replay.getSucceededItems());
+        assertEquals(ITEMS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet WHERE user_id >= ?", Integer.class, BASE_USER_ID));
+        assertEquals(ITEMS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet_transaction WHERE business_type = 'REWARD'", Integer.class));
+        assertEquals(0, new BigDecimal("1.00").compareTo(balance(BASE_USER_ID + ITEMS - 1)));
+    }
+
+    @Test
+    @Tag("perf")
+    void testBulkRecharge_ThroughputVersusLoopedRecharge() {
+        // Given - 两组互不重叠的 2000 个用户，均为首次入账
+        List<RechargeRequest> items = rewards("T");
+
+        // When
+        long start = System.nanoTime();
+        for (int i = 0; i < ITEMS; i++) {
+            walletService.recharge(BASE_USER_ID + ITEMS + i, "CNY", BigDecimal.ONE, "REWARD", "L" + i, null);
+        }
+        long loopNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        BulkRechargeResponse response = bulkRechargeService.bulkRecharge(items);
+        long bulkNanos = System.nanoTime() - start;
+
+        // Then
+        assertEquals(ITEMS, response.getSucceededItems());
+        log.info("{} 条充值: 逐笔 {} 条/秒 ({}ms), 批量 {} 条/秒 ({}ms)",
+                ITEMS, ITEMS * 1_000_000_000L / loopNanos, loopNanos / 1_000_000,
+                ITEMS * 1_000_000_000L / bulkNanos, bulkNanos / 1_000_000);
+        assertTrue(bulkNanos < loopNanos);
+    }
+
+    private List<RechargeRequest> rewards(String prefix) {
+        List<RechargeRequest> items = new ArrayList<>(ITEMS);
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(item(BASE_USER_ID + i, "1.00", prefix + i));
+        }
+        return items;
+    }
+
+    @Test
+    void testBulkRecharge_StripedWalletRecordsWalletBalance() {
+        // Given - 1003 主行为0，分片合计 30
+        stripedWalletService.enableStriping(1003L, "CNY", 2);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "S1", null);
+
+        // When
+        BulkRechargeResponse response = bulkRechargeService.bulkRecharge(List.of(
+                item(1003L, "10.00", "SB1"),
+                item(1003L, "5.00", "SB2")));
+
+        // Then - 流水是钱包余额，变更历史是主行余额
+        assertEquals(2, response.getSucceededItems());
+        assertEquals(0, new BigDecimal("30.00").compareTo(response.getResults().get(0).getBalanceBefore()));
+        assertEquals(0, new BigDecimal("45.00").compareTo(response.getResults().get(1).getBalanceAfter()));
+        assertEquals(0, new BigDecimal("45.00").compareTo(walletService.getWallet(1003L, "CNY").getBalance()));
+        assertEquals(0, new BigDecimal("15.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT h.balance_after FROM balance_change_history h JOIN wallet_transaction t " +
+                        "ON h.transaction_id = t.id WHERE t.business_id = 'SB2' AND h.stripe_no = 0",
+                BigDecimal.class)));
+    }
+
+    private RechargeRequest item(Long userId, String amount, String businessId) {
+        RechargeRequest request = new RechargeRequest();
+        request.setUserId(userId);
+        request.setCurrency("CNY");
+        request.setAmount(new BigDecimal(amount));
+        request.setBusinessType("REWARD");
+        request.setBusinessId(businessId);
+        return request;
+    }
+
+    private BigDecimal balance(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallet WHERE user_id = ? AND currency = 'CNY'",
+                BigDecimal.class, userId);
+    }
+}
@@ -0,0 +1,183 @@
+package com.wallet.service;
+
+import com.wallet.dto.response.TransactionResponse;
+import com.wallet.entity.Wallet;
+import com.wallet.exception.InsufficientBalanceException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Slf4j
+@SpringBootTest(properties = {
+        "wallet.group-commit.enabled=true",
+        "wallet.group-commit.max-wait-micros=2000",
+        "logging.level.com.wallet=INFO"
+})
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletGroupCommitServiceTest {
+
+    @Autowired
+    private WalletGroupCommitService groupCommitService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StripedWalletService stripedWalletService;
+
+    /**
+     * 同一批次内每笔交易的前后余额首尾相接
+     */
+    @Test
+    void testBatch_BalanceChain() {
+        // Given
+        Long userId = 1001L;
+        String currency = "CNY";
+        List<CompletableFuture<TransactionResponse>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 50; i++) {
+            futures.add(groupCommitService.submitRecharge(userId, currency, new BigDecimal("10.00"),
+                    "GC_RECHARGE", "GC_R" + i, "组提交充值"));
+        }
+        List<TransactionResponse> responses = futures.stream().map(CompletableFuture::join).toList();
+
+        // Then
+        List<TransactionResponse> chain = new ArrayList<>(responses);
+        chain.sort(Comparator.comparing(TransactionResponse::getBalanceBefore));
+        BigDecimal expectedBefore = new BigDecimal("1000.00");
+        for (TransactionResponse response : chain) {
+            assertTrue(response.getSuccess());
+            assertEquals(0, expectedBefore.compareTo(response.getBalanceBefore()));
+            expectedBefore = response.getBalanceAfter();
+        }
+        assertEquals(0, new BigDecimal("1500.00").compareTo(expectedBefore));
+
+        Wallet wallet = walletService.getWallet(userId, currency);
+        assertEquals(0, new BigDecimal("1500.00").compareTo(wallet.getBalance()));
+        assertHistoryMatchesBalance(wallet, new BigDecimal("1000.00"));
+    }
+
+    /**
+     * 批次内余额不足的提现单独失败，不影响其他请求；重复业务ID返回首笔结果
+     */
+    @Test
+    void testBatch_InsufficientAndDuplicate() {
+        // Given
+        Long userId = 1002L;
+        String currency = "CNY";
+
+        // When
+        CompletableFuture<TransactionResponse> first = groupCommitService.submitWithdraw(userId, currency,
+                new BigDecimal("300.00"), "GC_WITHDRAW", "GC_W1", "提现1");
+        CompletableFuture<TransactionResponse> overdraft = groupCommitService.submitWithdraw(userId, currency,
+                new BigDecimal("300.00"), "GC_WITHDRAW", "GC_W2", "提现2");
+        CompletableFuture<TransactionResponse> duplicate = groupCommitService.submitWithdraw(userId, currency,
+                new BigDecimal("300.00"), "GC_WITHDRAW", "GC_W1", "提现1重试");
+
+        // Then
+        assertEquals(0, new BigDecimal("200.00").compareTo(first.join().getBalanceAfter()));
+        CompletionException exception = assertThrows(CompletionException.class, overdraft::join);
+        assertInstanceOf(InsufficientBalanceException.class, exception.getCause());
+        assertEquals(first.join().getTransactionNo(), duplicate.join().getTransactionNo());
+
+        Wallet wallet = walletService.getWallet(userId, currency);
+        assertEquals(0, new BigDecimal("200.00").compareTo(wallet.getBalance()));
+    }
+
+    /**
+     * 单热点钱包吞吐对比：逐笔事务 vs 组提交
+     */
+    @Test
+    void testThroughput_PerRequestVsGroupCommit() throws Exception {
+        Long userId = 1003L;
+        String currency = "CNY";
+        int threads = 16;
+        int operations = 2000;
+        BigDecimal amount = new BigDecimal("1.00");
+
+        double perRequestTps = runHotWallet(threads, operations, i -> CompletableFuture.completedFuture(
+                walletService.recharge(userId, currency, amount, "BENCH_SINGLE", "S" + i, null)));
+        double groupCommitTps = runHotWallet(threads, operations, i -> groupCommitService.submitRecharge(
+                userId, currency, amount, "BENCH_GROUP", "G" + i, null));
+
+        log.info("单热点钱包吞吐: 逐笔事务={} TPS, 组提交={} TPS, 提升={}x",
+                String.format("%.0f", perRequestTps), String.format("%.0f", groupCommitTps),
+                String.format("%.2f", groupCommitTps / perRequestTps));
+
+        Wallet wallet = walletService.getWallet(userId, currency);
+        assertEquals(0, new BigDecimal(operations * 2).compareTo(wallet.getBalance()));
+        assertHistoryMatchesBalance(wallet, BigDecimal.ZERO);
+    }
+
+    /**
+     * 分片钱包按钱包余额判断提现，主行不够扣时先归集分片
+     */
+    @Test
+    void testBatch_StripedWalletUsesWalletBalance() {
+        // Given - 1003 主行为0，两个分片各 30
+        stripedWalletService.enableStriping(1003L, "CNY", 2);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "S1", null);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "S2", null);
+
+        // When
+        TransactionResponse withdraw = groupCommitService.withdraw(1003L, "CNY", new BigDecimal("50.00"),
+                "GC_WITHDRAW", "GC_S1", null);
+        TransactionResponse recharge = groupCommitService.recharge(1003L, "CNY", new BigDecimal("5.00"),
+                "GC_RECHARGE", "GC_S2", null);
+
+        // Then
+        assertTrue(withdraw.getSuccess());
+        assertEquals(0, new BigDecimal("60.00").compareTo(withdraw.getBalanceBefore()));
+        assertEquals(0, new BigDecimal("10.00").compareTo(withdraw.getBalanceAfter()));
+        assertEquals(0, new BigDecimal("15.00").compareTo(recharge.getBalanceAfter()));
+        Wallet wallet = walletService.getWallet(1003L, "CNY");
+        assertEquals(0, new BigDecimal("15.00").compareTo(wallet.getBalance()));
+        assertHistoryMatchesBalance(wallet, BigDecimal.ZERO);
+    }
+
+    private double runHotWallet(int threads, int operations,
+                                java.util.function.IntFunction<CompletableFuture<TransactionResponse>> call)
+            throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<TransactionResponse>> futures = new ArrayList<>(operations);
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            int index = i;
+            futures.add(CompletableFuture.supplyAsync(() -> call.apply(index), executor)
+                    .thenCompose(future -> future));
+        }
+        futures.forEach(future -> assertTrue(future.join().getSuccess()));
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return operations / (elapsed / 1_000_000_000.0);
+    }
+
+    private void assertHistoryMatchesBalance(Wallet wallet, BigDecimal openingBalance) {
+        BigDecimal totalChange = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(change_amount), 0) FROM balance_change_history WHERE wallet_id = ?",
+                BigDecimal.class, wallet.getId());
+        assertEquals(0, openingBalance.add(totalChange).compareTo(wallet.getBalance()));
+    }
+}
@@ -0,0 +1,230 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.dto.response.CurrencyBalance;
+import com.wallet.dto.response.HoldResponse;
+import com.wallet.dto.response.ReconciliationResult;
+import com.wallet.enums.HoldStatus;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 资金冻结：冻结占用可用余额、部分扣款释放剩余冻结、冻结/扣款/解冻幂等、
+ * 并发冻结不超额、过期扫描自动解冻，以及对账忽略冻结余额变更
+ */
+@Slf4j
+@SpringBootTest(properties = "wallet.hold.expiry-enabled=false")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletHoldTest {
+
+    private static final String BUSINESS_TYPE = "TEST_HOLD";
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private WalletHoldExpiryService expiryService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @BeforeEach
+    void clearIdempotencyCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    @Test
+    void testFreeze_ReducesAvailableBalanceAndBlocksWithdraw() {
+        // When
+        HoldResponse hold = freeze(1001L, "800.00", "F001");
+
+        // Then - 余额不变，可用余额减少，提现不能动用冻结资金
+        assertEquals(HoldStatus.HELD, hold.getStatus());
+        CurrencyBalance balance = walletService.getCurrencyBalance(1001L, "CNY");
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance.getBalance()));
+        assertEquals(0, new BigDecimal("800.00").compareTo(balance.getFrozenBalance()));
+        assertEquals(0, new BigDecimal("200.00").compareTo(balance.getAvailableBalance()));
+
+        assertThrows(InsufficientBalanceException.class, () -> walletService.withdraw(1001L, "CNY",
+                new BigDecimal("300.00"), BUSINESS_TYPE, "W001", null));
+        assertThrows(InsufficientBalanceException.class, () -> freeze(1001L, "300.00", "F002"));
+        walletService.withdraw(1001L, "CNY", new BigDecimal("200.00"), BUSINESS_TYPE, "W002", null);
+        assertEquals(0, new BigDecimal("800.00").compareTo(column("balance", 1001L)));
+    }
+
+    @Test
+    void testCapture_PartialAmountReleasesRemainder() {
+        // Given
+        freeze(1001L, "300.00", "C001");
+
+        // When
+        HoldResponse captured = walletService.capture(BUSINESS_TYPE, "C001", new BigDecimal("120.00"));
+
+        // Then - 扣除 120，剩余 180 随之解冻，扣款交易沿用冻结单的业务键
+        assertEquals(HoldStatus.CAPTURED, captured.getStatus());
+        assertEquals(0, new BigDecimal("120.00").compareTo(captured.getCapturedAmount()));
+        assertEquals(0, new BigDecimal("880.00").compareTo(column("balance", 1001L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(column("frozen_balance", 1001L)));
+        assertEquals(0, new BigDecimal("-120.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT amount FROM wallet_transaction WHERE transaction_no = ? AND business_id = ?",
+                BigDecimal.class, captured.getTransactionNo(), "C001")));
+
+        // 冻结与释放各一条冻结余额变更，扣款一条余额变更
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history " +
+                "WHERE change_type = 'FROZEN'", Integer.class));
+        assertEquals(0, BigDecimal.ZERO.compareTo(jdbcTemplate.queryForObject("SELECT SUM(change_amount) " +
+                "FROM balance_change_history WHERE change_type = 'FROZEN'", BigDecimal.class)));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history " +
+                "WHERE change_type <> 'FROZEN'", Integer.class));
+
+        // 冻结余额变更只关联冻结单，不占用交易ID
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history h " +
+                "JOIN wallet_hold w ON w.id = h.hold_id " +
+                "WHERE h.change_type = 'FROZEN' AND h.transaction_id IS NULL AND w.business_id = 'C001'",
+                Integer.class));
+
+        assertThrows(BusinessException.class,
+                () -> walletService.capture(BUSINESS_TYPE, "C001X", null));
+    }
+
+    @Test
+    void testHoldOperations_AreIdempotent() {
+        // Given
+        HoldResponse first = freeze(1002L, "100.00", "I001");
+        freeze(1002L, "50.00", "I002");
+
+        // When - 重复冻结、重复扣款、重复解冻
+        HoldResponse repeated = freeze(1002L, "100.00", "I001");
+        HoldResponse captured = walletService.capture(BUSINESS_TYPE, "I001", null);
+        HoldResponse recaptured = walletService.capture(BUSINESS_TYPE, "I001", null);
+        walletService.release(BUSINESS_TYPE, "I002");
+        HoldResponse rereleased = walletService.release(BUSINESS_TYPE, "I002");
+
+        // Then
+        assertEquals(first.getHoldNo(), repeated.getHoldNo());
+        assertEquals(captured.getTransactionNo(), recaptured.getTransactionNo());
+        assertEquals(HoldStatus.RELEASED, rereleased.getStatus());
+        assertEquals(0, new BigDecimal("400.00").compareTo(column("balance", 1002L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(column("frozen_balance", 1002L)));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transaction WHERE user_id = 1002",
+                Integer.class));
+
+        // 终态冻结单不能再做相反操作
+        BusinessException notActive = assertThrows(BusinessException.class,
+                () -> walletService.release(BUSINESS_TYPE, "I001"));
+        assertEquals("HOLD_NOT_ACTIVE", notActive.getCode());
+        assertEquals("HOLD_NOT_ACTIVE", assertThrows(BusinessException.class,
+                () -> walletService.capture(BUSINESS_TYPE, "I002", null)).getCode());
+    }
+
+    @Test
+    void testConcurrentFreeze_NeverExceedsAvailableBalance() throws Exception {
+        // Given - 可用 500，20 个线程各冻结 100
+        int threads = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < threads; i++) {
+            String businessId = "P" + i;
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    freeze(1002L, "100.00", businessId);
+                    return true;
+                } catch (InsufficientBalanceException e) {
+                    return false;
+                }
+            }, executor));
+        }
+        long succeeded = futures.stream().filter(CompletableFuture::join).count();
+        executor.shutdown();
+
+        // Then - 恰好 5 笔成功，冻结金额等于冻结中的冻结单之和
+        assertEquals(5, succeeded);
+        assertEquals(0, new BigDecimal("500.00").compareTo(column("frozen_balance", 1002L)));
+        assertEquals(0, new BigDecimal("500.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT SUM(amount) FROM wallet_hold WHERE user_id = 1002 AND status = 0", BigDecimal.class)));
+    }
+
+    @Test
+    void testExpiry_ReleasesDueHoldsOnly() {
+        // Given - 一笔已到期，一笔未到期
+        freeze(1001L, "100.00", "E001");
+        freeze(1001L, "200.00", "E002");
+        jdbcTemplate.update("UPDATE wallet_hold SET expires_at = ? WHERE business_id = ?",
+                new Date(System.currentTimeMillis() - 1000), "E001");
+
+        // When
+        int expired = expiryService.expireDue(new Date());
+        int again = expiryService.expireDue(new Date());
+
+        // Then
+        assertEquals(1, expired);
+        assertEquals(0, again);
+        assertEquals(0, new BigDecimal("200.00").compareTo(column("frozen_balance", 1001L)));
+        assertEquals(HoldStatus.EXPIRED.getCode(), jdbcTemplate.queryForObject(
+                "SELECT status FROM wallet_hold WHERE business_id = ?", Integer.class, "E001"));
+        BusinessException notActive = assertThrows(BusinessException.class,
+                () -> walletService.capture(BUSINESS_TYPE, "E001", null));
+        assertEquals("HOLD_NOT_ACTIVE", notActive.getCode());
+    }
+
+    @Test
+    void testReconcile_IgnoresFrozenChanges() throws InterruptedException {
+        // Given
+        Date startTime = new Date(System.currentTimeMillis() - 60_000);
+        walletService.recharge(1003L, "CNY", new BigDecimal("100.00"), BUSINESS_TYPE, "R001", null);
+        freeze(1003L, "60.00", "R002");
+        walletService.capture(BUSINESS_TYPE, "R002", new BigDecimal("40.00"));
+        freeze(1003L, "30.00", "R003");
+        Date endTime = new Date(System.currentTimeMillis() + 1);
+        TimeUnit.MILLISECONDS.sleep(5);
+
+        // When
+        ReconciliationResult result = reconciliationService.reconcile(1003L, "CNY", startTime, endTime);
+
+        // Then - 只统计充值和扣款，冻结中的 30 不影响余额核对
+        assertTrue(result.getIsBalanced());
+        assertEquals(2, result.getTotalChanges());
+        assertEquals(0, new BigDecimal("100.00").compareTo(result.getTotalInflow()));
+        assertEquals(0, new BigDecimal("40.00").compareTo(result.getTotalOutflow()));
+        assertEquals(0, new BigDecimal("60.00").compareTo(result.getActualClosingBalance()));
+    }
+
+    private HoldResponse freeze(Long userId, String amount, String businessId) {
+        return walletService.freeze(userId, "CNY", new BigDecimal(amount), BUSINESS_TYPE, businessId,
+                Duration.ofMinutes(10), null);
+    }
+
+    private BigDecimal column(String column, Long userId) {
+        return jdbcTemplate.queryForObject("SELECT " + column + " FROM wallet WHERE user_id = ? AND currency = 'CNY'",
+                BigDecimal.class, userId);
+    }
+}
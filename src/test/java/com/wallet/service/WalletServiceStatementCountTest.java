@@ -0,0 +1,102 @@
+package com.wallet.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 每笔资金操作的 SQL 语句数统计
+ * <p>
+ * 先更新余额再一次性插入成功状态的流水，不再对 wallet_transaction 执行 UPDATE：
+ * 占用幂等键、查钱包、更新余额、插入流水、插入历史，共 5 条。
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletServiceStatementCountTest {
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @BeforeEach
+    void resetCounter() {
+        statementCounter.statements.clear();
+    }
+
+    @Test
+    void testRecharge_StatementCount() {
+        walletService.recharge(1001L, "CNY", new BigDecimal("100.00"), "COUNT_TEST", "COUNT_R001", null);
+
+        assertStatements("充值", "WalletMapper.updateBalance");
+    }
+
+    @Test
+    void testWithdraw_StatementCount() {
+        walletService.withdraw(1001L, "CNY", new BigDecimal("100.00"), "COUNT_TEST", "COUNT_W001", null);
+
+        assertStatements("提现", "WalletMapper.decreaseBalance");
+    }
+
+    private void assertStatements(String operation, String balanceUpdate) {
+        List<String> statements = statementCounter.statements.stream()
+                .map(id -> id.substring(id.lastIndexOf('.', id.lastIndexOf('.') - 1) + 1))
+                .toList();
+        log.info("{}执行语句: {}", operation, statements);
+
+        assertEquals(List.of("WalletTransactionMapper.insertIdempotencyKey",
+                "WalletMapper.selectByUserAndCurrency",
+                balanceUpdate,
+                "WalletTransactionMapper.insert",
+                "BalanceChangeHistoryMapper.insert"), statements);
+    }
+
+    @TestConfiguration
+    static class StatementCounterConfig {
+
+        @Bean
+        StatementCounter statementCounter() {
+            return new StatementCounter();
+        }
+    }
+
+    @Intercepts({
+            @Signature(type = Executor.class, method = "update",
+                    args = {MappedStatement.class, Object.class}),
+            @Signature(type = Executor.class, method = "query",
+                    args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+    })
+    static class StatementCounter implements Interceptor {
+
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            statements.add(((MappedStatement) invocation.getArgs()[0]).getId());
+            return invocation.proceed();
+        }
+    }
+}
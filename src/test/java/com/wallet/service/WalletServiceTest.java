@@ -84,6 +84,45 @@ class WalletServiceTest {
         assertEquals(0, new BigDecimal("1200.00").compareTo(wallet.getBalance())); // 1000 + 200
     }
 
+    /**
+     * 相同业务ID并发充值，只有占到幂等键的请求入账
+     */
+    @Test
+    void testRecharge_ConcurrentDuplicate() throws InterruptedException {
+        // Given
+        int threadCount = 4;
+        java.util.concurrent.CountDownLatch startLatch = new java.util.concurrent.CountDownLatch(1);
+        java.util.concurrent.CountDownLatch endLatch = new java.util.concurrent.CountDownLatch(threadCount);
+        java.util.List<TransactionResponse> responses =
+                java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+        java.util.List<Exception> failures = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+
+        // When
+        for (int i = 0; i < threadCount; i++) {
+            new Thread(() -> {
+                try {
+                    startLatch.await();
+                    responses.add(walletService.recharge(1001L, "CNY", new BigDecimal("100.00"),
+                            "TEST_IDEMPOTENT", "CONCURRENT_DUP", "并发重复充值"));
+                } catch (Exception e) {
+                    failures.add(e);
+                } finally {
+                    endLatch.countDown();
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        endLatch.await();
+
+        // Then - 其余请求等待占用方提交后返回原交易
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(threadCount, responses.size());
+        assertEquals(1, responses.stream().map(TransactionResponse::getTransactionNo).distinct().count());
+
+        Wallet wallet = walletService.getWallet(1001L, "CNY");
+        assertEquals(0, new BigDecimal("1100.00").compareTo(wallet.getBalance()));
+    }
+
     /**
      * 正常提现功能
      */
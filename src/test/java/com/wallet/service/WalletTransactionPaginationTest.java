@@ -0,0 +1,167 @@
+package com.wallet.service;
+
+import com.wallet.dto.response.TransactionPageResponse;
+import com.wallet.dto.response.TransactionRecordResponse;
+import com.wallet.entity.WalletTransaction;
+import com.wallet.exception.BusinessException;
+import com.wallet.mapper.WalletTransactionMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 交易记录游标分页：完整遍历无重复无遗漏，深翻页延迟与 OFFSET 分页对比
+ */
+@Slf4j
+@SpringBootTest(properties = "logging.level.com.wallet=INFO")
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+@Tag("perf")
+class WalletTransactionPaginationTest {
+
+    private static final int ROWS = 50_000;
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int DEEP_OFFSET = 45_000;
+
+    private static final int ITERATIONS = 20;
+
+    @Autowired
+    private WalletTransactionService transactionService;
+
+    @Autowired
+    private WalletTransactionMapper transactionMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final Long userId = 1001L;
+
+    private final String currency = "CNY";
+
+    /**
+     * 每 3 条记录共用同一个 created_at，验证 id 作为并列时的排序依据
+     */
+    @BeforeEach
+    void setUpTransactions() {
+        long walletId = jdbcTemplate.queryForObject(
+                "SELECT id FROM wallet WHERE user_id = ? AND currency = ?", Long.class, userId, currency);
+        jdbcTemplate.update("INSERT INTO wallet_transaction(transaction_no, wallet_id, user_id, currency, amount, " +
+                        "balance_before, balance_after, transaction_type, business_type, business_id, status, " +
+                        "created_at) " +
+                        "SELECT 'PAGE' || X, CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS VARCHAR), 1.00, 0, 0, 1, " +
+                        "'PAGE_TEST', 'PAGE' || X, 1, DATEADD('SECOND', X / 3, CAST(? AS TIMESTAMP)) " +
+                        "FROM SYSTEM_RANGE(1, CAST(? AS BIGINT))",
+                walletId, userId, currency, new Timestamp(System.currentTimeMillis() - 86_400_000L), ROWS);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM idempotency_key WHERE transaction_id IN " +
+                "(SELECT id FROM wallet_transaction WHERE business_type = 'PAGE_TEST')");
+        jdbcTemplate.update("DELETE FROM wallet_transaction WHERE business_type = 'PAGE_TEST'");
+    }
+
+    @Test
+    void testGetTransactionPage_WalksAllRowsInOrder() {
+        // When
+        Set<String> seen = new HashSet<>();
+        TransactionRecordResponse previous = null;
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransactionPageResponse page = transactionService.getTransactionPage(
+                    userId, currency, null, null, cursor, 1000);
+            for (TransactionRecordResponse record : page.getRecords()) {
+                assertTrue(seen.add(record.getTransactionNo()), "重复记录 " + record.getTransactionNo());
+                if (previous != null) {
+                    assertFalse(record.getCreatedAt().after(previous.getCreatedAt()));
+                }
+                previous = record;
+            }
+            cursor = page.getNextCursor();
+            assertEquals(page.getHasMore(), cursor != null);
+            pages++;
+        } while (cursor != null);
+
+        // Then - 每页最多 200 条（配置上限）
+        assertEquals(ROWS, seen.size());
+        assertEquals((ROWS + 199) / 200, pages);
+    }
+
+    @Test
+    void testGetTransactionPage_InvalidCursor() {
+        assertThrows(BusinessException.class, () -> transactionService.getTransactionPage(
+                userId, currency, null, null, "not-a-cursor", PAGE_SIZE));
+    }
+
+    @Test
+    void testExportTransactions_StreamsAllRows() throws Exception {
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        transactionService.exportTransactions(userId, currency, null, null, out);
+
+        // Then
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(ROWS, lines.length);
+        assertTrue(lines[0].contains("\"transactionNo\":\"PAGE" + ROWS + "\""));
+    }
+
+    @Test
+    void testDeepPageLatency_KeysetVsOffset() {
+        // Given - 第 DEEP_OFFSET 条之后的一页，游标取自其前一条记录
+        List<WalletTransaction> anchor = jdbcTemplate.query(
+                "SELECT id, created_at FROM wallet_transaction WHERE user_id = ? AND currency = ? " +
+                        "ORDER BY created_at DESC, id DESC LIMIT 1 OFFSET ?",
+                (rs, i) -> {
+                    WalletTransaction transaction = new WalletTransaction();
+                    transaction.setId(rs.getLong("id"));
+                    transaction.setCreatedAt(rs.getTimestamp("created_at"));
+                    return transaction;
+                }, userId, currency, DEEP_OFFSET - 1);
+
+        // When
+        long offsetNanos = 0;
+        long keysetNanos = 0;
+        List<WalletTransaction> offsetPage = null;
+        List<WalletTransaction> keysetPage = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            offsetPage = jdbcTemplate.query(
+                    "SELECT * FROM wallet_transaction WHERE user_id = ? AND currency = ? " +
+                            "ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?",
+                    new BeanPropertyRowMapper<>(WalletTransaction.class), userId, currency, PAGE_SIZE, DEEP_OFFSET);
+            offsetNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            keysetPage = transactionMapper.selectPageByUser(userId, currency, null, null,
+                    anchor.get(0).getCreatedAt(), anchor.get(0).getId(), PAGE_SIZE);
+            keysetNanos += System.nanoTime() - start;
+        }
+
+        // Then - 两种方式返回同一页
+        assertEquals(offsetPage.stream().map(WalletTransaction::getId).toList(),
+                keysetPage.stream().map(WalletTransaction::getId).toList());
+        log.info("第 {} 条起的一页: OFFSET 分页平均 {}us, 游标分页平均 {}us",
+                DEEP_OFFSET, offsetNanos / ITERATIONS / 1000, keysetNanos / ITERATIONS / 1000);
+        assertTrue(keysetNanos < offsetNanos);
+    }
+}
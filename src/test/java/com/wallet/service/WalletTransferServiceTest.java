@@ -0,0 +1,335 @@
+package com.wallet.service;
+
+import com.wallet.cache.IdempotencyCache;
+import com.wallet.dto.request.TransferRequest;
+import com.wallet.dto.response.BatchTransferResponse;
+import com.wallet.dto.response.TransferResponse;
+import com.wallet.exception.BusinessException;
+import com.wallet.exception.InsufficientBalanceException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.jdbc.Sql;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 钱包间转账：单事务内双边记账、整批回滚、幂等、反向并发不死锁、分片钱包按钱包余额转账、保留的方向后缀，
+ * 以及 1000 笔批量转账与逐笔提现+充值的语句数对比
+ */
+@Slf4j
+@SpringBootTest
+@ActiveProfiles("test")
+@Sql(scripts = "classpath:data-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+class WalletTransferServiceTest {
+
+    private static final int LEGS = 1000;
+
+    private static final BigDecimal LEG_AMOUNT = new BigDecimal("0.01");
+
+    @Autowired
+    private WalletTransferService transferService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private IdempotencyCache idempotencyCache;
+
+    @Autowired
+    private StripedWalletService stripedWalletService;
+
+    @Autowired
+    private ReconciliationService reconciliationService;
+
+    @BeforeEach
+    void clearIdempotencyCache() {
+        idempotencyCache.invalidateAll();
+    }
+
+    @Test
+    void testTransfer_DebitsAndCreditsInOneTransaction() {
+        // When
+        TransferResponse response = transferService.transfer(leg(1001L, 1002L, "300.00", "T001"));
+
+        // Then
+        assertTrue(response.getSuccess());
+        assertEquals(0, new BigDecimal("700.00").compareTo(response.getDebit().getBalanceAfter()));
+        assertEquals(0, new BigDecimal("800.00").compareTo(response.getCredit().getBalanceAfter()));
+        assertEquals(0, new BigDecimal("700.00").compareTo(balance(1001L)));
+        assertEquals(0, new BigDecimal("800.00").compareTo(balance(1002L)));
+
+        // 两条腿各一条流水和一条变更历史
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transaction " +
+                "WHERE business_id = ? AND transaction_type = 3", Integer.class, "T001"));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history h " +
+                "JOIN wallet_transaction t ON h.transaction_id = t.id WHERE t.business_id = ?",
+                Integer.class, "T001"));
+    }
+
+    @Test
+    void testTransfer_CreatesMissingDestinationWallet() {
+        // When
+        transferService.transfer(leg(1001L, 5001L, "10.00", "T002"));
+
+        // Then
+        assertEquals(0, new BigDecimal("10.00").compareTo(balance(5001L)));
+    }
+
+    @Test
+    void testTransfer_DestinationWalletCreatedBeforeLocking() {
+        // When - 转出方余额不足，转账事务回滚
+        assertThrows(InsufficientBalanceException.class,
+                () -> transferService.transfer(leg(1003L, 5003L, "10.00", "T003")));
+
+        // Then - 转入方钱包已在加锁前的独立事务中创建并提交
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(5003L)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transaction", Integer.class));
+    }
+
+    @Test
+    void testTransfer_ConcurrentFirstCreditsToNewWallet() throws Exception {
+        // Given - 两个付款方同时向同一个新用户首次转账
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        // When
+        try {
+            CompletableFuture<TransferResponse> first = CompletableFuture.supplyAsync(
+                    () -> transferService.transfer(leg(1001L, 5002L, "10.00", "N001")), executor);
+            CompletableFuture<TransferResponse> second = CompletableFuture.supplyAsync(
+                    () -> transferService.transfer(leg(1002L, 5002L, "20.00", "N002")), executor);
+            CompletableFuture.allOf(first, second).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then - 只创建一个钱包，两笔都入账
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM wallet WHERE user_id = 5002", Integer.class));
+        assertEquals(0, new BigDecimal("30.00").compareTo(balance(5002L)));
+    }
+
+    @Test
+    void testBatchTransfer_InsufficientBalanceRollsBackWholeBatch() {
+        // Given - 第三笔时 1003 余额只有 50，不够转出 60
+        List<TransferRequest> legs = List.of(
+                leg(1001L, 1003L, "50.00", "B001"),
+                leg(1002L, 1001L, "20.00", "B002"),
+                leg(1003L, 1002L, "60.00", "B003"));
+
+        // When & Then
+        assertThrows(InsufficientBalanceException.class, () -> transferService.batchTransfer(legs));
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance(1001L)));
+        assertEquals(0, new BigDecimal("500.00").compareTo(balance(1002L)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(balance(1003L)));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transaction", Integer.class));
+    }
+
+    @Test
+    void testBatchTransfer_Idempotent() {
+        // Given
+        List<TransferRequest> legs = List.of(
+                leg(1001L, 1002L, "100.00", "I001"),
+                leg(1002L, 1003L, "50.00", "I002"));
+        BatchTransferResponse first = transferService.batchTransfer(legs);
+
+        // When - 重放同一批，外加一笔新的
+        List<TransferRequest> replay = new ArrayList<>(legs);
+        replay.add(leg(1003L, 1001L, "10.00", "I003"));
+        BatchTransferResponse second = transferService.batchTransfer(replay);
+
+        // Then
+        assertEquals(2, first.getAppliedLegs());
+        assertEquals(1, second.getAppliedLegs());
+        assertEquals(2, second.getDuplicateLegs());
+        assertEquals(first.getLegs().get(0).getDebit().getTransactionNo(),
+                second.getLegs().get(0).getDebit().getTransactionNo());
+        assertEquals(first.getLegs().get(0).getCredit().getTransactionNo(),
+                second.getLegs().get(0).getCredit().getTransactionNo());
+        assertEquals(0, new BigDecimal("910.00").compareTo(balance(1001L)));
+        assertEquals(0, new BigDecimal("550.00").compareTo(balance(1002L)));
+        assertEquals(0, new BigDecimal("40.00").compareTo(balance(1003L)));
+    }
+
+    @Test
+    void testBatchTransfer_RejectsInvalidLegs() {
+        assertThrows(BusinessException.class, () -> transferService.batchTransfer(List.of()));
+        assertThrows(BusinessException.class,
+                () -> transferService.transfer(leg(1001L, 1001L, "1.00", "V001")));
+        assertThrows(BusinessException.class,
+                () -> transferService.transfer(leg(1001L, 1002L, "-1.00", "V002")));
+        // 小数位超出币种精度，与单笔充值/提现一样拒绝
+        assertEquals("INVALID_AMOUNT", assertThrows(BusinessException.class,
+                () -> transferService.transfer(leg(1001L, 1002L, "1.001", "V003"))).getCode());
+    }
+
+    @Test
+    void testBusinessType_DirectionSuffixesReserved() {
+        // Given - 以保留后缀结尾、加上后缀后超出列宽的转账业务类型
+        TransferRequest reserved = leg(1001L, 1002L, "1.00", "R001");
+        reserved.setBusinessType("PAY_OUT");
+        TransferRequest tooLong = leg(1001L, 1002L, "1.00", "R002");
+        tooLong.setBusinessType("T".repeat(BusinessTypes.MAX_LENGTH - BusinessTypes.DEBIT_SUFFIX.length() + 1));
+
+        // When & Then - 转账和其他写入路径都不能使用保留后缀
+        assertEquals("INVALID_BUSINESS_TYPE", assertThrows(BusinessException.class,
+                () -> transferService.transfer(reserved)).getCode());
+        assertEquals("INVALID_BUSINESS_TYPE", assertThrows(BusinessException.class,
+                () -> transferService.transfer(tooLong)).getCode());
+        assertEquals("INVALID_BUSINESS_TYPE", assertThrows(BusinessException.class,
+                () -> walletService.recharge(1001L, "CNY", new BigDecimal("1.00"), "TEST_TRANSFER_IN", "R003", null))
+                .getCode());
+        assertEquals("INVALID_BUSINESS_TYPE", assertThrows(BusinessException.class,
+                () -> walletService.withdraw(1001L, "CNY", new BigDecimal("1.00"), "TEST_TRANSFER_OUT", "R004", null))
+                .getCode());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM wallet_transaction", Integer.class));
+    }
+
+    @Test
+    void testBatchTransfer_OpposingBatchesDoNotDeadlock() throws Exception {
+        // Given - 两个线程同时提交方向相反的批次，请求中的钱包顺序也相反
+        jdbcTemplate.update("UPDATE wallet SET balance = 100.00 WHERE user_id = 1003");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        int rounds = 50;
+
+        // When
+        try {
+            CompletableFuture<Void> forward = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    transferService.batchTransfer(List.of(
+                            leg(1001L, 1002L, "1.00", "F" + i + "A"),
+                            leg(1002L, 1003L, "1.00", "F" + i + "B")));
+                }
+            }, executor);
+            CompletableFuture<Void> backward = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < rounds; i++) {
+                    transferService.batchTransfer(List.of(
+                            leg(1003L, 1002L, "0.50", "R" + i + "A"),
+                            leg(1002L, 1001L, "1.00", "R" + i + "B")));
+                }
+            }, executor);
+            CompletableFuture.allOf(forward, backward).get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then - 全部成功，总额不变
+        assertEquals(0, new BigDecimal("1000.00").compareTo(balance(1001L)));
+        assertEquals(0, new BigDecimal("475.00").compareTo(balance(1002L)));
+        assertEquals(0, new BigDecimal("125.00").compareTo(balance(1003L)));
+        assertEquals(rounds * 4 * 2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM balance_change_history", Integer.class));
+    }
+
+    @Test
+    void testBatchTransfer_StatementsVersusWithdrawAndRecharge() {
+        // Given - 1001 向 1000 个收款方各付一笔
+        List<TransferRequest> legs = new ArrayList<>(LEGS);
+        for (int i = 0; i < LEGS; i++) {
+            legs.add(leg(1001L, 600_000L + i, LEG_AMOUNT.toPlainString(), "P" + i));
+        }
+
+        // When - 逐笔提现+充值，两个事务完成一笔
+        long before = statementCount();
+        for (int i = 0; i < LEGS; i++) {
+            walletService.withdraw(1001L, "CNY", LEG_AMOUNT, "PAYOUT", "W" + i, null);
+            walletService.recharge(700_000L + i, "CNY", LEG_AMOUNT, "PAYOUT", "D" + i, null);
+        }
+        long twoCallStatements = statementCount() - before;
+
+        // When - 一次批量转账
+        before = statementCount();
+        BatchTransferResponse response = transferService.batchTransfer(legs);
+        long batchStatements = statementCount() - before;
+
+        // Then - 逐笔：提现 5 条，充值到新钱包 7 条（多出建钱包、重新查询）；
+        // 批量：每个钱包一条净额更新，另有查转入钱包、建钱包（加锁前单独提交）、幂等查询、查钱包、加锁、
+        // 插入流水、插入历史各 1 条
+        assertEquals(LEGS, response.getAppliedLegs());
+        assertEquals(0, new BigDecimal("980.00").compareTo(balance(1001L)));
+        log.info("{} 笔转账语句数: 提现+充值 {}, 批量转账 {}", LEGS, twoCallStatements, batchStatements);
+        assertEquals(LEGS * 12L, twoCallStatements);
+        assertEquals(LEGS + 1 + 7, batchStatements);
+    }
+
+    @Test
+    void testTransfer_StripedWalletsUseWalletBalance() {
+        // Given - 1003 主行为0，两个分片各 30
+        Date startTime = new Date(System.currentTimeMillis() - 1000);
+        stripedWalletService.enableStriping(1003L, "CNY", 2);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "S1", null);
+        walletService.recharge(1003L, "CNY", new BigDecimal("30.00"), "TEST_STRIPE", "S2", null);
+        stripedWalletService.enableStriping(1002L, "CNY", 2);
+        walletService.recharge(1002L, "CNY", new BigDecimal("40.00"), "TEST_STRIPE", "S3", null);
+
+        // When - 主行不够扣，归集分片后扣减；转入分片钱包记在主行
+        BatchTransferResponse response = transferService.batchTransfer(List.of(
+                leg(1003L, 1002L, "50.00", "TS1"),
+                leg(1003L, 1001L, "5.00", "TS2")));
+
+        // Then - 交易记录是钱包余额
+        TransferResponse first = response.getLegs().get(0);
+        assertEquals(0, new BigDecimal("60.00").compareTo(first.getDebit().getBalanceBefore()));
+        assertEquals(0, new BigDecimal("10.00").compareTo(first.getDebit().getBalanceAfter()));
+        assertEquals(0, new BigDecimal("540.00").compareTo(first.getCredit().getBalanceBefore()));
+        assertEquals(0, new BigDecimal("590.00").compareTo(first.getCredit().getBalanceAfter()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(response.getLegs().get(1).getDebit().getBalanceAfter()));
+        assertEquals(0, new BigDecimal("5.00").compareTo(walletService.getWallet(1003L, "CNY").getBalance()));
+        assertEquals(0, new BigDecimal("590.00").compareTo(walletService.getWallet(1002L, "CNY").getBalance()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(jdbcTemplate.queryForObject("SELECT SUM(s.balance) " +
+                "FROM wallet_stripe s JOIN wallet w ON s.wallet_id = w.id WHERE w.user_id = 1003", BigDecimal.class)));
+        assertEquals(3, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM balance_change_history " +
+                "WHERE change_type = 'STRIPE_SWEEP'", Integer.class));
+
+        // 变更历史按主行和分片记录：转入记主行 500 -> 550，转出方对账仍然平衡
+        assertEquals(0, new BigDecimal("550.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT h.balance_after FROM balance_change_history h JOIN wallet_transaction t " +
+                        "ON h.transaction_id = t.id WHERE t.business_id = 'TS1' AND t.user_id = 1002 " +
+                        "AND h.stripe_no = 0", BigDecimal.class)));
+        Date endTime = new Date(System.currentTimeMillis() + 1000);
+        assertTrue(reconciliationService.reconcile(1003L, "CNY", startTime, endTime).getIsBalanced());
+    }
+
+    private TransferRequest leg(Long fromUserId, Long toUserId, String amount, String businessId) {
+        TransferRequest request = new TransferRequest();
+        request.setFromUserId(fromUserId);
+        request.setToUserId(toUserId);
+        request.setCurrency("CNY");
+        request.setAmount(new BigDecimal(amount));
+        request.setBusinessType("TEST_TRANSFER");
+        request.setBusinessId(businessId);
+        return request;
+    }
+
+    /**
+     * 已执行的 Mapper 语句总数
+     */
+    private long statementCount() {
+        return meterRegistry.find("wallet.mapper").timers().stream().mapToLong(Timer::count).sum();
+    }
+
+    private BigDecimal balance(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT balance FROM wallet WHERE user_id = ? AND currency = 'CNY'",
+                BigDecimal.class, userId);
+    }
+}
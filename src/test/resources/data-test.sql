@@ -1,6 +1,14 @@
 -- 清理测试数据
+DELETE FROM balance_checkpoint;
+DELETE FROM history_projection;
+DELETE FROM ledger_projection;
 DELETE FROM balance_change_history;
+DELETE FROM balance_change_history_archive;
 DELETE FROM wallet_transaction;
+DELETE FROM wallet_transaction_archive;
+DELETE FROM idempotency_key;
+DELETE FROM wallet_stripe;
+DELETE FROM wallet_hold;
 DELETE FROM wallet;
 
 -- 插入测试钱包数据
@@ -1,5 +1,5 @@
 -- 创建钱包表
-CREATE TABLE wallet (
+CREATE TABLE IF NOT EXISTS wallet (
                         id BIGINT PRIMARY KEY AUTO_INCREMENT,
                         user_id BIGINT NOT NULL,
                         currency VARCHAR(10) NOT NULL,
@@ -7,12 +7,13 @@ CREATE TABLE wallet (
                         frozen_balance DECIMAL(20,8) NOT NULL DEFAULT 0,
                         version INT NOT NULL DEFAULT 0,
                         status TINYINT NOT NULL DEFAULT 1,
+                        stripe_count INT NOT NULL DEFAULT 0,
                         created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
                         updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
 -- 创建交易流水表
-CREATE TABLE wallet_transaction (
+CREATE TABLE IF NOT EXISTS wallet_transaction (
                                     id BIGINT PRIMARY KEY AUTO_INCREMENT,
                                     transaction_no VARCHAR(64) NOT NULL,
                                     wallet_id BIGINT NOT NULL,
@@ -31,21 +32,143 @@ CREATE TABLE wallet_transaction (
 );
 
 -- 创建余额变更历史表
-CREATE TABLE balance_change_history (
+CREATE TABLE IF NOT EXISTS balance_change_history (
                                         id BIGINT PRIMARY KEY AUTO_INCREMENT,
                                         wallet_id BIGINT NOT NULL,
-                                        transaction_id BIGINT NOT NULL,
+                                        transaction_id BIGINT,
+                                        hold_id BIGINT,
                                         change_amount DECIMAL(20,8) NOT NULL,
                                         balance_before DECIMAL(20,8) NOT NULL,
                                         balance_after DECIMAL(20,8) NOT NULL,
                                         change_type VARCHAR(20) NOT NULL,
+                                        stripe_no INT NOT NULL DEFAULT 0,
                                         created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
+-- 创建幂等键表（交易记录写入时由触发器补上交易ID、创建时间和状态）
+CREATE TABLE IF NOT EXISTS idempotency_key (
+                                    key_hash BINARY(16) PRIMARY KEY,
+                                    transaction_id BIGINT,
+                                    status TINYINT NOT NULL DEFAULT 0,
+                                    created_at TIMESTAMP
+);
+
+CREATE TRIGGER IF NOT EXISTS trg_idempotency_key AFTER INSERT ON wallet_transaction
+    FOR EACH ROW CALL 'com.wallet.h2.IdempotencyKeyTrigger';
+
+-- 创建交易流水归档表（列顺序与交易流水表一致）
+CREATE TABLE IF NOT EXISTS wallet_transaction_archive (
+                                    id BIGINT PRIMARY KEY,
+                                    transaction_no VARCHAR(64) NOT NULL,
+                                    wallet_id BIGINT NOT NULL,
+                                    user_id BIGINT NOT NULL,
+                                    currency VARCHAR(10) NOT NULL,
+                                    amount DECIMAL(20,8) NOT NULL,
+                                    balance_before DECIMAL(20,8) NOT NULL,
+                                    balance_after DECIMAL(20,8) NOT NULL,
+                                    transaction_type TINYINT NOT NULL,
+                                    business_type VARCHAR(50) NOT NULL,
+                                    business_id VARCHAR(64) NOT NULL,
+                                    status TINYINT NOT NULL,
+                                    remark VARCHAR(500),
+                                    created_at TIMESTAMP NOT NULL,
+                                    updated_at TIMESTAMP
+);
+
+-- 创建余额变更历史归档表（列顺序与余额变更历史表一致）
+CREATE TABLE IF NOT EXISTS balance_change_history_archive (
+                                        id BIGINT PRIMARY KEY,
+                                        wallet_id BIGINT NOT NULL,
+                                        transaction_id BIGINT,
+                                        hold_id BIGINT,
+                                        change_amount DECIMAL(20,8) NOT NULL,
+                                        balance_before DECIMAL(20,8) NOT NULL,
+                                        balance_after DECIMAL(20,8) NOT NULL,
+                                        change_type VARCHAR(20) NOT NULL,
+                                        stripe_no INT NOT NULL,
+                                        created_at TIMESTAMP NOT NULL
+);
+
+-- 创建钱包分片表
+CREATE TABLE IF NOT EXISTS wallet_stripe (
+                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    wallet_id BIGINT NOT NULL,
+                                    stripe_no INT NOT NULL,
+                                    balance DECIMAL(20,8) NOT NULL DEFAULT 0,
+                                    version INT NOT NULL DEFAULT 0,
+                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 创建余额检查点表
+CREATE TABLE IF NOT EXISTS balance_checkpoint (
+                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    wallet_id BIGINT NOT NULL,
+                                    checkpoint_time TIMESTAMP NOT NULL,
+                                    balance DECIMAL(20,8) NOT NULL,
+                                    total_inflow DECIMAL(30,8) NOT NULL DEFAULT 0,
+                                    total_outflow DECIMAL(30,8) NOT NULL DEFAULT 0,
+                                    change_count BIGINT NOT NULL DEFAULT 0,
+                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 创建资金冻结单表
+CREATE TABLE IF NOT EXISTS wallet_hold (
+                                    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                    hold_no VARCHAR(64) NOT NULL,
+                                    wallet_id BIGINT NOT NULL,
+                                    user_id BIGINT NOT NULL,
+                                    currency VARCHAR(10) NOT NULL,
+                                    amount DECIMAL(20,8) NOT NULL,
+                                    captured_amount DECIMAL(20,8),
+                                    status TINYINT NOT NULL DEFAULT 0,
+                                    business_type VARCHAR(50) NOT NULL,
+                                    business_id VARCHAR(64) NOT NULL,
+                                    transaction_no VARCHAR(64),
+                                    expires_at TIMESTAMP NOT NULL,
+                                    remark VARCHAR(500),
+                                    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 创建余额变更历史补写进度表
+CREATE TABLE IF NOT EXISTS history_projection (
+                                    name VARCHAR(50) PRIMARY KEY,
+                                    last_transaction_id BIGINT NOT NULL DEFAULT 0,
+                                    caught_up_to TIMESTAMP,
+                                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 内存账本投影进度表
+CREATE TABLE IF NOT EXISTS ledger_projection (
+                                    shard INT PRIMARY KEY,
+                                    last_seq BIGINT NOT NULL DEFAULT 0,
+                                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 复制心跳表
+CREATE TABLE IF NOT EXISTS replication_heartbeat (
+                                    id INT PRIMARY KEY,
+                                    beat_at TIMESTAMP NOT NULL
+);
+
 -- 创建索引（H2语法）
 CREATE UNIQUE INDEX IF NOT EXISTS uk_user_currency ON wallet(user_id, currency);
 CREATE UNIQUE INDEX IF NOT EXISTS uk_transaction_no ON wallet_transaction(transaction_no);
-CREATE UNIQUE INDEX IF NOT EXISTS uk_business ON wallet_transaction(business_type, business_id);
 CREATE INDEX IF NOT EXISTS idx_user_id ON wallet(user_id);
 CREATE INDEX IF NOT EXISTS idx_wallet_id ON wallet_transaction(wallet_id);
-CREATE INDEX IF NOT EXISTS idx_created ON wallet_transaction(created_at);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_created ON wallet_transaction(created_at);
+CREATE INDEX IF NOT EXISTS idx_user_currency_created ON wallet_transaction(user_id, currency, created_at, id);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_transaction_change ON balance_change_history(transaction_id, change_type, stripe_no);
+CREATE INDEX IF NOT EXISTS idx_hold_id ON balance_change_history(hold_id);
+CREATE INDEX IF NOT EXISTS idx_wallet_created ON balance_change_history(wallet_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_wallet_stripe_created ON balance_change_history(wallet_id, stripe_no, created_at);
+CREATE INDEX IF NOT EXISTS idx_archive_user_currency_created ON wallet_transaction_archive(user_id, currency, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_archive_wallet_created ON balance_change_history_archive(wallet_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_archive_wallet_stripe_created ON balance_change_history_archive(wallet_id, stripe_no, created_at);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_wallet_stripe ON wallet_stripe(wallet_id, stripe_no);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_wallet_time ON balance_checkpoint(wallet_id, checkpoint_time);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_hold_no ON wallet_hold(hold_no);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_hold_business ON wallet_hold(business_type, business_id);
+CREATE INDEX IF NOT EXISTS idx_hold_wallet ON wallet_hold(wallet_id);
+CREATE INDEX IF NOT EXISTS idx_hold_status_expires ON wallet_hold(status, expires_at);
\ No newline at end of file